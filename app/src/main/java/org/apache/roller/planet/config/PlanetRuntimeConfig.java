@@ -54,7 +54,7 @@ public class PlanetRuntimeConfig {
 
         try {
             PropertiesManager pmgr = WebloggerFactory.getWeblogger().getPropertiesManager();
-            value = pmgr.getProperty(name).getValue();
+            value = pmgr.getPropertyValue(name);
         } catch(Exception e) {
             log.warn("Trouble accessing property: "+name, e);
         }
@@ -38,18 +38,32 @@ public final class RegexUtil {
             Pattern.compile("\\b[a-zA-Z0-9\\.\\-]+(@)([a-zA-Z0-9\\.\\-]+)(\\.)([a-zA-Z0-9]+)\\b");
 
 
+    // either a mailto link or a plain email address, so both get handled in one pass
+    private static final Pattern MAILTO_OR_EMAIL_PATTERN = Pattern.compile(
+            MAILTO_PATTERN.pattern() + "|\\b([a-zA-Z0-9\\.\\-]+)@([a-zA-Z0-9\\.\\-]+)\\.([a-zA-Z0-9]+)\\b");
+
+
     public static String encodeEmail(String str) {
         // obfuscate mailto's: turns them into hex encoded,
         // so that browsers can still understand the mailto link
-        Matcher mailtoMatch = MAILTO_PATTERN.matcher(str);
-        while (mailtoMatch.find()) {
-            String email = mailtoMatch.group(1);
-            //System.out.println("email=" + email);
-            String hexed = encode(email);
-            str = str.replaceFirst("mailto:"+email, "mailto:"+hexed);
+        Matcher matcher = MAILTO_OR_EMAIL_PATTERN.matcher(str);
+        if (!matcher.find()) {
+            return str;
         }
         
-        return obfuscateEmail(str);
+        StringBuilder buf = new StringBuilder(str.length() + 64);
+        int copied = 0;
+        do {
+            buf.append(str, copied, matcher.start());
+            if (matcher.group(1) != null) {
+                buf.append("mailto:").append(encode(matcher.group(1)));
+            } else {
+                appendObfuscated(buf, matcher.group(2), matcher.group(3), matcher.group(4));
+            }
+            copied = matcher.end();
+        } while (matcher.find());
+        
+        return buf.append(str, copied, str.length()).toString();
     }
     
     
@@ -60,17 +74,25 @@ public final class RegexUtil {
      */
     public static String obfuscateEmail(String str) {
         Matcher emailMatch = EMAIL_PATTERN.matcher(str);
-        while (emailMatch.find()) {
-            String at = emailMatch.group(1);
-            //System.out.println("at=" + at);
-            str = str.replaceFirst(at, "-AT-");
-            
-            String dot = emailMatch.group(2) + emailMatch.group(3) + emailMatch.group(4);
-            String newDot = emailMatch.group(2) + "-DOT-" + emailMatch.group(4);
-            //System.out.println("dot=" + dot);
-            str = str.replaceFirst(dot, newDot);
+        if (!emailMatch.find()) {
+            return str;
         }
-        return str;
+        
+        StringBuilder buf = new StringBuilder(str.length() + 32);
+        int copied = 0;
+        do {
+            buf.append(str, copied, emailMatch.start());
+            appendObfuscated(buf, str.substring(emailMatch.start(), emailMatch.start(1)),
+                    emailMatch.group(2), emailMatch.group(4));
+            copied = emailMatch.end();
+        } while (emailMatch.find());
+        
+        return buf.append(str, copied, str.length()).toString();
+    }
+    
+    
+    private static void appendObfuscated(StringBuilder buf, String name, String domain, String tld) {
+        buf.append(name).append("-AT-").append(domain).append("-DOT-").append(tld);
     }
     
     
@@ -18,9 +18,11 @@
 
 package org.apache.roller.weblogger.business;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
@@ -35,8 +37,12 @@ import org.apache.roller.weblogger.pojos.Weblog;
  * Queue's up incoming hit counts so that they can be recorded to the db in
  * an asynchronous manner at give intervals.
  *
+ * Hits are tallied as they come in, in one striped counter per weblog handle,
+ * so recording a hit never contends on a shared lock and the memory used only
+ * depends on the number of weblogs being hit, not on the traffic.
+ *
  * We also start up a single thread which runs continously to take the queued
- * hit counts, tally them, and record them into the db.
+ * hit counts and record them into the db.
  *
  * TODO: we may want to make this an interface that is pluggable if there is
  *   some indication that users want to override this implementation.
@@ -48,16 +54,22 @@ public final class HitCountQueue {
     private static HitCountQueue instance = null;
     
     private WorkerThread worker = null;
-    private List<String> queue = null;
+    private final ConcurrentMap<String, LongAdder> hits = new ConcurrentHashMap<>();
     
     
     static {
-        instance = new HitCountQueue();
+        instance = new HitCountQueue(true);
     }
     
     
-    // non-instantiable because we are a singleton
-    private HitCountQueue() {
+    // non-instantiable because we are a singleton, tests may create a
+    // queue without a worker so that nothing drains it behind their back
+    HitCountQueue(boolean startWorker) {
+        
+        if (!startWorker) {
+            return;
+        }
+        
         int sleepTime = 3 * RollerConstants.MIN_IN_MS;
         String sleep = WebloggerConfig.getProperty("hitcount.queue.sleepTime", "180");
         
@@ -68,9 +80,6 @@ public final class HitCountQueue {
             log.warn("Invalid sleep time ["+sleep+"], using default");
         }
         
-        // create the hits queue
-        this.queue = Collections.synchronizedList(new ArrayList<String>());
-        
         // start up a worker to process the hits at intervals
         HitCountProcessingJob job = new HitCountProcessingJob();
         worker = new ContinuousWorkerThread("HitCountQueueProcessor", job, sleepTime);
@@ -85,24 +94,31 @@ public final class HitCountQueue {
     
     public void processHit(Weblog weblog) {
         
-        // if the weblog isn't null then just drop its handle in the queue
-        // each entry in the queue is a weblog handle and indicates a single hit
+        // if the weblog isn't null then just count a hit for its handle
         if(weblog != null) {
-            this.queue.add(weblog.getHandle());
+            this.hits.computeIfAbsent(weblog.getHandle(), k -> new LongAdder()).increment();
         }
     }
     
     
-    public List<String> getHits() {
-        return new ArrayList<>(this.queue);
-    }
-    
-    
     /**
-     * Reset the queued hits.
+     * Take the hits counted so far, grouped by weblog handle, and reset them.
+     *
+     * Counters are reset individually, so a hit which comes in while we drain
+     * is either part of the result or left for next time, but never lost.
+     * Counters are kept around after draining because the same weblogs are
+     * likely to be hit again.
      */
-    public synchronized void resetHits() {
-        this.queue = Collections.synchronizedList(new ArrayList<String>());
+    public Map<String, Long> drainHits() {
+        
+        Map<String, Long> drained = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : this.hits.entrySet()) {
+            long count = entry.getValue().sumThenReset();
+            if (count > 0) {
+                drained.put(entry.getKey(), count);
+            }
+        }
+        return drained;
     }
     
     
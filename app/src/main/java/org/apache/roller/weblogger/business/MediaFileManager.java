@@ -22,6 +22,7 @@ import java.util.Collection;
 import java.util.List;
 
 import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.pojos.FileContent;
 import org.apache.roller.weblogger.pojos.MediaFile;
 import org.apache.roller.weblogger.pojos.MediaFileDirectory;
 import org.apache.roller.weblogger.pojos.MediaFileFilter;
@@ -46,6 +47,11 @@ public interface MediaFileManager {
      */
     void release();
 
+    /**
+     * Stop making thumbnails in the background.
+     */
+    void shutdown();
+
     /**
      * Create a media file
      */
@@ -82,6 +88,20 @@ public interface MediaFileManager {
     MediaFile getMediaFile(String id, boolean includeContent)
             throws WebloggerException;
 
+    /**
+     * Whether thumbnails of the given size can be asked for.  MAX_WIDTH is
+     * always allowed, other sizes are set with "mediafiles.thumbnail.sizes".
+     */
+    boolean isThumbnailSize(int size);
+
+    /**
+     * Get the thumbnail of an image media file which fits into a square of
+     * the given size, making it first if it was not made yet or is older
+     * than the media file.
+     */
+    FileContent getThumbnailContent(MediaFile mediaFile, int size)
+            throws WebloggerException;
+
     /**
      * Delete a media file
      */
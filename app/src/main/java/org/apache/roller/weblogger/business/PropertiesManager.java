@@ -60,6 +60,14 @@ public interface PropertiesManager {
     RuntimeConfigProperty getProperty(String name) throws WebloggerException;
     
     
+    /**
+     * Retrieve the value of a single property by name, from a snapshot of
+     * all properties which is kept in memory until properties are saved.
+     * @return the value, or null if there is no such property
+     */
+    String getPropertyValue(String name) throws WebloggerException;
+    
+    
     /**
      * Retrieve a list of all properties
      */
@@ -18,6 +18,7 @@
 
 package org.apache.roller.weblogger.business;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -28,9 +29,11 @@ import org.apache.roller.weblogger.pojos.TagStat;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogCategory;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment.ApprovalStatus;
 import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
+import org.apache.roller.weblogger.pojos.WeblogEntryTitle;
 import org.apache.roller.weblogger.pojos.WeblogHitCount;
 
 
@@ -70,6 +73,29 @@ public interface WeblogEntryManager {
     List<WeblogEntry> getWeblogEntries(WeblogEntrySearchCriteria wesc)
             throws WebloggerException;
 
+    /**
+     * Get the ids of entries with a given status, in ascending id order,
+     * starting after a given id.  Meant for walking through a large number
+     * of entries in chunks without the cost of deep offsets.
+     * @param weblog Weblog of the entries, or null for all visible weblogs
+     * @param status Status of the entries
+     * @param afterId Only return ids after this one, or null to start at the first
+     * @param max Maximum number of ids to return
+     * @return List of entry ids
+     * @throws WebloggerException
+     */
+    List<String> getWeblogEntryIds(Weblog weblog, PubStatus status, String afterId, int max)
+            throws WebloggerException;
+
+    /**
+     * Get the entries with the given ids, in no particular order.
+     * @param ids Ids of the entries
+     * @return List of WeblogEntry objects, ids which don't exist are skipped
+     * @throws WebloggerException
+     */
+    List<WeblogEntry> getWeblogEntries(Collection<String> ids)
+            throws WebloggerException;
+
     /**
      * Get Weblog Entries grouped by day.
      * @param wesc WeblogEntrySearchCriteria object listing desired search parameters
@@ -82,13 +108,24 @@ public interface WeblogEntryManager {
     /**
      * Get Weblog Entry date strings grouped by day. This method returns a Map
      * that contains one YYYYMMDD date string object for each calendar day having
-     * one or more blog entries.
+     * one or more blog entries.  Days are in the timezone of the weblog, the
+     * offset and max results are ignored.
      * @param wesc WeblogEntrySearchCriteria object listing desired search parameters
      * @return Map of date strings keyed by Date
      * @throws WebloggerException
      */
     Map<Date, String> getWeblogEntryStringMap(WeblogEntrySearchCriteria wesc)
             throws WebloggerException;
+
+    /**
+     * Get the titles of Weblog Entries grouped by day, without loading the
+     * entries themselves.
+     * @param wesc WeblogEntrySearchCriteria object listing desired search parameters
+     * @return Map of Lists of titles keyed by calendar day, newest first
+     * @throws WebloggerException
+     */
+    Map<Date, List<WeblogEntryTitle>> getWeblogEntryTitleMap(WeblogEntrySearchCriteria wesc)
+            throws WebloggerException;
     
     /**
      * Get weblog entries ordered by descending number of comments.
@@ -285,6 +322,14 @@ public interface WeblogEntryManager {
      */
     boolean getTagComboExists(List<String> tags, Weblog weblog) throws WebloggerException;
     
+    /**
+     * Remove the tag counts which dropped to zero.  Saving entries leaves them
+     * in place, so that a save does not have to lock the whole tag table.
+     *
+     * @throws WebloggerException If there is any problem doing the operation.
+     */
+    void removeUnusedTagAggregates() throws WebloggerException;
+    
     /**
      * Get a HitCountData by id.
      *
@@ -357,6 +402,20 @@ public interface WeblogEntryManager {
         throws WebloggerException;
     
     
+    /**
+     * Increment the hit counts for a number of weblogs at once.
+     *
+     * Does the same as incrementHitCount() for each weblog, but looks up all
+     * the existing counts in one query and updates the counts of weblogs hit
+     * equally often with one statement.
+     *
+     * @param hits How much to increment by, for each weblog.
+     * @throws WebloggerException If there was a problem with the backend.
+     */
+    void incrementHitCounts(Map<Weblog, Integer> hits)
+        throws WebloggerException;
+    
+    
     /**
      * Reset the hit counts for all weblogs.  This sets the counts back to 0.
      *
@@ -386,6 +445,15 @@ public interface WeblogEntryManager {
     long getCommentCount(Weblog websiteData) throws WebloggerException;
 
     
+    /**
+     * Get the number of approved comments of each of the specified entries,
+     * in a single query.  Entries without approved comments are left out.
+     * @param entryIds ids of the entries
+     * @return approved comment counts keyed by entry id
+     */
+    Map<String, Integer> getCommentCounts(Collection<String> entryIds) throws WebloggerException;
+
+    
     /**
      * Get site-wide entry count 
      */    
@@ -18,6 +18,7 @@
 
 package org.apache.roller.weblogger.business;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -74,6 +75,16 @@ public interface WeblogManager {
         throws WebloggerException;
     
     
+    /**
+     * Get the enabled websites with the given handles, all in a few queries.
+     * Handles without an enabled website are left out.
+     * @param handles  Handles of websites
+     * @return websites by handle
+     */
+    Map<String, Weblog> getWeblogsByHandles(Collection<String> handles)
+        throws WebloggerException;
+    
+    
     /**
      * Get websites optionally restricted by user, enabled and active status.
      * @param enabled   Get all with this enabled state (or null or all)
@@ -415,6 +415,9 @@ public abstract class WebloggerImpl implements Weblogger {
     public void shutdown() {
         try {
             HitCountQueue.getInstance().shutdown();
+            if (mediaFileManager != null) {
+                mediaFileManager.shutdown();
+            }
             if (indexManager != null) {
                 indexManager.shutdown();
             }
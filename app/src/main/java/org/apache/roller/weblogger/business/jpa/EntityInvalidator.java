@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.jpa;
+
+import java.util.function.BiConsumer;
+
+
+/**
+ * Tells the other servers of a cluster about entities which changed, so they
+ * can drop them from their shared entity cache.
+ *
+ * Implementations are configured with the cache.entities.invalidator
+ * property and need a public no-argument constructor.  Messages are the
+ * entity name, e.g. "Weblog", and the id of the entity.
+ */
+public interface EntityInvalidator {
+
+    /**
+     * Start receiving invalidations sent by other servers.
+     * @param receiver called with entity name and id of each invalidation
+     */
+    void init(BiConsumer<String, String> receiver);
+
+    /**
+     * Tell the other servers that an entity changed.
+     */
+    void send(String entityName, String id);
+
+    /**
+     * Stop sending and receiving.
+     */
+    void shutdown();
+
+}
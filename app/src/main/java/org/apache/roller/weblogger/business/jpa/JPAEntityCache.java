@@ -0,0 +1,383 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.jpa;
+
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+import javax.persistence.EntityManagerFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogBookmark;
+import org.apache.roller.weblogger.pojos.WeblogBookmarkFolder;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+import org.apache.roller.weblogger.util.Reflection;
+import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheHandler;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+
+
+/**
+ * Cache for the read-mostly entities: weblogs, users, categories and
+ * templates.
+ *
+ * The entities themselves are kept in the shared cache of the JPA provider,
+ * this class maps the names they are looked up by, such as weblog handles,
+ * to their ids so lookups can be done with a find() instead of a query.
+ * Mappings are checked against the entity they lead to, so a renamed or
+ * removed entity just costs a query.
+ *
+ * Weblog handles and user names are always mapped.  Setting
+ * cache.entities.enabled also maps category and template names, keeps hit
+ * counts for the shared cache, and drops entities from the shared cache on
+ * CacheManager invalidations, passing them on to other servers through the
+ * configured EntityInvalidator.
+ */
+public class JPAEntityCache implements CacheHandler {
+
+    private static final Log log = LogFactory.getLog(JPAEntityCache.class);
+
+    // a unique identifier for this cache, this is used as the prefix for
+    // roller config properties that apply to this cache
+    public static final String CACHE_ID = "cache.entities";
+
+    // id under which the shared cache of the JPA provider shows up
+    public static final String SHARED_CACHE_ID = CACHE_ID + ".shared";
+
+    private static final Map<String, Class<?>> ENTITIES = Map.of(
+            "Weblog", Weblog.class,
+            "User", User.class,
+            "WeblogCategory", WeblogCategory.class,
+            "WeblogTemplate", WeblogTemplate.class);
+
+    private final boolean cacheEnabled;
+    private final int size;
+    private final Cache keys;
+    private volatile javax.persistence.Cache sharedCache = null;
+    private EntityInvalidator invalidator = null;
+
+    // for metrics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder remoteEvictions = new LongAdder();
+    private volatile Date startTime = new Date();
+
+
+    JPAEntityCache() {
+
+        cacheEnabled = WebloggerConfig.getBooleanProperty(CACHE_ID+".enabled", false);
+
+        Map<String, String> cacheProps = new HashMap<>();
+        cacheProps.put("id", CACHE_ID);
+        cacheProps.put("size", "1000");
+        cacheProps.put("timeout", "0");
+        Enumeration<Object> allProps = WebloggerConfig.keys();
+        String prop;
+        while(allProps.hasMoreElements()) {
+            prop = (String) allProps.nextElement();
+
+            // we are only interested in props for this cache
+            if(prop.startsWith(CACHE_ID+".")) {
+                cacheProps.put(prop.substring(CACHE_ID.length()+1),
+                        WebloggerConfig.getProperty(prop));
+            }
+        }
+
+        log.info(cacheProps);
+
+        int entitySize = 1000;
+        try {
+            entitySize = Integer.parseInt(cacheProps.get("size"));
+        } catch (NumberFormatException e) {
+            log.warn("invalid size property", e);
+        }
+        size = entitySize;
+
+        keys = CacheManager.constructCache(cacheEnabled ? this : null, cacheProps);
+
+        if (!cacheEnabled) {
+            log.info("Shared entity caching is not enabled");
+        }
+    }
+
+
+    /**
+     * Add properties for the JPA provider which give the cached entities a
+     * shared cache of the configured size, unless they are configured
+     * already.  Only EclipseLink properties are added.
+     */
+    void addProviderProperties(Properties emfProps) {
+        if (cacheEnabled) {
+            for (String entityName : ENTITIES.keySet()) {
+                emfProps.putIfAbsent("eclipselink.cache.shared." + entityName, "true");
+                emfProps.putIfAbsent("eclipselink.cache.size." + entityName, Integer.toString(size));
+            }
+        }
+    }
+
+
+    /**
+     * Start using the shared cache of the given factory, and listening to
+     * invalidations from other servers.
+     */
+    void init(EntityManagerFactory emf) {
+
+        if (!cacheEnabled) {
+            return;
+        }
+
+        sharedCache = emf.getCache();
+        CacheManager.registerCache(new SharedCacheStats());
+
+        String classname = WebloggerConfig.getProperty(CACHE_ID+".invalidator");
+        if (classname != null && !classname.isBlank()) {
+            try {
+                invalidator = (EntityInvalidator) Reflection.newInstance(classname.trim());
+                invalidator.init(this::evict);
+            } catch (ClassCastException | ReflectiveOperationException e) {
+                log.error("Unable to instantiate entity invalidator ["+classname+"]", e);
+                invalidator = null;
+            }
+        }
+    }
+
+
+    public boolean isEnabled() {
+        return cacheEnabled;
+    }
+
+
+    /**
+     * Get the id of the entity a key was mapped to.
+     * @param key key as built by one of the key methods
+     * @param always true for keys which are mapped even if not enabled
+     */
+    String getId(String key, boolean always) {
+        if (!always && !cacheEnabled) {
+            return null;
+        }
+        return (String) keys.get(key);
+    }
+
+
+    void putId(String key, String id, boolean always) {
+        if (always || cacheEnabled) {
+            keys.put(key, id);
+        }
+    }
+
+
+    void removeId(String key) {
+        keys.remove(key);
+    }
+
+
+    /**
+     * Count whether the shared cache has an entity which is about to be
+     * looked up by id.
+     */
+    void countLookup(Class<?> type, Object id) {
+        javax.persistence.Cache shared = sharedCache;
+        if (shared != null && id != null && ENTITIES.containsValue(type)) {
+            if (shared.contains(type, id)) {
+                hits.increment();
+            } else {
+                misses.increment();
+            }
+        }
+    }
+
+
+    static String weblogKey(String handle) {
+        return "weblog:" + handle;
+    }
+
+    static String userKey(String userName) {
+        return "user:" + userName;
+    }
+
+    static String categoryKey(Weblog weblog, String name) {
+        return "category:" + weblog.getId() + "/" + name;
+    }
+
+    static String templateKey(Weblog weblog, String kind, Object value) {
+        return "template:" + weblog.getId() + "/" + kind + "=" + value;
+    }
+
+
+    /**
+     * Drop an entity from the shared cache, because it changed here or on
+     * another server.
+     */
+    private void evict(String entityName, String id) {
+        Class<?> type = ENTITIES.get(entityName);
+        if (type != null && sharedCache != null) {
+            sharedCache.evict(type, id);
+            remoteEvictions.increment();
+            log.debug("EVICT (remote) " + entityName + " " + id);
+        }
+    }
+
+
+    private void changed(String entityName, String id) {
+        if (!cacheEnabled || id == null) {
+            return;
+        }
+        if (sharedCache != null) {
+            sharedCache.evict(ENTITIES.get(entityName), id);
+            evictions.increment();
+        }
+        if (invalidator != null) {
+            invalidator.send(entityName, id);
+        }
+        log.debug("EVICT " + entityName + " " + id);
+    }
+
+
+    public void shutdown() {
+        if (invalidator != null) {
+            invalidator.shutdown();
+        }
+    }
+
+
+    @Override
+    public void invalidate(Weblog website) {
+        changed("Weblog", website.getId());
+    }
+
+
+    @Override
+    public void invalidate(User user) {
+        changed("User", user.getId());
+    }
+
+
+    @Override
+    public void invalidate(WeblogCategory category) {
+        changed("WeblogCategory", category.getId());
+    }
+
+
+    @Override
+    public void invalidate(WeblogTemplate template) {
+        changed("WeblogTemplate", template.getId());
+    }
+
+
+    @Override
+    public void invalidate(WeblogEntry entry) {
+        // ignored
+    }
+
+
+    @Override
+    public void invalidate(WeblogBookmark bookmark) {
+        // ignored
+    }
+
+
+    @Override
+    public void invalidate(WeblogBookmarkFolder folder) {
+        // ignored
+    }
+
+
+    @Override
+    public void invalidate(WeblogEntryComment comment) {
+        // ignored
+    }
+
+
+    /**
+     * Stats for the shared cache of the JPA provider, which holds the
+     * entities.  The provider puts and gets them itself, clearing drops all
+     * the cached entities of the types above.
+     */
+    private class SharedCacheStats implements Cache {
+
+        @Override
+        public String getId() {
+            return SHARED_CACHE_ID;
+        }
+
+        @Override
+        public void put(String key, Object value) {
+            // entities are put by the provider
+        }
+
+        @Override
+        public Object get(String key) {
+            return null;
+        }
+
+        @Override
+        public void remove(String key) {
+            // entities are evicted by invalidations
+        }
+
+        @Override
+        public void clear() {
+            for (Class<?> type : ENTITIES.values()) {
+                sharedCache.evict(type);
+            }
+            hits.reset();
+            misses.reset();
+            evictions.reset();
+            remoteEvictions.reset();
+            startTime = new Date();
+        }
+
+        @Override
+        public Map<String, Object> getStats() {
+
+            double hitCount = hits.sum();
+            double missCount = misses.sum();
+
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("startTime", startTime);
+            stats.put("hits", hitCount);
+            stats.put("misses", missCount);
+            stats.put("evictions", (double) evictions.sum());
+            stats.put("remoteEvictions", (double) remoteEvictions.sum());
+            stats.put("entities", String.join(", ", List.copyOf(ENTITIES.keySet())));
+
+            // calculate efficiency
+            if (missCount + hitCount > 0) {
+                double efficiency = hitCount / (missCount + hitCount);
+                stats.put("efficiency", efficiency * RollerConstants.PERCENT_100);
+            }
+
+            return stats;
+        }
+    }
+
+}
@@ -17,11 +17,9 @@
  */
 package org.apache.roller.weblogger.business.jpa;
 
-import java.awt.Graphics2D;
-import java.awt.Image;
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -31,12 +29,19 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
-import javax.imageio.ImageIO;
 import javax.persistence.NoResultException;
 import javax.persistence.TypedQuery;
 
@@ -46,6 +51,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.FileContentManager;
 import org.apache.roller.weblogger.business.FileIOException;
+import org.apache.roller.weblogger.business.FileNotFoundException;
 import org.apache.roller.weblogger.business.MediaFileManager;
 import org.apache.roller.weblogger.business.WeblogManager;
 import org.apache.roller.weblogger.business.Weblogger;
@@ -59,6 +65,7 @@ import org.apache.roller.weblogger.pojos.MediaFileTag;
 import org.apache.roller.weblogger.pojos.MediaFileType;
 import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.util.ImageUtil;
 import org.apache.roller.weblogger.util.RollerMessages;
 import org.apache.roller.weblogger.util.Utilities;
 
@@ -70,6 +77,21 @@ public class JPAMediaFileManagerImpl implements MediaFileManager {
     private static final Log log = LogFactory.getFactory().getInstance(JPAMediaFileManagerImpl.class);
     public static final String MIGRATION_STATUS_FILENAME = "migration-status.properties";
 
+    // thumbnails are stored next to their media file under its id and this
+    // suffix, followed by their size unless they are of the default size
+    private static final String THUMBNAIL_SUFFIX = "_sm";
+
+    // how long to wait for a thumbnail another thread is making
+    private static final long THUMBNAIL_WAIT_SECONDS = 30;
+
+    private final Set<Integer> thumbnailSizes;
+
+    // thumbnails of uploaded images are made in the background
+    private final ThreadPoolExecutor thumbnailExecutor;
+
+    // thumbnails being made or waiting to be made, by their file id
+    private final Map<String, ThumbnailJob> pendingThumbnails = new ConcurrentHashMap<>();
+
     /**
      * Creates a new instance of MediaFileManagerImpl
      */
@@ -78,6 +100,35 @@ public class JPAMediaFileManagerImpl implements MediaFileManager {
             JPAPersistenceStrategy persistenceStrategy) {
         this.roller = roller;
         this.strategy = persistenceStrategy;
+
+        Set<Integer> sizes = new HashSet<>();
+        sizes.add(MAX_WIDTH);
+        String[] configuredSizes = StringUtils.split(
+                WebloggerConfig.getProperty("mediafiles.thumbnail.sizes", ""), ", ");
+        for (String size : configuredSizes) {
+            try {
+                int pixels = Integer.parseInt(size);
+                if (pixels > 0) {
+                    sizes.add(pixels);
+                }
+            } catch (NumberFormatException e) {
+                log.warn("Invalid thumbnail size: " + size);
+            }
+        }
+        this.thumbnailSizes = Set.copyOf(sizes);
+
+        int threads = Math.max(1, WebloggerConfig.getIntProperty("mediafiles.thumbnail.threads", 2));
+        int queueSize = Math.max(1, WebloggerConfig.getIntProperty("mediafiles.thumbnail.queueSize", 100));
+        this.thumbnailExecutor = new ThreadPoolExecutor(threads, threads,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    Thread t = new Thread(r, "Roller Thumbnail Maker");
+                    t.setDaemon(true);
+                    return t;
+                },
+                // once the queue is full uploads make their own thumbnails
+                (r, executor) -> r.run());
+        this.thumbnailExecutor.allowCoreThreadTimeOut(true);
     }
 
     /**
@@ -100,6 +151,17 @@ public class JPAMediaFileManagerImpl implements MediaFileManager {
     public void release() {
     }
 
+    /**
+     * Stop the thumbnail threads.  Thumbnails still waiting to be made are
+     * made when first asked for instead.
+     */
+    @Override
+    public void shutdown() {
+        for (Runnable job : thumbnailExecutor.shutdownNow()) {
+            ((ThumbnailJob) job).cancel();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -223,7 +285,7 @@ public class JPAMediaFileManagerImpl implements MediaFileManager {
                 mediaFile.getInputStream());
 
         if (mediaFile.isImageFile()) {
-            updateThumbnail(mediaFile);
+            updateImage(mediaFile);
         }
     }
 
@@ -245,49 +307,161 @@ public class JPAMediaFileManagerImpl implements MediaFileManager {
             mediaFile.getInputStream());
 
         if (mediaFile.isImageFile()) {
-            updateThumbnail(mediaFile);
+            updateImage(mediaFile);
         }
     }
 
-    private void updateThumbnail(MediaFile mediaFile) {
+    /**
+     * Read the width and height of an uploaded image and have its thumbnail
+     * made in the background once the upload is committed.
+     *
+     * The size is read from the image header, only making the thumbnail
+     * needs the image to be decoded.
+     */
+    private void updateImage(MediaFile mediaFile) {
         try {
             FileContentManager cmgr = WebloggerFactory.getWeblogger()
                     .getFileContentManager();
             FileContent fc = cmgr.getFileContent(mediaFile.getWeblog(),
                     mediaFile.getId());
-            BufferedImage img;
 
-            img = ImageIO.read(fc.getInputStream());
+            Dimension size = ImageUtil.readSize(fc.getFile());
+            if (size == null) {
+                log.debug("Unable to read image " + mediaFile.getId());
+                return;
+            }
 
             // determine and save width and height
-            mediaFile.setWidth(img.getWidth());
-            mediaFile.setHeight(img.getHeight());
+            mediaFile.setWidth(size.width);
+            mediaFile.setHeight(size.height);
             strategy.store(mediaFile);
 
-            int newWidth = mediaFile.getThumbnailWidth();
-            int newHeight = mediaFile.getThumbnailHeight();
-
-            // create thumbnail image
-            Image newImage = img.getScaledInstance(newWidth, newHeight,
-                    Image.SCALE_SMOOTH);
-            BufferedImage tmp = new BufferedImage(newWidth, newHeight,
-                    BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2 = tmp.createGraphics();
-            g2.drawImage(newImage, 0, 0, newWidth, newHeight, null);
-            g2.dispose();
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(tmp, "png", baos);
-
-            cmgr.saveFileContent(mediaFile.getWeblog(), mediaFile.getId()
-                    + "_sm", new ByteArrayInputStream(baos.toByteArray()));
+            Weblog weblog = mediaFile.getWeblog();
+            String mediaFileId = mediaFile.getId();
+            strategy.afterCommit(() -> makeThumbnail(weblog, mediaFileId,
+                    MAX_WIDTH, thumbnailExecutor));
 
             roller.flush();
             // Refresh associated parent for changes
             strategy.refresh(mediaFile.getDirectory());
 
         } catch (Exception e) {
-            log.debug("ERROR creating thumbnail", e);
+            log.debug("ERROR reading image size", e);
+        }
+    }
+
+    /**
+     * Have a thumbnail made by the given executor, unless it is being made
+     * already.
+     *
+     * @return the job making the thumbnail
+     */
+    private ThumbnailJob makeThumbnail(Weblog weblog, String mediaFileId,
+            int size, Executor executor) {
+        String thumbnailId = getThumbnailId(mediaFileId, size);
+        ThumbnailJob job = new ThumbnailJob(weblog, mediaFileId, thumbnailId, size);
+        ThumbnailJob pending = pendingThumbnails.putIfAbsent(thumbnailId, job);
+        if (pending != null) {
+            return pending;
+        }
+        executor.execute(job);
+        return job;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isThumbnailSize(int size) {
+        return thumbnailSizes.contains(size);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FileContent getThumbnailContent(MediaFile mediaFile, int size)
+            throws WebloggerException {
+
+        if (!isThumbnailSize(size)) {
+            throw new WebloggerException("Invalid thumbnail size " + size);
+        }
+
+        Weblog weblog = mediaFile.getWeblog();
+        String thumbnailId = getThumbnailId(mediaFile.getId(), size);
+
+        ThumbnailJob job = pendingThumbnails.get(thumbnailId);
+        if (job == null) {
+            FileContent thumbnail = getCurrentThumbnail(weblog,
+                    mediaFile.getId(), thumbnailId);
+            if (thumbnail != null) {
+                return thumbnail;
+            }
+            // make it right here, unless another thread just started to
+            job = makeThumbnail(weblog, mediaFile.getId(), size, Runnable::run);
+
+        } else if (thumbnailExecutor.remove(job)) {
+            // no need to wait for the uploads queued before it
+            job.run();
+        }
+
+        try {
+            if (!job.await(THUMBNAIL_WAIT_SECONDS)) {
+                throw new WebloggerException("Timed out waiting for thumbnail "
+                        + thumbnailId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebloggerException("Interrupted waiting for thumbnail "
+                    + thumbnailId, e);
+        }
+
+        FileContent thumbnail = getCurrentThumbnail(weblog, mediaFile.getId(),
+                thumbnailId);
+        if (thumbnail == null) {
+            throw new FileNotFoundException("Unable to make thumbnail "
+                    + thumbnailId);
+        }
+        return thumbnail;
+    }
+
+    /**
+     * The thumbnail with the given id, or null if it was not made yet or is
+     * older than its media file.
+     */
+    private FileContent getCurrentThumbnail(Weblog weblog, String mediaFileId,
+            String thumbnailId) throws WebloggerException {
+        FileContentManager cmgr = WebloggerFactory.getWeblogger()
+                .getFileContentManager();
+        FileContent content = cmgr.getFileContent(weblog, mediaFileId);
+        try {
+            FileContent thumbnail = cmgr.getFileContent(weblog, thumbnailId);
+            if (thumbnail.getLastModified() >= content.getLastModified()) {
+                return thumbnail;
+            }
+        } catch (FileNotFoundException e) {
+            // not made yet
+        }
+        return null;
+    }
+
+    private static String getThumbnailId(String mediaFileId, int size) {
+        if (size == MAX_WIDTH) {
+            return mediaFileId + THUMBNAIL_SUFFIX;
+        }
+        return mediaFileId + THUMBNAIL_SUFFIX + size;
+    }
+
+    private void deleteThumbnails(Weblog weblog, String mediaFileId) {
+        FileContentManager cmgr = WebloggerFactory.getWeblogger()
+                .getFileContentManager();
+        for (int size : thumbnailSizes) {
+            try {
+                cmgr.deleteFile(weblog, getThumbnailId(mediaFileId, size));
+            } catch (Exception e) {
+                // most sizes are only made when asked for
+                log.debug("Thumbnail to be deleted already unavailable in the file store");
+            }
         }
     }
 
@@ -334,7 +508,7 @@ public class JPAMediaFileManagerImpl implements MediaFileManager {
         cmgr.saveFileContent(weblog, mediaFile.getId(), is);
 
         if (mediaFile.isImageFile()) {
-            updateThumbnail(mediaFile);
+            updateImage(mediaFile);
         }
     }
 
@@ -364,7 +538,7 @@ public class JPAMediaFileManagerImpl implements MediaFileManager {
 
             try {
                 FileContent thumbnail = cmgr.getFileContent(mediaFile
-                        .getDirectory().getWeblog(), id + "_sm");
+                        .getDirectory().getWeblog(), getThumbnailId(id, MAX_WIDTH));
                 mediaFile.setThumbnailContent(thumbnail);
 
             } catch (Exception e) {
@@ -506,11 +680,11 @@ public class JPAMediaFileManagerImpl implements MediaFileManager {
 
         try {
             cmgr.deleteFile(weblog, mediaFile.getId());
-            // Now thumbnail
-            cmgr.deleteFile(weblog, mediaFile.getId() + "_sm");
         } catch (Exception e) {
             log.debug("File to be deleted already unavailable in the file store");
         }
+        // Now thumbnails
+        deleteThumbnails(weblog, mediaFile.getId());
     }
 
     /**
@@ -867,11 +1041,11 @@ public class JPAMediaFileManagerImpl implements MediaFileManager {
         for (MediaFile mf : files) {
             try {
                 cmgr.deleteFile(dir.getWeblog(), mf.getId());
-                // Now thumbnail
-                cmgr.deleteFile(dir.getWeblog(), mf.getId() + "_sm");
             } catch (Exception e) {
                 log.debug("File to be deleted already unavailable in the file store");
             }
+            // Now thumbnails
+            deleteThumbnails(dir.getWeblog(), mf.getId());
             this.strategy.remove(mf);
         }
 
@@ -905,4 +1079,61 @@ public class JPAMediaFileManagerImpl implements MediaFileManager {
             }
         }
     }
+
+    /**
+     * Makes one thumbnail, and lets others wait until it is made.
+     */
+    private final class ThumbnailJob implements Runnable {
+
+        private final Weblog weblog;
+        private final String mediaFileId;
+        private final String thumbnailId;
+        private final int size;
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private ThumbnailJob(Weblog weblog, String mediaFileId,
+                String thumbnailId, int size) {
+            this.weblog = weblog;
+            this.mediaFileId = mediaFileId;
+            this.thumbnailId = thumbnailId;
+            this.size = size;
+        }
+
+        @Override
+        public void run() {
+            try {
+                FileContentManager cmgr = WebloggerFactory.getWeblogger()
+                        .getFileContentManager();
+                FileContent fc = cmgr.getFileContent(weblog, mediaFileId);
+
+                BufferedImage thumbnail = ImageUtil.readThumbnail(fc.getFile(), size);
+                if (thumbnail == null) {
+                    log.debug("Unable to read image " + mediaFileId);
+                    return;
+                }
+
+                cmgr.saveFileContent(weblog, thumbnailId,
+                        new ByteArrayInputStream(ImageUtil.toPng(thumbnail)));
+
+            } catch (Exception e) {
+                log.debug("ERROR creating thumbnail", e);
+            } finally {
+                cancel();
+            }
+        }
+
+        /**
+         * Let others know this job is done with, whether it made the
+         * thumbnail or not.
+         */
+        private void cancel() {
+            pendingThumbnails.remove(thumbnailId, this);
+            done.countDown();
+        }
+
+        private boolean await(long seconds) throws InterruptedException {
+            return done.await(seconds, TimeUnit.SECONDS);
+        }
+    }
+
 }
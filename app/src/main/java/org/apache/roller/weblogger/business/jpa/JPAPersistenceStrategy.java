@@ -18,8 +18,10 @@
 
 package org.apache.roller.weblogger.business.jpa;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Properties;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -47,16 +49,42 @@ public class JPAPersistenceStrategy {
     private static final Log logger = 
         LogFactory.getFactory().getInstance(JPAPersistenceStrategy.class);
     
+    /**
+     * Most values to put into one IN list, longer lists are split.  Oracle
+     * allows at most 1000 and long statements cost every database.
+     */
+    static final int MAX_IN_LIST = 500;
+    
     /**
      * The thread local EntityManager.
      */
     private final ThreadLocal<EntityManager> threadLocalEntityManager = new ThreadLocal<>();
     
+    /**
+     * Work to do once the thread's transaction is committed.
+     */
+    private final ThreadLocal<List<Runnable>> threadLocalAfterCommit = new ThreadLocal<>();
+    
+    /**
+     * Work to do if the thread's transaction is released without a commit.
+     */
+    private final ThreadLocal<List<Runnable>> threadLocalAfterRollback = new ThreadLocal<>();
+    
     /**
      * The EntityManagerFactory for this Roller instance.
      */
     private EntityManagerFactory emf = null;
     
+    /**
+     * Names to ids of the read-mostly entities, and stats for their cache.
+     */
+    private final JPAEntityCache entityCache = new JPAEntityCache();
+    
+    /**
+     * Tag counts of weblogs and the site.
+     */
+    private final TagStatsCache tagStatsCache = new TagStatsCache(this);
+    
             
     /**
      * Construct by finding JPA EntityManagerFactory.
@@ -100,6 +128,8 @@ public class JPAPersistenceStrategy {
                 emfProps.setProperty("javax.persistence.jdbc.password", dbProvider.getJdbcPassword());
             }
 
+            entityCache.addProviderProperties(emfProps);
+
             try {
                 this.emf = Persistence.createEntityManagerFactory("RollerPU", emfProps);
 
@@ -108,7 +138,23 @@ public class JPAPersistenceStrategy {
                 throw new WebloggerException(pe);
             }
         }
+        entityCache.init(emf);
     }
+    
+    /**
+     * Get the cache of the read-mostly entities.
+     */
+    JPAEntityCache getEntityCache() {
+        return entityCache;
+    }
+    
+    /**
+     * Get the cache of tag counts.
+     */
+    TagStatsCache getTagStatsCache() {
+        return tagStatsCache;
+    }
+    
     /**
      * Refresh changes to the current object.
      * 
@@ -130,12 +176,54 @@ public class JPAPersistenceStrategy {
      * @throws org.apache.roller.weblogger.WebloggerException on any error
      */
     public void flush() throws WebloggerException {
+        List<Runnable> afterCommit = threadLocalAfterCommit.get();
+        threadLocalAfterCommit.remove();
         try {
             EntityManager em = getEntityManager(true);
             em.getTransaction().commit();
         } catch (PersistenceException pe) {
             throw new WebloggerException(pe);
         }
+        threadLocalAfterRollback.remove();
+        if (afterCommit != null) {
+            for (Runnable work : afterCommit) {
+                try {
+                    work.run();
+                } catch (RuntimeException e) {
+                    logger.error("error after committing transaction", e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Do something once the current transaction is committed, such as
+     * updating in-memory state which has to match the database.  Nothing is
+     * done if the transaction is rolled back.
+     * @param work what to do after the commit
+     */
+    public void afterCommit(Runnable work) {
+        List<Runnable> afterCommit = threadLocalAfterCommit.get();
+        if (afterCommit == null) {
+            afterCommit = new ArrayList<>();
+            threadLocalAfterCommit.set(afterCommit);
+        }
+        afterCommit.add(work);
+    }
+    
+    /**
+     * Do something if the current transaction is not committed, because it
+     * is rolled back or the commit fails, such as forgetting in-memory state
+     * kept for it.  The work is done when the session is released.
+     * @param work what to do instead of committing
+     */
+    public void afterRollback(Runnable work) {
+        List<Runnable> afterRollback = threadLocalAfterRollback.get();
+        if (afterRollback == null) {
+            afterRollback = new ArrayList<>();
+            threadLocalAfterRollback.set(afterRollback);
+        }
+        afterRollback.add(work);
     }
     
     /**
@@ -159,9 +247,31 @@ public class JPAPersistenceStrategy {
                 }
             }
             threadLocalEntityManager.remove();
+            threadLocalAfterCommit.remove();
+            List<Runnable> afterRollback = threadLocalAfterRollback.get();
+            threadLocalAfterRollback.remove();
+            if (afterRollback != null) {
+                for (Runnable work : afterRollback) {
+                    try {
+                        work.run();
+                    } catch (RuntimeException e) {
+                        logger.error("error after rolling back transaction", e);
+                    }
+                }
+            }
         }
     }
     
+    /**
+     * Whether the object is managed by the current persistence context,
+     * store() assumes objects which aren't are new.
+     * @param obj the object to check
+     * @return true if the object is managed
+     */
+    public boolean isManaged(Object obj) {
+        return getEntityManager(true).contains(obj);
+    }
+
     /**
      * Store object using an existing transaction.
      * @param obj the object to persist
@@ -220,6 +330,7 @@ public class JPAPersistenceStrategy {
      */
     public Object load(Class<?> clazz, String id) throws WebloggerException {
         EntityManager em = getEntityManager(false);
+        entityCache.countLookup(clazz, id);
         return em.find(clazz, id);
     }
     
@@ -350,6 +461,7 @@ public class JPAPersistenceStrategy {
     }
 
     public void shutdown() {
+        entityCache.shutdown();
         if (emf != null) {
             emf.close();
         }
@@ -21,13 +21,17 @@ package org.apache.roller.weblogger.business.jpa;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
+import javax.persistence.TypedQuery;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.InitializationException;
 import org.apache.roller.weblogger.business.PropertiesManager;
+import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
 import org.apache.roller.weblogger.config.runtime.ConfigDef;
 import org.apache.roller.weblogger.config.runtime.DisplayGroup;
@@ -49,8 +53,20 @@ public class JPAPropertiesManagerImpl implements PropertiesManager {
     private static Log log = LogFactory.getLog(
         JPAPropertiesManagerImpl.class);
 
+    /**
+     * Property whose value changes whenever properties are saved, so that
+     * other servers of a cluster can tell that their snapshot is outdated.
+     */
+    static final String VERSION_PROPERTY = "runtimeconfig.version";
+
     private final JPAPersistenceStrategy strategy;
     
+    // how often to look for properties saved by other servers
+    private final long checkInterval;
+    
+    // values of all properties, replaced as a whole when they change
+    private volatile Snapshot snapshot = null;
+    
     
     /**
      * Creates a new instance of JPAPropertiesManagerImpl
@@ -59,6 +75,8 @@ public class JPAPropertiesManagerImpl implements PropertiesManager {
     protected JPAPropertiesManagerImpl(JPAPersistenceStrategy strategy) {
         log.debug("Instantiating JPA Properties Manager");
         this.strategy = strategy;
+        this.checkInterval = WebloggerConfig.getIntProperty(
+                "cache.runtimeconfig.checkInterval", 30) * (long) RollerConstants.SEC_IN_MS;
     }
     
     
@@ -97,6 +115,50 @@ public class JPAPropertiesManagerImpl implements PropertiesManager {
     }
 
 
+    /**
+     * Retrieve the value of a single property from the snapshot, loading
+     * the snapshot again if another server saved properties since.
+     */
+    @Override
+    public String getPropertyValue(String name) throws WebloggerException {
+        Snapshot current = snapshot;
+        long now = System.currentTimeMillis();
+        if (current == null) {
+            current = loadSnapshot(now);
+        } else if (now >= current.nextCheck) {
+            TypedQuery<String> query = strategy.getNamedQuery(
+                    "RuntimeConfigProperty.getValueByName", String.class);
+            query.setParameter(1, VERSION_PROPERTY);
+            List<String> version = query.getResultList();
+            if (!version.isEmpty() && version.get(0).equals(current.version)) {
+                current = new Snapshot(current.values, current.version, now + checkInterval);
+                snapshot = current;
+            } else {
+                current = loadSnapshot(now);
+            }
+        }
+        return current.values.get(name);
+    }
+    
+    
+    private Snapshot loadSnapshot(long now) throws WebloggerException {
+        // a projection, so values come from the database and not from
+        // entities another server may have changed
+        Map<String, String> values = new HashMap<>();
+        TypedQuery<Object[]> query = strategy.getNamedQuery(
+                "RuntimeConfigProperty.getAllValues", Object[].class);
+        for (Object[] row : query.getResultList()) {
+            if (row[1] != null) {
+                values.put((String) row[0], (String) row[1]);
+            }
+        }
+        Snapshot loaded = new Snapshot(values, values.get(VERSION_PROPERTY), now + checkInterval);
+        snapshot = loaded;
+        log.debug("Loaded runtime properties, version " + loaded.version);
+        return loaded;
+    }
+
+
     /**
      * Retrieve all properties.
      * 
@@ -130,6 +192,7 @@ public class JPAPropertiesManagerImpl implements PropertiesManager {
     public void saveProperty(RuntimeConfigProperty property) 
             throws WebloggerException {
         this.strategy.store(property);
+        propertiesChanged(Map.of(property.getName(), property));
     }
 
 
@@ -143,6 +206,53 @@ public class JPAPropertiesManagerImpl implements PropertiesManager {
         for (Object prop : properties.values()) {
             this.strategy.store(prop);
         }
+        propertiesChanged(properties);
+    }
+    
+    
+    /**
+     * Give properties a new version and, once the transaction is committed,
+     * put the saved values into a new snapshot.  Reading them back from the
+     * database could see them before they are flushed, and values which are
+     * rolled back must never be published.
+     */
+    private void propertiesChanged(Map<String, RuntimeConfigProperty> saved) throws WebloggerException {
+        
+        String version = UUID.randomUUID().toString();
+        RuntimeConfigProperty versionProp = (RuntimeConfigProperty) strategy
+                .load(RuntimeConfigProperty.class, VERSION_PROPERTY);
+        if (versionProp == null) {
+            versionProp = new RuntimeConfigProperty(VERSION_PROPERTY, version);
+            strategy.store(versionProp);
+        } else {
+            versionProp.setValue(version);
+        }
+        
+        // copy the values now, the entities may change before the commit
+        Map<String, String> changes = new HashMap<>();
+        for (RuntimeConfigProperty prop : saved.values()) {
+            changes.put(prop.getName(), prop.getValue());
+        }
+        changes.put(VERSION_PROPERTY, version);
+        strategy.afterCommit(() -> publish(changes, version));
+    }
+    
+    
+    private synchronized void publish(Map<String, String> changes, String version) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            // nothing loaded yet, the next read loads the committed values
+            return;
+        }
+        Map<String, String> values = new HashMap<>(current.values);
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            if (change.getValue() != null) {
+                values.put(change.getKey(), change.getValue());
+            } else {
+                values.remove(change.getKey());
+            }
+        }
+        snapshot = new Snapshot(values, version, System.currentTimeMillis() + checkInterval);
     }
     
 
@@ -197,5 +307,22 @@ public class JPAPropertiesManagerImpl implements PropertiesManager {
 
     @Override
     public void release() {}
+    
+    
+    /**
+     * Immutable values of all properties at one version.
+     */
+    private static final class Snapshot {
+        
+        private final Map<String, String> values;
+        private final String version;
+        private final long nextCheck;
+        
+        Snapshot(Map<String, String> values, String version, long nextCheck) {
+            this.values = Map.copyOf(values);
+            this.version = version;
+            this.nextCheck = nextCheck;
+        }
+    }
 
 }
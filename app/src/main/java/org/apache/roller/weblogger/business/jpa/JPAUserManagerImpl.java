@@ -22,6 +22,7 @@ import java.sql.Timestamp;
 import javax.persistence.NoResultException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
 
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.UserManager;
@@ -29,10 +30,10 @@ import org.apache.roller.weblogger.business.UserManager;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.persistence.TypedQuery;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.pojos.GlobalPermission;
@@ -49,8 +50,15 @@ public class JPAUserManagerImpl implements UserManager {
 
     private final JPAPersistenceStrategy strategy;
     
-    // cached mapping of userNames -> userIds
-    private Map<String, String> userNameToIdMap = Collections.synchronizedMap(new HashMap<String, String>());
+    // how long counts of users by letter are kept, other cluster nodes
+    // don't tell us about users they add or remove
+    private static final long LETTER_MAP_TIMEOUT = 5L * RollerConstants.MIN_IN_MS;
+    
+    // cached counts of users by first letter, dropped when users change
+    private volatile Map<String, Long> userNameLetterMap = null;
+    private volatile long userNameLetterMapTime = 0;
+    // committed changes of users, so that counts made before one aren't kept
+    private final AtomicInteger userNameChanges = new AtomicInteger();
     
 
     @com.google.inject.Inject
@@ -84,7 +92,8 @@ public class JPAUserManagerImpl implements UserManager {
         this.strategy.remove(user);
 
         // remove entry from cache mapping
-        this.userNameToIdMap.remove(userName);
+        strategy.getEntityCache().removeId(JPAEntityCache.userKey(userName));
+        userNamesChanged();
     }
 
     
@@ -114,6 +123,7 @@ public class JPAUserManagerImpl implements UserManager {
         }
 
         this.strategy.store(newUser);
+        userNamesChanged();
 
         grantRole("editor", newUser);
         if (adminUser) {
@@ -163,19 +173,20 @@ public class JPAUserManagerImpl implements UserManager {
         
         // check cache first
         // NOTE: if we ever allow changing usernames then this needs updating
-        if(this.userNameToIdMap.containsKey(userName)) {
+        JPAEntityCache entityCache = strategy.getEntityCache();
+        String userId = entityCache.getId(JPAEntityCache.userKey(userName), true);
+        if (userId != null) {
 
-            User user = this.getUser(
-                    this.userNameToIdMap.get(userName));
+            User user = this.getUser(userId);
             if (user != null) {
                 // only return the user if the enabled status matches
                 if(enabled == null || enabled.equals(user.getEnabled())) {
-                    log.debug("userNameToIdMap CACHE HIT - "+userName);
+                    log.debug("userName CACHE HIT - "+userName);
                     return user;
                 }
             } else {
                 // mapping hit with lookup miss?  mapping must be old, remove it
-                this.userNameToIdMap.remove(userName);
+                entityCache.removeId(JPAEntityCache.userKey(userName));
             }
         }
 
@@ -203,8 +214,8 @@ public class JPAUserManagerImpl implements UserManager {
 
         // add mapping to cache
         if(user != null) {
-            log.debug("userNameToIdMap CACHE MISS - " + userName);
-            this.userNameToIdMap.put(user.getUserName(), user.getId());
+            log.debug("userName CACHE MISS - " + userName);
+            entityCache.putId(JPAEntityCache.userKey(user.getUserName()), user.getId(), true);
         }
 
         return user;
@@ -290,18 +301,43 @@ public class JPAUserManagerImpl implements UserManager {
     }
 
     
+    /**
+     * Drop the counts of users by letter once the change is committed, a
+     * count made before that would still see the users as they were.
+     */
+    private void userNamesChanged() {
+        strategy.afterCommit(() -> {
+            userNameChanges.incrementAndGet();
+            userNameLetterMap = null;
+        });
+    }
+
+    
     @Override
     public Map<String, Long> getUserNameLetterMap() throws WebloggerException {
-        String lc = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-        Map<String, Long> results = new TreeMap<>();
-        TypedQuery<Long> query = strategy.getNamedQuery(
-                "User.getCountByUserNameLike", Long.class);
-        for (int i=0; i<26; i++) {
-            char currentChar = lc.charAt(i);
-            query.setParameter(1, currentChar + "%");
-            List<Long> row = query.getResultList();
-            Long count = row.get(0);
-            results.put(String.valueOf(currentChar), count);
+        Map<String, Long> results = userNameLetterMap;
+        if (results == null || System.currentTimeMillis() - userNameLetterMapTime > LETTER_MAP_TIMEOUT) {
+            int changes = userNameChanges.get();
+            results = new TreeMap<>();
+            for (char letter = 'A'; letter <= 'Z'; letter++) {
+                results.put(String.valueOf(letter), 0L);
+            }
+            // one count per first letter, names starting with anything else
+            // aren't listed
+            TypedQuery<Object[]> query = strategy.getNamedQuery(
+                    "User.getCountGroupByFirstLetter", Object[].class);
+            for (Object[] row : query.getResultList()) {
+                String letter = (String) row[0];
+                if (results.containsKey(letter)) {
+                    results.put(letter, ((Number) row[1]).longValue());
+                }
+            }
+            results = Collections.unmodifiableMap(results);
+            // keep the counts unless users changed while they were made
+            if (changes == userNameChanges.get()) {
+                userNameLetterMapTime = System.currentTimeMillis();
+                userNameLetterMap = results;
+            }
         }
         return results;
     }
@@ -311,8 +347,14 @@ public class JPAUserManagerImpl implements UserManager {
     public List<User> getUsersByLetter(char letter, int offset, int length)
             throws WebloggerException {
         TypedQuery<User> query = strategy.getNamedQuery(
-                "User.getByUserNameOrderByUserName", User.class);
-        query.setParameter(1, letter + "%");
+                "User.getByLetterOrderByUserName", User.class);
+        char upper = Character.toUpperCase(letter);
+        char lower = Character.toLowerCase(letter);
+        query.setParameter(1, String.valueOf(upper));
+        query.setParameter(2, String.valueOf((char) (upper + 1)));
+        query.setParameter(3, String.valueOf(lower));
+        query.setParameter(4, String.valueOf((char) (lower + 1)));
+        query.setParameter(5, upper + "%");
         if (offset != 0) {
             query.setFirstResult(offset);
         }
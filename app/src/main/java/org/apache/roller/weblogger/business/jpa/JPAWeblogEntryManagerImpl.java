@@ -21,6 +21,7 @@ package org.apache.roller.weblogger.business.jpa;
 import java.util.*;
 import java.text.SimpleDateFormat;
 import java.sql.Timestamp;
+import javax.persistence.FlushModeType;
 import javax.persistence.NoResultException;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
@@ -36,11 +37,13 @@ import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment.ApprovalStatus;
 import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
+import org.apache.roller.weblogger.pojos.WeblogEntryTitle;
 import org.apache.roller.weblogger.pojos.WeblogHitCount;
 import org.apache.roller.weblogger.pojos.StatCount;
 import org.apache.roller.weblogger.pojos.TagStat;
 import org.apache.roller.weblogger.pojos.TagStatComparator;
 import org.apache.roller.weblogger.pojos.TagStatCountComparator;
+import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.WeblogCategory;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
@@ -157,7 +160,15 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
      */
     @Override
     public void saveComment(WeblogEntryComment comment) throws WebloggerException {
+        int change;
+        if (!this.strategy.isManaged(comment)) {
+            // a new comment, store() persists it
+            change = ApprovalStatus.APPROVED.equals(comment.getStatus()) ? 1 : 0;
+        } else {
+            change = updateCommentStatus(comment, comment.getStatus());
+        }
         this.strategy.store(comment);
+        updateCommentCount(comment.getWeblogEntry(), change);
         
         // update weblog last modified date.  date updated by saveWebsite()
         roller.getWeblogManager().saveWeblog(comment.getWeblogEntry().getWebsite());
@@ -168,12 +179,59 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
      */
     @Override
     public void removeComment(WeblogEntryComment comment) throws WebloggerException {
+        int change = updateCommentStatus(comment, ApprovalStatus.DISAPPROVED);
         this.strategy.remove(comment);
+        updateCommentCount(comment.getWeblogEntry(), change);
         
         // update weblog last modified date.  date updated by saveWebsite()
         roller.getWeblogManager().saveWeblog(comment.getWeblogEntry().getWebsite());
     }
     
+    /**
+     * Write a stored comment's new status ahead of the comment itself, and
+     * return how that changed the entry's approved comments: 1 if the comment
+     * became approved, -1 if it no longer is and 0 otherwise.  The previous
+     * status is the one in the database, so the UPDATE mustn't flush the
+     * comment first.  The UPDATE locks the comment's row, so concurrent
+     * changes of the same comment are counted once.
+     */
+    private int updateCommentStatus(WeblogEntryComment comment, ApprovalStatus status)
+            throws WebloggerException {
+        boolean approved = ApprovalStatus.APPROVED.equals(status);
+        Query q = strategy.getNamedUpdate(approved
+                ? "WeblogEntryComment.updateStatusById&StatusNot"
+                : "WeblogEntryComment.updateStatusById&Status");
+        q.setFlushMode(FlushModeType.COMMIT);
+        q.setParameter(1, status);
+        q.setParameter(2, comment.getId());
+        q.setParameter(3, ApprovalStatus.APPROVED);
+        int updated = q.executeUpdate();
+        return approved ? updated : -updated;
+    }
+    
+    /**
+     * Add to the approved comment counter of an entry.  The database does
+     * the addition, so concurrent comment changes can't overwrite each
+     * other's counts the way reading the count and storing the entry could.
+     * Entries without the counter keep having their comments counted.
+     */
+    private void updateCommentCount(WeblogEntry entry, int change) throws WebloggerException {
+        if (change == 0) {
+            return;
+        }
+        Query update = strategy.getNamedUpdate("WeblogEntry.updateApprovedCommentCountIncrementById");
+        update.setParameter(1, change);
+        update.setParameter(2, entry.getId());
+        update.executeUpdate();
+        
+        // the UPDATE keeps the row locked until commit, so the entry can
+        // hold what it wrote without overwriting anyone else's change
+        TypedQuery<Integer> q = strategy.getNamedQuery(
+                "WeblogEntry.getApprovedCommentCountById", Integer.class);
+        q.setParameter(1, entry.getId());
+        entry.setApprovedCommentCount(q.getSingleResult());
+    }
+    
     /**
      * @inheritDoc
      */
@@ -200,32 +258,36 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             entry.setAnchor(this.createAnchor(entry));
         }
         
+        // changes to tag counts, applied together once all are known
+        Map<String, Integer> tagCounts = new HashMap<>();
+        
         if (entry.isPublished()) {
             // tag aggregates are updated only when entry published in order for
             // tag cloud counts to match published articles
             if (entry.getRefreshAggregates()) {
                 // blog entry wasn't published before, so all tags need to be incremented
                 for (WeblogEntryTag tag : entry.getTags()) {
-                    updateTagCount(tag.getName(), entry.getWebsite(), 1);
+                    tagCounts.merge(tag.getName(), 1, Integer::sum);
                 }
             } else {
                 // only new tags need to be incremented
                 for (WeblogEntryTag tag : entry.getAddedTags()) {
-                    updateTagCount(tag.getName(), entry.getWebsite(), 1);
+                    tagCounts.merge(tag.getName(), 1, Integer::sum);
                 }
             }
         } else {
             if (entry.getRefreshAggregates()) {
                 // blog entry no longer published so need to reduce aggregate count
                 for (WeblogEntryTag tag : entry.getTags()) {
-                    updateTagCount(tag.getName(), entry.getWebsite(), -1);
+                    tagCounts.merge(tag.getName(), -1, Integer::sum);
                 }
             }
         }
 
         for (WeblogEntryTag tag : entry.getRemovedTags()) {
-            removeWeblogEntryTag(tag);
+            removeWeblogEntryTag(tag, tagCounts);
         }
+        updateTagCounts(entry.getWebsite(), tagCounts);
 
         // if the entry was published to future, set status as SCHEDULED
         // we only consider an entry future published if it is scheduled
@@ -269,9 +331,11 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         
         // remove tag & tag aggregates
         if (entry.getTags() != null) {
+            Map<String, Integer> tagCounts = new HashMap<>();
             for (WeblogEntryTag tag : entry.getTags()) {
-                removeWeblogEntryTag(tag);
+                removeWeblogEntryTag(tag, tagCounts);
             }
+            updateTagCounts(entry.getWebsite(), tagCounts);
         }
         
         // remove attributes
@@ -380,19 +444,70 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     @Override
     public List<WeblogEntry> getWeblogEntries(WeblogEntrySearchCriteria wesc) throws WebloggerException {
 
+        List<Object> params = new ArrayList<>();
+        StringBuilder queryString = new StringBuilder("SELECT e ");
+        queryString.append(getEntryQueryConditions(wesc, params));
+        int size = params.size();
+
+        String sortField;
+        if (wesc.getSortBy() != null && wesc.getSortBy().equals(WeblogEntrySearchCriteria.SortBy.UPDATE_TIME)) {
+            sortField = "e.updateTime";
+        } else {
+            sortField = "e.pubTime";
+        }
+        boolean ascending = wesc.getSortOrder() != null
+                && wesc.getSortOrder().equals(WeblogEntrySearchCriteria.SortOrder.ASCENDING);
+        
+        // seek past the last entry of the previous page, when every entry
+        // the query can return has a time to seek by
+        boolean seek = wesc.getCursor() != null && wesc.isCursorSupported();
+        if (seek) {
+            params.add(size++, new Timestamp(wesc.getCursor().getTime().getTime()));
+            params.add(size++, wesc.getCursor().getId());
+            queryString.append(" AND ").append(seekCondition(sortField, "e.id", ascending, size - 1, size));
+        }
+        
+        // order by id too, so that entries with the same time have a fixed
+        // order and a cursor can tell them apart
+        String direction = ascending ? "ASC" : "DESC";
+        queryString.append(" ORDER BY ").append(sortField).append(' ').append(direction);
+        queryString.append(", e.id ").append(direction);
+        
+        TypedQuery<WeblogEntry> query = strategy.getDynamicQuery(queryString.toString(), WeblogEntry.class);
+        for (int i=0; i<params.size(); i++) {
+            query.setParameter(i+1, params.get(i));
+        }
+        
+        setFirstMax( query, seek ? 0 : wesc.getOffset(), wesc.getMaxResults() );
+        setBatchFetch(query, wesc.getFetch());
+        List<WeblogEntry> entries = query.getResultList();
+        fillCommentCounts(entries);
+        if (wesc.getFetch().contains(WeblogEntrySearchCriteria.Fetch.CREATOR)) {
+            fillCreators(entries);
+        }
+        return entries;
+    }
+    
+    /**
+     * Build the FROM and WHERE clauses of a query for the entries matching
+     * the search criteria, leaving out the sort order and paging.
+     * @param params list to add the query parameters to
+     */
+    private StringBuilder getEntryQueryConditions(WeblogEntrySearchCriteria wesc, List<Object> params)
+            throws WebloggerException {
+
         WeblogCategory cat = null;
         if (StringUtils.isNotEmpty(wesc.getCatName()) && wesc.getWeblog() != null) {
             cat = getWeblogCategoryByName(wesc.getWeblog(), wesc.getCatName());
         }
 
-        List<Object> params = new ArrayList<>();
-        int size = 0;
+        int size = params.size();
         StringBuilder queryString = new StringBuilder();
         
         if (wesc.getTags() == null || wesc.getTags().isEmpty()) {
-            queryString.append("SELECT e FROM WeblogEntry e WHERE ");
+            queryString.append("FROM WeblogEntry e WHERE ");
         } else {
-            queryString.append("SELECT e FROM WeblogEntry e JOIN e.tags t WHERE ");
+            queryString.append("FROM WeblogEntry e JOIN e.tags t WHERE ");
             queryString.append("(");
             for (int i = 0; i < wesc.getTags().size(); i++) {
                 if (i != 0) {
@@ -452,25 +567,117 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             queryString.append(") ");
         }
 
-        if (wesc.getSortBy() != null && wesc.getSortBy().equals(WeblogEntrySearchCriteria.SortBy.UPDATE_TIME)) {
-            queryString.append(" ORDER BY e.updateTime ");
-        } else {
-            queryString.append(" ORDER BY e.pubTime ");
+        return queryString;
+    }
+    
+    /**
+     * Have the relations in the fetch plan loaded for all the entries the
+     * query returns with one more query per relation, the first time one of
+     * the entries needs it, instead of one query per entry.
+     */
+    private static void setBatchFetch(TypedQuery<WeblogEntry> query, Set<WeblogEntrySearchCriteria.Fetch> fetch) {
+        if (fetch.isEmpty()) {
+            return;
+        }
+        query.setHint("eclipselink.batch.type", "IN");
+        for (WeblogEntrySearchCriteria.Fetch relation : fetch) {
+            switch (relation) {
+                case CATEGORY:
+                    query.setHint("eclipselink.batch", "e.category");
+                    break;
+                case TAGS:
+                    query.setHint("eclipselink.batch", "e.tags");
+                    break;
+                case ATTRIBUTES:
+                    query.setHint("eclipselink.batch", "e.entryAttributes");
+                    break;
+                default:
+                    // not a mapped relation
+            }
         }
-        
-        if (wesc.getSortOrder() != null && wesc.getSortOrder().equals(WeblogEntrySearchCriteria.SortOrder.ASCENDING)) {
-            queryString.append("ASC ");
+    }
+    
+    /**
+     * Look up the creators of all the entries in one query, entries only
+     * refer to them by user name.
+     */
+    private void fillCreators(List<WeblogEntry> entries) throws WebloggerException {
+        Set<String> userNames = new HashSet<>();
+        for (WeblogEntry entry : entries) {
+            if (entry.getCreatorUserName() != null) {
+                userNames.add(entry.getCreatorUserName());
+            }
+        }
+        if (!userNames.isEmpty()) {
+            TypedQuery<User> query = strategy.getNamedQuery(
+                    "User.getByUserNameList&Enabled", User.class);
+            query.setParameter(1, userNames);
+            query.setParameter(2, Boolean.TRUE);
+            Map<String, User> users = new HashMap<>();
+            for (User user : query.getResultList()) {
+                users.put(user.getUserName(), user);
+            }
+            for (WeblogEntry entry : entries) {
+                entry.setCreator(users.get(entry.getCreatorUserName()));
+            }
+        }
+    }
+    
+    /**
+     * Count the approved comments of entries which don't have the counter
+     * yet, all in one query instead of one per entry as they are rendered.
+     */
+    private void fillCommentCounts(List<WeblogEntry> entries) throws WebloggerException {
+        List<String> uncounted = new ArrayList<>();
+        for (WeblogEntry entry : entries) {
+            if (entry.getApprovedCommentCount() == null) {
+                uncounted.add(entry.getId());
+            }
+        }
+        if (!uncounted.isEmpty()) {
+            Map<String, Integer> counts = getCommentCounts(uncounted);
+            for (WeblogEntry entry : entries) {
+                if (entry.getApprovedCommentCount() == null) {
+                    entry.setCountedCommentCount(counts.getOrDefault(entry.getId(), 0));
+                }
+            }
+        }
+    }
+    
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<String> getWeblogEntryIds(Weblog weblog, PubStatus status, String afterId, int max)
+    throws WebloggerException {
+        TypedQuery<String> query;
+        if (weblog != null) {
+            query = strategy.getNamedQuery(
+                    "WeblogEntry.getIdByStatus&Website&IdGreaterThanOrderById", String.class);
+            query.setParameter(2, weblog);
         } else {
-            queryString.append("DESC ");
+            query = strategy.getNamedQuery(
+                    "WeblogEntry.getIdByStatus&WebsiteVisible&IdGreaterThanOrderById", String.class);
+            query.setParameter(2, Boolean.TRUE);
         }
-        
-        
-        TypedQuery<WeblogEntry> query = strategy.getDynamicQuery(queryString.toString(), WeblogEntry.class);
-        for (int i=0; i<params.size(); i++) {
-            query.setParameter(i+1, params.get(i));
+        query.setParameter(1, status);
+        query.setParameter(3, afterId != null ? afterId : "");
+        query.setMaxResults(max);
+        return query.getResultList();
+    }
+    
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<WeblogEntry> getWeblogEntries(Collection<String> ids)
+    throws WebloggerException {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
         }
-        
-        setFirstMax( query, wesc.getOffset(), wesc.getMaxResults() );
+        TypedQuery<WeblogEntry> query = strategy.getNamedQuery(
+                "WeblogEntry.getByIdList", WeblogEntry.class);
+        query.setParameter(1, ids);
         return query.getResultList();
     }
     
@@ -509,9 +716,10 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         }
     }
     
-    private void removeWeblogEntryTag(WeblogEntryTag tag) throws WebloggerException {
+    private void removeWeblogEntryTag(WeblogEntryTag tag, Map<String, Integer> tagCounts)
+            throws WebloggerException {
         if (tag.getWeblogEntry().isPublished()) {
-            updateTagCount(tag.getName(), tag.getWeblogEntry().getWebsite(), -1);
+            tagCounts.merge(tag.getName(), -1, Integer::sum);
         }
         this.strategy.remove(tag);
     }
@@ -665,17 +873,24 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             appendConjuctionToWhereclause(whereClause, "c.status = ?").append(size);
         }
         
+        if (csc.getCursor() != null) {
+            params.add(size++, new Timestamp(csc.getCursor().getTime().getTime()));
+            params.add(size++, csc.getCursor().getId());
+            appendConjuctionToWhereclause(whereClause,
+                    seekCondition("c.postTime", "c.id", !csc.isReverseChrono(), size - 1, size));
+        }
+        
         if(whereClause.length() != 0) {
             queryString.append(" WHERE ").append(whereClause);
         }
         if (csc.isReverseChrono()) {
-            queryString.append(" ORDER BY c.postTime DESC");
+            queryString.append(" ORDER BY c.postTime DESC, c.id DESC");
         } else {
-            queryString.append(" ORDER BY c.postTime ASC");
+            queryString.append(" ORDER BY c.postTime ASC, c.id ASC");
         }
         
         TypedQuery<WeblogEntryComment> query = strategy.getDynamicQuery(queryString.toString(), WeblogEntryComment.class);
-        setFirstMax( query, csc.getOffset(), csc.getMaxResults());
+        setFirstMax( query, csc.getCursor() == null ? csc.getOffset() : 0, csc.getMaxResults());
         for (int i=0; i<params.size(); i++) {
             query.setParameter(i+1, params.get(i));
         }
@@ -709,11 +924,24 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         csc.setStatus(status);
 
         List<WeblogEntryComment> comments = getComments(csc);
+        Map<WeblogEntry, Integer> changes = new LinkedHashMap<>();
         int count = 0;
         for (WeblogEntryComment comment : comments) {
-            removeComment(comment);
+            changes.merge(comment.getWeblogEntry(),
+                    updateCommentStatus(comment, ApprovalStatus.DISAPPROVED), Integer::sum);
+            this.strategy.remove(comment);
             count++;
         }
+        
+        // count once per entry and update each weblog's last modified date
+        Set<Weblog> weblogs = new LinkedHashSet<>();
+        for (Map.Entry<WeblogEntry, Integer> change : changes.entrySet()) {
+            updateCommentCount(change.getKey(), change.getValue());
+            weblogs.add(change.getKey().getWebsite());
+        }
+        for (Weblog commentWeblog : weblogs) {
+            roller.getWeblogManager().saveWeblog(commentWeblog);
+        }
         return count;
     }
     
@@ -736,15 +964,33 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     @Override
     public WeblogCategory getWeblogCategoryByName(Weblog weblog,
             String categoryName) throws WebloggerException {
+
+        // check cache first, the mapping is dropped when the category was
+        // renamed, moved or removed since
+        JPAEntityCache entityCache = strategy.getEntityCache();
+        String key = JPAEntityCache.categoryKey(weblog, categoryName);
+        String categoryId = entityCache.getId(key, false);
+        if (categoryId != null) {
+            WeblogCategory category = getWeblogCategory(categoryId);
+            if (category != null && categoryName.equals(category.getName())
+                    && weblog.getId().equals(category.getWeblog().getId())) {
+                return category;
+            }
+            entityCache.removeId(key);
+        }
+
         TypedQuery<WeblogCategory> q = strategy.getNamedQuery(
                 "WeblogCategory.getByWeblog&Name", WeblogCategory.class);
         q.setParameter(1, weblog);
         q.setParameter(2, categoryName);
+        WeblogCategory category;
         try {
-            return q.getSingleResult();
+            category = q.getSingleResult();
         } catch (NoResultException e) {
             return null;
         }
+        entityCache.putId(key, category.getId(), false);
+        return category;
     }
 
     /**
@@ -792,7 +1038,16 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     public Map<Date, String> getWeblogEntryStringMap(WeblogEntrySearchCriteria wesc) throws WebloggerException {
         TreeMap<Date, String> map = new TreeMap<>(Collections.reverseOrder());
 
-        List<WeblogEntry> entries = getWeblogEntries(wesc);
+        // only the days are needed, so leave the entries in the database
+        // and get just their distinct publication times, newest first
+        List<Object> params = new ArrayList<>();
+        StringBuilder queryString = new StringBuilder("SELECT DISTINCT e.pubTime ");
+        queryString.append(getEntryQueryConditions(wesc, params));
+        queryString.append(" ORDER BY e.pubTime DESC");
+        TypedQuery<Timestamp> query = strategy.getDynamicQuery(queryString.toString(), Timestamp.class);
+        for (int i=0; i<params.size(); i++) {
+            query.setParameter(i+1, params.get(i));
+        }
 
         Calendar cal = Calendar.getInstance();
         SimpleDateFormat formatter = DateUtil.get8charDateFormat();
@@ -802,15 +1057,55 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             formatter.setTimeZone(tz);
         }
 
-        for (WeblogEntry entry : entries) {
-            Date sDate = DateUtil.getNoonOfDay(entry.getPubTime(), cal);
-            if (map.get(sDate) == null) {
+        // times come newest first, so a new day only starts once a time is
+        // before the start of the current one
+        long dayStart = Long.MAX_VALUE;
+        for (Timestamp pubTime : query.getResultList()) {
+            if (pubTime.getTime() < dayStart) {
+                Date sDate = DateUtil.getNoonOfDay(pubTime, cal);
+                dayStart = DateUtil.getStartOfDay(pubTime, cal).getTime();
                 map.put(sDate, formatter.format(sDate));
             }
         }
         return map;
     }
 
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Map<Date, List<WeblogEntryTitle>> getWeblogEntryTitleMap(WeblogEntrySearchCriteria wesc) throws WebloggerException {
+        TreeMap<Date, List<WeblogEntryTitle>> map = new TreeMap<>(Collections.reverseOrder());
+
+        List<Object> params = new ArrayList<>();
+        StringBuilder queryString = new StringBuilder("SELECT e.pubTime, e.anchor, e.title ");
+        queryString.append(getEntryQueryConditions(wesc, params));
+        queryString.append(" ORDER BY e.pubTime DESC, e.id DESC");
+        TypedQuery<Object[]> query = strategy.getDynamicQuery(queryString.toString(), Object[].class);
+        for (int i=0; i<params.size(); i++) {
+            query.setParameter(i+1, params.get(i));
+        }
+        setFirstMax( query, wesc.getOffset(), wesc.getMaxResults() );
+
+        Calendar cal = Calendar.getInstance();
+        if (wesc.getWeblog() != null) {
+            cal.setTimeZone(wesc.getWeblog().getTimeZoneInstance());
+        }
+
+        long dayStart = Long.MAX_VALUE;
+        List<WeblogEntryTitle> dayEntries = null;
+        for (Object[] row : query.getResultList()) {
+            Timestamp pubTime = (Timestamp) row[0];
+            if (pubTime.getTime() < dayStart) {
+                dayEntries = new ArrayList<>();
+                map.put(DateUtil.getNoonOfDay(pubTime, cal), dayEntries);
+                dayStart = DateUtil.getStartOfDay(pubTime, cal).getTime();
+            }
+            dayEntries.add(new WeblogEntryTitle((String) row[1], (String) row[2], pubTime));
+        }
+        return map;
+    }
+
     /**
      * @inheritDoc
      */
@@ -933,6 +1228,11 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     @Override
     public List<TagStat> getPopularTags(Weblog website, Date startDate, int offset, int limit)
     throws WebloggerException {
+        TagStatsCache tagStats = strategy.getTagStatsCache();
+        if (tagStats.isEnabled()) {
+            return tagStats.get(website).getPopularTags(startDate, offset, limit, TAG_STAT_NAME_COMPARATOR);
+        }
+        
         TypedQuery<TagStat> query;
         List<TagStat> queryResults;
         
@@ -962,9 +1262,6 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         setFirstMax( query, offset, limit);
         queryResults = query.getResultList();
         
-        double min = Integer.MAX_VALUE;
-        double max = Integer.MIN_VALUE;
-        
         List<TagStat> results = new ArrayList<>(limit >= 0 ? limit : 25);
         
         if (queryResults != null) {
@@ -973,21 +1270,11 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
                 TagStat t = new TagStat();
                 t.setName((String) row[0]);
                 t.setCount(((Number) row[1]).intValue());
-
-                min = Math.min(min, t.getCount());
-                max = Math.max(max, t.getCount());
                 results.add(t);
             }
         }
 
-        min = Math.log(1+min);
-        max = Math.log(1+max);
-        
-        double range = Math.max(.01, max - min) * 1.0001;
-        
-        for (TagStat t : results) {
-            t.setIntensity((int) (1 + Math.floor(5 * (Math.log(1+t.getCount()) - min) / range)));
-        }
+        TagStatsCache.setIntensities(results);
 
         // sort results by name, because query had to sort by total
         results.sort(TAG_STAT_NAME_COMPARATOR);
@@ -1004,11 +1291,18 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         Query query;
         List<?> queryResults;
         boolean sortByName = sortBy == null || !sortBy.equals("count");
+        
+        TagStatsCache tagStats = strategy.getTagStatsCache();
+        if (tagStats.isEnabled()) {
+            List<TagStat> results = tagStats.get(website).getTags(sortByName, startsWith, offset, limit);
+            results.sort(sortByName ? TAG_STAT_NAME_COMPARATOR : TAG_STAT_COUNT_REVERSE_COMPARATOR);
+            return results;
+        }
                 
         List<Object> params = new ArrayList<>();
         int size = 0;
         StringBuilder queryString = new StringBuilder();
-        queryString.append("SELECT w.name, SUM(w.total) FROM WeblogEntryTagAggregate w WHERE ");
+        queryString.append("SELECT w.name, SUM(w.total) FROM WeblogEntryTagAggregate w WHERE w.total > 0 AND ");
                 
         if (website != null) {
             params.add(size++, website.getId());
@@ -1068,9 +1362,15 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             return false;
         }
         
+        // all the tag names in use are known once the weblog's tag counts are cached
+        TagStatsCache tagStats = strategy.getTagStatsCache();
+        if (tagStats.isEnabled()) {
+            return tagStats.get(weblog).countTags(tags) == tags.size();
+        }
+        
         StringBuilder queryString = new StringBuilder();
-        queryString.append("SELECT DISTINCT w.name ");
-        queryString.append("FROM WeblogEntryTagAggregate w WHERE w.name IN (");
+        queryString.append("SELECT COUNT(DISTINCT w.name) ");
+        queryString.append("FROM WeblogEntryTagAggregate w WHERE w.total > 0 AND w.name IN (");
         // Append tags as parameter markers to avoid potential escaping issues
         // The IN clause would be of form (?1, ?2, ?3, ..)
         List<Object> params = new ArrayList<>(tags.size() + 1);
@@ -1094,90 +1394,104 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             queryString.append(" AND w.weblog IS NULL");
         }
         
-        TypedQuery<String> q = strategy.getDynamicQuery(queryString.toString(), String.class);
+        TypedQuery<Long> q = strategy.getDynamicQuery(queryString.toString(), Long.class);
         for (int j=0; j<params.size(); j++) {
             q.setParameter(j+1, params.get(j));
         }
-        List<String> results = q.getResultList();
-        
-        //TODO: DatamapperPort: Since we are only interested in knowing whether
-        //results.size() == tags.size(). This query can be optimized to just fetch COUNT
-        //instead of objects as done currently
-        return (results != null && results.size() == tags.size());
+        return q.getSingleResult() == tags.size();
     }
 
     /**
-     * This method maintains the tag aggregate table up-to-date with total counts. More
-     * specifically every time this method is called it will act upon exactly two rows
-     * in the database (tag,website,count), one with website matching the argument passed
-     * and one where website is null. If the count ever reaches zero, the row must be deleted.
+     * This method maintains the tag aggregate table up-to-date with total counts.
+     * For every tag it acts upon exactly two rows in the database (tag,website,count),
+     * one with website matching the argument passed and one where website is null.
+     * The existing rows are read with one query, rows changed by the
+     * same amount are updated by one bulk UPDATE, and only the missing rows are
+     * inserted one by one.
+     *
+     * Rows whose count reaches zero are left in place, queries skip them and the
+     * PruneTagAggregatesTask removes them now and then.
      *
-     * @param name      The tag name
      * @param website   The website to used when updating the stats.
-     * @param amount    The amount to increment the tag count (it can be positive or negative).
+     * @param amounts   The amounts to increment the tag counts by, by tag name
+     *                  (they can be positive, negative or zero).
      * @throws WebloggerException
      */
-    private void updateTagCount(String name, Weblog website, int amount)
+    private void updateTagCounts(Weblog website, Map<String, Integer> amounts)
     throws WebloggerException {
-        if (amount == 0) {
-            throw new WebloggerException("Tag increment amount cannot be zero.");
-        }
         
         if (website == null) {
             throw new WebloggerException("Website cannot be NULL.");
         }
         
+        amounts.values().removeIf(amount -> amount == 0);
+        if (amounts.isEmpty()) {
+            return;
+        }
+        
         // The reason why add order lastUsed desc is to make sure we keep picking the most recent
         // one in the case where we have multiple rows (clustered environment)
         // eventually that second entry will have a very low total (most likely 1) and
         // won't matter
-        TypedQuery<WeblogEntryTagAggregate> weblogQuery = strategy.getNamedQuery(
-                "WeblogEntryTagAggregate.getByName&WebsiteOrderByLastUsedDesc", WeblogEntryTagAggregate.class);
-        weblogQuery.setParameter(1, name);
-        weblogQuery.setParameter(2, website);
-        WeblogEntryTagAggregate weblogTagData;
-        try {
-            weblogTagData = weblogQuery.getSingleResult();
-        } catch (NoResultException e) {
-            weblogTagData = null;
-        }
-
-        TypedQuery<WeblogEntryTagAggregate> siteQuery = strategy.getNamedQuery(
-                "WeblogEntryTagAggregate.getByName&WebsiteNullOrderByLastUsedDesc", WeblogEntryTagAggregate.class);
-        siteQuery.setParameter(1, name);
-        WeblogEntryTagAggregate siteTagData;
-        try {
-            siteTagData = siteQuery.getSingleResult();
-        } catch (NoResultException e) {
-            siteTagData = null;
+        Map<String, String> weblogTagIds = new HashMap<>();
+        Map<String, String> siteTagIds = new HashMap<>();
+        for (List<String> names : inLists(new ArrayList<>(amounts.keySet()))) {
+            TypedQuery<WeblogEntryTagAggregate> query = strategy.getNamedQuery(
+                    "WeblogEntryTagAggregate.getByNames&WebsiteOrWebsiteNullOrderByLastUsedDesc",
+                    WeblogEntryTagAggregate.class);
+            query.setParameter(1, names);
+            query.setParameter(2, website);
+            for (WeblogEntryTagAggregate tagData : query.getResultList()) {
+                if (tagData.getWeblog() == null) {
+                    siteTagIds.putIfAbsent(tagData.getName(), tagData.getId());
+                } else {
+                    weblogTagIds.putIfAbsent(tagData.getName(), tagData.getId());
+                }
+            }
         }
-        Timestamp lastUsed = new Timestamp((new Date()).getTime());
         
-        // create it only if we are going to need it.
-        if (weblogTagData == null && amount > 0) {
-            weblogTagData = new WeblogEntryTagAggregate(null, website, name, amount);
-            weblogTagData.setLastUsed(lastUsed);
-            strategy.store(weblogTagData);
-            
-        } else if (weblogTagData != null) {
-            weblogTagData.setTotal(weblogTagData.getTotal() + amount);
-            weblogTagData.setLastUsed(lastUsed);
-            strategy.store(weblogTagData);
+        // rows changed by the same amount are updated by one statement, most
+        // tags are added or removed once
+        Timestamp lastUsed = new Timestamp((new Date()).getTime());
+        Map<Integer, List<String>> idsByAmount = new HashMap<>();
+        for (Map.Entry<String, Integer> amount : amounts.entrySet()) {
+            updateTagCount(weblogTagIds.get(amount.getKey()), website,
+                    amount.getKey(), amount.getValue(), lastUsed, idsByAmount);
+            updateTagCount(siteTagIds.get(amount.getKey()), null,
+                    amount.getKey(), amount.getValue(), lastUsed, idsByAmount);
+        }
+        for (Map.Entry<Integer, List<String>> entry : idsByAmount.entrySet()) {
+            for (List<String> ids : inLists(entry.getValue())) {
+                Query update = strategy.getNamedUpdate(
+                        "WeblogEntryTagAggregate.updateTotalIncrement&LastUsedByIdList");
+                update.setParameter(1, entry.getKey());
+                update.setParameter(2, lastUsed);
+                update.setParameter(3, ids);
+                update.executeUpdate();
+            }
         }
+        strategy.getTagStatsCache().changed(website, amounts, lastUsed);
+    }
+    
+    private void updateTagCount(String tagDataId, Weblog website, String name, int amount,
+            Timestamp lastUsed, Map<Integer, List<String>> idsByAmount) throws WebloggerException {
         
         // create it only if we are going to need it.
-        if (siteTagData == null && amount > 0) {
-            siteTagData = new WeblogEntryTagAggregate(null, null, name, amount);
-            siteTagData.setLastUsed(lastUsed);
-            strategy.store(siteTagData);
+        if (tagDataId == null && amount > 0) {
+            WeblogEntryTagAggregate tagData = new WeblogEntryTagAggregate(null, website, name, amount);
+            tagData.setLastUsed(lastUsed);
+            strategy.store(tagData);
             
-        } else if (siteTagData != null) {
-            siteTagData.setTotal(siteTagData.getTotal() + amount);
-            siteTagData.setLastUsed(lastUsed);
-            strategy.store(siteTagData);
+        } else if (tagDataId != null) {
+            idsByAmount.computeIfAbsent(amount, k -> new ArrayList<>()).add(tagDataId);
         }
-        
-        // delete all bad counts
+    }
+    
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void removeUnusedTagAggregates() throws WebloggerException {
         Query removeq = strategy.getNamedUpdate(
                 "WeblogEntryTagAggregate.removeByTotalLessEqual");
         removeq.setParameter(1, 0);
@@ -1301,6 +1615,69 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         }
     }
     
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void incrementHitCounts(Map<Weblog, Integer> hits)
+    throws WebloggerException {
+        
+        if(hits.isEmpty()) {
+            return;
+        }
+        
+        List<String> weblogIds = new ArrayList<>(hits.size());
+        for (Weblog weblog : hits.keySet()) {
+            weblogIds.add(weblog.getId());
+        }
+        
+        // find out which weblogs have a count already, a few hundred at a time
+        Set<String> counted = new HashSet<>();
+        for (List<String> ids : inLists(weblogIds)) {
+            TypedQuery<String> q = strategy.getNamedQuery("WeblogHitCount.getWeblogIdsByWeblogIdList", String.class);
+            q.setParameter(1, ids);
+            counted.addAll(q.getResultList());
+        }
+        
+        // weblogs hit the same number of times are updated by one statement,
+        // most of them were only hit a few times
+        Map<Integer, List<String>> idsByAmount = new HashMap<>();
+        for (Map.Entry<Weblog, Integer> entry : hits.entrySet()) {
+            int amount = entry.getValue();
+            String weblogId = entry.getKey().getId();
+            
+            // create it if it doesn't exist
+            if(!counted.contains(weblogId) && amount > 0) {
+                WeblogHitCount hitCount = new WeblogHitCount();
+                hitCount.setWeblog(entry.getKey());
+                hitCount.setDailyHits(amount);
+                strategy.store(hitCount);
+            } else if(counted.contains(weblogId) && amount != 0) {
+                idsByAmount.computeIfAbsent(amount, k -> new ArrayList<>()).add(weblogId);
+            }
+        }
+        
+        for (Map.Entry<Integer, List<String>> entry : idsByAmount.entrySet()) {
+            for (List<String> ids : inLists(entry.getValue())) {
+                Query update = strategy.getNamedUpdate("WeblogHitCount.updateDailyHitsIncrementByWeblogIdList");
+                update.setParameter(1, entry.getKey());
+                update.setParameter(2, ids);
+                update.executeUpdate();
+            }
+        }
+    }
+    
+    /**
+     * Split values into lists short enough for an IN clause.
+     */
+    private static <T> List<List<T>> inLists(List<T> values) {
+        List<List<T>> lists = new ArrayList<>();
+        for (int i = 0; i < values.size(); i += JPAPersistenceStrategy.MAX_IN_LIST) {
+            lists.add(values.subList(i, Math.min(values.size(), i + JPAPersistenceStrategy.MAX_IN_LIST)));
+        }
+        return lists;
+    }
+    
     /**
      * @inheritDoc
      */
@@ -1351,6 +1728,25 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         return q.getResultList().get(0);
     }
     
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Map<String, Integer> getCommentCounts(Collection<String> entryIds) throws WebloggerException {
+        if (entryIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        TypedQuery<Object[]> q = strategy.getNamedQuery(
+                "WeblogEntryComment.getCountByWeblogEntryIdList&StatusGroupByWeblogEntry", Object[].class);
+        q.setParameter(1, entryIds);
+        q.setParameter(2, ApprovalStatus.APPROVED);
+        Map<String, Integer> counts = new HashMap<>();
+        for (Object[] row : q.getResultList()) {
+            counts.put((String) row[0], ((Number) row[1]).intValue());
+        }
+        return counts;
+    }
+    
     /**
      * @inheritDoc
      */
@@ -1374,6 +1770,20 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         return q.getResultList().get(0);
     }
 
+    /**
+     * Condition for rows which come after a cursor, when sorted by a time
+     * field and then the id.
+     * @param timeParam position of the cursor's time parameter
+     * @param idParam position of the cursor's id parameter
+     */
+    private static String seekCondition(String timeField, String idField,
+            boolean ascending, int timeParam, int idParam) {
+        String after = ascending ? " > ?" : " < ?";
+        return "(" + timeField + after + timeParam
+                + " OR (" + timeField + " = ?" + timeParam
+                + " AND " + idField + after + idParam + "))";
+    }
+    
     /**
      * Appends given expression to given whereClause. If whereClause already
      * has other conditions, an " AND " is also appended before appending
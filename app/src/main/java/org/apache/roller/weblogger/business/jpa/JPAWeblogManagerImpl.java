@@ -21,6 +21,7 @@ package org.apache.roller.weblogger.business.jpa;
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.pings.AutoPingManager;
 import org.apache.roller.weblogger.business.pings.PingTargetManager;
@@ -31,6 +32,7 @@ import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -80,8 +82,13 @@ public class JPAWeblogManagerImpl implements WeblogManager {
     private final Weblogger roller;
     private final JPAPersistenceStrategy strategy;
     
-    // cached mapping of weblogHandles -> weblogIds
-    private final Map<String,String> weblogHandleToIdMap = Collections.synchronizedMap(new HashMap<String,String>());
+    // how long counts of weblogs by letter are kept, other cluster nodes
+    // don't tell us about weblogs they add or remove
+    private static final long LETTER_MAP_TIMEOUT = 5L * RollerConstants.MIN_IN_MS;
+    
+    // cached counts of weblogs by first letter, dropped when weblogs change
+    private volatile Map<String, Long> weblogHandleLetterMap = null;
+    private volatile long weblogHandleLetterMapTime = 0;
 
     @com.google.inject.Inject
     protected JPAWeblogManagerImpl(Weblogger roller, JPAPersistenceStrategy strat) {
@@ -113,7 +120,8 @@ public class JPAWeblogManagerImpl implements WeblogManager {
         this.strategy.remove(weblog);
         
         // remove entry from cache mapping
-        this.weblogHandleToIdMap.remove(weblog.getHandle());
+        strategy.getEntityCache().removeId(JPAEntityCache.weblogKey(weblog.getHandle()));
+        this.weblogHandleLetterMap = null;
     }
     
     /**
@@ -148,6 +156,7 @@ public class JPAWeblogManagerImpl implements WeblogManager {
                 "WeblogEntryTagAggregate.removeByWeblog");
         removeAggs.setParameter(1, weblog);
         removeAggs.executeUpdate();
+        strategy.getTagStatsCache().removed(weblog);
         
         // delete all bad counts
         Query removeCounts = strategy.getNamedUpdate(
@@ -268,6 +277,7 @@ public class JPAWeblogManagerImpl implements WeblogManager {
         this.strategy.store(newWeblog);
         this.strategy.flush();
         this.addWeblogContents(newWeblog);
+        this.weblogHandleLetterMap = null;
     }
     
     private void addWeblogContents(Weblog newWeblog)
@@ -358,6 +368,32 @@ public class JPAWeblogManagerImpl implements WeblogManager {
         return getWeblogByHandle(handle, Boolean.TRUE);
     }
     
+    @Override
+    public Map<String, Weblog> getWeblogsByHandles(Collection<String> handles)
+            throws WebloggerException {
+        
+        // invalid handles can't belong to a weblog
+        List<String> valid = new ArrayList<>(handles.size());
+        for (String handle : handles) {
+            if (isAlphanumeric(handle)) {
+                valid.add(handle);
+            }
+        }
+        
+        Map<String, Weblog> weblogs = new HashMap<>();
+        for (int i = 0; i < valid.size(); i += JPAPersistenceStrategy.MAX_IN_LIST) {
+            TypedQuery<Weblog> query = strategy.getNamedQuery(
+                    "Weblog.getByHandleList&Visible", Weblog.class);
+            query.setParameter(1, valid.subList(i,
+                    Math.min(valid.size(), i + JPAPersistenceStrategy.MAX_IN_LIST)));
+            query.setParameter(2, Boolean.TRUE);
+            for (Weblog weblog : query.getResultList()) {
+                weblogs.put(weblog.getHandle(), weblog);
+            }
+        }
+        return weblogs;
+    }
+    
     /**
      * Return weblog specified by handle.
      */
@@ -372,7 +408,8 @@ public class JPAWeblogManagerImpl implements WeblogManager {
         
         // check cache first
         // NOTE: if we ever allow changing handles then this needs updating
-        String blogID = this.weblogHandleToIdMap.get(handle);
+        JPAEntityCache entityCache = strategy.getEntityCache();
+        String blogID = entityCache.getId(JPAEntityCache.weblogKey(handle), true);
         if(blogID != null) {
             
             Weblog weblog = this.getWeblog(blogID);
@@ -384,7 +421,7 @@ public class JPAWeblogManagerImpl implements WeblogManager {
                 }
             } else {
                 // mapping hit with lookup miss?  mapping must be old, remove it
-                this.weblogHandleToIdMap.remove(handle);
+                entityCache.removeId(JPAEntityCache.weblogKey(handle));
             }
         }
         
@@ -400,7 +437,7 @@ public class JPAWeblogManagerImpl implements WeblogManager {
         // add mapping to cache
         if(weblog != null) {
             log.debug("weblogHandleToId CACHE MISS - "+handle);
-            this.weblogHandleToIdMap.put(weblog.getHandle(), weblog.getId());
+            entityCache.putId(JPAEntityCache.weblogKey(weblog.getHandle()), weblog.getId(), true);
         }
         
         if(weblog != null &&
@@ -533,15 +570,23 @@ public class JPAWeblogManagerImpl implements WeblogManager {
             throw new WebloggerException("templateLink is null");
         }
 
+        String key = JPAEntityCache.templateKey(weblog, "link", templateLink);
+        WeblogTemplate template = getCachedTemplate(key, weblog);
+        if (template != null && templateLink.equals(template.getLink())) {
+            return template;
+        }
+
         TypedQuery<WeblogTemplate> query = strategy.getNamedQuery("WeblogTemplate.getByWeblog&Link",
                 WeblogTemplate.class);
         query.setParameter(1, weblog);
         query.setParameter(2, templateLink);
         try {
-            return query.getSingleResult();
+            template = query.getSingleResult();
         } catch (NoResultException e) {
             return null;
         }
+        strategy.getEntityCache().putId(key, template.getId(), false);
+        return template;
     }
     
     /**
@@ -559,15 +604,23 @@ public class JPAWeblogManagerImpl implements WeblogManager {
             throw new WebloggerException("Action name is null");
         }
         
+        String key = JPAEntityCache.templateKey(weblog, "action", action);
+        WeblogTemplate template = getCachedTemplate(key, weblog);
+        if (template != null && action.equals(template.getAction())) {
+            return template;
+        }
+
         TypedQuery<WeblogTemplate> query = strategy.getNamedQuery("WeblogTemplate.getByAction",
                 WeblogTemplate.class);
         query.setParameter(1, weblog);
         query.setParameter(2, action);
         try {
-            return query.getSingleResult();
+            template = query.getSingleResult();
         } catch (NoResultException e) {
             return null;
-        }        
+        }
+        strategy.getEntityCache().putId(key, template.getId(), false);
+        return template;
     }
     
     /**
@@ -585,15 +638,40 @@ public class JPAWeblogManagerImpl implements WeblogManager {
             throw new WebloggerException("Template name is null");
         }
         
+        String key = JPAEntityCache.templateKey(weblog, "name", templateName);
+        WeblogTemplate template = getCachedTemplate(key, weblog);
+        if (template != null && templateName.equals(template.getName())) {
+            return template;
+        }
+
         TypedQuery<WeblogTemplate> query = strategy.getNamedQuery("WeblogTemplate.getByWeblog&Name",
                 WeblogTemplate.class);
         query.setParameter(1, weblog);
         query.setParameter(2, templateName);
         try {
-            return query.getSingleResult();
+            template = query.getSingleResult();
         } catch (NoResultException e) {
             return null;
         }
+        strategy.getEntityCache().putId(key, template.getId(), false);
+        return template;
+    }
+
+    /**
+     * Get the template a key was mapped to, if it is still one of the
+     * weblog's templates.  Callers check that it still matches the key.
+     */
+    private WeblogTemplate getCachedTemplate(String key, Weblog weblog) throws WebloggerException {
+        String templateId = strategy.getEntityCache().getId(key, false);
+        if (templateId == null) {
+            return null;
+        }
+        WeblogTemplate template = getTemplate(templateId);
+        if (template == null || !weblog.getId().equals(template.getWeblog().getId())) {
+            strategy.getEntityCache().removeId(key);
+            return null;
+        }
+        return template;
     }
 
     /**
@@ -613,16 +691,25 @@ public class JPAWeblogManagerImpl implements WeblogManager {
     
     @Override
     public Map<String, Long> getWeblogHandleLetterMap() throws WebloggerException {
-        String lc = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-        Map<String, Long> results = new TreeMap<>();
-        TypedQuery<Long> query = strategy.getNamedQuery(
-                "Weblog.getCountByHandleLike", Long.class);
-        for (int i=0; i<26; i++) {
-            char currentChar = lc.charAt(i);
-            query.setParameter(1, currentChar + "%");
-            List<Long> row = query.getResultList();
-            Long count = row.get(0);
-            results.put(String.valueOf(currentChar), count);
+        Map<String, Long> results = weblogHandleLetterMap;
+        if (results == null || System.currentTimeMillis() - weblogHandleLetterMapTime > LETTER_MAP_TIMEOUT) {
+            results = new TreeMap<>();
+            for (char letter = 'A'; letter <= 'Z'; letter++) {
+                results.put(String.valueOf(letter), 0L);
+            }
+            // one count per first letter, handles starting with anything else
+            // aren't listed
+            TypedQuery<Object[]> query = strategy.getNamedQuery(
+                    "Weblog.getCountGroupByFirstLetter", Object[].class);
+            for (Object[] row : query.getResultList()) {
+                String letter = (String) row[0];
+                if (results.containsKey(letter)) {
+                    results.put(letter, ((Number) row[1]).longValue());
+                }
+            }
+            results = Collections.unmodifiableMap(results);
+            weblogHandleLetterMapTime = System.currentTimeMillis();
+            weblogHandleLetterMap = results;
         }
         return results;
     }
@@ -632,7 +719,13 @@ public class JPAWeblogManagerImpl implements WeblogManager {
     throws WebloggerException {
         TypedQuery<Weblog> query = strategy.getNamedQuery(
                 "Weblog.getByLetterOrderByHandle", Weblog.class);
-        query.setParameter(1, letter + "%");
+        char upper = Character.toUpperCase(letter);
+        char lower = Character.toLowerCase(letter);
+        query.setParameter(1, String.valueOf(upper));
+        query.setParameter(2, String.valueOf((char) (upper + 1)));
+        query.setParameter(3, String.valueOf(lower));
+        query.setParameter(4, String.valueOf((char) (lower + 1)));
+        query.setParameter(5, upper + "%");
         if (offset != 0) {
             query.setFirstResult(offset);
         }
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.jpa;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+
+/**
+ * EntityInvalidator which stands in for a cluster within one JVM.
+ *
+ * Every instance plays one server, invalidations sent by an instance are
+ * delivered to all the other instances.  This is meant for tests, which can
+ * create a second instance to see what the real server sends and to send
+ * invalidations to it.
+ */
+public class LocalEntityInvalidator implements EntityInvalidator {
+
+    private static final List<LocalEntityInvalidator> servers = new CopyOnWriteArrayList<>();
+
+    private volatile BiConsumer<String, String> receiver = null;
+
+
+    @Override
+    public void init(BiConsumer<String, String> receiver) {
+        this.receiver = receiver;
+        servers.add(this);
+    }
+
+
+    @Override
+    public void send(String entityName, String id) {
+        for (LocalEntityInvalidator server : servers) {
+            if (server != this) {
+                server.receiver.accept(entityName, id);
+            }
+        }
+    }
+
+
+    @Override
+    public void shutdown() {
+        servers.remove(this);
+    }
+
+}
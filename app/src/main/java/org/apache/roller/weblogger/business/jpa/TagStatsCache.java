@@ -0,0 +1,425 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.jpa;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.persistence.TypedQuery;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.TagStat;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.ExpiringCacheEntry;
+
+
+/**
+ * Cache for the tag counts of weblogs and the site, as shown by tag clouds
+ * and used for tag autocompletion.
+ *
+ * The counts of a weblog are loaded with one query and kept sorted by name,
+ * popular tags are worked out from them once and kept until the counts
+ * change.  They also tell which tag names are in use without a query.
+ * Changes to tag counts are applied to the cached counts once they are
+ * committed, so saving an entry doesn't cost the next request a reload.
+ */
+class TagStatsCache {
+
+    private static final Log log = LogFactory.getLog(TagStatsCache.class);
+
+    // a unique identifier for this cache, this is used as the prefix for
+    // roller config properties that apply to this cache
+    static final String CACHE_ID = "cache.tagstats";
+
+    private static final String SITE_KEY = "site";
+
+    private final JPAPersistenceStrategy strategy;
+    private boolean cacheEnabled = true;
+    private Cache contentCache = null;
+    private long timeout = RollerConstants.HOUR_IN_MS;
+
+    // transactions which started or ended changing tag counts so far, a
+    // count loaded while this changed may be outdated
+    private long changes = 0;
+
+    // transactions changing tag counts which haven't committed or rolled
+    // back yet, counts loaded meanwhile may be outdated once they commit
+    private int pending = 0;
+
+    // changes to tag counts made by the thread's current transaction
+    private final ThreadLocal<List<Runnable>> uncommitted = new ThreadLocal<>();
+
+
+    TagStatsCache(JPAPersistenceStrategy strategy) {
+
+        this.strategy = strategy;
+
+        cacheEnabled = WebloggerConfig.getBooleanProperty(CACHE_ID+".enabled", true);
+
+        Map<String, String> cacheProps = new HashMap<>();
+        cacheProps.put("id", CACHE_ID);
+        Enumeration<Object> allProps = WebloggerConfig.keys();
+        String prop;
+        while(allProps.hasMoreElements()) {
+            prop = (String) allProps.nextElement();
+
+            // we are only interested in props for this cache
+            if(prop.startsWith(CACHE_ID+".")) {
+                cacheProps.put(prop.substring(CACHE_ID.length()+1),
+                        WebloggerConfig.getProperty(prop));
+            }
+        }
+
+        log.info(cacheProps);
+
+        try {
+            if (cacheProps.containsKey("timeout")) {
+                timeout = Long.parseLong(cacheProps.get("timeout")) * RollerConstants.SEC_IN_MS;
+            }
+        } catch (NumberFormatException e) {
+            log.warn("invalid timeout property", e);
+        }
+
+        if(cacheEnabled) {
+            contentCache = CacheManager.constructCache(null, cacheProps);
+        } else {
+            log.warn("Caching has been DISABLED");
+        }
+    }
+
+
+    boolean isEnabled() {
+        return cacheEnabled;
+    }
+
+
+    /**
+     * Get the tag counts of a weblog, or of the site if weblog is null.
+     */
+    TagStats get(Weblog weblog) throws WebloggerException {
+
+        String key = weblog == null ? SITE_KEY : weblog.getId();
+
+        ExpiringCacheEntry expiringEntry = (ExpiringCacheEntry) contentCache.get(key);
+        TagStats stats = expiringEntry != null ? (TagStats) expiringEntry.getValue() : null;
+        if (stats != null) {
+            log.debug("HIT "+key);
+            return stats;
+        }
+        log.debug("MISS "+key);
+
+        long loadedAt;
+        boolean cacheable;
+        synchronized (this) {
+            loadedAt = changes;
+            cacheable = pending == 0;
+        }
+
+        TypedQuery<Object[]> query;
+        if (weblog != null) {
+            query = strategy.getNamedQuery("WeblogEntryTagAggregate.getTagStatsByWebsite", Object[].class);
+            query.setParameter(1, weblog);
+        } else {
+            query = strategy.getNamedQuery("WeblogEntryTagAggregate.getTagStatsByWebsiteNull", Object[].class);
+        }
+        NavigableMap<String, TagCount> counts = new TreeMap<>();
+        for (Object[] row : query.getResultList()) {
+            long lastUsed = row[2] != null ? ((Date) row[2]).getTime() : 0;
+            counts.put((String) row[0], new TagCount(((Number) row[1]).intValue(), lastUsed));
+        }
+        stats = new TagStats(counts);
+
+        if (cacheable) {
+            synchronized (this) {
+                if (changes == loadedAt) {
+                    contentCache.put(key, new ExpiringCacheEntry(stats, timeout));
+                    log.debug("PUT "+key);
+                }
+            }
+        }
+        return stats;
+    }
+
+
+    /**
+     * Tag counts of a weblog, and so those of the site, are changing in the
+     * current transaction.  The cached counts are updated once it commits.
+     * @param amounts amounts to add to the counts, by tag name
+     * @param lastUsed when the tags were last used
+     */
+    void changed(Weblog weblog, Map<String, Integer> amounts, Date lastUsed) {
+        if (!cacheEnabled) {
+            return;
+        }
+        String weblogId = weblog.getId();
+        Map<String, Integer> updates = new HashMap<>(amounts);
+        long time = lastUsed.getTime();
+        transactionChanges().add(() -> {
+            apply(weblogId, updates, time);
+            apply(SITE_KEY, updates, time);
+        });
+    }
+
+
+    /**
+     * Tag counts of a weblog changed in a way which isn't tracked, such as
+     * the weblog being removed.  Its counts and those of the site are
+     * dropped once the current transaction commits.
+     */
+    void removed(Weblog weblog) {
+        if (!cacheEnabled) {
+            return;
+        }
+        String weblogId = weblog.getId();
+        transactionChanges().add(() -> {
+            contentCache.remove(weblogId);
+            contentCache.remove(SITE_KEY);
+        });
+    }
+
+
+    /**
+     * Changes to cached counts to make when the current transaction commits.
+     * The first change of a transaction marks it pending, so that counts
+     * loaded until it ends aren't cached; they may include its changes
+     * before they are applied.
+     */
+    private List<Runnable> transactionChanges() {
+        List<Runnable> updates = uncommitted.get();
+        if (updates == null) {
+            List<Runnable> started = new ArrayList<>();
+            uncommitted.set(started);
+            synchronized (this) {
+                changes++;
+                pending++;
+            }
+            strategy.afterCommit(() -> ended(started, true));
+            strategy.afterRollback(() -> ended(started, false));
+            updates = started;
+        }
+        return updates;
+    }
+
+
+    private void ended(List<Runnable> updates, boolean committed) {
+        if (uncommitted.get() == updates) {
+            uncommitted.remove();
+        }
+        synchronized (this) {
+            if (committed) {
+                for (Runnable update : updates) {
+                    update.run();
+                }
+            }
+            changes++;
+            pending--;
+        }
+    }
+
+
+    private synchronized void apply(String key, Map<String, Integer> amounts, long lastUsed) {
+        ExpiringCacheEntry expiringEntry = (ExpiringCacheEntry) contentCache.get(key);
+        TagStats stats = expiringEntry != null ? (TagStats) expiringEntry.getValue() : null;
+        if (stats != null) {
+            contentCache.put(key, new ExpiringCacheEntry(stats.update(amounts, lastUsed), timeout));
+            log.debug("UPDATE "+key);
+        }
+    }
+
+
+    /**
+     * Set the intensities of tags from 1 to 6, by the log of their counts
+     * relative to the other tags.
+     */
+    static void setIntensities(List<TagStat> tags) {
+
+        double min = Integer.MAX_VALUE;
+        double max = Integer.MIN_VALUE;
+        for (TagStat t : tags) {
+            min = Math.min(min, t.getCount());
+            max = Math.max(max, t.getCount());
+        }
+
+        min = Math.log(1+min);
+        max = Math.log(1+max);
+
+        double range = Math.max(.01, max - min) * 1.0001;
+
+        for (TagStat t : tags) {
+            t.setIntensity((int) (1 + Math.floor(5 * (Math.log(1+t.getCount()) - min) / range)));
+        }
+    }
+
+
+    private static final class TagCount {
+
+        private final int total;
+        private final long lastUsed;
+
+        private TagCount(int total, long lastUsed) {
+            this.total = total;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+
+    /**
+     * Tag counts of a weblog or the site.  Instances don't change, updates
+     * make a new one.
+     */
+    static final class TagStats {
+
+        private final NavigableMap<String, TagCount> counts;
+
+        // tag names by count, most used first, worked out when first needed
+        private volatile List<String> byCount = null;
+
+        // popular tags without a start date by offset and length
+        private final Map<String, List<TagStat>> popular = new ConcurrentHashMap<>();
+
+        private TagStats(NavigableMap<String, TagCount> counts) {
+            this.counts = Collections.unmodifiableNavigableMap(counts);
+        }
+
+        private TagStats update(Map<String, Integer> amounts, long lastUsed) {
+            NavigableMap<String, TagCount> updated = new TreeMap<>(counts);
+            for (Map.Entry<String, Integer> amount : amounts.entrySet()) {
+                TagCount count = updated.get(amount.getKey());
+                int total = (count != null ? count.total : 0) + amount.getValue();
+                if (total > 0) {
+                    updated.put(amount.getKey(), new TagCount(total, lastUsed));
+                } else {
+                    updated.remove(amount.getKey());
+                }
+            }
+            return new TagStats(updated);
+        }
+
+        private List<String> getByCount() {
+            List<String> names = byCount;
+            if (names == null) {
+                names = new ArrayList<>(counts.keySet());
+                names.sort(Comparator.comparingInt((String name) -> counts.get(name).total).reversed()
+                        .thenComparing(Comparator.naturalOrder()));
+                byCount = names;
+            }
+            return names;
+        }
+
+        /**
+         * Most used tags, used since startDate if not null, sorted by name.
+         */
+        List<TagStat> getPopularTags(Date startDate, int offset, int limit,
+                Comparator<TagStat> nameComparator) {
+
+            List<TagStat> results = null;
+            if (startDate == null) {
+                results = popular.get(offset + "/" + limit);
+            }
+
+            if (results == null) {
+                long start = startDate != null ? startDate.getTime() : Long.MIN_VALUE;
+                List<TagStat> tags = new ArrayList<>(limit >= 0 ? limit : 25);
+                int skip = offset;
+                for (String name : getByCount()) {
+                    if (limit != -1 && tags.size() >= limit) {
+                        break;
+                    }
+                    TagCount count = counts.get(name);
+                    if (count.lastUsed >= start && skip-- <= 0) {
+                        tags.add(newTagStat(name, count.total));
+                    }
+                }
+                setIntensities(tags);
+                tags.sort(nameComparator);
+                results = tags;
+
+                if (startDate == null) {
+                    popular.put(offset + "/" + limit, results);
+                }
+            }
+
+            // the cached instances stay as they are
+            List<TagStat> copies = new ArrayList<>(results.size());
+            for (TagStat t : results) {
+                TagStat copy = newTagStat(t.getName(), t.getCount());
+                copy.setIntensity(t.getIntensity());
+                copies.add(copy);
+            }
+            return copies;
+        }
+
+        /**
+         * Tags starting with startsWith if not null, in order of name or
+         * count, most used first.
+         */
+        List<TagStat> getTags(boolean sortByName, String startsWith, int offset, int limit) {
+
+            Iterable<String> names;
+            if (sortByName) {
+                names = startsWith != null && !startsWith.isEmpty()
+                        ? counts.subMap(startsWith, true, startsWith + Character.MAX_VALUE, false).keySet()
+                        : counts.keySet();
+            } else {
+                names = getByCount();
+            }
+
+            List<TagStat> results = new ArrayList<>();
+            int skip = offset;
+            for (String name : names) {
+                if (limit != -1 && results.size() >= limit) {
+                    break;
+                }
+                if ((sortByName || startsWith == null || name.startsWith(startsWith)) && skip-- <= 0) {
+                    results.add(newTagStat(name, counts.get(name).total));
+                }
+            }
+            return results;
+        }
+
+        /**
+         * Count how many of the given tag names are in use, each name once.
+         */
+        int countTags(Collection<String> names) {
+            return (int) names.stream().distinct().filter(counts::containsKey).count();
+        }
+
+        private static TagStat newTagStat(String name, int count) {
+            TagStat t = new TagStat();
+            t.setName(name);
+            t.setCount(count);
+            return t;
+        }
+    }
+
+}
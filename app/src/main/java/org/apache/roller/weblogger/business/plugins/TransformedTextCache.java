@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.plugins;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogBookmark;
+import org.apache.roller.weblogger.pojos.WeblogBookmarkFolder;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheHandler;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.DependencyIndex;
+import org.apache.roller.weblogger.util.cache.ExpiringCacheEntry;
+
+
+/**
+ * Cache for entry text and summaries transformed by weblog entry plugins.
+ *
+ * Content is keyed by the entry and a hash of the text and plugin names it
+ * was transformed from, so an edited entry never sees stale content.  Saving
+ * an entry or changing its weblog, which is where the plugins are configured,
+ * drops whatever was cached for it.
+ */
+public final class TransformedTextCache implements CacheHandler {
+
+    private static final Log log = LogFactory.getLog(TransformedTextCache.class);
+
+    // a unique identifier for this cache, this is used as the prefix for
+    // roller config properties that apply to this cache
+    public static final String CACHE_ID = "cache.transformedtext";
+
+    private boolean cacheEnabled = true;
+    private Cache contentCache = null;
+    private long timeout = RollerConstants.HOUR_IN_MS;
+
+    // cache keys by the entries and weblogs they were rendered for
+    private DependencyIndex dependencies = null;
+
+    // reference to our singleton instance
+    private static final TransformedTextCache singletonInstance = new TransformedTextCache();
+
+
+    private TransformedTextCache() {
+
+        cacheEnabled = WebloggerConfig.getBooleanProperty(CACHE_ID+".enabled", true);
+
+        Map<String, String> cacheProps = new HashMap<>();
+        cacheProps.put("id", CACHE_ID);
+        Enumeration<Object> allProps = WebloggerConfig.keys();
+        String prop;
+        while(allProps.hasMoreElements()) {
+            prop = (String) allProps.nextElement();
+
+            // we are only interested in props for this cache
+            if(prop.startsWith(CACHE_ID+".")) {
+                cacheProps.put(prop.substring(CACHE_ID.length()+1),
+                        WebloggerConfig.getProperty(prop));
+            }
+        }
+
+        log.info(cacheProps);
+
+        try {
+            if (cacheProps.containsKey("timeout")) {
+                timeout = Long.parseLong(cacheProps.get("timeout")) * RollerConstants.SEC_IN_MS;
+            }
+        } catch (NumberFormatException e) {
+            log.warn("invalid timeout property", e);
+        }
+
+        if(cacheEnabled) {
+            contentCache = CacheManager.constructCache(this, cacheProps);
+            dependencies = DependencyIndex.forCache(cacheProps);
+        } else {
+            log.warn("Caching has been DISABLED");
+        }
+    }
+
+
+    public static TransformedTextCache getInstance() {
+        return singletonInstance;
+    }
+
+
+    /**
+     * Generate a cache key for the given text of an entry, transformed by the
+     * plugins currently enabled for the entry.
+     */
+    public String generateKey(WeblogEntry entry, String text) {
+        String source = entry.getPlugins() + "\n" + text;
+        return entry.getId() + ":" + DigestUtils.md5Hex(source.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    public String get(String key) {
+
+        if (!cacheEnabled) {
+            return null;
+        }
+
+        String content = null;
+        ExpiringCacheEntry expiringEntry = (ExpiringCacheEntry) contentCache.get(key);
+        if (expiringEntry != null) {
+            content = (String) expiringEntry.getValue();
+            if (content != null) {
+                log.debug("HIT "+key);
+            } else {
+                log.debug("HIT-EXPIRED "+key);
+            }
+        } else {
+            log.debug("MISS "+key);
+        }
+
+        return content;
+    }
+
+
+    public void put(WeblogEntry entry, String key, String content) {
+
+        if (!cacheEnabled || content == null) {
+            return;
+        }
+
+        if (dependencies.isFull()) {
+            log.debug("Dependency index is full, clearing cache");
+            clear();
+        }
+
+        contentCache.put(key, new ExpiringCacheEntry(content, timeout));
+        dependencies.put(key, Arrays.asList(entryDependency(entry.getId()),
+                weblogDependency(entry.getWebsite().getId())));
+        log.debug("PUT "+key);
+    }
+
+
+    public void clear() {
+        if (cacheEnabled) {
+            contentCache.clear();
+            dependencies.clear();
+            log.debug("CLEAR");
+        }
+    }
+
+
+    private void invalidate(Collection<String> changed) {
+        if (cacheEnabled) {
+            for (String key : dependencies.removeDependents(changed)) {
+                contentCache.remove(key);
+            }
+        }
+    }
+
+
+    private static String entryDependency(String entryId) {
+        return "entry:" + entryId;
+    }
+
+
+    private static String weblogDependency(String weblogId) {
+        return "weblog:" + weblogId;
+    }
+
+
+    /**
+     * An entry's text, summary or plugins changed.
+     */
+    @Override
+    public void invalidate(WeblogEntry entry) {
+        invalidate(Collections.singleton(entryDependency(entry.getId())));
+    }
+
+
+    /**
+     * The weblog's settings changed, which includes the plugin configuration.
+     */
+    @Override
+    public void invalidate(Weblog website) {
+        invalidate(Collections.singleton(weblogDependency(website.getId())));
+    }
+
+
+    @Override
+    public void invalidate(WeblogBookmark bookmark) {
+        // ignored
+    }
+
+
+    @Override
+    public void invalidate(WeblogBookmarkFolder folder) {
+        // ignored
+    }
+
+
+    @Override
+    public void invalidate(WeblogEntryComment comment) {
+        // ignored
+    }
+
+
+    @Override
+    public void invalidate(User user) {
+        // ignored
+    }
+
+
+    @Override
+    public void invalidate(WeblogCategory category) {
+        // ignored
+    }
+
+
+    @Override
+    public void invalidate(WeblogTemplate template) {
+        // ignored
+    }
+
+}
@@ -18,10 +18,10 @@
 
 package org.apache.roller.weblogger.business.plugins.entry;
 
-import java.util.Enumeration;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.Properties;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import org.apache.commons.text.StringEscapeUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -37,9 +37,11 @@ public class SmileysPlugin implements WeblogEntryPlugin {
     
     private static final Log log = LogFactory.getLog(SmileysPlugin.class);
 
-    // public for tests
-    public static Pattern[] smileyPatterns = new Pattern[0];
-    static String[] imageTags = new String[0];
+    // smileys longest first, so that ":))" wins over ":)", and their img tags,
+    // smileys is assigned last so that readers seeing it see the rest too
+    static volatile String[] smileys = new String[0];
+    static volatile String[] imageTags = new String[0];
+    private static volatile BitSet smileyStarts = new BitSet();
     private static final Properties smileyDefs = new Properties();
     
     private final String name = "Emoticons";
@@ -74,51 +76,90 @@ public class SmileysPlugin implements WeblogEntryPlugin {
     
     
     /*
-     * Convert the SmileyDefs into RegEx patterns and img tags for
-     * later use.  Need an HttpServletRequest though so that we can
-     * get the ServletContext Path.  But only do it once.
+     * Convert the SmileyDefs into img tags for later use.  Need the absolute
+     * context URL though so that we can point at the images.  But only do it
+     * once.
      */
     @Override
     public synchronized void init(Weblog website) throws WebloggerException {
         // don't do this work if Smileys already loaded
-        if (SmileysPlugin.smileyPatterns.length < 1) {
-            String baseURL = WebloggerRuntimeConfig.getAbsoluteContextURL();
-            
-            Pattern[] tempP = new Pattern[SmileysPlugin.smileyDefs.size()];
-            String[] tempS = new String[SmileysPlugin.smileyDefs.size()];
-            log.debug("# smileys: " + smileyDefs.size());
-            int count = 0;
-            Enumeration<?> enum1 = SmileysPlugin.smileyDefs.propertyNames();
-            while(enum1.hasMoreElements()) {
-                String smiley = (String)enum1.nextElement();
-                String smileyAlt = htmlEscape(smiley);
-                tempP[count] = Pattern.compile(regexEscape(smiley));
-                tempS[count] = "<img src=\"" +
-                        baseURL + "/images/smileys/" +
-                        smileyDefs.getProperty(smiley, "smile.gif") +
-                        "\" class=\"smiley\"" +
-                        " alt=\"" + smileyAlt + "\"" +
-                        " title=\"" + smileyAlt +"\" />";
-                log.debug(smiley + "=" + tempS[count]);
-                count++;
-            }
-            SmileysPlugin.smileyPatterns = tempP;
-            SmileysPlugin.imageTags = tempS;
+        if (SmileysPlugin.smileys.length < 1) {
+            loadSmileys(WebloggerRuntimeConfig.getAbsoluteContextURL());
+        }
+    }
+    
+    
+    static synchronized void loadSmileys(String baseURL) {
+        log.debug("# smileys: " + smileyDefs.size());
+        
+        String[] tempS = smileyDefs.stringPropertyNames().toArray(new String[0]);
+        Arrays.sort(tempS, Comparator.comparingInt(String::length).reversed()
+                .thenComparing(Comparator.naturalOrder()));
+        
+        String[] tempT = new String[tempS.length];
+        BitSet tempB = new BitSet();
+        for (int i = 0; i < tempS.length; i++) {
+            String smiley = tempS[i];
+            String smileyAlt = htmlEscape(smiley);
+            tempT[i] = "<img src=\"" +
+                    baseURL + "/images/smileys/" +
+                    smileyDefs.getProperty(smiley, "smile.gif") +
+                    "\" class=\"smiley\"" +
+                    " alt=\"" + smileyAlt + "\"" +
+                    " title=\"" + smileyAlt +"\" />";
+            tempB.set(smiley.charAt(0));
+            log.debug(smiley + "=" + tempT[i]);
         }
+        
+        SmileysPlugin.imageTags = tempT;
+        SmileysPlugin.smileyStarts = tempB;
+        SmileysPlugin.smileys = tempS;
     }
     
     
     /**
      * Find occurences of ascii emoticons and turn them into HTML image pointers.
+     * The text is scanned once, at each position the longest smiley wins.
      */
     @Override
     public String render(WeblogEntry entry, String text) {
-        Matcher matcher;
-        for (int i=0; i<smileyPatterns.length; i++) {
-            matcher = smileyPatterns[i].matcher(text);
-            text = matcher.replaceAll(imageTags[i]);
+        String[] smileyList = SmileysPlugin.smileys;
+        String[] tags = SmileysPlugin.imageTags;
+        BitSet starts = SmileysPlugin.smileyStarts;
+        if (text == null || smileyList.length == 0) {
+            return text;
+        }
+        
+        StringBuilder buf = null;
+        int copied = 0;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            int match = -1;
+            if (starts.get(c)) {
+                for (int s = 0; s < smileyList.length; s++) {
+                    if (smileyList[s].charAt(0) == c && text.startsWith(smileyList[s], i)) {
+                        match = s;
+                        break;
+                    }
+                }
+            }
+            if (match < 0) {
+                i++;
+                continue;
+            }
+            if (buf == null) {
+                buf = new StringBuilder(text.length() + 256);
+            }
+            buf.append(text, copied, i).append(tags[match]);
+            i += smileyList[match].length();
+            copied = i;
+        }
+        
+        if (buf == null) {
+            return text;
         }
-        return text;
+        return buf.append(text, copied, text.length()).toString();
     }
     
     
@@ -126,7 +167,7 @@ public class SmileysPlugin implements WeblogEntryPlugin {
      * To display the smiley 'glyph' certain characters
      * must be HTML escaped.
      */
-    private String htmlEscape(String smiley) {
+    private static String htmlEscape(String smiley) {
         char[] chars = smiley.toCharArray();
         StringBuilder buf = new StringBuilder();
         for (int i=0; i<chars.length; i++) {
@@ -143,30 +184,4 @@ public class SmileysPlugin implements WeblogEntryPlugin {
         return buf.toString();
     }
     
-    /**
-     * Some characters have to escaped with a backslash before
-     * being compiled into a Regular Expression.
-     *
-     * @param smiley
-     * @return
-     */
-    private static final char[] escape_regex = new char[]
-    {'-', '(', ')', '\\', '|', ':', '^', '$', '*', '+', '?',
-     '{', '}', '!', '=', '<', '>', '&', '[', ']' };
-    
-    private String regexEscape(String smiley) {
-        char[] chars = smiley.toCharArray();
-        StringBuilder buf = new StringBuilder();
-        for (int i=0; i<chars.length; i++) {
-            for (int x=0; x<escape_regex.length; x++) {
-                if (escape_regex[x] == chars[i]) {
-                    buf.append("\\");
-                    break;
-                }
-            }
-            buf.append(chars[i]);
-        }
-        return buf.toString();
-    }
-    
 }
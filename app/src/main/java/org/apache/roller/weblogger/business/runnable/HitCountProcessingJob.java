@@ -19,7 +19,6 @@
 package org.apache.roller.weblogger.business.runnable;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -56,39 +55,25 @@ public class HitCountProcessingJob implements Job {
         WeblogManager wmgr = WebloggerFactory.getWeblogger().getWeblogManager();
         WeblogEntryManager emgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
         
-        HitCountQueue hitCounter = HitCountQueue.getInstance();
-        
-        // first get the current set of hits
-        List<String> currentHits = hitCounter.getHits();
-        
-        // now reset the queued hits
-        hitCounter.resetHits();
-        
-        // tally the counts, grouped by weblog handle
-        Map<String, Long> hitsTally = new HashMap<>();
-        for (String weblogHandle : currentHits) {
-            Long count = hitsTally.get(weblogHandle);
-            if(count == null) {
-                count = 1L;
-            } else {
-                count = count + 1;
-            }
-            hitsTally.put(weblogHandle, count);
+        // take the hits counted so far, grouped by weblog handle
+        Map<String, Long> hitsTally = HitCountQueue.getInstance().drainHits();
+        if (hitsTally.isEmpty()) {
+            return;
         }
 
         // iterate over the tallied hits and store them in the db
         try {
             long startTime = System.currentTimeMillis();
             
-            Weblog weblog;
+            Map<String, Weblog> weblogs = wmgr.getWeblogsByHandles(hitsTally.keySet());
+            Map<Weblog, Integer> weblogHits = new HashMap<>();
             for (Map.Entry<String, Long> entry : hitsTally.entrySet()) {
-                try {
-                    weblog = wmgr.getWeblogByHandle(entry.getKey());
-                    emgr.incrementHitCount(weblog, entry.getValue().intValue());
-                } catch (WebloggerException ex) {
-                    log.error(ex);
+                Weblog weblog = weblogs.get(entry.getKey());
+                if (weblog != null) {
+                    weblogHits.put(weblog, entry.getValue().intValue());
                 }
             }
+            emgr.incrementHitCounts(weblogHits);
 
             // flush the results to the db
             WebloggerFactory.getWeblogger().flush();
@@ -31,6 +31,9 @@ public interface IndexManager
 {
     /** Does index need to be rebuild */
     boolean isInconsistentAtStartup();
+
+    /** Progress of the running or last index rebuild, null if there wasn't any */
+    IndexRebuildProgress getRebuildProgress();
     
     /** Remove user from index, returns immediately and operates in background */
     void removeWebsiteIndex(Weblog website) throws WebloggerException;
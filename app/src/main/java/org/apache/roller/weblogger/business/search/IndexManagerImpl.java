@@ -24,6 +24,10 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -34,9 +38,10 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.miscellaneous.LimitTokenCountAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.roller.weblogger.WebloggerException;
@@ -62,7 +67,6 @@ import org.apache.roller.weblogger.config.WebloggerConfig;
 @com.google.inject.Singleton
 public class IndexManagerImpl implements IndexManager {
 
-    private IndexReader reader;
     private final Weblogger roller;
 
     private final static Log mLogger = LogFactory.getFactory().getInstance(IndexManagerImpl.class);
@@ -77,6 +81,23 @@ public class IndexManagerImpl implements IndexManager {
 
     private final ReadWriteLock rwl = new ReentrantReadWriteLock();
 
+    // one long lived writer, shared by all write operations
+    private Directory directory = null;
+    private IndexWriter writer = null;
+
+    // near real time searchers opened from the writer
+    private SearcherManager searcherManager = null;
+
+    // write operations are committed as a group, either every commitInterval
+    // seconds or after commitOperations operations, whatever comes first
+    private final int commitInterval;
+    private final int commitOperations;
+    private final AtomicInteger uncommittedOperations = new AtomicInteger();
+    private ScheduledExecutorService committer = null;
+
+    // progress of the last index rebuild, null if there wasn't any
+    private volatile IndexRebuildProgress rebuildProgress = null;
+
 
     /**
      * Creates a new lucene index manager. This should only be created once.
@@ -101,9 +122,14 @@ public class IndexManagerImpl implements IndexManager {
         String searchIndexDir = WebloggerConfig.getProperty("search.index.dir");
         this.indexDir = searchIndexDir.replace('/', File.separatorChar);
 
+        this.commitInterval = WebloggerConfig.getIntProperty("search.index.commitInterval", 5);
+        this.commitOperations = WebloggerConfig.getIntProperty("search.index.commitOperations", 100);
+
         // a little debugging
         mLogger.info("search enabled: " + this.searchEnabled);
         mLogger.info("index dir: " + this.indexDir);
+        mLogger.info("index commit interval: " + this.commitInterval
+                + "s or " + this.commitOperations + " operations");
 
         String test = indexDir + File.separator + ".index-inconsistent";
         indexConsistencyMarker = new File(test);
@@ -140,10 +166,8 @@ public class IndexManagerImpl implements IndexManager {
             if (indexExists()) {
 
                 // test if the index is readable, if the version is outdated or it fails we rebuild.
-                try {
-                    synchronized(this) {
-                        reader = DirectoryReader.open(getIndexDirectory());
-                    }
+                try (DirectoryReader reader = DirectoryReader.open(getIndexDirectory())) {
+                    mLogger.debug("Index contains " + reader.numDocs() + " documents");
                 } catch (IOException | IllegalArgumentException ex) {  // IAE for incompatible codecs
                     mLogger.warn("Failed to open search index, scheduling rebuild.", ex);
                     inconsistentAtStartup = true;
@@ -156,6 +180,8 @@ public class IndexManagerImpl implements IndexManager {
                 createIndex(getIndexDirectory());
             }
 
+            openWriter();
+
             if (inconsistentAtStartup) {
                 mLogger.info("Index was inconsistent. Rebuilding index in the background...");
                 try {
@@ -209,6 +235,15 @@ public class IndexManagerImpl implements IndexManager {
         return inconsistentAtStartup;
     }
 
+    @Override
+    public IndexRebuildProgress getRebuildProgress() {
+        return rebuildProgress;
+    }
+
+    public void setRebuildProgress(IndexRebuildProgress progress) {
+        this.rebuildProgress = progress;
+    }
+
     /**
      * This is the analyzer that will be used to tokenize comment text.
      * 
@@ -266,20 +301,111 @@ public class IndexManagerImpl implements IndexManager {
         }
     }
 
-    public synchronized void resetSharedReader() {
-        reader = null;
+    /**
+     * Open the shared writer and the searcher manager on top of it, and start
+     * committing on the configured interval.
+     */
+    private void openWriter() {
+        try {
+            LimitTokenCountAnalyzer analyzer = new LimitTokenCountAnalyzer(
+                    IndexManagerImpl.getAnalyzer(),
+                    WebloggerConfig.getIntProperty("lucene.analyzer.maxTokenCount"));
+
+            IndexWriterConfig config = new IndexWriterConfig(analyzer);
+            config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+
+            directory = FSDirectory.open(Path.of(indexDir));
+            writer = new IndexWriter(directory, config);
+            searcherManager = new SearcherManager(writer, null);
+
+        } catch (IOException e) {
+            mLogger.error("ERROR opening index writer, search will not be available", e);
+            closeWriter();
+            return;
+        }
+
+        if (commitInterval > 0) {
+            committer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "Roller Search Index Committer");
+                t.setDaemon(true);
+                return t;
+            });
+            committer.scheduleWithFixedDelay(this::commit,
+                    commitInterval, commitInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * The writer shared by all write operations, or null if the index is not
+     * available.  Operations must not close it.
+     */
+    public IndexWriter getSharedIndexWriter() {
+        return writer;
     }
 
-    public synchronized IndexReader getSharedIndexReader() {
-        if (reader == null) {
-            try {
-                reader = DirectoryReader.open(getIndexDirectory());
-            } catch (IOException ex) {
-                mLogger.error("Error opening DirectoryReader", ex);
-                throw new RuntimeException(ex);
+    /**
+     * Called by write operations once they are done with the shared writer.
+     * Makes the changes visible to new searches right away and commits them
+     * to disk if enough operations are waiting.
+     */
+    public void writeCompleted() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            mLogger.error("ERROR refreshing index searcher", e);
+        }
+        if (commitInterval <= 0
+                || uncommittedOperations.incrementAndGet() >= commitOperations) {
+            commit();
+        }
+    }
+
+    /**
+     * Commit pending changes of the shared writer to disk.
+     */
+    public void commit() {
+        IndexWriter w = writer;
+        if (w == null) {
+            return;
+        }
+        try {
+            uncommittedOperations.set(0);
+            if (w.hasUncommittedChanges()) {
+                w.commit();
             }
+        } catch (IOException | RuntimeException e) {
+            // AlreadyClosedException is a RuntimeException, thrown when
+            // the scheduled commit races shutdown
+            mLogger.error("ERROR committing search index", e);
+        }
+    }
+
+    /**
+     * Acquire a searcher over the latest index changes, the searcher must be
+     * handed back to releaseSearcher() when done with it.
+     */
+    public IndexSearcher acquireSearcher() throws IOException {
+        if (searcherManager == null) {
+            throw new IOException("Search index is not available");
+        }
+        return searcherManager.acquire();
+    }
+
+    /**
+     * Release a searcher obtained from acquireSearcher().
+     */
+    public void releaseSearcher(IndexSearcher searcher) {
+        if (searcher == null || searcherManager == null) {
+            return;
+        }
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException e) {
+            mLogger.warn("Unable to release index searcher", e);
         }
-        return reader;
     }
 
     /**
@@ -351,18 +477,53 @@ public class IndexManagerImpl implements IndexManager {
         // no-op
     }
 
+    private void closeWriter() {
+        if (searcherManager != null) {
+            try {
+                searcherManager.close();
+            } catch (IOException ex) {
+                mLogger.error("Unable to close searcher manager.", ex);
+            }
+            searcherManager = null;
+        }
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                mLogger.error("Unable to close writer.", ex);
+            }
+            writer = null;
+        }
+        if (directory != null) {
+            try {
+                directory.close();
+            } catch (IOException ex) {
+                mLogger.error("Unable to close index directory.", ex);
+            }
+            directory = null;
+        }
+    }
+
     @Override
     public void shutdown() {
-        
-        indexConsistencyMarker.delete();
 
-        if (reader != null) {
+        if (committer != null) {
+            committer.shutdownNow();
+            committer = null;
+        }
+
+        // closing the writer commits whatever is still pending, only then
+        // is the index known to be consistent again
+        if (writer != null) {
+            rwl.writeLock().lock();
             try {
-                reader.close();
-            } catch (IOException ex) {
-                mLogger.error("Unable to close reader.", ex);
+                closeWriter();
+            } finally {
+                rwl.writeLock().unlock();
             }
         }
+
+        indexConsistencyMarker.delete();
     }
 
 }
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.search;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.roller.util.RollerConstants;
+
+
+/**
+ * Progress of a search index rebuild, updated by the rebuild while it runs.
+ */
+public class IndexRebuildProgress {
+
+    // handle of the weblog being rebuilt, null for the whole site
+    private final String weblogHandle;
+
+    // number of entries expected to be indexed
+    private final long total;
+
+    private final AtomicLong indexed = new AtomicLong();
+
+    private final long startTime;
+
+    private volatile long endTime = 0;
+
+    private volatile boolean failed = false;
+
+
+    public IndexRebuildProgress(String weblogHandle, long total) {
+        this.weblogHandle = weblogHandle;
+        this.total = total;
+        this.startTime = System.currentTimeMillis();
+    }
+
+
+    public void entriesIndexed(int count) {
+        indexed.addAndGet(count);
+    }
+
+    public void finished() {
+        endTime = System.currentTimeMillis();
+    }
+
+    /**
+     * The rebuild stopped before all entries were indexed.
+     */
+    public void failed() {
+        failed = true;
+        finished();
+    }
+
+    public String getWeblogHandle() {
+        return weblogHandle;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getIndexed() {
+        return indexed.get();
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public boolean isRunning() {
+        return endTime == 0;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Seconds since the rebuild started, or how long it took once finished.
+     */
+    public double getElapsedSeconds() {
+        long end = isRunning() ? System.currentTimeMillis() : endTime;
+        return (end - startTime) / (double) RollerConstants.SEC_IN_MS;
+    }
+
+    public double getEntriesPerSecond() {
+        double elapsed = getElapsedSeconds();
+        return elapsed > 0 ? getIndexed() / elapsed : 0;
+    }
+
+    /**
+     * Estimated seconds until the rebuild is done, -1 if not known yet.
+     */
+    public long getSecondsRemaining() {
+        if (!isRunning()) {
+            return 0;
+        }
+        double rate = getEntriesPerSecond();
+        if (rate <= 0) {
+            return -1;
+        }
+        return (long) Math.ceil(Math.max(0, total - getIndexed()) / rate);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d entries, %.1f entries/sec, %d secs remaining",
+                getIndexed(), total, getEntriesPerSecond(), getSecondsRemaining());
+    }
+
+}
@@ -18,19 +18,16 @@
 /* Created on Jul 16, 2003 */
 package org.apache.roller.weblogger.business.search.operations;
 
-import java.io.IOException;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.lucene.analysis.miscellaneous.LimitTokenCountAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.util.BytesRef;
 import org.apache.roller.weblogger.business.search.FieldConstants;
 import org.apache.roller.weblogger.business.search.IndexManagerImpl;
@@ -56,7 +53,6 @@ public abstract class IndexOperation implements Runnable {
     // ~ Instance fields
     // ========================================================
     protected IndexManagerImpl manager;
-    private IndexWriter writer;
 
     // ~ Constructors
     // ===========================================================
@@ -166,37 +162,23 @@ public abstract class IndexOperation implements Runnable {
     /**
      * Begin writing.
      * 
-     * @return the index writer
+     * @return the index writer shared by all operations, null if the index
+     *         is not available
      */
     protected IndexWriter beginWriting() {
-        try {
-
-            LimitTokenCountAnalyzer analyzer = new LimitTokenCountAnalyzer(
-                    IndexManagerImpl.getAnalyzer(),
-                    WebloggerConfig.getIntProperty("lucene.analyzer.maxTokenCount"));
-
-            IndexWriterConfig config = new IndexWriterConfig(analyzer);
-
-            writer = new IndexWriter(manager.getIndexDirectory(), config);
-
-        } catch (IOException e) {
-            mLogger.error("ERROR creating writer", e);
+        IndexWriter writer = manager.getSharedIndexWriter();
+        if (writer == null) {
+            mLogger.error("ERROR no index writer available");
         }
-
         return writer;
     }
 
     /**
-     * End writing.
+     * End writing.  The shared writer stays open, changes are made visible
+     * and committed by the manager once the operation completes.
      */
     protected void endWriting() {
-        if (writer != null) {
-            try {
-                writer.close();
-            } catch (IOException e) {
-                mLogger.error("ERROR closing writer", e);
-            }
-        }
+        // no-op
     }
 
     /**
@@ -34,14 +34,13 @@ public abstract class ReadFromIndexOperation extends IndexOperation {
     
     @Override
     public final void run() {
+        // no need for the read lock, searchers are point in time views of the
+        // index which writers never change underneath us, that way searches
+        // keep working while a long rebuild holds the write lock
         try {
-            manager.getReadWriteLock().readLock().lock();
             doRun();
-
         } catch (Exception e) {
-            mLogger.error("Error acquiring read lock on index", e);
-        } finally {
-            manager.getReadWriteLock().readLock().unlock();
+            mLogger.error("Error reading from index", e);
         }
     }
     
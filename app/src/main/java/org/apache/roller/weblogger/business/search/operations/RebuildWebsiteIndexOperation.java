@@ -18,9 +18,15 @@
 /* Created on Jul 16, 2003 */
 package org.apache.roller.weblogger.business.search.operations;
 
+import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -32,11 +38,12 @@ import org.apache.roller.weblogger.business.WeblogEntryManager;
 import org.apache.roller.weblogger.business.Weblogger;
 import org.apache.roller.weblogger.business.search.FieldConstants;
 import org.apache.roller.weblogger.business.search.IndexManagerImpl;
+import org.apache.roller.weblogger.business.search.IndexRebuildProgress;
 import org.apache.roller.weblogger.business.search.IndexUtil;
+import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
-import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
 
 /**
  * An index operation that rebuilds a given users index (or all indexes).
@@ -51,6 +58,15 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
     private static Log mLogger = LogFactory.getFactory().getInstance(
             RebuildWebsiteIndexOperation.class);
 
+    private static final int DEFAULT_CHUNK_SIZE = 500;
+    private static final int DEFAULT_THREADS = 4;
+
+    // how long to wait for workers to stop when the rebuild fails
+    private static final long WORKER_STOP_SECONDS = 60;
+
+    // log progress every so many chunks
+    private static final int PROGRESS_LOG_CHUNKS = 20;
+
     // ~ Instance fields
     // ========================================================
 
@@ -99,6 +115,25 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
 
         IndexWriter writer = beginWriting();
 
+        // entries are read in chunks of ids and turned into documents by a
+        // pool of workers, only a few chunks are in flight at any time so
+        // memory use does not grow with the number of entries
+        int chunkSize = WebloggerConfig.getIntProperty(
+                "search.index.rebuild.chunkSize", DEFAULT_CHUNK_SIZE);
+        int threads = WebloggerConfig.getIntProperty(
+                "search.index.rebuild.threads",
+                Math.min(DEFAULT_THREADS, Runtime.getRuntime().availableProcessors()));
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "Roller Search Index Rebuild");
+            t.setDaemon(true);
+            return t;
+        });
+        Semaphore inFlight = new Semaphore(2 * Math.max(1, threads));
+        IndexRebuildProgress progress = null;
+
+        // the first chunk which couldn't be indexed, the rest still are
+        AtomicReference<Exception> chunkFailure = new AtomicReference<>();
+
         try {
             if (writer != null) {
 
@@ -119,26 +154,74 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
                 // Add Doc
                 WeblogEntryManager weblogManager = roller
                         .getWeblogEntryManager();
-                WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
-                wesc.setWeblog(website);
-                wesc.setStatus(PubStatus.PUBLISHED);
-                List<WeblogEntry> entries = weblogManager.getWeblogEntries(wesc);
-
-                mLogger.debug("Entries to index: " + entries.size());
-
-                for (WeblogEntry entry : entries) {
-                    writer.addDocument(getDocument(entry));
-                    mLogger.debug(MessageFormat.format(
-                            "Indexed entry {0}: {1}",
-                            entry.getPubTime(), entry.getAnchor()));
-                }
+                long total = (website != null)
+                        ? weblogManager.getEntryCount(website)
+                        : weblogManager.getEntryCount();
+                final IndexRebuildProgress chunkProgress = new IndexRebuildProgress(
+                        website != null ? website.getHandle() : null, total);
+                progress = chunkProgress;
+                manager.setRebuildProgress(progress);
+
+                mLogger.debug("Entries to index: " + total);
+
+                String lastId = null;
+                List<String> ids;
+                int chunks = 0;
+                do {
+                    ids = weblogManager.getWeblogEntryIds(
+                            website, PubStatus.PUBLISHED, lastId, chunkSize);
+                    if (!ids.isEmpty()) {
+                        lastId = ids.get(ids.size() - 1);
+                        final List<String> chunk = ids;
+                        inFlight.acquire();
+                        workers.execute(() -> {
+                            try {
+                                indexEntries(writer, chunk, chunkProgress);
+                            } catch (Exception e) {
+                                mLogger.error("ERROR adding doc to index", e);
+                                chunkFailure.compareAndSet(null, e);
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                        if (++chunks % PROGRESS_LOG_CHUNKS == 0) {
+                            mLogger.info("Rebuilding index: " + progress);
+                        }
+                    }
+                } while (ids.size() == chunkSize);
 
                 // release the database connection
                 roller.release();
+
+                workers.shutdown();
+                workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                if (chunkFailure.get() != null) {
+                    mLogger.error("Rebuilding index failed, not all entries were indexed: "
+                            + progress, chunkFailure.get());
+                    progress.failed();
+                } else {
+                    progress.finished();
+                }
             }
+        } catch (InterruptedException e) {
+            mLogger.warn("Interrupted while rebuilding index", e);
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             mLogger.error("ERROR adding/deleting doc to index", e);
         } finally {
+            // workers may still be adding documents after a failure, they
+            // have to be done with the writer before it is committed
+            workers.shutdownNow();
+            try {
+                if (!workers.awaitTermination(WORKER_STOP_SECONDS, TimeUnit.SECONDS)) {
+                    mLogger.error("Index rebuild workers did not stop in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (progress != null && progress.isRunning()) {
+                progress.failed();
+            }
             endWriting();
             if (roller != null) {
                 roller.release();
@@ -156,4 +239,25 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
                     + website.getHandle() + "' in '" + length + "' seconds");
         }
     }
+
+    /**
+     * Load a chunk of entries and add them to the index, runs on a worker
+     * thread with a persistence session of its own.
+     */
+    private void indexEntries(IndexWriter writer, List<String> ids,
+            IndexRebuildProgress progress) throws WebloggerException, IOException {
+        try {
+            List<WeblogEntry> entries = roller.getWeblogEntryManager()
+                    .getWeblogEntries(ids);
+            for (WeblogEntry entry : entries) {
+                writer.addDocument(getDocument(entry));
+                mLogger.debug(MessageFormat.format(
+                        "Indexed entry {0}: {1}",
+                        entry.getPubTime(), entry.getAnchor()));
+            }
+            progress.entriesIndexed(entries.size());
+        } finally {
+            roller.release();
+        }
+    }
 }
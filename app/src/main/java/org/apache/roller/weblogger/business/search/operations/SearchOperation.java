@@ -22,7 +22,6 @@ import java.io.IOException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.queryparser.classic.ParseException;
@@ -99,11 +98,10 @@ public class SearchOperation extends ReadFromIndexOperation {
     public void doRun() {
         final int docLimit = 500;
         searchresults = null;
-        searcher = null;
+        release();
 
         try {
-            IndexReader reader = manager.getSharedIndexReader();
-            searcher = new IndexSearcher(reader);
+            searcher = manager.acquireSearcher();
 
             MultiFieldQueryParser multiParser = new MultiFieldQueryParser(
                     SEARCH_FIELDS, IndexManagerImpl.getAnalyzer());
@@ -151,11 +149,21 @@ public class SearchOperation extends ReadFromIndexOperation {
             // who cares?
             parseError = e.getMessage();
         }
-        // don't need to close the reader, since we didn't do any writing!
     }
 
     /**
-     * Gets the searcher.
+     * Hand the searcher back to the index manager.  Callers which load
+     * documents through getSearcher() must call this once they are done.
+     */
+    public void release() {
+        if (searcher != null) {
+            manager.releaseSearcher(searcher);
+            searcher = null;
+        }
+    }
+
+    /**
+     * Gets the searcher, which stays usable until release() is called.
      * 
      * @return the searcher
      */
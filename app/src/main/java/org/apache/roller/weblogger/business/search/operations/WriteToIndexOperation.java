@@ -49,6 +49,6 @@ public abstract class WriteToIndexOperation extends IndexOperation {
         } finally {
             manager.getReadWriteLock().writeLock().unlock();
         }
-        manager.resetSharedReader();
+        manager.writeCompleted();
     }
 }
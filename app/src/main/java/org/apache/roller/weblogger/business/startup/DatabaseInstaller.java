@@ -48,6 +48,10 @@ public class DatabaseInstaller {
     // the name of the property which holds the dbversion value
     private static final String DBVERSION_PROP = "roller.database.version";
 
+    // the version of the newest schema, which may be ahead of the release
+    // it ships in when the schema changes between releases
+    private static final int SCHEMA_VERSION = 620;
+
 
     public DatabaseInstaller(DatabaseProvider dbProvider, DatabaseScriptProvider scriptProvider) {
         db = dbProvider;
@@ -96,7 +100,7 @@ public class DatabaseInstaller {
      * Determine if database schema needs to be upgraded.
      */
     public boolean isUpgradeRequired() {
-        int desiredVersion = parseVersionString(version);
+        int desiredVersion = getDesiredVersion();
         int databaseVersion;
         try {
             databaseVersion = getDatabaseVersion();
@@ -110,7 +114,7 @@ public class DatabaseInstaller {
             Connection con = null;
             try {
                 con = db.getConnection();
-                setDatabaseVersion(con, version);
+                setDatabaseVersion(con, getDesiredVersion());
             } catch (Exception ioe) {
                 errorMessage("ERROR setting database version");
             } finally {
@@ -168,7 +172,7 @@ public class DatabaseInstaller {
             create.runScript(con, true);
             messages.addAll(create.getMessages());
 
-            setDatabaseVersion(con, version);
+            setDatabaseVersion(con, getDesiredVersion());
 
         } catch (SQLException sqle) {
             log.error("ERROR running SQL in database creation script", sqle);
@@ -201,7 +205,7 @@ public class DatabaseInstaller {
      */
     public void upgradeDatabase(boolean runScripts) throws StartupException {
 
-        int myVersion = parseVersionString(version);
+        int myVersion = getDesiredVersion();
         int dbversion = getDatabaseVersion();
 
         log.debug("Database version = "+dbversion);
@@ -250,6 +254,10 @@ public class DatabaseInstaller {
                 upgradeTo610(con, runScripts);
                 dbversion = 610;
             }
+            if(dbversion < 620) {
+                upgradeTo620(con, runScripts);
+                dbversion = 620;
+            }
 
             // make sure the database version is the exact version
             // we are upgrading too.
@@ -736,6 +744,13 @@ public class DatabaseInstaller {
     private void upgradeTo610(Connection con, boolean runScripts) throws StartupException {
         simpleUpgrade(con, 520, 610, runScripts);
     }
+
+    /**
+     * Upgrade database to the 6.2 schema
+     */
+    private void upgradeTo620(Connection con, boolean runScripts) throws StartupException {
+        simpleUpgrade(con, 610, 620, runScripts);
+    }
     
     /**
      * Simple upgrade using single SQL migration script.
@@ -847,6 +862,15 @@ public class DatabaseInstaller {
     }
 
 
+    /**
+     * The database version this release needs, the newest schema version
+     * unless the release itself is newer.
+     */
+    private int getDesiredVersion() {
+        return Math.max(parseVersionString(version), SCHEMA_VERSION);
+    }
+
+
     private int parseVersionString(String vstring) {
         int myversion = 0;
 
@@ -874,15 +898,6 @@ public class DatabaseInstaller {
     }
 
 
-    /**
-     * Insert a new database.version property.
-     * This should only be called once for new installations
-     */
-    private void setDatabaseVersion(Connection con, String version)
-            throws StartupException {
-        setDatabaseVersion(con, parseVersionString(version));
-    }
-
     /**
      * Insert a new database.version property.
      * This should only be called once for new installations
@@ -28,7 +28,6 @@ import org.apache.roller.weblogger.config.runtime.RuntimeConfigDefs;
 import org.apache.roller.weblogger.config.runtime.RuntimeConfigDefsParser;
 import org.apache.roller.weblogger.business.PropertiesManager;
 import org.apache.roller.weblogger.business.WebloggerFactory;
-import org.apache.roller.weblogger.pojos.RuntimeConfigProperty;
 
 
 /**
@@ -65,10 +64,7 @@ public final class WebloggerRuntimeConfig {
         
         try {
             PropertiesManager pmgr = WebloggerFactory.getWeblogger().getPropertiesManager();
-            RuntimeConfigProperty prop = pmgr.getProperty(name);
-            if(prop != null) {
-                value = prop.getValue();
-            }
+            value = pmgr.getPropertyValue(name);
         } catch(Exception e) {
             log.warn("Trouble accessing property: "+name, e);
         }
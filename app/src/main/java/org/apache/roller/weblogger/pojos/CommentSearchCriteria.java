@@ -36,8 +36,10 @@ public class CommentSearchCriteria {
     private ApprovalStatus status;
     // True for results in reverse chrono order
     private boolean reverseChrono = false;
-    // Offset into results for paging
+    // Offset into results for paging, ignored if there is a cursor
     private int offset = 0;
+    // Last comment of the previous page, by post time, or null
+    private PageCursor cursor;
     // Max comments to return (or -1 for no limit)
     private int maxResults = -1;
 
@@ -113,4 +115,12 @@ public class CommentSearchCriteria {
         this.maxResults = maxResults;
     }
 
+    public PageCursor getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(PageCursor cursor) {
+        this.cursor = cursor;
+    }
+
 }
@@ -65,6 +65,14 @@ public class FileContent {
         return resourceFile.length();
     }
     
+    /**
+     * Returns the underlying file, for serving it straight from the file
+     * system.
+     */
+    public File getFile() {
+        return resourceFile;
+    }
+    
     /**
      * Returns the input stream for the underlying file.
      */
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.pojos;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Position of the last entry or comment of a page, by the time it's sorted by
+ * and its id.  The next page starts right after it, which the database can
+ * seek to instead of reading and skipping all the rows before it like it
+ * does for an offset.
+ *
+ * The string form handed out in links is opaque, parse() returns null for
+ * anything which isn't a cursor.
+ */
+public final class PageCursor {
+
+    private final long time;
+    private final String id;
+
+    public PageCursor(Date time, String id) {
+        this.time = time.getTime();
+        this.id = id;
+    }
+
+    public Date getTime() {
+        return new Date(time);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * String form of the cursor, safe to use in URLs as it is.
+     */
+    public String encode() {
+        String value = time + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parse the string form of a cursor.
+     * @return the cursor, or null if the string is empty or not a cursor
+     */
+    public static PageCursor parse(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            int sep = value.indexOf(':');
+            if (sep < 1 || sep == value.length() - 1) {
+                return null;
+            }
+            return new PageCursor(new Date(Long.parseLong(value.substring(0, sep))), value.substring(sep + 1));
+        } catch (IllegalArgumentException e) {
+            // not base64 or not a number, NumberFormatException included
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+
+}
@@ -23,6 +23,7 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
@@ -32,6 +33,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
@@ -49,6 +51,7 @@ import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.UserManager;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
 import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.business.plugins.TransformedTextCache;
 import org.apache.roller.weblogger.business.plugins.entry.WeblogEntryPlugin;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
@@ -90,6 +93,14 @@ public class WeblogEntry implements Serializable {
     private String    creatorUserName = null;      
     private String    searchDescription = null;
 
+    // approved comments, kept up to date by the WeblogEntryManager as comments
+    // are saved and removed, null for entries which predate the counter and
+    // zero for new ones
+    private Integer   approvedCommentCount = 0;
+
+    // approved comments counted on the fly for entries without the counter
+    private transient Integer countedCommentCount = null;
+
     // set to true when switching between pending/draft/scheduled and published
     // either the aggregate table needs the entry's tags added (for published)
     // or subtracted (anything else)
@@ -106,6 +117,13 @@ public class WeblogEntry implements Serializable {
     private Set<WeblogEntryTag> removedTags = new HashSet<>();
     private Set<WeblogEntryTag> addedTags = new HashSet<>();
     
+    // user who wrote the entry, if loaded up front by the WeblogEntryManager
+    private transient User creator = null;
+    
+    // plugins to apply to text and summary, built for the plugins string
+    private transient List<WeblogEntryPlugin> pluginChain = null;
+    private transient String pluginChainSource = null;
+    
     //----------------------------------------------------------- Construction
     
     public WeblogEntry() {
@@ -163,6 +181,7 @@ public class WeblogEntry implements Serializable {
         this.setPlugins(other.getPlugins());
         this.setAllowComments(other.getAllowComments());
         this.setCommentDays(other.getCommentDays());
+        this.setApprovedCommentCount(other.getApprovedCommentCount());
         this.setRightToLeft(other.getRightToLeft());
         this.setPinnedToMain(other.getPinnedToMain());
         this.setLocale(other.getLocale());
@@ -244,6 +263,9 @@ public class WeblogEntry implements Serializable {
     }
     
     public User getCreator() {
+        if (creator != null && creator.getUserName().equals(getCreatorUserName())) {
+            return creator;
+        }
         try {
             return WebloggerFactory.getWeblogger().getUserManager().getUserByUserName(getCreatorUserName());
         } catch (Exception e) {
@@ -252,6 +274,14 @@ public class WeblogEntry implements Serializable {
         return null;
     }   
     
+    /**
+     * Set the user who wrote the entry when it's already been loaded, so
+     * that getCreator() doesn't have to look the user up again.
+     */
+    public void setCreator(User creator) {
+        this.creator = creator;
+    }
+    
     public String getCreatorUserName() {
         return creatorUserName;
     }
@@ -260,6 +290,27 @@ public class WeblogEntry implements Serializable {
         this.creatorUserName = creatorUserName;
     }   
     
+    /**
+     * Number of approved comments, maintained by the WeblogEntryManager.
+     * Null if the entry predates the counter, use getCommentCount() for a
+     * number which is always set.
+     */
+    public Integer getApprovedCommentCount() {
+        return approvedCommentCount;
+    }
+
+    public void setApprovedCommentCount(Integer approvedCommentCount) {
+        this.approvedCommentCount = approvedCommentCount;
+    }
+    
+    /**
+     * Number of approved comments counted by the WeblogEntryManager for an
+     * entry which doesn't have the counter yet, not persisted.
+     */
+    public void setCountedCommentCount(Integer countedCommentCount) {
+        this.countedCommentCount = countedCommentCount;
+    }
+    
     public String getTitle() {
         return this.title;
     }
@@ -733,8 +784,23 @@ public class WeblogEntry implements Serializable {
         return Collections.emptyList();
     }
     
+    /**
+     * Number of approved comments, without loading them.
+     */
     public int getCommentCount() {
-        return getComments(true, true).size();
+        if (approvedCommentCount != null) {
+            return approvedCommentCount;
+        }
+        if (countedCommentCount == null) {
+            try {
+                WeblogEntryManager wmgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+                countedCommentCount = wmgr.getCommentCounts(Collections.singletonList(getId()))
+                        .getOrDefault(getId(), 0);
+            } catch (WebloggerException alreadyLogged) {
+                return 0;
+            }
+        }
+        return countedCommentCount;
     }
     
     //------------------------------------------------------------------------
@@ -938,33 +1004,58 @@ public class WeblogEntry implements Serializable {
     
     /**
      * Transform string based on plugins enabled for this weblog entry.
+     * Results are cached by content, so pages which get rendered again
+     * don't run the plugins again for entries which didn't change.
      */
     private String render(String str) {
-        String ret = str;
+        if (str == null) {
+            return null;
+        }
+        
+        TransformedTextCache cache = TransformedTextCache.getInstance();
+        String key = cache.generateKey(this, str);
+        String ret = cache.get(key);
+        if (ret != null) {
+            return ret;
+        }
+        
         mLogger.debug("Applying page plugins to string");
-        Map<String, WeblogEntryPlugin> inPlugins = getWebsite().getInitializedPlugins();
-        if (str != null && inPlugins != null) {
-            List<String> entryPlugins = getPluginsList();
-            
-            // if no Entry plugins, don't bother looping.
-            if (entryPlugins != null && !entryPlugins.isEmpty()) {
-                
-                // now loop over mPagePlugins, matching
-                // against Entry plugins (by name):
-                // where a match is found render Plugin.
+        ret = str;
+        for (WeblogEntryPlugin pagePlugin : getPluginChain()) {
+            try {
+                ret = pagePlugin.render(this, ret);
+            } catch (Exception e) {
+                mLogger.error("ERROR from plugin: " + pagePlugin.getName(), e);
+            }
+        }
+        ret = HTMLSanitizer.conditionallySanitize(ret);
+        
+        cache.put(this, key, ret);
+        return ret;
+    }
+    
+    /**
+     * The weblog's initialized plugins which are enabled for this entry, in
+     * the order they are configured for the site.  Built once per plugins
+     * string instead of matching names on every render.
+     */
+    private List<WeblogEntryPlugin> getPluginChain() {
+        String entryPlugins = getPlugins();
+        if (pluginChain == null || !Objects.equals(entryPlugins, pluginChainSource)) {
+            List<WeblogEntryPlugin> chain = new ArrayList<>();
+            List<String> names = getPluginsList();
+            Map<String, WeblogEntryPlugin> inPlugins = names.isEmpty() ? null : getWebsite().getInitializedPlugins();
+            if (inPlugins != null) {
                 for (Map.Entry<String, WeblogEntryPlugin> entry : inPlugins.entrySet()) {
-                    if (entryPlugins.contains(entry.getKey())) {
-                        WeblogEntryPlugin pagePlugin = entry.getValue();
-                        try {
-                            ret = pagePlugin.render(this, ret);
-                        } catch (Exception e) {
-                            mLogger.error("ERROR from plugin: " + pagePlugin.getName(), e);
-                        }
+                    if (names.contains(entry.getKey())) {
+                        chain.add(entry.getValue());
                     }
                 }
             }
-        } 
-        return HTMLSanitizer.conditionallySanitize(ret);
+            pluginChain = chain;
+            pluginChainSource = entryPlugins;
+        }
+        return pluginChain;
     }
     
     
@@ -18,13 +18,16 @@
 package org.apache.roller.weblogger.pojos;
 
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
 
 public class WeblogEntrySearchCriteria {
 
     public enum SortOrder {ASCENDING, DESCENDING}
     public enum SortBy {PUBLICATION_TIME, UPDATE_TIME}
+    public enum Fetch {CATEGORY, CREATOR, TAGS, ATTRIBUTES}
 
     // TODO: See if can switch from name of Category to Category object
 
@@ -50,10 +53,15 @@ public class WeblogEntrySearchCriteria {
     private SortOrder sortOrder = SortOrder.DESCENDING;
 
     private String locale;
-    // Offset into results for paging
+    // Offset into results for paging, ignored if there is a cursor it can use
     private int offset = 0;
+    // Last entry of the previous page, by the sort field, or null
+    private PageCursor cursor;
 
     private int maxResults = -1;
+    // Relations of the entries to load for all of them at once, because
+    // they are going to be used for every entry, e.g. by a page of entries
+    private Set<Fetch> fetch = EnumSet.noneOf(Fetch.class);
 
     public Weblog getWeblog() {
         return weblog;
@@ -159,4 +167,41 @@ public class WeblogEntrySearchCriteria {
         this.maxResults = maxResults;
     }
 
+    public PageCursor getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(PageCursor cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * Whether the next page can be found with a cursor.  Drafts and pending
+     * entries may have no pubTime, which a cursor can't seek past, so sorting
+     * by pubTime needs the published or scheduled status.
+     */
+    public boolean isCursorSupported() {
+        return SortBy.UPDATE_TIME.equals(sortBy)
+                || PubStatus.PUBLISHED.equals(status) || PubStatus.SCHEDULED.equals(status);
+    }
+
+    /**
+     * Cursor for the page after the one ending with the given entry.
+     * @return the cursor, or null if the next page has to be found by offset
+     */
+    public PageCursor nextCursor(WeblogEntry last) {
+        if (!isCursorSupported()) {
+            return null;
+        }
+        Date time = SortBy.UPDATE_TIME.equals(sortBy) ? last.getUpdateTime() : last.getPubTime();
+        return time == null ? null : new PageCursor(time, last.getId());
+    }
+
+    public Set<Fetch> getFetch() {
+        return fetch;
+    }
+
+    public void setFetch(Set<Fetch> fetch) {
+        this.fetch = fetch;
+    }
 }
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.pojos;
+
+import java.util.Date;
+
+/**
+ * Title, anchor and publication time of a weblog entry, enough to list and
+ * link to it without loading the whole entry.
+ */
+public class WeblogEntryTitle {
+
+    private final String anchor;
+    private final String title;
+    private final long pubTime;
+
+    public WeblogEntryTitle(String anchor, String title, Date pubTime) {
+        this.anchor = anchor;
+        this.title = title;
+        this.pubTime = pubTime.getTime();
+    }
+
+    public String getAnchor() {
+        return anchor;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Date getPubTime() {
+        return new Date(pubTime);
+    }
+
+    @Override
+    public String toString() {
+        return "{" + anchor + ", " + title + ", " + getPubTime() + "}";
+    }
+
+}
@@ -27,10 +27,12 @@ import java.util.TimeZone;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.business.URLStrategy;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
+import org.apache.roller.weblogger.pojos.WeblogEntryTitle;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
 import org.apache.roller.util.DateUtil;
 
@@ -59,6 +61,12 @@ public class BigWeblogCalendarModel extends WeblogCalendarModel {
     
     @Override
     protected void loadWeblogEntries(Date startDate, Date endDate, String catName) {
+        WeblogCalendarCache cache = WeblogCalendarCache.getInstance();
+        String cacheKey = cache.generateKey("titles", weblog, locale, catName, startDate);
+        monthMap = cache.get(cacheKey);
+        if (monthMap != null) {
+            return;
+        }
         try {
             WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
             WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
@@ -68,7 +76,8 @@ public class BigWeblogCalendarModel extends WeblogCalendarModel {
             wesc.setCatName(catName);
             wesc.setStatus(WeblogEntry.PubStatus.PUBLISHED);
             wesc.setLocale(locale);
-            monthMap = mgr.getWeblogEntryObjectMap(wesc);
+            monthMap = mgr.getWeblogEntryTitleMap(wesc);
+            cache.put(weblog, cacheKey, monthMap);
         } catch (WebloggerException e) {
             mLogger.error(e);
             monthMap = new HashMap<>();
@@ -88,7 +97,7 @@ public class BigWeblogCalendarModel extends WeblogCalendarModel {
             List<?> entries = (List<?>)monthMap.get(day);
             if ( entries != null ) {
                 dateString = starDateFormat.format(
-                        ((WeblogEntry)entries.get(0)).getPubTime());
+                        ((WeblogEntryTitle)entries.get(0)).getPubTime());
                 
                 // append 8 char date string on end of selfurl
                 String dayUrl = WebloggerFactory.getWeblogger().getUrlStrategy().getWeblogCollectionURL(weblog, locale, cat, dateString, null, -1, false);
@@ -100,15 +109,17 @@ public class BigWeblogCalendarModel extends WeblogCalendarModel {
                 sb.append(singleDayFormat.format(day));
                 sb.append("</a></div>");
                 
+                URLStrategy urlStrategy = WebloggerFactory.getWeblogger().getUrlStrategy();
                 for ( int i=0; i<entries.size(); i++ ) {
+                    WeblogEntryTitle entry = (WeblogEntryTitle)entries.get(i);
                     sb.append("<div class=\"bCalendarDayContentBig\">");
                     sb.append("<a href=\"");
-                    sb.append(((WeblogEntry)entries.get(i)).getPermalink());
+                    sb.append(urlStrategy.getWeblogEntryURL(weblog, null, entry.getAnchor(), true));
                     sb.append("\">");
                     
-                    String title = ((WeblogEntry)entries.get(i)).getTitle().trim();
+                    String title = entry.getTitle().trim();
                     if ( title.length()==0 ) {
-                        title = ((WeblogEntry)entries.get(i)).getAnchor();
+                        title = entry.getAnchor();
                     }
                     if ( title.length() > 20 ) {
                         title = title.substring(0,20)+"...";
@@ -146,7 +157,7 @@ public class BigWeblogCalendarModel extends WeblogCalendarModel {
         String dateString = null;
         List<?> entries = (List<?>)monthMap.get( day );
         if ( entries != null && day != null ) {
-            WeblogEntry entry = (WeblogEntry)entries.get(0);
+            WeblogEntryTitle entry = (WeblogEntryTitle)entries.get(0);
             dateString = starDateFormat.format(entry.getPubTime());
         }
         if (dateString == null && !alwaysURL) {
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.core.tags.calendar;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogBookmark;
+import org.apache.roller.weblogger.pojos.WeblogBookmarkFolder;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheHandler;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.DependencyIndex;
+import org.apache.roller.weblogger.util.cache.ExpiringCacheEntry;
+
+
+/**
+ * Cache for the days of a month which have entries, and the entries' titles,
+ * as shown by the weblog calendars.
+ *
+ * Months are cached per weblog, locale and category.  Saving or removing an
+ * entry, which is how entries get published, drops all the months of its
+ * weblog, as do changes to the weblog or its categories.
+ */
+public final class WeblogCalendarCache implements CacheHandler {
+
+    private static final Log log = LogFactory.getLog(WeblogCalendarCache.class);
+
+    // a unique identifier for this cache, this is used as the prefix for
+    // roller config properties that apply to this cache
+    public static final String CACHE_ID = "cache.weblogcalendar";
+
+    private boolean cacheEnabled = true;
+    private Cache contentCache = null;
+    private long timeout = RollerConstants.HOUR_IN_MS;
+
+    // cache keys by the weblog they were loaded for
+    private DependencyIndex dependencies = null;
+
+    // reference to our singleton instance
+    private static final WeblogCalendarCache singletonInstance = new WeblogCalendarCache();
+
+
+    private WeblogCalendarCache() {
+
+        cacheEnabled = WebloggerConfig.getBooleanProperty(CACHE_ID+".enabled", true);
+
+        Map<String, String> cacheProps = new HashMap<>();
+        cacheProps.put("id", CACHE_ID);
+        Enumeration<Object> allProps = WebloggerConfig.keys();
+        String prop;
+        while(allProps.hasMoreElements()) {
+            prop = (String) allProps.nextElement();
+
+            // we are only interested in props for this cache
+            if(prop.startsWith(CACHE_ID+".")) {
+                cacheProps.put(prop.substring(CACHE_ID.length()+1),
+                        WebloggerConfig.getProperty(prop));
+            }
+        }
+
+        log.info(cacheProps);
+
+        try {
+            if (cacheProps.containsKey("timeout")) {
+                timeout = Long.parseLong(cacheProps.get("timeout")) * RollerConstants.SEC_IN_MS;
+            }
+        } catch (NumberFormatException e) {
+            log.warn("invalid timeout property", e);
+        }
+
+        if(cacheEnabled) {
+            contentCache = CacheManager.constructCache(this, cacheProps);
+            dependencies = DependencyIndex.forCache(cacheProps);
+        } else {
+            log.warn("Caching has been DISABLED");
+        }
+    }
+
+
+    public static WeblogCalendarCache getInstance() {
+        return singletonInstance;
+    }
+
+
+    /**
+     * Generate a cache key for a month of a weblog's calendar.
+     * @param kind what is cached for the month, e.g. days or titles
+     * @param monthStart start of the month
+     */
+    public String generateKey(String kind, Weblog weblog, String locale, String catName, Date monthStart) {
+        StringBuilder key = new StringBuilder();
+        key.append(kind).append(':').append(weblog.getId());
+        key.append('/').append(monthStart.getTime());
+        if (locale != null) {
+            key.append("/lang=").append(locale);
+        }
+        if (catName != null) {
+            key.append("/cat=").append(catName);
+        }
+        return key.toString();
+    }
+
+
+    @SuppressWarnings("unchecked")
+    public Map<Date, ?> get(String key) {
+
+        if (!cacheEnabled) {
+            return null;
+        }
+
+        Map<Date, ?> month = null;
+        ExpiringCacheEntry expiringEntry = (ExpiringCacheEntry) contentCache.get(key);
+        if (expiringEntry != null) {
+            month = (Map<Date, ?>) expiringEntry.getValue();
+            if (month != null) {
+                log.debug("HIT "+key);
+            } else {
+                log.debug("HIT-EXPIRED "+key);
+            }
+        } else {
+            log.debug("MISS "+key);
+        }
+
+        return month;
+    }
+
+
+    public void put(Weblog weblog, String key, Map<Date, ?> month) {
+
+        if (!cacheEnabled || month == null) {
+            return;
+        }
+
+        if (dependencies.isFull()) {
+            log.debug("Dependency index is full, clearing cache");
+            clear();
+        }
+
+        contentCache.put(key, new ExpiringCacheEntry(Collections.unmodifiableMap(month), timeout));
+        dependencies.put(key, Collections.singleton(weblogDependency(weblog.getId())));
+        log.debug("PUT "+key);
+    }
+
+
+    public void clear() {
+        if (cacheEnabled) {
+            contentCache.clear();
+            dependencies.clear();
+            log.debug("CLEAR");
+        }
+    }
+
+
+    private void invalidate(Collection<String> changed) {
+        if (cacheEnabled) {
+            for (String key : dependencies.removeDependents(changed)) {
+                contentCache.remove(key);
+            }
+        }
+    }
+
+
+    private static String weblogDependency(String weblogId) {
+        return "weblog:" + weblogId;
+    }
+
+
+    /**
+     * An entry was published, changed or removed.
+     */
+    @Override
+    public void invalidate(WeblogEntry entry) {
+        invalidate(Collections.singleton(weblogDependency(entry.getWebsite().getId())));
+    }
+
+
+    /**
+     * The weblog's settings changed, which includes its timezone.
+     */
+    @Override
+    public void invalidate(Weblog website) {
+        invalidate(Collections.singleton(weblogDependency(website.getId())));
+    }
+
+
+    @Override
+    public void invalidate(WeblogCategory category) {
+        invalidate(Collections.singleton(weblogDependency(category.getWeblog().getId())));
+    }
+
+
+    @Override
+    public void invalidate(WeblogBookmark bookmark) {
+        // ignored
+    }
+
+
+    @Override
+    public void invalidate(WeblogBookmarkFolder folder) {
+        // ignored
+    }
+
+
+    @Override
+    public void invalidate(WeblogEntryComment comment) {
+        // ignored
+    }
+
+
+    @Override
+    public void invalidate(User user) {
+        // ignored
+    }
+
+
+    @Override
+    public void invalidate(WeblogTemplate template) {
+        // ignored
+    }
+
+}
@@ -159,6 +159,12 @@ public class WeblogCalendarModel implements CalendarModel {
     }
     
     protected void loadWeblogEntries(Date startDate, Date endDate, String catName) {
+        WeblogCalendarCache cache = WeblogCalendarCache.getInstance();
+        String cacheKey = cache.generateKey("days", weblog, locale, catName, startDate);
+        monthMap = cache.get(cacheKey);
+        if (monthMap != null) {
+            return;
+        }
         try {
             WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
             WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
@@ -169,6 +175,7 @@ public class WeblogCalendarModel implements CalendarModel {
             wesc.setStatus(PubStatus.PUBLISHED);
             wesc.setLocale(locale);
             monthMap = mgr.getWeblogEntryStringMap(wesc);
+            cache.put(weblog, cacheKey, monthMap);
         } catch (WebloggerException e) {
             log.error(e);
             monthMap = new HashMap<>();
@@ -122,7 +122,8 @@ public class PreviewPageModel extends PageModel {
                     previewRequest.getWeblogDate(),
                     null,
                     previewRequest.getTags(),
-                    previewRequest.getPageNum());
+                    previewRequest.getPageNum(),
+                    previewRequest.getCursor());
         }
         
     }
@@ -150,14 +150,18 @@ public class SearchResultsFeedModel implements Model {
 		// execute search
 		indexMgr.executeIndexOperationNow(search);
 
-		if (search.getResultsCount() > -1) {
+		try {
+			if (search.getResultsCount() > -1) {
 
-			TopFieldDocs docs = search.getResults();
-			ScoreDoc[] hitsArr = docs.scoreDocs;
-			this.hits = search.getResultsCount();
+				TopFieldDocs docs = search.getResults();
+				ScoreDoc[] hitsArr = docs.scoreDocs;
+				this.hits = search.getResultsCount();
 
-			// Convert the Hits into WeblogEntryData instances.
-			convertHitsToEntries(hitsArr, search);
+				// Convert the Hits into WeblogEntryData instances.
+				convertHitsToEntries(hitsArr, search);
+			}
+		} finally {
+			search.release();
 		}
 
 		// search completed, setup pager based on results
@@ -128,20 +128,24 @@ public class SearchResultsModel extends PageModel {
 		// execute search
 		indexMgr.executeIndexOperationNow(search);
 
-		if (search.getResultsCount() == -1) {
-			// this means there has been a parsing (or IO) error
-			this.errorMessage = I18nMessages.getMessages(
-					searchRequest.getLocaleInstance()).getString(
-					"error.searchProblem");
-		} else {
+		try {
+			if (search.getResultsCount() == -1) {
+				// this means there has been a parsing (or IO) error
+				this.errorMessage = I18nMessages.getMessages(
+						searchRequest.getLocaleInstance()).getString(
+						"error.searchProblem");
+			} else {
 
-			TopFieldDocs docs = search.getResults();
-			ScoreDoc[] hitsArr = docs.scoreDocs;
-			this.hits = search.getResultsCount();
+				TopFieldDocs docs = search.getResults();
+				ScoreDoc[] hitsArr = docs.scoreDocs;
+				this.hits = search.getResultsCount();
 
-			// Convert the Hits into WeblogEntryData instances.
-			convertHitsToEntries(hitsArr, search);
+				// Convert the Hits into WeblogEntryData instances.
+				convertHitsToEntries(hitsArr, search);
 
+			}
+		} finally {
+			search.release();
 		}
 
 		// search completed, setup pager based on results
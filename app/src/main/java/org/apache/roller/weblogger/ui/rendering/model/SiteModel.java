@@ -54,6 +54,7 @@ import org.apache.roller.weblogger.ui.rendering.pagers.WeblogsPager;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogFeedRequest;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogRequest;
+import org.apache.roller.weblogger.ui.rendering.util.cache.CacheDependencies;
 
 
 /**
@@ -72,6 +73,9 @@ public class SiteModel implements Model {
     
     private URLStrategy urlStrategy = null;
     
+    // records what the rendered content depends on for the site-wide cache
+    private CacheDependencies dependencies = null;
+    
     
     @Override
     public String getModelName() {
@@ -104,6 +108,12 @@ public class SiteModel implements Model {
             urlStrategy = WebloggerFactory.getWeblogger().getUrlStrategy();
         }
         
+        // look for cache dependency tracking, not every caller does that
+        dependencies = (CacheDependencies) initData.get(CacheDependencies.INIT_DATA_KEY);
+        if (dependencies == null) {
+            dependencies = new CacheDependencies();
+        }
+        
         // extract weblog object
         weblog = weblogRequest.getWeblog();
     }
@@ -117,6 +127,8 @@ public class SiteModel implements Model {
      */
     public Pager<WeblogEntryWrapper> getWeblogEntriesPager(int sinceDays, int length) {
         
+        dependencies.add(CacheDependencies.SITE_ENTRIES);
+        
         String pagerUrl;
         
         if (feedRequest != null) {
@@ -175,6 +187,8 @@ public class SiteModel implements Model {
      */   
     public Pager<WeblogEntryWrapper> getWeblogEntriesPager(WeblogWrapper queryWeblog, User user, String cat, int sinceDays, int length) {
         
+        dependencies.add(CacheDependencies.weblog(queryWeblog.getId()));
+        
         String pagerUrl;
         if (feedRequest != null) {
             pagerUrl = urlStrategy.getWeblogFeedURL(weblog, 
@@ -206,6 +220,8 @@ public class SiteModel implements Model {
      */
     public Pager<WeblogEntryCommentWrapper> getCommentsPager(int sinceDays, int length) {
         
+        dependencies.add(CacheDependencies.SITE_COMMENTS);
+        
         String pagerUrl;
         if (feedRequest != null) {
             pagerUrl = urlStrategy.getWeblogFeedURL(weblog, 
@@ -231,6 +247,8 @@ public class SiteModel implements Model {
     /* Get pager of users whose names begin with specified letter */
     public Pager<UserWrapper> getUsersByLetterPager(String letter, int sinceDays, int length) {
         
+        dependencies.add(CacheDependencies.SITE_DIRECTORY);
+        
         String pagerUrl;
         if (feedRequest != null) {
             pagerUrl = urlStrategy.getWeblogFeedURL(weblog, 
@@ -260,6 +278,8 @@ public class SiteModel implements Model {
     /** Get pager of weblogs whose handles begin with specified letter */
     public Pager<WeblogWrapper> getWeblogsByLetterPager(String letter, int sinceDays, int length) {
         
+        dependencies.add(CacheDependencies.SITE_DIRECTORY);
+        
         String pagerUrl = urlStrategy.getWeblogPageURL(weblog, 
                 weblogRequest.getLocale(), pageLink, 
                 null, null, null, null, 0, false);
@@ -286,6 +306,7 @@ public class SiteModel implements Model {
      * names start with each letter.
      */
     public Map<String, Long> getUserNameLetterMap() {
+        dependencies.add(CacheDependencies.SITE_DIRECTORY);
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
             UserManager umgr = roller.getUserManager();
@@ -303,6 +324,7 @@ public class SiteModel implements Model {
      * names start with each letter.
      */
     public Map<String, Long> getWeblogHandleLetterMap() {
+        dependencies.add(CacheDependencies.SITE_DIRECTORY);
         try {
             return WebloggerFactory.getWeblogger().getWeblogManager().getWeblogHandleLetterMap();
         } catch (Exception e) {
@@ -316,6 +338,7 @@ public class SiteModel implements Model {
      * Return list of weblogs that user belongs to.
      */
     public List<WeblogWrapper> getUsersWeblogs(String userName) {
+        dependencies.add(CacheDependencies.SITE_DIRECTORY);
         List<WeblogWrapper> results = new ArrayList<>();
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -336,6 +359,7 @@ public class SiteModel implements Model {
      * Return list of users that belong to website.
      */
     public List<UserWrapper> getWeblogsUsers(String handle) {
+        dependencies.add(CacheDependencies.SITE_DIRECTORY);
         List<UserWrapper> results = new ArrayList<>();
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -355,6 +379,7 @@ public class SiteModel implements Model {
     
     /** Get User object by username */
     public UserWrapper getUser(String username) {
+        dependencies.add(CacheDependencies.SITE_DIRECTORY);
         UserWrapper wrappedUser = null;
         try {            
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -373,6 +398,9 @@ public class SiteModel implements Model {
         WeblogWrapper wrappedWebsite = null;
         try {            
             Weblog website = WebloggerFactory.getWeblogger().getWeblogManager().getWeblogByHandle(handle);
+            if (website != null) {
+                dependencies.add(CacheDependencies.weblog(website));
+            }
             wrappedWebsite = WeblogWrapper.wrap(website, urlStrategy);
         } catch (Exception e) {
             log.error("ERROR: fetching users by letter", e);
@@ -390,6 +418,7 @@ public class SiteModel implements Model {
      * @param len      Max number of results to return
      */
     public List<WeblogWrapper> getNewWeblogs(int sinceDays, int length) {
+        dependencies.add(CacheDependencies.SITE_DIRECTORY);
         List<WeblogWrapper> results = new ArrayList<>();
         Date startDate = JPAWeblogEntryManagerImpl.getStartDateNow(sinceDays);
         try {            
@@ -411,6 +440,7 @@ public class SiteModel implements Model {
      * @param len      Max number of results to return
      */
     public List<UserWrapper> getNewUsers(int sinceDays, int length) {
+        dependencies.add(CacheDependencies.SITE_DIRECTORY);
         List<UserWrapper> results = new ArrayList<>();
         try {            
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -432,6 +462,7 @@ public class SiteModel implements Model {
      * @param length      Max number of results to return
      */
     public List<StatCount> getHotWeblogs(int sinceDays, int length) {
+        dependencies.add(CacheDependencies.SITE_DIRECTORY);
         
         List<StatCount> results = new ArrayList<>();
         try {
@@ -464,6 +495,7 @@ public class SiteModel implements Model {
      * @param length   Max number of results to return
      */
     public List<StatCount> getMostCommentedWeblogs(int sinceDays , int length) {
+        dependencies.add(CacheDependencies.SITE_COMMENTS);
         Date startDate = JPAWeblogEntryManagerImpl.getStartDateNow(sinceDays);
         try {
             return WebloggerFactory.getWeblogger().getWeblogManager().getMostCommentedWeblogs(
@@ -483,6 +515,7 @@ public class SiteModel implements Model {
      * @param length      Max number of results to return
      */
     public List<StatCount> getMostCommentedWeblogEntries(List<String> cats, int sinceDays, int length) {
+        dependencies.add(CacheDependencies.SITE_COMMENTS);
         Date startDate = JPAWeblogEntryManagerImpl.getStartDateNow(sinceDays);
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -500,6 +533,7 @@ public class SiteModel implements Model {
      * @param length    Max number of results to return
      */
     public List<WeblogEntryWrapper> getPinnedWeblogEntries(int length) {
+        dependencies.add(CacheDependencies.SITE_ENTRIES);
         List<WeblogEntryWrapper> results = new ArrayList<>();
         try {            
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -521,6 +555,7 @@ public class SiteModel implements Model {
      * @return
      */
     public List<TagStat> getPopularTags(int sinceDays, int length) {
+        dependencies.add(CacheDependencies.SITE_TAGS);
         Date startDate = null;
         if(sinceDays > 0) {
             Calendar cal = Calendar.getInstance();
@@ -541,6 +576,7 @@ public class SiteModel implements Model {
     
     
     public long getCommentCount() {
+        dependencies.add(CacheDependencies.SITE_COMMENTS);
         long count = 0;
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -554,6 +590,7 @@ public class SiteModel implements Model {
     
     
     public long getEntryCount() {
+        dependencies.add(CacheDependencies.SITE_ENTRIES);
         long count = 0;
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -567,6 +604,7 @@ public class SiteModel implements Model {
     
     
     public long getWeblogCount() {
+        dependencies.add(CacheDependencies.SITE_DIRECTORY);
         long count = 0;
         try {
             count = WebloggerFactory.getWeblogger().getWeblogManager().getWeblogCount();            
@@ -578,6 +616,7 @@ public class SiteModel implements Model {
     
     
     public long getUserCount() {
+        dependencies.add(CacheDependencies.SITE_DIRECTORY);
         long count = 0;
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -23,11 +23,16 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
+import org.apache.roller.weblogger.pojos.PageCursor;
 import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
 import org.apache.roller.util.DateUtil;
 import org.apache.roller.weblogger.business.URLStrategy;
 import org.apache.roller.weblogger.util.I18nMessages;
@@ -60,6 +65,16 @@ public abstract class AbstractWeblogEntriesPager implements WeblogEntriesPager {
     
     final List<String> tags;
     
+    // last entry of the previous page, seeked to instead of using the offset
+    final PageCursor cursor;
+    
+    // last entry of this page when there are more, for the next link
+    private PageCursor nextCursor = null;
+    
+    // what weblog pages display of each entry, loaded for the whole page
+    static final Set<WeblogEntrySearchCriteria.Fetch> FETCH_PLAN =
+            EnumSet.allOf(WeblogEntrySearchCriteria.Fetch.class);
+    
     
     public AbstractWeblogEntriesPager(
             URLStrategy        strat,
@@ -71,6 +86,21 @@ public abstract class AbstractWeblogEntriesPager implements WeblogEntriesPager {
             String             catName,
             List<String>       tags,
             int                page) {
+        this(strat, weblog, locale, pageLink, entryAnchor, dateString, catName, tags, page, null);
+    }
+    
+    
+    public AbstractWeblogEntriesPager(
+            URLStrategy        strat,
+            Weblog             weblog,
+            String             locale,
+            String             pageLink,
+            String             entryAnchor,
+            String             dateString,
+            String             catName,
+            List<String>       tags,
+            int                page,
+            String             cursor) {
         
         this.urlStrategy = strat;
         
@@ -82,6 +112,7 @@ public abstract class AbstractWeblogEntriesPager implements WeblogEntriesPager {
         this.catName = catName;
         
         this.tags = tags != null ? tags : Collections.emptyList();
+        this.cursor = PageCursor.parse(cursor);
         
         // make sure offset, length, and page are valid
         int maxLength = WebloggerRuntimeConfig.getIntProperty("site.pages.maxEntries");
@@ -111,6 +142,14 @@ public abstract class AbstractWeblogEntriesPager implements WeblogEntriesPager {
     }
     
     
+    /**
+     * Remember the last entry shown on this page, the next page starts after it.
+     */
+    void setLastEntry(WeblogEntry entry) {
+        nextCursor = new PageCursor(entry.getPubTime(), entry.getId());
+    }
+    
+    
     @Override
     public String getHomeLink() {
         return createURL(0, 0, weblog, locale, pageLink, entryAnchor, dateString, catName, tags);
@@ -234,6 +273,8 @@ public abstract class AbstractWeblogEntriesPager implements WeblogEntriesPager {
     
     /**
      * Create URL that encodes pager state using most appropriate forms of URL.
+     * The URL of the next page includes the cursor of the last entry on this
+     * page, if there is one.
      * @param pageAdd To be added to page number, or 0 for no page number
      */
     protected String createURL(
@@ -250,12 +291,22 @@ public abstract class AbstractWeblogEntriesPager implements WeblogEntriesPager {
         int pageNum = page + pageAdd;
         
         if (pageLink != null) {
-            return urlStrategy.getWeblogPageURL(website, locale, pageLink, entryAnchor, catName, dateString, tags, pageNum, false);
+            String url = urlStrategy.getWeblogPageURL(website, locale, pageLink, entryAnchor, catName, dateString, tags, pageNum, false);
+            return pageAdd == 1 ? appendCursor(url) : url;
         } else if (entryAnchor != null) {
             return urlStrategy.getWeblogEntryURL(website, locale, entryAnchor, true);
         }
         
-        return urlStrategy.getWeblogCollectionURL(website, locale, catName, dateString, tags, pageNum, false);
+        String url = urlStrategy.getWeblogCollectionURL(website, locale, catName, dateString, tags, pageNum, false);
+        return pageAdd == 1 ? appendCursor(url) : url;
+    }
+    
+    
+    private String appendCursor(String url) {
+        if (nextCursor == null) {
+            return url;
+        }
+        return url + (url.indexOf('?') == -1 ? '?' : '&') + "cursor=" + nextCursor.encode();
     }
     
 }
@@ -67,9 +67,10 @@ public class WeblogEntriesDayPager extends AbstractWeblogEntriesPager {
             String             dateString,
             String             catName,
             List<String>       tags,
-            int                page) {
+            int                page,
+            String             cursor) {
         
-        super(strat, weblog, locale, pageLink, entryAnchor, dateString, catName, tags, page);
+        super(strat, weblog, locale, pageLink, entryAnchor, dateString, catName, tags, page, cursor);
 
         TimeZone tz = weblog.getTimeZoneInstance();
 
@@ -127,7 +128,9 @@ public class WeblogEntriesDayPager extends AbstractWeblogEntriesPager {
                 wesc.setStatus(WeblogEntry.PubStatus.PUBLISHED);
                 wesc.setLocale(locale);
                 wesc.setOffset(offset);
+                wesc.setCursor(cursor);
                 wesc.setMaxResults(length+1);
+                wesc.setFetch(FETCH_PLAN);
                 Map<Date, List<WeblogEntry>> mmap =
                         WebloggerFactory.getWeblogger().getWeblogEntryManager().getWeblogEntryObjectMap(wesc);
 
@@ -140,6 +143,7 @@ public class WeblogEntriesDayPager extends AbstractWeblogEntriesPager {
                     for (int i=0; i < unwrapped.size(); i++) {
                         if (count++ < length) {
                             wrapped.add(i,WeblogEntryWrapper.wrap(unwrapped.get(i), urlStrategy));
+                            setLastEntry(unwrapped.get(i));
                         } else {
                             more = true;
                         }
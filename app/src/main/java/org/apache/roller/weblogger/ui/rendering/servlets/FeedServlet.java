@@ -38,13 +38,17 @@ import org.apache.roller.weblogger.pojos.StaticTemplate;
 import org.apache.roller.weblogger.pojos.Template;
 import org.apache.roller.weblogger.pojos.TemplateRendition.TemplateLanguage;
 import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.ui.rendering.util.ContentEncodingUtil;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogFeedRequest;
 import org.apache.roller.weblogger.util.cache.CachedContent;
+import org.apache.roller.weblogger.util.cache.LazyExpiringCacheEntry;
+import org.apache.roller.weblogger.util.cache.SingleFlight;
 import org.apache.roller.weblogger.ui.rendering.Renderer;
 import org.apache.roller.weblogger.ui.rendering.RendererManager;
 import org.apache.roller.weblogger.ui.rendering.mobile.MobileDeviceRepository;
 import org.apache.roller.weblogger.ui.rendering.model.ModelLoader;
 import org.apache.roller.weblogger.ui.rendering.model.SearchResultsFeedModel;
+import org.apache.roller.weblogger.ui.rendering.util.cache.CacheDependencies;
 import org.apache.roller.weblogger.ui.rendering.util.cache.SiteWideCache;
 import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogFeedCache;
 import org.apache.roller.weblogger.ui.rendering.util.ModDateHeaderUtil;
@@ -121,8 +125,23 @@ public class FeedServlet extends HttpServlet {
             lastModified = weblog.getLastModified().getTime();
         }
 
-        // Respond with 304 Not Modified if it is not modified.
-        if (ModDateHeaderUtil.respondIfNotModified(request, response,
+        // generate cache key
+        String cacheKey;
+        if (isSiteWide) {
+            cacheKey = siteWideCache.generateKey(feedRequest);
+        } else {
+            cacheKey = weblogFeedCache.generateKey(feedRequest);
+        }
+
+        // Respond with 304 Not Modified if it is not modified, by the ETag
+        // of the cached content if the client sent one, otherwise by date.
+        String eTag;
+        if (isSiteWide) {
+            eTag = siteWideCache.getETag(cacheKey);
+        } else {
+            eTag = weblogFeedCache.getETag(cacheKey, lastModified);
+        }
+        if (ModDateHeaderUtil.respondIfNotModified(request, response, eTag,
                 lastModified, feedRequest.getDeviceType())) {
             return;
         }
@@ -149,14 +168,6 @@ public class FeedServlet extends HttpServlet {
             response.setContentType("application/atom+xml; charset=utf-8");
         }
 
-        // generate cache key
-        String cacheKey;
-        if (isSiteWide) {
-            cacheKey = siteWideCache.generateKey(feedRequest);
-        } else {
-            cacheKey = weblogFeedCache.generateKey(feedRequest);
-        }
-
         // cached content checking
         CachedContent cachedContent;
         if (isSiteWide) {
@@ -166,17 +177,68 @@ public class FeedServlet extends HttpServlet {
                     lastModified);
         }
 
+        // if someone else is already rendering this content then use the
+        // stale content if we may, or wait for theirs
+        SingleFlight.Ticket ticket = null;
+        LazyExpiringCacheEntry staleEntry = null;
+        if (cachedContent == null) {
+            if (isSiteWide) {
+                ticket = siteWideCache.startRender(cacheKey);
+            } else {
+                ticket = weblogFeedCache.startRender(cacheKey);
+            }
+
+            if (ticket != null && !ticket.isLeader()) {
+                if (!isSiteWide) {
+                    staleEntry = weblogFeedCache.getStale(cacheKey,
+                            lastModified);
+                }
+                if (staleEntry != null) {
+                    cachedContent = (CachedContent) staleEntry.getCachedValue();
+                } else {
+                    log.debug("WAITING " + cacheKey);
+                    cachedContent = (CachedContent) ticket.await();
+                }
+                // if that didn't work out we render it ourselves
+                ticket = null;
+            }
+        }
+
         if (cachedContent != null) {
             log.debug("HIT " + cacheKey);
 
-            response.setContentLength(cachedContent.getContent().length);
-            response.getOutputStream().write(cachedContent.getContent());
+            // stale content must not carry validators of the fresh content
+            if (staleEntry != null) {
+                ModDateHeaderUtil.setStaleLastModifiedHeader(response,
+                        staleEntry.getTimeCached(), lastModified);
+            }
+
+            ContentEncodingUtil.writeContent(request, response, cachedContent,
+                    staleEntry == null);
             return;
 
         } else {
             log.debug("MISS " + cacheKey);
         }
 
+        try {
+            renderFeed(request, response, feedRequest, weblog, isSiteWide,
+                    cacheKey);
+        } finally {
+            if (ticket != null) {
+                ticket.release();
+            }
+        }
+    }
+
+    /**
+     * Render a feed which wasn't found in the cache and cache the result.
+     */
+    private void renderFeed(HttpServletRequest request,
+            HttpServletResponse response,
+            WeblogFeedRequest feedRequest, Weblog weblog, boolean isSiteWide,
+            String cacheKey) throws ServletException, IOException {
+
         // validation. make sure that request input makes sense.
         boolean invalid = false;
         if (feedRequest.getLocale() != null
@@ -218,6 +280,11 @@ public class FeedServlet extends HttpServlet {
 
         // looks like we need to render content
         HashMap<String, Object> model = new HashMap<>();
+
+        // track what site-wide content depends on
+        CacheDependencies dependencies = new CacheDependencies();
+        dependencies.add(CacheDependencies.weblog(weblog));
+
         String pageId;
         try {
             // determine what template to render with
@@ -243,6 +310,7 @@ public class FeedServlet extends HttpServlet {
             // populate the rendering model
             Map<String, Object> initData = new HashMap<>();
             initData.put("parsedRequest", feedRequest);
+            initData.put(CacheDependencies.INIT_DATA_KEY, dependencies);
 
             // define url strategy
             initData.put("urlStrategy", WebloggerFactory.getWeblogger()
@@ -266,6 +334,7 @@ public class FeedServlet extends HttpServlet {
                     && feedRequest.getTerm() != null) {
                 ModelLoader.loadModels(SearchResultsFeedModel.class.getName(),
                         model, initData, true);
+                dependencies.add(CacheDependencies.SITE_ENTRIES);
             }
 
         } catch (WebloggerException ex) {
@@ -326,19 +395,21 @@ public class FeedServlet extends HttpServlet {
 
         // post rendering process
 
-        // flush rendered content to response
-        log.debug("Flushing response output");
-        response.setContentLength(rendererOutput.getContent().length);
-        response.getOutputStream().write(rendererOutput.getContent());
-
-        // cache rendered content. only cache if user is not logged in?
+        // cache rendered content first, which compresses it if it may
         log.debug("PUT " + cacheKey);
         if (isSiteWide) {
-            siteWideCache.put(cacheKey, rendererOutput);
+            siteWideCache.put(cacheKey, rendererOutput,
+                    dependencies.getDependencies());
         } else {
             weblogFeedCache.put(cacheKey, rendererOutput);
         }
 
+        // flush rendered content to response
+        log.debug("Flushing response output");
+        ContentEncodingUtil.writeContent(request, response, rendererOutput,
+                isSiteWide ? siteWideCache.isEnabled()
+                        : weblogFeedCache.isEnabled());
+
         log.debug("Exiting");
     }
 
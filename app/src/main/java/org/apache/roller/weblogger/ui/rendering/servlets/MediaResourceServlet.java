@@ -19,8 +19,7 @@
 package org.apache.roller.weblogger.ui.rendering.servlets;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.file.Files;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -30,14 +29,17 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.business.FileContentManager;
 import org.apache.roller.weblogger.business.MediaFileManager;
 import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.pojos.FileContent;
 import org.apache.roller.weblogger.pojos.MediaFile;
 import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.ui.rendering.util.FileResponseUtil;
 import org.apache.roller.weblogger.ui.rendering.util.ModDateHeaderUtil;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogMediaResourceRequest;
+import org.apache.roller.weblogger.ui.rendering.util.cache.ThumbnailCache;
 
 /**
  * Serves media files uploaded by users.
@@ -45,11 +47,16 @@ import org.apache.roller.weblogger.ui.rendering.util.WeblogMediaResourceRequest;
  * Since we keep resources in a location outside of the webapp context we need a
  * way to serve them up. This servlet assumes that resources are stored on a
  * filesystem in the "uploads.dir" directory.
+ * 
+ * Range requests are supported so that clients can seek in audio and video
+ * files without downloading them again.
  */
 public class MediaResourceServlet extends HttpServlet {
 
     private static Log log = LogFactory.getLog(MediaResourceServlet.class);
 
+    private final ThumbnailCache thumbnailCache = ThumbnailCache.getInstance();
+
     @Override
     public void init(ServletConfig config) throws ServletException {
 
@@ -67,6 +74,8 @@ public class MediaResourceServlet extends HttpServlet {
 
         MediaFileManager mfMgr = WebloggerFactory.getWeblogger()
                 .getMediaFileManager();
+        FileContentManager cmgr = WebloggerFactory.getWeblogger()
+                .getFileContentManager();
 
         Weblog weblog;
 
@@ -88,14 +97,24 @@ public class MediaResourceServlet extends HttpServlet {
             return;
         }
 
+        // thumbnails are only made in the configured sizes
+        if (resourceRequest.isThumbnail()
+                && !mfMgr.isThumbnailSize(resourceRequest.getThumbnailSize())) {
+            log.debug("invalid thumbnail size "
+                    + resourceRequest.getThumbnailSize());
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
         long resourceLastMod;
-        InputStream resourceStream = null;
         MediaFile mediaFile;
+        FileContent content;
 
         try {
-            mediaFile = mfMgr.getMediaFile(resourceRequest.getResourceId(),
-                    true);
+            mediaFile = mfMgr.getMediaFile(resourceRequest.getResourceId());
             resourceLastMod = mediaFile.getLastModified();
+            content = cmgr.getFileContent(mediaFile.getWeblog(),
+                    mediaFile.getId());
 
         } catch (Exception ex) {
             // still not found? then we don't have it, 404.
@@ -104,59 +123,75 @@ public class MediaResourceServlet extends HttpServlet {
             return;
         }
 
-        // Respond with 304 Not Modified if it is not modified.
-        if (ModDateHeaderUtil.respondIfNotModified(request, response,
+        // Respond with 304 Not Modified if it is not modified.  Thumbnails
+        // are generated from the file, so its ETag does for them as well.
+        String eTag = ModDateHeaderUtil.getFileETag(resourceLastMod,
+                mediaFile.getLength());
+        if (ModDateHeaderUtil.respondIfNotModified(request, response, eTag,
                 resourceLastMod, resourceRequest.getDeviceType())) {
             return;
         } else {
-            // set last-modified date
+            // set last-modified date and ETag
             ModDateHeaderUtil.setLastModifiedHeader(response, resourceLastMod,
                     resourceRequest.getDeviceType());
+            response.setHeader("ETag", eTag);
         }
 
-        // set the content type based on whatever is in our web.xml mime defs
+        // small thumbnails are served from memory
+        byte[] thumbnail = null;
+        boolean thumbnailFile = false;
         if (resourceRequest.isThumbnail()) {
-            response.setContentType("image/png");
-            try {
-                resourceStream = mediaFile.getThumbnailInputStream();
-            } catch (Exception e) {
-                if (log.isDebugEnabled()) {
-                    log.debug(
-                            "ERROR loading thumbnail for " + mediaFile.getId(),
-                            e);
-                } else {
-                    log.warn("ERROR loading thumbnail for " + mediaFile.getId());
+            int size = resourceRequest.getThumbnailSize();
+            thumbnail = thumbnailCache.get(mediaFile.getId(), size,
+                    resourceLastMod);
+            if (thumbnail == null) {
+                try {
+                    // made right now if it was not made yet
+                    FileContent thumbnailContent = mfMgr.getThumbnailContent(
+                            mediaFile, size);
+                    if (thumbnailCache.isCacheable(thumbnailContent.getLength())) {
+                        thumbnail = Files.readAllBytes(
+                                thumbnailContent.getFile().toPath());
+                        thumbnailCache.put(mediaFile.getId(), size, thumbnail);
+                    } else {
+                        content = thumbnailContent;
+                        thumbnailFile = true;
+                    }
+                } catch (Exception e) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("ERROR loading thumbnail for "
+                                + mediaFile.getId(), e);
+                    } else {
+                        log.warn("ERROR loading thumbnail for "
+                                + mediaFile.getId());
+                    }
                 }
             }
         }
 
-        if (resourceStream == null) {
+        // set the content type based on whatever is in our web.xml mime defs
+        if (thumbnail != null || thumbnailFile) {
+            response.setContentType("image/png");
+        } else {
             response.setContentType(mediaFile.getContentType());
-            resourceStream = mediaFile.getInputStream();
         }
 
-        OutputStream out;
         try {
-            // ok, lets serve up the file
-            byte[] buf = new byte[RollerConstants.EIGHT_KB_IN_BYTES];
-            int length;
-            out = response.getOutputStream();
-            while ((length = resourceStream.read(buf)) > 0) {
-                out.write(buf, 0, length);
+            // ok, lets serve up the file, or the parts asked for
+            if (thumbnail != null) {
+                FileResponseUtil.sendBytes(request, response, thumbnail, eTag,
+                        resourceLastMod);
+            } else {
+                FileResponseUtil.sendFile(request, response,
+                        content.getFile(), eTag, resourceLastMod);
             }
 
-            // close output stream
-            out.close();
-
         } catch (Exception ex) {
             log.error("ERROR", ex);
             if (!response.isCommitted()) {
                 response.reset();
                 response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             }
-        } finally {
-            // make sure stream to resource file is closed
-            resourceStream.close();
         }
 
     }
@@ -43,15 +43,20 @@ import org.apache.roller.weblogger.ui.core.RollerContext;
 import org.apache.roller.weblogger.ui.rendering.Renderer;
 import org.apache.roller.weblogger.ui.rendering.RendererManager;
 import org.apache.roller.weblogger.ui.rendering.model.ModelLoader;
+import org.apache.roller.weblogger.ui.rendering.util.ContentEncodingUtil;
 import org.apache.roller.weblogger.ui.rendering.util.InvalidRequestException;
 import org.apache.roller.weblogger.ui.rendering.util.ModDateHeaderUtil;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogEntryCommentForm;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
+import org.apache.roller.weblogger.ui.rendering.util.cache.CacheDependencies;
 import org.apache.roller.weblogger.ui.rendering.util.cache.SiteWideCache;
 import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogPageCache;
+import org.apache.roller.weblogger.ui.rendering.velocity.RollerResourceCache;
 import org.apache.roller.weblogger.util.BannedwordslistChecker;
 import org.apache.roller.weblogger.util.I18nMessages;
 import org.apache.roller.weblogger.util.cache.CachedContent;
+import org.apache.roller.weblogger.util.cache.LazyExpiringCacheEntry;
+import org.apache.roller.weblogger.util.cache.SingleFlight;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -185,11 +190,27 @@ public class PageServlet extends HttpServlet {
             lastModified = weblog.getLastModified().getTime();
         }
 
-        // 304 Not Modified handling.
+        // generate cache key
+        String cacheKey;
+        if (isSiteWide) {
+            cacheKey = siteWideCache.generateKey(pageRequest);
+        } else {
+            cacheKey = weblogPageCache.generateKey(pageRequest);
+        }
+
+        // 304 Not Modified handling, by the ETag of the cached content if
+        // the client sent one, otherwise by date.
         // We skip this for logged in users to avoid the scenerio where a user
         // views their weblog, logs in, then gets a 304 without the 'edit' links
         if (!pageRequest.isLoggedIn()) {
-            if (ModDateHeaderUtil.respondIfNotModified(request, response,
+            String eTag;
+            if (isSiteWide) {
+                eTag = siteWideCache.getETag(cacheKey);
+            } else {
+                eTag = weblogPageCache.getETag(cacheKey, lastModified);
+            }
+
+            if (ModDateHeaderUtil.respondIfNotModified(request, response, eTag,
                     lastModified, pageRequest.getDeviceType())) {
                 return;
             } else {
@@ -199,14 +220,6 @@ public class PageServlet extends HttpServlet {
             }
         }
 
-        // generate cache key
-        String cacheKey;
-        if (isSiteWide) {
-            cacheKey = siteWideCache.generateKey(pageRequest);
-        } else {
-            cacheKey = weblogPageCache.generateKey(pageRequest);
-        }
-
         // Development only. Reload if theme has been modified
         if (themeReload
                 && !weblog.getEditorTheme().equals(WeblogTheme.CUSTOM)
@@ -224,6 +237,7 @@ public class PageServlet extends HttpServlet {
                     } else {
                         weblogPageCache.clear();
                     }
+                    RollerResourceCache.invalidateTheme(weblog.getEditorTheme());
                     I18nMessages.reloadBundle(weblog.getLocaleInstance());
                 }
 
@@ -233,6 +247,8 @@ public class PageServlet extends HttpServlet {
         }
 
         // cached content checking
+        SingleFlight.Ticket ticket = null;
+        LazyExpiringCacheEntry staleEntry = null;
         if ((!this.excludeOwnerPages || !pageRequest.isLoggedIn())
                 && request.getAttribute("skipCache") == null
                 && request.getParameter("skipCache") == null) {
@@ -245,6 +261,32 @@ public class PageServlet extends HttpServlet {
                         lastModified);
             }
 
+            // if someone else is already rendering this content then use
+            // the stale content if we may, or wait for theirs
+            if (cachedContent == null) {
+                if (isSiteWide) {
+                    ticket = siteWideCache.startRender(cacheKey);
+                } else {
+                    ticket = weblogPageCache.startRender(cacheKey);
+                }
+
+                if (ticket != null && !ticket.isLeader()) {
+                    if (!isSiteWide) {
+                        staleEntry = weblogPageCache.getStale(cacheKey,
+                                lastModified);
+                    }
+                    if (staleEntry != null) {
+                        cachedContent = (CachedContent) staleEntry
+                                .getCachedValue();
+                    } else {
+                        log.debug("WAITING " + cacheKey);
+                        cachedContent = (CachedContent) ticket.await();
+                    }
+                    // if that didn't work out we render it ourselves
+                    ticket = null;
+                }
+            }
+
             if (cachedContent != null) {
                 log.debug("HIT " + cacheKey);
 
@@ -255,15 +297,39 @@ public class PageServlet extends HttpServlet {
                     this.processHit(weblog);
                 }
 
-                response.setContentLength(cachedContent.getContent().length);
+                // stale content must not carry validators of the fresh content
+                if (staleEntry != null && !pageRequest.isLoggedIn()) {
+                    ModDateHeaderUtil.setStaleLastModifiedHeader(response,
+                            staleEntry.getTimeCached(), lastModified);
+                }
+
                 response.setContentType(cachedContent.getContentType());
-                response.getOutputStream().write(cachedContent.getContent());
+                ContentEncodingUtil.writeContent(request, response,
+                        cachedContent, staleEntry == null);
                 return;
             } else {
                 log.debug("MISS " + cacheKey);
             }
         }
 
+        try {
+            renderPage(request, response, pageRequest, weblog, isSiteWide,
+                    cacheKey);
+        } finally {
+            if (ticket != null) {
+                ticket.release();
+            }
+        }
+    }
+
+    /**
+     * Render a page which wasn't found in the cache and cache the result.
+     */
+    private void renderPage(HttpServletRequest request,
+            HttpServletResponse response, WeblogPageRequest pageRequest,
+            Weblog weblog, boolean isSiteWide, String cacheKey)
+            throws ServletException, IOException {
+
         log.debug("Looking for template to use for rendering");
 
         // figure out what template to use
@@ -440,6 +506,11 @@ public class PageServlet extends HttpServlet {
         }
 
         HashMap<String, Object> model = new HashMap<>();
+
+        // track what site-wide content depends on
+        CacheDependencies dependencies = new CacheDependencies();
+        dependencies.add(CacheDependencies.weblog(weblog));
+
         try {
             PageContext pageContext = JspFactory.getDefaultFactory()
                     .getPageContext(this, request, response, "", false,
@@ -453,6 +524,7 @@ public class PageServlet extends HttpServlet {
             initData.put("requestParameters", request.getParameterMap());
             initData.put("parsedRequest", pageRequest);
             initData.put("pageContext", pageContext);
+            initData.put(CacheDependencies.INIT_DATA_KEY, dependencies);
 
             // define url strategy
             initData.put("urlStrategy", WebloggerFactory.getWeblogger()
@@ -525,27 +597,32 @@ public class PageServlet extends HttpServlet {
         }
 
         // post rendering process
-        // flush rendered content to response
-        log.debug("Flushing response output");
-        response.setContentType(contentType);
-        response.setContentLength(rendererOutput.getContent().length);
-        response.getOutputStream().write(rendererOutput.getContent());
-
-        // cache rendered content. only cache if user is not logged in?
+        // cache rendered content first, which compresses it if it may
+        // only cache if user is not logged in?
+        boolean cached = false;
         if ((!this.excludeOwnerPages || !pageRequest.isLoggedIn())
                 && request.getAttribute("skipCache") == null) {
             log.debug("PUT " + cacheKey);
 
             // put it in the right cache
             if (isSiteWide) {
-                siteWideCache.put(cacheKey, rendererOutput);
+                siteWideCache.put(cacheKey, rendererOutput,
+                        dependencies.getDependencies());
+                cached = siteWideCache.isEnabled();
             } else {
                 weblogPageCache.put(cacheKey, rendererOutput);
+                cached = weblogPageCache.isEnabled();
             }
         } else {
             log.debug("SKIPPED " + cacheKey);
         }
 
+        // flush rendered content to response
+        log.debug("Flushing response output");
+        response.setContentType(contentType);
+        ContentEncodingUtil.writeContent(request, response, rendererOutput,
+                cached);
+
         log.debug("Exiting");
     }
 
@@ -46,6 +46,7 @@ import org.apache.roller.weblogger.ui.rendering.mobile.MobileDeviceRepository.De
 import org.apache.roller.weblogger.ui.rendering.model.UtilitiesModel;
 import org.apache.roller.weblogger.ui.rendering.util.cache.PlanetCache;
 import org.apache.roller.weblogger.ui.rendering.util.PlanetRequest;
+import org.apache.roller.weblogger.ui.rendering.util.ContentEncodingUtil;
 import org.apache.roller.weblogger.ui.rendering.util.ModDateHeaderUtil;
 import org.apache.roller.weblogger.util.cache.CachedContent;
 
@@ -95,9 +96,15 @@ public class PlanetFeedServlet extends HttpServlet {
         // figure planet last modified date
         Date lastModified = planetCache.getLastModified();
 
-        // Respond with 304 Not Modified if it is not modified.
+        // generate cache key
+        String cacheKey = PlanetCache.CACHE_ID + ":"
+                + this.generateKey(planetRequest);
+
+        // Respond with 304 Not Modified if it is not modified, by the ETag
+        // of the cached content if the client sent one, otherwise by date.
         if (ModDateHeaderUtil.respondIfNotModified(request, response,
-                lastModified.getTime(), planetRequest.getDeviceType())) {
+                planetCache.getETag(cacheKey), lastModified.getTime(),
+                planetRequest.getDeviceType())) {
             return;
         }
 
@@ -120,12 +127,9 @@ public class PlanetFeedServlet extends HttpServlet {
                 lastModified.getTime(), planetRequest.getDeviceType());
 
         // cached content checking
-        String cacheKey = PlanetCache.CACHE_ID + ":"
-                + this.generateKey(planetRequest);
         CachedContent entry = (CachedContent) planetCache.get(cacheKey);
         if (entry != null) {
-            response.setContentLength(entry.getContent().length);
-            response.getOutputStream().write(entry.getContent());
+            ContentEncodingUtil.writeContent(request, response, entry, true);
             return;
         }
 
@@ -236,8 +240,8 @@ public class PlanetFeedServlet extends HttpServlet {
         // post rendering process
         // flush rendered content to response
         log.debug("Flushing response output");
-        response.setContentLength(rendererOutput.getContent().length);
-        response.getOutputStream().write(rendererOutput.getContent());
+        ContentEncodingUtil.writeContent(request, response, rendererOutput,
+                planetCache.isEnabled());
 
         // cache rendered content.
         this.planetCache.put(cacheKey, rendererOutput);
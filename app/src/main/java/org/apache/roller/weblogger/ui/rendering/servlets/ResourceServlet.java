@@ -37,6 +37,7 @@ import org.apache.roller.weblogger.pojos.MediaFile;
 import org.apache.roller.weblogger.pojos.ThemeResource;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogTheme;
+import org.apache.roller.weblogger.ui.rendering.util.FileResponseUtil;
 import org.apache.roller.weblogger.ui.rendering.util.ModDateHeaderUtil;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogResourceRequest;
 
@@ -99,6 +100,7 @@ public class ResourceServlet extends HttpServlet {
                 + "]");
 
         long resourceLastMod = 0;
+        long resourceLength = 0;
         InputStream resourceStream = null;
 
         // first see if resource comes from weblog's shared theme
@@ -109,6 +111,7 @@ public class ResourceServlet extends HttpServlet {
                         .getResource(resourceRequest.getResourcePath());
                 if (resource != null) {
                     resourceLastMod = resource.getLastModified();
+                    resourceLength = resource.getLength();
                     resourceStream = resource.getInputStream();
                 }
             }
@@ -132,6 +135,7 @@ public class ResourceServlet extends HttpServlet {
                 MediaFile mf = mmgr.getMediaFileByOriginalPath(weblog,
                         resourceRequest.getResourcePath());
                 resourceLastMod = mf.getLastModified();
+                resourceLength = mf.getLength();
                 resourceStream = mf.getInputStream();
 
             } catch (Exception ex) {
@@ -149,13 +153,17 @@ public class ResourceServlet extends HttpServlet {
         }
 
         // Respond with 304 Not Modified if it is not modified.
-        if (ModDateHeaderUtil.respondIfNotModified(request, response,
+        String eTag = ModDateHeaderUtil.getFileETag(resourceLastMod,
+                resourceLength);
+        if (ModDateHeaderUtil.respondIfNotModified(request, response, eTag,
                 resourceLastMod, resourceRequest.getDeviceType())) {
+            resourceStream.close();
             return;
         } else {
-            // set last-modified date
+            // set last-modified date and ETag
             ModDateHeaderUtil.setLastModifiedHeader(response, resourceLastMod,
                     resourceRequest.getDeviceType());
+            response.setHeader("ETag", eTag);
         }
 
         // set the content type based on whatever is in our web.xml mime defs
@@ -163,17 +171,16 @@ public class ResourceServlet extends HttpServlet {
                 .getResourcePath()));
 
         try {
-            // ok, lets serve up the file
-            resourceStream.transferTo(response.getOutputStream());
+            // ok, lets serve up the file, or the parts asked for.  this also
+            // makes sure stream to resource file is closed
+            FileResponseUtil.sendStream(request, response, resourceStream,
+                    resourceLength, eTag, resourceLastMod);
 
         } catch (IOException ex) {
             if (!response.isCommitted()) {
                 response.reset();
             }
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-        } finally {
-            // make sure stream to resource file is closed
-            resourceStream.close();
         }
 
     }
@@ -48,6 +48,7 @@ import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogSearchRequest;
 import org.apache.roller.weblogger.ui.rendering.util.cache.SiteWideCache;
 import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogPageCache;
+import org.apache.roller.weblogger.ui.rendering.velocity.RollerResourceCache;
 import org.apache.roller.weblogger.util.I18nMessages;
 import org.apache.roller.weblogger.util.cache.CachedContent;
 
@@ -122,6 +123,7 @@ public class SearchServlet extends HttpServlet {
                     } else {
                         WeblogPageCache.getInstance().clear();
                     }
+                    RollerResourceCache.invalidateTheme(weblog.getEditorTheme());
                     I18nMessages.reloadBundle(weblog.getLocaleInstance());
                 }
 
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util;
+
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.util.cache.CachedContent;
+
+
+/**
+ * Utility class to write cached content in the content encoding the client
+ * asked for, along with the ETag of that variant.
+ */
+public final class ContentEncodingUtil {
+
+    private static final Log log = LogFactory.getLog(ContentEncodingUtil.class);
+
+    private ContentEncodingUtil() {
+    }
+
+
+    /**
+     * Write the given content to the response, using its gzip compressed
+     * copy if it has one and the request accepts gzip.
+     *
+     * Content with a compressed copy is sent with Vary: Accept-Encoding so
+     * that shared caches keep the two variants apart, and the compressed
+     * variant gets its own ETag as strong ETags must differ between them.
+     *
+     * @param sendETag whether to send the ETag of the content, which is
+     *        only worth it if the content is cached, as ETags are checked
+     *        against the ETags of cached content.  Otherwise clients keep
+     *        using Last-Modified.
+     */
+    public static void writeContent(HttpServletRequest request,
+            HttpServletResponse response, CachedContent content,
+            boolean sendETag) throws IOException {
+
+        String eTag = sendETag ? content.getETag() : null;
+
+        if (!content.hasCompressed()) {
+            setETagHeader(response, eTag);
+            response.setContentLength(content.getContentLength());
+            content.writeTo(response.getOutputStream());
+            return;
+        }
+
+        response.addHeader("Vary", "Accept-Encoding");
+
+        if (acceptsGzip(request.getHeader("Accept-Encoding"))) {
+            log.debug("GZIP " + request.getRequestURI());
+            response.setHeader("Content-Encoding", "gzip");
+            setETagHeader(response, gzipETag(eTag));
+            response.setContentLength(content.getCompressedLength());
+            content.writeCompressedTo(response.getOutputStream());
+        } else {
+            setETagHeader(response, eTag);
+            response.setContentLength(content.getContentLength());
+            content.writeTo(response.getOutputStream());
+        }
+    }
+
+
+    private static void setETagHeader(HttpServletResponse response, String eTag) {
+        if (eTag != null) {
+            response.setHeader("ETag", eTag);
+        }
+    }
+
+
+    /**
+     * The ETag of the gzip compressed variant of content with the given
+     * quoted ETag.
+     */
+    public static String gzipETag(String eTag) {
+        if (eTag == null) {
+            return null;
+        }
+        return eTag.substring(0, eTag.length() - 1) + "-gzip\"";
+    }
+
+
+    /**
+     * Whether an Accept-Encoding header value accepts gzip, either by name or
+     * through "*", with a quality above 0.
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        Boolean gzip = null;
+        Boolean any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] params = coding.split(";");
+            String name = params[0].trim().toLowerCase();
+            boolean accepted = quality(params) > 0;
+            if ("gzip".equals(name) || "x-gzip".equals(name)) {
+                gzip = accepted;
+            } else if ("*".equals(name)) {
+                any = accepted;
+            }
+        }
+
+        // an explicit gzip;q=0 wins over *
+        if (gzip != null) {
+            return gzip;
+        }
+        return any != null && any;
+    }
+
+
+    private static float quality(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            if (param.startsWith("q=") || param.startsWith("Q=")) {
+                try {
+                    return Float.parseFloat(param.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    // a broken quality does not accept anything
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+}
@@ -0,0 +1,506 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestWrapper;
+import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+
+/**
+ * Utility class to send files and other static content, honoring HTTP range
+ * requests.
+ *
+ * Files are handed to the container to send when it supports sendfile, so
+ * that they are not copied through the java heap, also when the request was
+ * forwarded here as media resource requests are.  Otherwise they are copied
+ * from their FileChannel to the response stream, which goes through a heap
+ * buffer like any stream does.
+ *
+ * A Range header asking for one range gets a plain 206 response, more than
+ * one get a multipart/byteranges response, and an If-Range header which does
+ * not match the current ETag or last modified date gets the whole file.
+ */
+public final class FileResponseUtil {
+
+    private static final Log log = LogFactory.getLog(FileResponseUtil.class);
+
+    // more ranges than this in one request are ignored
+    private static final int MAX_RANGES = 16;
+
+    // smaller files are not worth handing to the container's sendfile
+    private static final long MIN_SENDFILE_LENGTH = 48 * 1024L;
+
+    // request attributes of Tomcat's sendfile support
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // the unwrapped request and response of Tomcat, only a response which
+    // isn't wrapped by a filter is sure to be written by the container
+    private static final String TOMCAT_REQUEST = "org.apache.catalina.connector.RequestFacade";
+    private static final String TOMCAT_RESPONSE = "org.apache.catalina.connector.ResponseFacade";
+
+    // Tomcat's wrapper of a forwarded response, which passes everything on
+    private static final String TOMCAT_FORWARD_RESPONSE = "org.apache.catalina.core.ApplicationHttpResponse";
+
+    private FileResponseUtil() {
+    }
+
+
+    /**
+     * Send a file, or the requested ranges of it.  The content type and any
+     * other headers should be set before calling this.
+     *
+     * @param eTag the quoted strong ETag of the file, matched against If-Range
+     * @param lastModified last modified time of the file, matched against
+     *        If-Range dates
+     */
+    public static void sendFile(HttpServletRequest request,
+            HttpServletResponse response, File file, String eTag,
+            long lastModified) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            send(request, response, new ChannelBody(channel, file), eTag,
+                    lastModified);
+        }
+    }
+
+
+    /**
+     * Send the content of a stream of the given length, or the requested
+     * ranges of it, and close the stream.  Streams from files are sent from
+     * their FileChannel.
+     *
+     * @see #sendFile
+     */
+    public static void sendStream(HttpServletRequest request,
+            HttpServletResponse response, InputStream stream, long length,
+            String eTag, long lastModified) throws IOException {
+
+        try (InputStream in = stream) {
+            Body body;
+            if (in instanceof FileInputStream) {
+                body = new ChannelBody(((FileInputStream) in).getChannel(), null);
+            } else {
+                body = new StreamBody(in, length);
+            }
+            send(request, response, body, eTag, lastModified);
+        }
+    }
+
+
+    /**
+     * Send content held in memory, or the requested ranges of it.
+     *
+     * @see #sendFile
+     */
+    public static void sendBytes(HttpServletRequest request,
+            HttpServletResponse response, byte[] bytes, String eTag,
+            long lastModified) throws IOException {
+
+        send(request, response, new BytesBody(bytes), eTag, lastModified);
+    }
+
+
+    private static void send(HttpServletRequest request,
+            HttpServletResponse response, Body body, String eTag,
+            long lastModified) throws IOException {
+
+        long length = body.length();
+        response.setHeader("Accept-Ranges", "bytes");
+
+        List<long[]> ranges = getRanges(request, length, eTag, lastModified);
+
+        if (ranges == null) {
+            response.setContentLengthLong(length);
+            write(request, response, body, 0, length);
+
+        } else if (ranges.isEmpty()) {
+            log.debug("UNSATISFIABLE " + request.getHeader("Range"));
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader("Content-Range", "bytes */" + length);
+            response.setContentLength(0);
+
+        } else if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", contentRange(range, length));
+            response.setContentLengthLong(range[1] - range[0] + 1);
+            write(request, response, body, range[0], range[1] - range[0] + 1);
+
+        } else {
+            sendMultipart(response, body, ranges, length);
+        }
+    }
+
+
+    private static void sendMultipart(HttpServletResponse response, Body body,
+            List<long[]> ranges, long length) throws IOException {
+
+        String boundary = UUID.randomUUID().toString();
+        String partType = response.getContentType();
+
+        // work out the headers of each part first to get the content length
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (long[] range : ranges) {
+            StringBuilder header = new StringBuilder(128);
+            header.append("\r\n--").append(boundary).append("\r\n");
+            if (partType != null) {
+                header.append("Content-Type: ").append(partType).append("\r\n");
+            }
+            header.append("Content-Range: ").append(contentRange(range, length))
+                    .append("\r\n\r\n");
+
+            byte[] bytes = header.toString().getBytes(US_ASCII);
+            partHeaders.add(bytes);
+            contentLength += bytes.length + range[1] - range[0] + 1;
+        }
+        byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(US_ASCII);
+        contentLength += end.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+
+        OutputStream out = response.getOutputStream();
+        for (int i = 0; i < ranges.size(); i++) {
+            long[] range = ranges.get(i);
+            out.write(partHeaders.get(i));
+            body.writeTo(out, range[0], range[1] - range[0] + 1);
+        }
+        out.write(end);
+    }
+
+
+    private static void write(HttpServletRequest request,
+            HttpServletResponse response, Body body, long start, long count)
+            throws IOException {
+
+        // let the container send the file straight from the file system,
+        // as Tomcat's DefaultServlet does only if no filter wrapped the
+        // response, which could change what is written.  Wrapped requests
+        // can't, and forwarded ones always are, so they are unwrapped.
+        File file = body.getFile();
+        if (file != null && count >= MIN_SENDFILE_LENGTH
+                && "GET".equals(request.getMethod())
+                && request.getAttribute(RequestDispatcher.INCLUDE_REQUEST_URI) == null) {
+            ServletRequest containerRequest = request;
+            while (containerRequest instanceof ServletRequestWrapper) {
+                containerRequest = ((ServletRequestWrapper) containerRequest).getRequest();
+            }
+            ServletResponse containerResponse = response;
+            while (containerResponse instanceof ServletResponseWrapper
+                    && TOMCAT_FORWARD_RESPONSE.equals(containerResponse.getClass().getName())) {
+                containerResponse = ((ServletResponseWrapper) containerResponse).getResponse();
+            }
+            if (Boolean.TRUE.equals(containerRequest.getAttribute(SENDFILE_SUPPORTED))
+                    && TOMCAT_REQUEST.equals(containerRequest.getClass().getName())
+                    && TOMCAT_RESPONSE.equals(containerResponse.getClass().getName())) {
+                containerRequest.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+                containerRequest.setAttribute(SENDFILE_START, start);
+                containerRequest.setAttribute(SENDFILE_END, start + count);
+                return;
+            }
+        }
+
+        body.writeTo(response.getOutputStream(), start, count);
+    }
+
+
+    private static String contentRange(long[] range, long length) {
+        return "bytes " + range[0] + "-" + range[1] + "/" + length;
+    }
+
+
+    /**
+     * The byte ranges asked for, in ascending order with overlapping and
+     * adjacent ranges merged.  Null if the whole content should be sent, an
+     * empty list if none of the ranges can be satisfied.
+     */
+    private static List<long[]> getRanges(HttpServletRequest request,
+            long length, String eTag, long lastModified) {
+
+        String header = request.getHeader("Range");
+        if (header == null || !"GET".equals(request.getMethod())
+                || !ifRangeMatches(request, eTag, lastModified)) {
+            return null;
+        }
+        return parseRanges(header, length);
+    }
+
+
+    /**
+     * Parse a Range header for content of the given length.
+     *
+     * @see #getRanges
+     */
+    static List<long[]> parseRanges(String header, long length) {
+
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+
+        String[] specs = header.substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<long[]> ranges = new ArrayList<>();
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                // not a byte range spec, ignore the whole header
+                return null;
+            }
+
+            String firstPos = spec.substring(0, dash);
+            String lastPos = spec.substring(dash + 1);
+            long first = parse(firstPos);
+            long last = parse(lastPos);
+
+            if (firstPos.isEmpty()) {
+                // the last so many bytes
+                if (last < 0) {
+                    return null;
+                }
+                if (last > 0 && length > 0) {
+                    ranges.add(new long[] {Math.max(0, length - last), length - 1});
+                }
+            } else {
+                if (first < 0 || !lastPos.isEmpty() && (last < 0 || last < first)) {
+                    return null;
+                }
+                if (first < length) {
+                    long end = lastPos.isEmpty() ? length - 1 : Math.min(last, length - 1);
+                    ranges.add(new long[] {first, end});
+                }
+            }
+        }
+
+        // merge what overlaps, which also puts them in order for reading
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        List<long[]> merged = new ArrayList<>(ranges.size());
+        for (long[] range : ranges) {
+            long[] previous = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (previous != null && range[0] <= previous[1] + 1) {
+                previous[1] = Math.max(previous[1], range[1]);
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+
+    // a non negative number, or -1 if empty or not a number
+    private static long parse(String number) {
+        if (number.isEmpty() || number.length() > 18) {
+            return -1;
+        }
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+        }
+        return Long.parseLong(number);
+    }
+
+
+    /**
+     * Whether the content is still what an If-Range header asks about.
+     * ETags are compared strongly, dates must match the last modified date
+     * which was sent exactly.
+     */
+    private static boolean ifRangeMatches(HttpServletRequest request,
+            String eTag, long lastModified) {
+
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(eTag);
+        } else if (ifRange.startsWith("W/")) {
+            return false;
+        }
+
+        try {
+            long date = request.getDateHeader("If-Range");
+            return date == lastModified - lastModified % RollerConstants.SEC_IN_MS;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * Content to send, written in ranges of ascending position.
+     */
+    private interface Body {
+
+        long length() throws IOException;
+
+        void writeTo(OutputStream out, long position, long count) throws IOException;
+
+        /**
+         * The file holding the content, if the container may send it.
+         */
+        File getFile();
+    }
+
+
+    private static final class ChannelBody implements Body {
+
+        private final FileChannel channel;
+        private final File file;
+
+        private ChannelBody(FileChannel channel, File file) {
+            this.channel = channel;
+            this.file = file;
+        }
+
+        @Override
+        public long length() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public void writeTo(OutputStream out, long position, long count) throws IOException {
+            // not closed, that would close the response stream.  A stream
+            // isn't something the file can be transferred to directly, so
+            // this copies through a buffer on the heap
+            WritableByteChannel target = Channels.newChannel(out);
+            while (count > 0) {
+                long sent = channel.transferTo(position, count, target);
+                if (sent <= 0) {
+                    throw new EOFException("File shorter than expected");
+                }
+                position += sent;
+                count -= sent;
+            }
+        }
+
+        @Override
+        public File getFile() {
+            return file;
+        }
+    }
+
+
+    private static final class StreamBody implements Body {
+
+        private final InputStream in;
+        private final long length;
+        private long position = 0;
+
+        private StreamBody(InputStream in, long length) {
+            this.in = in;
+            this.length = length;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public void writeTo(OutputStream out, long start, long count) throws IOException {
+            while (position < start) {
+                long skipped = in.skip(start - position);
+                if (skipped <= 0) {
+                    throw new EOFException("Stream shorter than expected");
+                }
+                position += skipped;
+            }
+
+            byte[] buf = new byte[RollerConstants.EIGHT_KB_IN_BYTES];
+            while (count > 0) {
+                int read = in.read(buf, 0, (int) Math.min(buf.length, count));
+                if (read < 0) {
+                    throw new EOFException("Stream shorter than expected");
+                }
+                out.write(buf, 0, read);
+                position += read;
+                count -= read;
+            }
+        }
+
+        @Override
+        public File getFile() {
+            return null;
+        }
+    }
+
+
+    private static final class BytesBody implements Body {
+
+        private final byte[] bytes;
+
+        private BytesBody(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public long length() {
+            return bytes.length;
+        }
+
+        @Override
+        public void writeTo(OutputStream out, long position, long count) throws IOException {
+            out.write(bytes, (int) position, (int) count);
+        }
+
+        @Override
+        public File getFile() {
+            return null;
+        }
+    }
+
+}
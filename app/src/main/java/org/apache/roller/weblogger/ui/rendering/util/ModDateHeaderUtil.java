@@ -31,7 +31,8 @@ import org.apache.roller.util.DateUtil;
 import org.apache.roller.weblogger.ui.rendering.mobile.MobileDeviceRepository;
 
 /**
- * Utility class to localize the modification date header-related logic.
+ * Utility class to localize the modification date and ETag header-related
+ * logic.
  */
 public final class ModDateHeaderUtil {
 
@@ -120,6 +121,129 @@ public final class ModDateHeaderUtil {
 		}
 	}
 
+	/**
+	 * Sets the HTTP response status to 304 (NOT MODIFIED) if the request
+	 * contains an If-None-Match header listing the given ETag, the ETag of
+	 * its gzip compressed variant, or "*". Weak ETags in the header are
+	 * compared by their value. The matching ETag is sent back with the
+	 * response. Returns true if the response status was set, false if not.
+	 * 
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @param eTag
+	 *            the quoted strong ETag of the current content. Null if not
+	 *            known, in which case nothing matches.
+	 * 
+	 * @return true if a response status was sent, false otherwise.
+	 */
+	public static boolean respondIfNoneMatch(HttpServletRequest request,
+			HttpServletResponse response, String eTag) {
+
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (eTag == null || ifNoneMatch == null) {
+			return false;
+		}
+
+		String gzipETag = ContentEncodingUtil.gzipETag(eTag);
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.startsWith("W/")) {
+				candidate = candidate.substring(2);
+			}
+
+			if ("*".equals(candidate)) {
+				candidate = eTag;
+			} else if (!eTag.equals(candidate) && !gzipETag.equals(candidate)) {
+				continue;
+			}
+
+			if (log.isDebugEnabled()) {
+				log.debug("NOT MODIFIED " + request.getRequestURL() + " "
+						+ candidate);
+			}
+
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			response.setHeader("ETag", candidate);
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Sets the HTTP response status to 304 (NOT MODIFIED) if the content is
+	 * not modified. As RFC 7232 section 3.3 requires, a request with an
+	 * If-None-Match header is answered by its ETags alone, and its
+	 * If-Modified-Since header is only used if it has none. Returns true if
+	 * the response status was set, false if not.
+	 * 
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @param eTag
+	 *            the quoted strong ETag of the current content. Null if not
+	 *            known, in which case no ETag matches.
+	 * @param lastModifiedTimeMillis
+	 *            the last modified time millis
+	 * @param deviceType
+	 *            the device type. Null to ignore ie no theme device type
+	 *            swithing check.
+	 * 
+	 * @return true if a response status was sent, false otherwise.
+	 */
+	public static boolean respondIfNotModified(HttpServletRequest request,
+			HttpServletResponse response, String eTag,
+			long lastModifiedTimeMillis,
+			MobileDeviceRepository.DeviceType deviceType) {
+
+		if (request.getHeader("If-None-Match") != null) {
+			return respondIfNoneMatch(request, response, eTag);
+		}
+		return respondIfNotModified(request, response, lastModifiedTimeMillis,
+				deviceType);
+	}
+
+	/**
+	 * A strong ETag for a file from its last modified time and length, as
+	 * common web servers use, which saves reading the file to hash it.
+	 * 
+	 * @param lastModifiedTimeMillis
+	 *            the last modified time millis
+	 * @param length
+	 *            the length of the file in bytes
+	 * 
+	 * @return the quoted ETag
+	 */
+	public static String getFileETag(long lastModifiedTimeMillis, long length) {
+		return "\"" + Long.toHexString(lastModifiedTimeMillis) + "-"
+				+ Long.toHexString(length) + "\"";
+	}
+
+	/**
+	 * Set the Last-Modified header of content served stale while it is
+	 * re-rendered, which was cached before the change at lastModifiedTimeMillis.
+	 * The content gets its own time, and at least a second less than the change
+	 * as the header has second granularity, so that clients revalidating by
+	 * date get the fresh content rather than a 304 for the stale one.  Stale
+	 * content must also be sent without its ETag.
+	 * 
+	 * @param response
+	 *            the response
+	 * @param staleTimeMillis
+	 *            when the stale content was cached
+	 * @param lastModifiedTimeMillis
+	 *            the last modified time millis of the fresh content
+	 */
+	public static void setStaleLastModifiedHeader(HttpServletResponse response,
+			long staleTimeMillis, long lastModifiedTimeMillis) {
+
+		response.setDateHeader("Last-Modified", Math.min(staleTimeMillis,
+				lastModifiedTimeMillis - RollerConstants.SEC_IN_MS));
+	}
+
 	/**
 	 * Set the Last-Modified header using the given time in milliseconds. Note
 	 * that because the header has the granularity of one second, the value will
@@ -21,6 +21,7 @@ package org.apache.roller.weblogger.ui.rendering.util;
 import javax.servlet.http.HttpServletRequest;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.business.MediaFileManager;
 
 
 /**
@@ -36,6 +37,8 @@ public class WeblogMediaResourceRequest extends WeblogRequest {
     private String resourceId = null;
 
     private boolean thumbnail = false;
+
+    private int thumbnailSize = MediaFileManager.MAX_WIDTH;
     
     
     public WeblogMediaResourceRequest() {}
@@ -76,6 +79,14 @@ public class WeblogMediaResourceRequest extends WeblogRequest {
         if (request.getParameter("t") != null && "true".equals(request.getParameter("t"))) {
             thumbnail = true;
         }
+
+        if (request.getParameter("s") != null) {
+            try {
+                thumbnailSize = Integer.parseInt(request.getParameter("s"));
+            } catch (NumberFormatException e) {
+                // ignored, bad input
+            }
+        }
         
         if(log.isDebugEnabled()) {
             log.debug("resourceId = "+this.resourceId);
@@ -110,4 +121,18 @@ public class WeblogMediaResourceRequest extends WeblogRequest {
     public void setThumbnail(boolean thumbnail) {
         this.thumbnail = thumbnail;
     }
+
+    /**
+     * @return the size of the square the thumbnail has to fit into
+     */
+    public int getThumbnailSize() {
+        return thumbnailSize;
+    }
+
+    /**
+     * @param thumbnailSize the thumbnail size to set
+     */
+    public void setThumbnailSize(int thumbnailSize) {
+        this.thumbnailSize = thumbnailSize;
+    }
 }
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.roller.weblogger.pojos.Weblog;
+
+
+/**
+ * Collects what a piece of rendered content was built from.
+ *
+ * An instance is handed to the rendering models through their init data
+ * under the INIT_DATA_KEY, the models record the data they read and the
+ * servlet then stores the rendered content along with those dependencies so
+ * that the cache can later invalidate it selectively.
+ */
+public final class CacheDependencies {
+
+    // the key used to pass an instance to models via their init data
+    public static final String INIT_DATA_KEY = "cacheDependencies";
+
+    // depends on everything, used for content stored without dependencies
+    public static final String ALL = "*";
+
+    // site-wide lists of recent or pinned entries, searches and entry counts
+    public static final String SITE_ENTRIES = "site:entries";
+
+    // site-wide lists of recent or most commented comments and comment counts
+    public static final String SITE_COMMENTS = "site:comments";
+
+    // site-wide tag clouds
+    public static final String SITE_TAGS = "site:tags";
+
+    // site-wide user and weblog directories, lists and counts
+    public static final String SITE_DIRECTORY = "site:directory";
+
+    private final Set<String> dependencies = new HashSet<>();
+
+
+    public static String weblog(String weblogId) {
+        return "weblog:" + weblogId;
+    }
+
+
+    public static String weblog(Weblog weblog) {
+        return weblog(weblog.getId());
+    }
+
+
+    public void add(String dependency) {
+        dependencies.add(dependency);
+    }
+
+
+    public Set<String> getDependencies() {
+        return Collections.unmodifiableSet(dependencies);
+    }
+
+}
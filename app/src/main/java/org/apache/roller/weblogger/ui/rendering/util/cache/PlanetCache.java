@@ -29,6 +29,8 @@ import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.ui.rendering.util.PlanetRequest;
 import org.apache.roller.weblogger.util.cache.Cache;
 import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.CachedContent;
+import org.apache.roller.weblogger.util.cache.ETagIndex;
 import org.apache.roller.weblogger.util.cache.ExpiringCacheEntry;
 
 
@@ -47,6 +49,9 @@ public final class PlanetCache {
     private boolean cacheEnabled = true;
     private Cache contentCache = null;
     
+    // ETags of cached content, for answering conditional requests
+    private ETagIndex eTags = null;
+    
     // keep a cached version of last expired time
     private ExpiringCacheEntry lastUpdateTime = null;
     private long timeout = RollerConstants.FIFTEEN_MIN_IN_MS;
@@ -76,6 +81,7 @@ public final class PlanetCache {
         
         if (cacheEnabled) {
             contentCache = CacheManager.constructCache(null, cacheProps);
+            eTags = ETagIndex.forCache(cacheProps);
         } else {
             log.warn("Caching has been DISABLED");
         }
@@ -96,6 +102,11 @@ public final class PlanetCache {
     }
     
     
+    public boolean isEnabled() {
+        return cacheEnabled;
+    }
+    
+    
     public Object get(String key) {
         
         if (!cacheEnabled) {
@@ -114,6 +125,20 @@ public final class PlanetCache {
     }
     
     
+    /**
+     * Get the ETag of the content cached under a key without fetching the
+     * content.
+     */
+    public String getETag(String key) {
+        
+        if (!cacheEnabled) {
+            return null;
+        }
+        
+        return eTags.get(key, 0);
+    }
+    
+    
     public void put(String key, Object value) {
         
         if (!cacheEnabled) {
@@ -121,6 +146,7 @@ public final class PlanetCache {
         }
         
         contentCache.put(key, value);
+        eTags.put(key, value instanceof CachedContent ? ((CachedContent) value).getETag() : null);
         log.debug("PUT "+key);
     }
     
@@ -132,6 +158,7 @@ public final class PlanetCache {
         }
         
         contentCache.remove(key);
+        eTags.remove(key);
         log.debug("REMOVE "+key);
     }
     
@@ -143,6 +170,7 @@ public final class PlanetCache {
         }
         
         contentCache.clear();
+        eTags.clear();
         this.lastUpdateTime = null;
         log.debug("CLEAR");
     }
@@ -21,10 +21,14 @@ package org.apache.roller.weblogger.ui.rendering.util.cache;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
@@ -44,11 +48,20 @@ import org.apache.roller.weblogger.util.Utilities;
 import org.apache.roller.weblogger.util.cache.Cache;
 import org.apache.roller.weblogger.util.cache.CacheHandler;
 import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.CachedContent;
+import org.apache.roller.weblogger.util.cache.DependencyIndex;
+import org.apache.roller.weblogger.util.cache.ETagIndex;
 import org.apache.roller.weblogger.util.cache.ExpiringCacheEntry;
+import org.apache.roller.weblogger.util.cache.SingleFlight;
 
 
 /**
  * Cache for site-wide weblog content.
+ *
+ * Content is stored along with the set of things it was rendered from, as
+ * recorded by CacheDependencies, so that a change only invalidates the
+ * content which actually depends on it.  Content stored without any
+ * dependencies is treated as depending on everything.
  */
 public final class SiteWideCache implements CacheHandler {
     
@@ -62,6 +75,22 @@ public final class SiteWideCache implements CacheHandler {
     private boolean cacheEnabled = true;
     private Cache contentCache = null;
     
+    // ETags of cached content, for answering conditional requests
+    private ETagIndex eTags = null;
+    
+    // move cached content out of the java heap?
+    private boolean offHeap = false;
+    
+    // keep a gzip compressed copy of cached content?
+    private boolean compress = true;
+    
+    // track what cached content depends on, or just clear it all on changes?
+    private boolean trackDependencies = true;
+    private DependencyIndex dependencies = null;
+    
+    // coalesce concurrent renders of the same content, null if disabled
+    private SingleFlight renders = null;
+    
     // keep a cached version of last expired time
     private ExpiringCacheEntry lastUpdateTime = null;
 
@@ -72,6 +101,14 @@ public final class SiteWideCache implements CacheHandler {
     private SiteWideCache() {
         
         cacheEnabled = WebloggerConfig.getBooleanProperty(CACHE_ID+".enabled");
+        offHeap = WebloggerConfig.getBooleanProperty(CACHE_ID+".offHeap");
+        compress = WebloggerConfig.getBooleanProperty(CACHE_ID+".compress", true);
+        trackDependencies = WebloggerConfig.getBooleanProperty(CACHE_ID+".trackDependencies", true);
+        
+        if (WebloggerConfig.getBooleanProperty(CACHE_ID+".singleFlight", true)) {
+            renders = new SingleFlight(WebloggerConfig.getIntProperty(
+                    CACHE_ID+".singleFlightWait", 10) * RollerConstants.SEC_IN_MS);
+        }
         
         Map<String, String> cacheProps = new HashMap<>();
         cacheProps.put("id", CACHE_ID);
@@ -91,6 +128,8 @@ public final class SiteWideCache implements CacheHandler {
         
         if(cacheEnabled) {
             contentCache = CacheManager.constructCache(this, cacheProps);
+            eTags = ETagIndex.forCache(cacheProps);
+            dependencies = DependencyIndex.forCache(cacheProps);
         } else {
             log.warn("Caching has been DISABLED");
         }
@@ -102,6 +141,11 @@ public final class SiteWideCache implements CacheHandler {
     }
     
     
+    public boolean isEnabled() {
+        return cacheEnabled;
+    }
+    
+    
     public Object get(String key) {
         
         if (!cacheEnabled) {
@@ -120,14 +164,78 @@ public final class SiteWideCache implements CacheHandler {
     }
     
     
+    /**
+     * Get the ETag of the content cached under a key without fetching the
+     * content.
+     */
+    public String getETag(String key) {
+        
+        if (!cacheEnabled) {
+            return null;
+        }
+        
+        return eTags.get(key, 0);
+    }
+    
+    
+    /**
+     * Start rendering content for a key.
+     *
+     * Returns null if renders are not coalesced, otherwise a ticket which
+     * tells if the caller should render or wait for someone else.  Putting
+     * the content hands it to everyone waiting, leaders must release() their
+     * ticket whether they managed to render or not.
+     *
+     * Invalidated site-wide content is removed right away, so unlike the
+     * weblog caches there is never any stale content to serve meanwhile.
+     */
+    public SingleFlight.Ticket startRender(String key) {
+        
+        if (!cacheEnabled || renders == null) {
+            return null;
+        }
+        
+        return renders.start(key);
+    }
+    
+    
     public void put(String key, Object value) {
+        put(key, value, Collections.singleton(CacheDependencies.ALL));
+    }
+    
+    
+    /**
+     * Store content along with the dependencies it was rendered from.
+     */
+    public void put(String key, Object value, Collection<String> dependsOn) {
         
         if (!cacheEnabled) {
             return;
         }
         
+        if (compress && value instanceof CachedContent) {
+            ((CachedContent) value).compress();
+        }
+        
+        if (offHeap && value instanceof CachedContent) {
+            ((CachedContent) value).moveOffHeap();
+        }
+        
+        if (trackDependencies) {
+            if (dependencies.isFull()) {
+                log.debug("too many tracked keys, clearing cache");
+                clear();
+            }
+            dependencies.put(key, dependsOn);
+        }
+        
         contentCache.put(key, value);
-        log.debug("PUT "+key);
+        eTags.put(key, value instanceof CachedContent ? ((CachedContent) value).getETag() : null);
+        log.debug("PUT "+key+" "+dependsOn);
+        
+        if (renders != null) {
+            renders.complete(key, value);
+        }
     }
 
     
@@ -138,6 +246,8 @@ public final class SiteWideCache implements CacheHandler {
         }
         
         contentCache.remove(key);
+        eTags.remove(key);
+        dependencies.remove(key);
         log.debug("REMOVE "+key);
     }
     
@@ -149,6 +259,8 @@ public final class SiteWideCache implements CacheHandler {
         }
         
         contentCache.clear();
+        eTags.clear();
+        dependencies.clear();
         this.lastUpdateTime = null;
         log.debug("CLEAR");
     }
@@ -234,6 +346,9 @@ public final class SiteWideCache implements CacheHandler {
         // add page number when applicable
         if(pageRequest.getWeblogAnchor() == null) {
             key.append("/page=").append(pageRequest.getPageNum());
+            if (pageRequest.getCursor() != null) {
+                key.append("/cursor=").append(pageRequest.getCursor());
+            }
         }
         
         // add login state
@@ -311,12 +426,17 @@ public final class SiteWideCache implements CacheHandler {
     @Override
     public void invalidate(WeblogEntry entry) {
         
-        if (!cacheEnabled) {
-            return;
+        Set<String> changed = new HashSet<>();
+        changed.add(CacheDependencies.weblog(entry.getWebsite()));
+        
+        // an entry which was never published can't be in any site-wide list
+        if (entry.getPubTime() != null) {
+            changed.add(CacheDependencies.SITE_ENTRIES);
+            changed.add(CacheDependencies.SITE_COMMENTS);
+            changed.add(CacheDependencies.SITE_TAGS);
         }
         
-        this.contentCache.clear();
-        this.lastUpdateTime = null;
+        invalidate(changed);
     }
     
     
@@ -325,13 +445,12 @@ public final class SiteWideCache implements CacheHandler {
      */
     @Override
     public void invalidate(Weblog website) {
-        
-        if (!cacheEnabled) {
-            return;
-        }
-        
-        this.contentCache.clear();
-        this.lastUpdateTime = null;
+        invalidate(Arrays.asList(
+                CacheDependencies.weblog(website),
+                CacheDependencies.SITE_ENTRIES,
+                CacheDependencies.SITE_COMMENTS,
+                CacheDependencies.SITE_TAGS,
+                CacheDependencies.SITE_DIRECTORY));
     }
     
     
@@ -341,7 +460,7 @@ public final class SiteWideCache implements CacheHandler {
     @Override
     public void invalidate(WeblogBookmark bookmark) {
         if(WebloggerRuntimeConfig.isSiteWideWeblog(bookmark.getWebsite().getHandle())) {
-            invalidate(bookmark.getWebsite());
+            invalidate(Collections.singleton(CacheDependencies.weblog(bookmark.getWebsite())));
         }
     }
     
@@ -352,7 +471,7 @@ public final class SiteWideCache implements CacheHandler {
     @Override
     public void invalidate(WeblogBookmarkFolder folder) {
         if(WebloggerRuntimeConfig.isSiteWideWeblog(folder.getWeblog().getHandle())) {
-            invalidate(folder.getWeblog());
+            invalidate(Collections.singleton(CacheDependencies.weblog(folder.getWeblog())));
         }
     }
     
@@ -362,9 +481,9 @@ public final class SiteWideCache implements CacheHandler {
      */
     @Override
     public void invalidate(WeblogEntryComment comment) {
-        if(WebloggerRuntimeConfig.isSiteWideWeblog(comment.getWeblogEntry().getWebsite().getHandle())) {
-            invalidate(comment.getWeblogEntry().getWebsite());
-        }
+        invalidate(Arrays.asList(
+                CacheDependencies.weblog(comment.getWeblogEntry().getWebsite()),
+                CacheDependencies.SITE_COMMENTS));
     }
     
     
@@ -373,7 +492,7 @@ public final class SiteWideCache implements CacheHandler {
      */
     @Override
     public void invalidate(User user) {
-        // ignored
+        invalidate(Collections.singleton(CacheDependencies.SITE_DIRECTORY));
     }
     
     
@@ -383,7 +502,7 @@ public final class SiteWideCache implements CacheHandler {
     @Override
     public void invalidate(WeblogCategory category) {
         if(WebloggerRuntimeConfig.isSiteWideWeblog(category.getWeblog().getHandle())) {
-            invalidate(category.getWeblog());
+            invalidate(Collections.singleton(CacheDependencies.weblog(category.getWeblog())));
         }
     }
     
@@ -394,8 +513,36 @@ public final class SiteWideCache implements CacheHandler {
     @Override
     public void invalidate(WeblogTemplate template) {
         if(WebloggerRuntimeConfig.isSiteWideWeblog(template.getWeblog().getHandle())) {
-            invalidate(template.getWeblog());
+            invalidate(Collections.singleton(CacheDependencies.weblog(template.getWeblog())));
+        }
+    }
+    
+    
+    /**
+     * Remove all content which depends on any of the changed things.
+     */
+    private void invalidate(Collection<String> changed) {
+        
+        if (!cacheEnabled) {
+            return;
         }
+        
+        if (!trackDependencies) {
+            this.contentCache.clear();
+            this.eTags.clear();
+        } else {
+            Set<String> changedAll = new HashSet<>(changed);
+            changedAll.add(CacheDependencies.ALL);
+            
+            Set<String> keys = dependencies.removeDependents(changedAll);
+            for (String key : keys) {
+                this.contentCache.remove(key);
+                this.eTags.remove(key);
+            }
+            log.debug("INVALIDATE "+changed+" removed "+keys.size()+" entries");
+        }
+        
+        this.lastUpdateTime = null;
     }
     
     
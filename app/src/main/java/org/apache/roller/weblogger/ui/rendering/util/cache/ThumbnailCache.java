@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.LazyExpiringCacheEntry;
+
+
+/**
+ * Cache for media file thumbnails.
+ *
+ * Thumbnails show up all over a weblog, so small ones are kept in memory and
+ * served without reading them from disk.  They are cached by media file id
+ * and thumbnail size and are stale once their media file is updated.
+ */
+public final class ThumbnailCache {
+
+    private static final Log log = LogFactory.getLog(ThumbnailCache.class);
+
+    // a unique identifier for this cache, this is used as the prefix for
+    // roller config properties that apply to this cache
+    public static final String CACHE_ID = "cache.thumbnail";
+
+    // keep cached content
+    private boolean cacheEnabled = true;
+    private Cache contentCache = null;
+
+    // thumbnails bigger than this are read from disk
+    private int maxEntryBytes = 65536;
+
+    // reference to our singleton instance
+    private static final ThumbnailCache singletonInstance = new ThumbnailCache();
+
+
+    private ThumbnailCache() {
+
+        cacheEnabled = WebloggerConfig.getBooleanProperty(CACHE_ID+".enabled");
+        maxEntryBytes = WebloggerConfig.getIntProperty(CACHE_ID+".maxEntryBytes", maxEntryBytes);
+
+        Map<String, String> cacheProps = new HashMap<>();
+        cacheProps.put("id", CACHE_ID);
+        Enumeration<Object> allProps = WebloggerConfig.keys();
+        String prop;
+        while(allProps.hasMoreElements()) {
+            prop = (String) allProps.nextElement();
+
+            // we are only interested in props for this cache
+            if(prop.startsWith(CACHE_ID+".")) {
+                cacheProps.put(prop.substring(CACHE_ID.length()+1),
+                        WebloggerConfig.getProperty(prop));
+            }
+        }
+
+        log.info(cacheProps);
+
+        if(cacheEnabled) {
+            contentCache = CacheManager.constructCache(null, cacheProps);
+        } else {
+            log.warn("Caching has been DISABLED");
+        }
+    }
+
+
+    public static ThumbnailCache getInstance() {
+        return singletonInstance;
+    }
+
+
+    /**
+     * Whether a thumbnail of the given length would be cached.
+     */
+    public boolean isCacheable(long length) {
+        return cacheEnabled && length <= maxEntryBytes;
+    }
+
+
+    /**
+     * Get the thumbnail of a media file, unless the media file was modified
+     * after it was cached.
+     */
+    public byte[] get(String mediaFileId, int size, long lastModified) {
+
+        if (!cacheEnabled) {
+            return null;
+        }
+
+        byte[] entry = null;
+
+        String key = generateKey(mediaFileId, size);
+        LazyExpiringCacheEntry lazyEntry = (LazyExpiringCacheEntry) this.contentCache.get(key);
+        if(lazyEntry != null) {
+            entry = (byte[]) lazyEntry.getValue(lastModified);
+
+            if(entry != null) {
+                log.debug("HIT "+key);
+            } else {
+                log.debug("HIT-EXPIRED "+key);
+            }
+
+        } else {
+            log.debug("MISS "+key);
+        }
+
+        return entry;
+    }
+
+
+    public void put(String mediaFileId, int size, byte[] thumbnail) {
+
+        if (!isCacheable(thumbnail.length)) {
+            return;
+        }
+
+        String key = generateKey(mediaFileId, size);
+        contentCache.put(key, new LazyExpiringCacheEntry(thumbnail));
+        log.debug("PUT "+key);
+    }
+
+
+    public void remove(String mediaFileId, int size) {
+
+        if (!cacheEnabled) {
+            return;
+        }
+
+        String key = generateKey(mediaFileId, size);
+        contentCache.remove(key);
+        log.debug("REMOVE "+key);
+    }
+
+
+    public void clear() {
+
+        if (!cacheEnabled) {
+            return;
+        }
+
+        contentCache.clear();
+        log.debug("CLEAR");
+    }
+
+
+    private static String generateKey(String mediaFileId, int size) {
+        return mediaFileId + ":" + size;
+    }
+
+}
@@ -26,12 +26,16 @@ import java.util.HashMap;
 import java.util.Map;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
 import org.apache.roller.weblogger.util.Utilities;
 import org.apache.roller.weblogger.util.cache.Cache;
 import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.CachedContent;
+import org.apache.roller.weblogger.util.cache.ETagIndex;
 import org.apache.roller.weblogger.util.cache.LazyExpiringCacheEntry;
+import org.apache.roller.weblogger.util.cache.SingleFlight;
 
 
 /**
@@ -49,6 +53,21 @@ public final class WeblogPageCache {
     private boolean cacheEnabled = true;
     private Cache contentCache = null;
     
+    // ETags of cached content, for answering conditional requests
+    private ETagIndex eTags = null;
+    
+    // move cached content out of the java heap?
+    private boolean offHeap = false;
+    
+    // keep a gzip compressed copy of cached content?
+    private boolean compress = true;
+    
+    // coalesce concurrent renders of the same content, null if disabled
+    private SingleFlight renders = null;
+    
+    // how long invalidated content may be served while it is re-rendered
+    private long staleMillis = 0;
+    
     // reference to our singleton instance
     private static final WeblogPageCache singletonInstance = new WeblogPageCache();
     
@@ -56,6 +75,15 @@ public final class WeblogPageCache {
     private WeblogPageCache() {
         
         cacheEnabled = WebloggerConfig.getBooleanProperty(CACHE_ID+".enabled");
+        offHeap = WebloggerConfig.getBooleanProperty(CACHE_ID+".offHeap");
+        compress = WebloggerConfig.getBooleanProperty(CACHE_ID+".compress", true);
+        
+        if (WebloggerConfig.getBooleanProperty(CACHE_ID+".singleFlight", true)) {
+            renders = new SingleFlight(WebloggerConfig.getIntProperty(
+                    CACHE_ID+".singleFlightWait", 10) * RollerConstants.SEC_IN_MS);
+        }
+        staleMillis = WebloggerConfig.getIntProperty(
+                CACHE_ID+".staleWhileRevalidate", 0) * RollerConstants.SEC_IN_MS;
         
         Map<String, String> cacheProps = new HashMap<>();
         cacheProps.put("id", CACHE_ID);
@@ -75,6 +103,7 @@ public final class WeblogPageCache {
         
         if (cacheEnabled) {
             contentCache = CacheManager.constructCache(null, cacheProps);
+            eTags = ETagIndex.forCache(cacheProps);
         } else {
             log.warn("Caching has been DISABLED");
         }
@@ -86,6 +115,11 @@ public final class WeblogPageCache {
     }
     
     
+    public boolean isEnabled() {
+        return cacheEnabled;
+    }
+    
+    
     public Object get(String key, long lastModified) {
         
         if (!cacheEnabled) {
@@ -112,14 +146,80 @@ public final class WeblogPageCache {
     }
     
     
+    /**
+     * Get the ETag of the content cached under a key, if that content is
+     * still fresh, without fetching the content.
+     */
+    public String getETag(String key, long lastModified) {
+        
+        if (!cacheEnabled) {
+            return null;
+        }
+        
+        return eTags.get(key, lastModified);
+    }
+    
+    
+    /**
+     * Get the entry of content which has been invalidated, but not for longer
+     * than the staleWhileRevalidate period, for serving while it is
+     * re-rendered.  Its time cached tells how old the content is.
+     */
+    public LazyExpiringCacheEntry getStale(String key, long lastModified) {
+        
+        if (!cacheEnabled || staleMillis <= 0) {
+            return null;
+        }
+        
+        LazyExpiringCacheEntry lazyEntry = (LazyExpiringCacheEntry) this.contentCache.get(key);
+        if(lazyEntry != null && lazyEntry.getStaleValue(lastModified, staleMillis) != null) {
+            log.debug("HIT-STALE "+key);
+            return lazyEntry;
+        }
+        
+        return null;
+    }
+    
+    
+    /**
+     * Start rendering content for a key.
+     *
+     * Returns null if renders are not coalesced, otherwise a ticket which
+     * tells if the caller should render or wait for someone else.  Putting
+     * the content hands it to everyone waiting, leaders must release() their
+     * ticket whether they managed to render or not.
+     */
+    public SingleFlight.Ticket startRender(String key) {
+        
+        if (!cacheEnabled || renders == null) {
+            return null;
+        }
+        
+        return renders.start(key);
+    }
+    
+    
     public void put(String key, Object value) {
         
         if (!cacheEnabled) {
             return;
         }
         
+        if (compress && value instanceof CachedContent) {
+            ((CachedContent) value).compress();
+        }
+        
+        if (offHeap && value instanceof CachedContent) {
+            ((CachedContent) value).moveOffHeap();
+        }
+        
         contentCache.put(key, new LazyExpiringCacheEntry(value));
+        eTags.put(key, value instanceof CachedContent ? ((CachedContent) value).getETag() : null);
         log.debug("PUT "+key);
+        
+        if (renders != null) {
+            renders.complete(key, value);
+        }
     }
     
     
@@ -130,6 +230,7 @@ public final class WeblogPageCache {
         }
         
         contentCache.remove(key);
+        eTags.remove(key);
         log.debug("REMOVE "+key);
     }
     
@@ -141,6 +242,7 @@ public final class WeblogPageCache {
         }
         
         contentCache.clear();
+        eTags.clear();
         log.debug("CLEAR");
     }
     
@@ -205,6 +307,9 @@ public final class WeblogPageCache {
         // add page number when applicable
         if(pageRequest.getWeblogAnchor() == null) {
             key.append("/page=").append(pageRequest.getPageNum());
+            if (pageRequest.getCursor() != null) {
+                key.append("/cursor=").append(pageRequest.getCursor());
+            }
         }
         
         // add login state
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.velocity;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogBookmark;
+import org.apache.roller.weblogger.pojos.WeblogBookmarkFolder;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+import org.apache.roller.weblogger.util.cache.CacheHandler;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.resource.ResourceCacheImpl;
+
+
+/**
+ * Velocity's cache of parsed templates, which is told about changes to
+ * templates.
+ *
+ * Templates of the theme and roller resource loaders are cached without
+ * modification checks, as checking would mean loading them again.  Instead
+ * parsed templates are dropped when a template or its weblog is invalidated
+ * through the CacheManager, or when a shared theme is reloaded from disk.
+ *
+ * Configured in velocity.properties with resource.manager.cache.class.
+ */
+public class RollerResourceCache extends ResourceCacheImpl implements CacheHandler {
+
+    private static final Log log = LogFactory.getLog(RollerResourceCache.class);
+
+    // the cache of the Roller velocity engine
+    private static volatile RollerResourceCache instance = null;
+
+
+    @Override
+    public void initialize(RuntimeServices rs) {
+        super.initialize(rs);
+        replace(this);
+    }
+
+
+    /**
+     * The cache told about invalidations, that of the engine initialized last.
+     */
+    static RollerResourceCache getInstance() {
+        return instance;
+    }
+
+
+    /**
+     * Make a cache the one told about invalidations, in place of the
+     * previous one, so an engine initialized again doesn't leave its old
+     * cache registered.
+     * @param cache the new cache, or null for none
+     */
+    static synchronized void replace(RollerResourceCache cache) {
+        CacheManager.unregisterHandler(instance);
+        instance = cache;
+        CacheManager.registerHandler(cache);
+    }
+
+
+    /**
+     * A shared theme was reloaded from disk, drop its parsed templates.
+     */
+    public static void invalidateTheme(String themeId) {
+        RollerResourceCache cache = instance;
+        if (cache != null) {
+            // theme templates are named <theme>:<template>|<deviceType>
+            cache.removeNamed(name -> name.startsWith(themeId + ":"));
+        }
+    }
+
+
+    private void removeTemplates(Collection<String> templateIds) {
+        // roller templates are named <template id>|<deviceType>
+        removeNamed(name -> {
+            int end = name.indexOf('|');
+            return templateIds.contains(end < 0 ? name : name.substring(0, end));
+        });
+    }
+
+
+    private void removeNamed(Predicate<String> matches) {
+        synchronized (cache) {
+            cache.values().removeIf(resource -> {
+                boolean remove = matches.test(resource.getName());
+                if (remove) {
+                    log.debug("REMOVE " + resource.getName());
+                }
+                return remove;
+            });
+        }
+    }
+
+
+    @Override
+    public void invalidate(WeblogTemplate template) {
+        removeTemplates(Set.of(template.getId()));
+    }
+
+
+    /**
+     * Weblog invalidations are how importing a theme into a weblog is
+     * announced, which replaces the contents of its templates.
+     */
+    @Override
+    public void invalidate(Weblog website) {
+        Set<String> templateIds = new HashSet<>();
+        try {
+            for (WeblogTemplate template : WebloggerFactory.getWeblogger()
+                    .getWeblogManager().getTemplates(website)) {
+                templateIds.add(template.getId());
+            }
+        } catch (WebloggerException e) {
+            log.error("Unable to find templates of weblog " + website.getHandle()
+                    + ", dropping all parsed templates", e);
+            clear();
+            return;
+        }
+        removeTemplates(templateIds);
+    }
+
+
+    @Override
+    public void invalidate(WeblogEntry entry) {
+        // ignored
+    }
+
+
+    @Override
+    public void invalidate(WeblogEntryComment comment) {
+        // ignored
+    }
+
+
+    @Override
+    public void invalidate(WeblogBookmark bookmark) {
+        // ignored
+    }
+
+
+    @Override
+    public void invalidate(WeblogBookmarkFolder folder) {
+        // ignored
+    }
+
+
+    @Override
+    public void invalidate(User user) {
+        // ignored
+    }
+
+
+    @Override
+    public void invalidate(WeblogCategory category) {
+        // ignored
+    }
+
+}
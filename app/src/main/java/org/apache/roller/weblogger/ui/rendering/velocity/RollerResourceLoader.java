@@ -120,6 +120,8 @@ public class RollerResourceLoader extends ResourceLoader {
 	 * Files loaded by this resource loader are not reloadable here, as they are
 	 * stored in custom themes and there is no way velocity can trigger a
 	 * reload.
+	 *
+	 * Instead RollerResourceCache drops them when they change.
 	 * 
 	 * @see org.apache.velocity.runtime.resource.loader.ResourceLoader#isSourceModified(org.apache.velocity.runtime.resource.Resource)
 	 */
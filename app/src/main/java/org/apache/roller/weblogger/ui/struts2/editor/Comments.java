@@ -36,6 +36,7 @@ import org.apache.roller.weblogger.business.WeblogEntryManager;
 import org.apache.roller.weblogger.business.search.IndexManager;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
+import org.apache.roller.weblogger.pojos.PageCursor;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment.ApprovalStatus;
@@ -96,6 +97,7 @@ public class Comments extends UIAction {
 
         List<WeblogEntryComment> comments = Collections.emptyList();
         boolean hasMore = false;
+        String nextCursor = null;
         try {
             WeblogEntryManager wmgr = WebloggerFactory.getWeblogger()
                     .getWeblogEntryManager();
@@ -107,6 +109,7 @@ public class Comments extends UIAction {
 
             CommentSearchCriteria csc = getCommentSearchCriteria();
             csc.setOffset(getBean().getPage() * COUNT);
+            csc.setCursor(PageCursor.parse(getBean().getCursor()));
             csc.setMaxResults(COUNT + 1);
 
             List<WeblogEntryComment> rawComments = wmgr.getComments(csc);
@@ -116,6 +119,9 @@ public class Comments extends UIAction {
                 if (comments.size() > COUNT) {
                     comments.remove(comments.size() - 1);
                     hasMore = true;
+
+                    WeblogEntryComment last = comments.get(comments.size() - 1);
+                    nextCursor = new PageCursor(last.getPostTime(), last.getId()).encode();
                 }
 
                 setFirstComment(comments.get(0));
@@ -130,7 +136,7 @@ public class Comments extends UIAction {
         // build comments pager
         String baseUrl = buildBaseUrl();
         setPager(new CommentsPager(baseUrl, getBean().getPage(), comments,
-                hasMore));
+                hasMore, nextCursor));
     }
 
     // use the action data to build a url representing this action, including
@@ -41,6 +41,7 @@ public class CommentsBean {
     private String endDateString = null;
     private String approvedString = "ALL";
     private int page = 0;
+    private String cursor = null;
     
     private String[] approvedComments = new String[0];
     private String[] spamComments = new String[0];
@@ -169,6 +170,14 @@ public class CommentsBean {
         this.page = page;
     }
 
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     public String getStartDateString() {
         return startDateString;
     }
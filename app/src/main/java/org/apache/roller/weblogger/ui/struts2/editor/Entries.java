@@ -29,6 +29,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
+import org.apache.roller.weblogger.pojos.PageCursor;
 import org.apache.roller.weblogger.pojos.WeblogCategory;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
@@ -85,6 +86,7 @@ public class Entries extends UIAction {
         
         List<WeblogEntry> entries = null;
         boolean hasMore = false;
+        String nextCursor = null;
         try {
             String status = getBean().getStatus();
             
@@ -99,6 +101,7 @@ public class Entries extends UIAction {
             wesc.setText(getBean().getText());
             wesc.setSortBy(getBean().getSortBy());
             wesc.setOffset(getBean().getPage() * COUNT);
+            wesc.setCursor(PageCursor.parse(getBean().getCursor()));
             wesc.setMaxResults(COUNT + 1);
             List<WeblogEntry> rawEntries = wmgr.getWeblogEntries(wesc);
             entries = new ArrayList<>();
@@ -109,6 +112,10 @@ public class Entries extends UIAction {
                 if(rawEntries.size() > COUNT) {
                     entries.remove(entries.size()-1);
                     hasMore = true;
+                    
+                    // null when the next page has to go by its offset
+                    PageCursor cursor = wesc.nextCursor(entries.get(entries.size()-1));
+                    nextCursor = cursor == null ? null : cursor.encode();
                 }
                 
                 setFirstEntry(entries.get(0));
@@ -121,7 +128,7 @@ public class Entries extends UIAction {
         
         // build entries pager
         String baseUrl = buildBaseUrl();
-        setPager(new EntriesPager(baseUrl, getBean().getPage(), entries, hasMore));
+        setPager(new EntriesPager(baseUrl, getBean().getPage(), entries, hasMore, nextCursor));
                 
         return LIST;
     }
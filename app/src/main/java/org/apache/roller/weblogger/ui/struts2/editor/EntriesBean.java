@@ -40,6 +40,7 @@ public class EntriesBean {
     private String status = "ALL";
     private WeblogEntrySearchCriteria.SortBy sortBy = WeblogEntrySearchCriteria.SortBy.UPDATE_TIME;
     private int page = 0;
+    private String cursor = null;
     
     
     public EntriesBean() {
@@ -123,6 +124,14 @@ public class EntriesBean {
         this.page = page;
     }
 
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     public String getEndDateString() {
         return endDateString;
     }
@@ -153,6 +162,7 @@ public class EntriesBean {
         buf.append("tags = ").append(getTagsAsString()).append("\n");
         buf.append("text = ").append(getText()).append("\n");
         buf.append("page = ").append(getPage()).append("\n");
+        buf.append("cursor = ").append(getCursor()).append("\n");
         
         return buf.toString();
     }
@@ -42,12 +42,21 @@ public class CommentsPager {
     // are there more items?
     private final boolean moreItems;
     
+    // cursor for the page after this one, if any
+    private final String nextCursor;
+    
     
     public CommentsPager(String url, int page, List<WeblogEntryComment> comments, boolean hasMore) {
+        this(url, page, comments, hasMore, null);
+    }
+    
+    
+    public CommentsPager(String url, int page, List<WeblogEntryComment> comments, boolean hasMore, String nextCursor) {
         this.baseUrl = url;
         this.pageNum = page;
         this.items = comments;
         this.moreItems = hasMore;
+        this.nextCursor = nextCursor;
     }
     
     
@@ -56,6 +65,9 @@ public class CommentsPager {
             int nextPage = pageNum + 1;
             Map<String, String> params = new HashMap<>();
             params.put("bean.page", ""+nextPage);
+            if (nextCursor != null) {
+                params.put("bean.cursor", nextCursor);
+            }
             return createURL(baseUrl, params);
         }
         return null;
@@ -42,12 +42,21 @@ public class EntriesPager {
     // are there more items?
     private final boolean moreItems;
     
+    // cursor for the page after this one, if any
+    private final String nextCursor;
+    
     
     public EntriesPager(String url, int page, List<WeblogEntry> entries, boolean hasMore) {
+        this(url, page, entries, hasMore, null);
+    }
+    
+    
+    public EntriesPager(String url, int page, List<WeblogEntry> entries, boolean hasMore, String nextCursor) {
         this.baseUrl = url;
         this.pageNum = page;
         this.items = entries;
         this.moreItems = hasMore;
+        this.nextCursor = nextCursor;
     }
     
     
@@ -56,6 +65,9 @@ public class EntriesPager {
             int nextPage = pageNum + 1;
             Map<String, String> params = new HashMap<>();
             params.put("bean.page", ""+nextPage);
+            if (nextCursor != null) {
+                params.put("bean.cursor", nextCursor);
+            }
             return createURL(baseUrl, params);
         }
         return null;
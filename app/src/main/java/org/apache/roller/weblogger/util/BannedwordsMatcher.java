@@ -0,0 +1,357 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+*  contributor license agreements.  The ASF licenses this file to You
+* under the Apache License, Version 2.0 (the "License"); you may not
+* use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.  For additional information regarding
+* copyright in this work, please see the NOTICE file in the top level
+* directory of this distribution.
+*/
+
+package org.apache.roller.weblogger.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Bannedwordslist rules compiled for matching, built once per set of rules
+ * and safe to share between threads.
+ * <br />
+ * String rules work as before, each one matches as a case insensitive,
+ * whole word regular expression, or as a plain substring if it isn't a valid
+ * regular expression.  Rules which are just words are put in an Aho-Corasick
+ * automaton so that all of them are found in a single pass over the text,
+ * the others are combined into one regular expression.
+ * <br />
+ * Regex rules are combined into one regular expression as well, except for
+ * those which don't survive being combined (back references).
+ */
+public final class BannedwordsMatcher {
+
+    private static final Log mLogger = LogFactory.getLog(BannedwordsMatcher.class);
+
+    private static final BannedwordsMatcher EMPTY = new BannedwordsMatcher(
+            Collections.emptyList(), Collections.emptyList());
+
+    private static final String REGEX_META_CHARS = "\\^$.|?*+()[]{}";
+
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\([1-9]|k<)");
+
+    // string rules which are plain words
+    private final WordAutomaton words;
+
+    // string rules which are regular expressions, as one pattern
+    private final List<Pattern> wordPatterns = new ArrayList<>();
+
+    // string rules which are not valid regular expressions
+    private final List<String> substrings = new ArrayList<>();
+
+    // regex rules, as few patterns as possible
+    private final List<Pattern> patterns = new ArrayList<>();
+
+    private final int ruleCount;
+
+
+    public BannedwordsMatcher(List<String> stringRules, List<Pattern> regexRules) {
+
+        List<String> plainWords = new ArrayList<>();
+        List<String> regexWords = new ArrayList<>();
+        for (String rule : stringRules) {
+            if (isPlainWord(rule)) {
+                plainWords.add(rule);
+            } else {
+                try {
+                    Pattern.compile(rule);
+                    regexWords.add(rule);
+                } catch (PatternSyntaxException e) {
+                    substrings.add(rule);
+                }
+            }
+        }
+        this.words = plainWords.isEmpty() ? null : new WordAutomaton(plainWords);
+
+        if (!regexWords.isEmpty()) {
+            wordPatterns.addAll(combine(regexWords, "\\b(", ")\\b", Pattern.CASE_INSENSITIVE));
+        }
+
+        List<String> regexes = new ArrayList<>(regexRules.size());
+        for (Pattern regex : regexRules) {
+            if (regex.flags() == 0) {
+                regexes.add(regex.pattern());
+            } else {
+                patterns.add(regex);
+            }
+        }
+        if (!regexes.isEmpty()) {
+            patterns.addAll(combine(regexes, "", "", 0));
+        }
+
+        this.ruleCount = stringRules.size() + regexRules.size();
+    }
+
+
+    /** A matcher without rules, which never matches. */
+    public static BannedwordsMatcher empty() {
+        return EMPTY;
+    }
+
+
+    /** Does the text match any of the rules? */
+    public boolean matches(String text) {
+        if (text == null || text.isEmpty()) {
+            return false;
+        }
+
+        if (words != null) {
+            String word = words.find(text);
+            if (word != null) {
+                if (mLogger.isDebugEnabled()) {
+                    mLogger.debug("matched:" + word + ":");
+                }
+                return true;
+            }
+        }
+        if (find(text, wordPatterns)) {
+            return true;
+        }
+        for (String rule : substrings) {
+            if (text.contains(rule)) {
+                if (mLogger.isDebugEnabled()) {
+                    mLogger.debug("matched:" + rule + ":");
+                }
+                return true;
+            }
+        }
+        return find(text, patterns);
+    }
+
+
+    /** Number of rules this matcher was built from. */
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+
+    private static boolean find(String text, List<Pattern> patterns) {
+        for (Pattern pattern : patterns) {
+            Matcher matcher = pattern.matcher(text);
+            if (matcher.find()) {
+                // want to see what it is matching on, but only in debug mode
+                if (mLogger.isDebugEnabled()) {
+                    mLogger.debug(matcher.group() + " matched by " + pattern.pattern());
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Combine rules into a single alternation, rules with back references
+     * would point at the wrong group once combined and are kept apart.
+     */
+    private static List<Pattern> combine(List<String> rules, String prefix, String suffix, int flags) {
+        List<Pattern> result = new ArrayList<>();
+        StringBuilder alternation = new StringBuilder();
+        for (String rule : rules) {
+            if (BACK_REFERENCE.matcher(rule).find()) {
+                result.add(Pattern.compile(prefix + rule + suffix, flags));
+            } else {
+                if (alternation.length() > 0) {
+                    alternation.append('|');
+                }
+                alternation.append("(?:").append(rule).append(')');
+            }
+        }
+        if (alternation.length() > 0) {
+            try {
+                result.add(Pattern.compile(prefix + alternation + suffix, flags));
+            } catch (PatternSyntaxException e) {
+                // a rule which only compiles on its own, e.g. unbalanced
+                // quoting, don't let it take the others with it
+                mLogger.debug("Unable to combine rules, using them one by one", e);
+                for (String rule : rules) {
+                    if (!BACK_REFERENCE.matcher(rule).find()) {
+                        result.add(Pattern.compile(prefix + rule + suffix, flags));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+
+    private static boolean isPlainWord(String rule) {
+        if (rule.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < rule.length(); i++) {
+            if (REGEX_META_CHARS.indexOf(rule.charAt(i)) > -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    // same as the regex case insensitive flag without unicode case
+    private static char fold(char c) {
+        return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+
+
+    // same as \b in a regex
+    private static boolean isWordBoundary(String text, int index) {
+        boolean before = index > 0 && isWordChar(text.charAt(index - 1));
+        boolean after = index < text.length() && isWordChar(text.charAt(index));
+        return before != after;
+    }
+
+    private static boolean isWordChar(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+
+    /**
+     * Aho-Corasick automaton over the plain word rules, reports a word only if
+     * it stands on word boundaries in the text.
+     */
+    private static final class WordAutomaton {
+
+        // per state, the sorted chars it has transitions on and their targets
+        private final char[][] keys;
+        private final int[][] targets;
+        private final int[] failure;
+
+        // per state, the lengths of all words ending there (also through
+        // the failure chain) and the index of one of them for logging
+        private final int[][] lengths;
+        private final String[] words;
+
+        WordAutomaton(List<String> rules) {
+
+            // build the trie
+            List<Map<Character, Integer>> trie = new ArrayList<>();
+            List<List<Integer>> ends = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            trie.add(new TreeMap<>());
+            ends.add(new ArrayList<>());
+            names.add(null);
+            for (String rule : rules) {
+                int state = 0;
+                for (int i = 0; i < rule.length(); i++) {
+                    char c = fold(rule.charAt(i));
+                    Integer next = trie.get(state).get(c);
+                    if (next == null) {
+                        next = trie.size();
+                        trie.add(new TreeMap<>());
+                        ends.add(new ArrayList<>());
+                        names.add(null);
+                        trie.get(state).put(c, next);
+                    }
+                    state = next;
+                }
+                ends.get(state).add(rule.length());
+                names.set(state, rule);
+            }
+
+            int size = trie.size();
+            keys = new char[size][];
+            targets = new int[size][];
+            failure = new int[size];
+            lengths = new int[size][];
+            words = names.toArray(new String[size]);
+            for (int s = 0; s < size; s++) {
+                Map<Character, Integer> edges = trie.get(s);
+                keys[s] = new char[edges.size()];
+                targets[s] = new int[edges.size()];
+                int i = 0;
+                for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                    keys[s][i] = edge.getKey();
+                    targets[s][i] = edge.getValue();
+                    i++;
+                }
+            }
+
+            // failure links, breadth first so shorter states are done first
+            Deque<Integer> queue = new ArrayDeque<>();
+            lengths[0] = new int[0];
+            for (int child : targets[0]) {
+                failure[child] = 0;
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                int fail = failure[state];
+
+                List<Integer> own = ends.get(state);
+                int[] merged = Arrays.copyOf(lengths[fail], lengths[fail].length + own.size());
+                for (int i = 0; i < own.size(); i++) {
+                    merged[lengths[fail].length + i] = own.get(i);
+                }
+                lengths[state] = merged;
+                if (words[state] == null) {
+                    words[state] = words[fail];
+                }
+
+                for (int i = 0; i < keys[state].length; i++) {
+                    int child = targets[state][i];
+                    int f = fail;
+                    int next;
+                    while ((next = next(f, keys[state][i])) < 0 && f != 0) {
+                        f = failure[f];
+                    }
+                    failure[child] = (next >= 0 && next != child) ? next : 0;
+                    queue.add(child);
+                }
+            }
+        }
+
+        private int next(int state, char c) {
+            int i = Arrays.binarySearch(keys[state], c);
+            return i >= 0 ? targets[state][i] : -1;
+        }
+
+        /** Find a word in the text, null if there is none. */
+        String find(String text) {
+            int state = 0;
+            for (int pos = 0; pos < text.length(); pos++) {
+                char c = fold(text.charAt(pos));
+                int next;
+                while ((next = next(state, c)) < 0 && state != 0) {
+                    state = failure[state];
+                }
+                state = Math.max(next, 0);
+
+                for (int length : lengths[state]) {
+                    int start = pos + 1 - length;
+                    if (isWordBoundary(text, start) && isWordBoundary(text, pos + 1)) {
+                        return words[state];
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+}
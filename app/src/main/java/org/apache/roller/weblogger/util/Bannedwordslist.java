@@ -33,12 +33,13 @@ import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.commons.lang3.StringUtils;
@@ -72,9 +73,24 @@ public final class Bannedwordslist {
     /** We no longer have a bannedwordslist update URL */
     private static final String BANNEDWORDSLIST_URL = null;
 
+    // how many compiled weblog and site rule sets to keep around
+    private static final int MAX_CACHED_MATCHERS = 100;
+
     private Date lastModified = null;
-    private final List<String> bannedwordslistStr = new ArrayList<>();
-    private final List<Pattern> bannedwordslistRegex = new ArrayList<>();
+
+    // rules are replaced as a whole whenever the list is reloaded
+    private volatile List<String> bannedwordslistStr = Collections.emptyList();
+    private volatile List<Pattern> bannedwordslistRegex = Collections.emptyList();
+    private volatile BannedwordsMatcher bannedwordslistMatcher = BannedwordsMatcher.empty();
+
+    // compiled weblog and site rules, keyed by their text
+    private static final Map<String, BannedwordsMatcher> spamRulesMatchers =
+            Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, BannedwordsMatcher> eldest) {
+                    return size() > MAX_CACHED_MATCHERS;
+                }
+            });
     
     // setup our singleton at class loading time
     static {
@@ -210,7 +226,15 @@ public final class Bannedwordslist {
         }
         
         if (txtStream != null) {
-            readFromStream(txtStream, false);
+            List<String> stringRules = new ArrayList<>();
+            List<Pattern> regexRules = new ArrayList<>();
+            readFromStream(txtStream, false, stringRules, regexRules);
+
+            // compile before swapping in, so checks never see half a list
+            BannedwordsMatcher matcher = new BannedwordsMatcher(stringRules, regexRules);
+            bannedwordslistStr = stringRules;
+            bannedwordslistRegex = regexRules;
+            bannedwordslistMatcher = matcher;
         } else {
             mLogger.error("Couldn't load a bannedwordslist file from anywhere, "
                         + "this means bannedwordslist checking is disabled for now.");
@@ -223,7 +247,8 @@ public final class Bannedwordslist {
      * Read in the InputStream for rules.
      * @param txtStream stream to read from
      */
-    private String readFromStream(InputStream txtStream, boolean saveStream) {
+    private String readFromStream(InputStream txtStream, boolean saveStream,
+            List<String> stringRules, List<Pattern> regexRules) {
         String line;
         StringBuilder buf = new StringBuilder();
         BufferedReader in = null;
@@ -234,7 +259,7 @@ public final class Bannedwordslist {
                 if (line.startsWith("#")) {
                     readComment(line);
                 } else {
-                    readRule(line);
+                    readRule(line, stringRules, regexRules);
                 }
                 
                 if (saveStream) {
@@ -255,7 +280,7 @@ public final class Bannedwordslist {
         return buf.toString();
     }
     
-    private void readRule(String str) {
+    private void readRule(String str, List<String> stringRules, List<Pattern> regexRules) {
         // check for bad condition
         if (StringUtils.isEmpty(str)) {
             return;
@@ -273,9 +298,9 @@ public final class Bannedwordslist {
         // regex rule?
         if (rule.indexOf( '(' ) > -1) {
             // pre-compile patterns since they will be frequently used
-            bannedwordslistRegex.add(Pattern.compile(rule));
+            regexRules.add(Pattern.compile(rule));
         } else if (StringUtils.isNotEmpty(rule)) {
-            bannedwordslistStr.add(rule);
+            stringRules.add(rule);
         }
     }
         
@@ -313,31 +338,31 @@ public final class Bannedwordslist {
         if (str == null || StringUtils.isEmpty(str)) {
             return false;
         }
-
-        // First iterate over bannedwordslist, doing indexOf.
-        // Then iterate over bannedwordslistRegex and test.
-        // As soon as there is a hit in either case return true
-        
-        // test plain String.indexOf
-        List<String> stringRules = bannedwordslistStr;
-        if (moreStringRules != null && !moreStringRules.isEmpty()) {
-            stringRules = new ArrayList<>();
-            stringRules.addAll(moreStringRules);
-            stringRules.addAll(bannedwordslistStr);
-        }
-        if (testStringRules(str, stringRules)) {
+        if (bannedwordslistMatcher.matches(str)) {
             return true;
         }
-        
-        // test regex bannedwordslisted
-        List<Pattern> regexRules = bannedwordslistRegex;
-        if (moreRegexRules != null && !moreRegexRules.isEmpty()) {
-            regexRules = new ArrayList<>();
-            regexRules.addAll(moreRegexRules);
-            regexRules.addAll(bannedwordslistRegex);
+        if ((moreStringRules == null || moreStringRules.isEmpty())
+                && (moreRegexRules == null || moreRegexRules.isEmpty())) {
+            return false;
         }
-        return testRegExRules(str, regexRules);
-    }      
+        return new BannedwordsMatcher(
+                moreStringRules != null ? moreStringRules : Collections.emptyList(),
+                moreRegexRules != null ? moreRegexRules : Collections.emptyList()).matches(str);
+    }
+
+    /** 
+     * Does the String argument match any of the rules in the built-in bannedwordslist
+     * plus additional rules already compiled by the caller?
+     * @param str       String to be checked against bannedwordslist
+     * @param moreRules Additional rules to consider, see getSpamRulesMatcher()
+     */
+    public boolean isBannedwordslisted(String str, BannedwordsMatcher moreRules) {
+        if (str == null || StringUtils.isEmpty(str)) {
+            return false;
+        }
+        return bannedwordslistMatcher.matches(str)
+                || (moreRules != null && moreRules.matches(str));
+    }
 
     /** 
      * Test string only against rules provided by caller, NOT against built-in bannedwordslist.
@@ -347,80 +372,27 @@ public final class Bannedwordslist {
      */
     public static boolean matchesRulesOnly(
         String str, List<String> stringRules, List<Pattern> regexRules) {
-        return testStringRules(str, stringRules) || testRegExRules(str, regexRules);
-    }
-        
-    /** Test String against the RegularExpression rules. */
-    private static boolean testRegExRules(String str, List<Pattern> regexRules) {
-        for (Pattern testPattern : regexRules) {
-            // want to see what it is matching on, but only in debug mode
-            if (mLogger.isDebugEnabled()) {
-                Matcher matcher = testPattern.matcher(str);
-                if (matcher.find()) {
-                    mLogger.debug(matcher.group()
-                            + " matched by " + testPattern.pattern());
-                    return true;
-                }
-            } else {
-                if (testPattern.matcher(str).find()) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return new BannedwordsMatcher(stringRules, regexRules).matches(str);
     }
 
     /**
-     * Tests the source text against the String rules. Each String rule is
-     * first treated as a word-boundary, case insensitive regular expression.
-     * If a PatternSyntaxException is encountered, a simple contains test
-     * is performed.
-     *
-     * @param source The text in which to apply the matching rules.
-     * @param rules A list a simple matching rules.
-     *
-     * @return true if a match was found, otherwise false
+     * Compiled form of a weblog bannedwordslist plus site addendum, as parsed
+     * by populateSpamRules().  Recently used rule sets are kept compiled, so
+     * checking many comments against the same rules compiles them only once.
      */
-    private static boolean testStringRules(String source, List<String> rules) {
-        boolean matches = false;
-        
-        for (String rule : rules) {
-
-            try {
-                StringBuilder patternBuilder;
-                patternBuilder = new StringBuilder();
-                patternBuilder.append("\\b(");
-                patternBuilder.append(rule);
-                patternBuilder.append(")\\b");
-
-                Pattern pattern;
-                pattern = Pattern.compile(patternBuilder.toString(),
-                        Pattern.CASE_INSENSITIVE);
-
-                Matcher matcher;
-                matcher = pattern.matcher(source);
-
-                matches = matcher.find();
-                if (matches) {
-                    break;
-                }
-            }
-            catch (PatternSyntaxException e) {
-                matches = source.contains(rule);
-                if (matches) {
-                    break;
-                }
-            }
-            finally {
-                if (matches && mLogger.isDebugEnabled()) {
-                    // Log the matched rule in debug mode
-                    mLogger.debug("matched:" + rule + ":");
-                }
-            }
+    public static BannedwordsMatcher getSpamRulesMatcher(String bannedwordslist, String addendum) {
+        String key = ((addendum != null) ? addendum : "") + "\n"
+                + ((bannedwordslist != null) ? bannedwordslist : "");
+        BannedwordsMatcher matcher = spamRulesMatchers.get(key);
+        if (matcher == null) {
+            List<String> stringRules = new ArrayList<>();
+            List<Pattern> regexRules = new ArrayList<>();
+            populateSpamRules(bannedwordslist, stringRules, regexRules, addendum);
+            matcher = new BannedwordsMatcher(stringRules, regexRules);
+            spamRulesMatchers.put(key, matcher);
         }
-        
-        return matches;
-    }   
+        return matcher;
+    }
     
     /** Utility method to populate lists based a bannedwordslist in string form */
     public static void populateSpamRules(
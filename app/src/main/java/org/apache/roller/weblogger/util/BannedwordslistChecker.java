@@ -17,10 +17,6 @@
 */
 package org.apache.roller.weblogger.util;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Pattern;
-
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
@@ -66,15 +62,9 @@ public final class BannedwordslistChecker {
      */
     public static boolean checkReferrer(Weblog website, String referrerURL) {
         if (WebloggerConfig.getBooleanProperty("site.bannedwordslist.enable.referrers")) {
-            List<String> stringRules = new ArrayList<>();
-            List<Pattern> regexRules = new ArrayList<>();
-            Bannedwordslist.populateSpamRules(
-                website.getBannedwordslist(), stringRules, regexRules, null);
-            if (WebloggerRuntimeConfig.getProperty("spam.bannedwordslist") != null) {
-                Bannedwordslist.populateSpamRules(
-                    WebloggerRuntimeConfig.getProperty("spam.bannedwordslist"), stringRules, regexRules, null);
-            }
-            return Bannedwordslist.matchesRulesOnly(referrerURL, stringRules, regexRules);
+            return Bannedwordslist.getSpamRulesMatcher(
+                website.getBannedwordslist(),
+                WebloggerRuntimeConfig.getProperty("spam.bannedwordslist")).matches(referrerURL);
         }
         return false;
     }
@@ -85,17 +75,15 @@ public final class BannedwordslistChecker {
      */
     private static boolean testComment(WeblogEntryComment c) {
         boolean ret = false;
-        List<String> stringRules = new ArrayList<>();
-        List<Pattern> regexRules = new ArrayList<>();
         Weblog website = c.getWeblogEntry().getWebsite();
-        Bannedwordslist.populateSpamRules(
-            website.getBannedwordslist(), stringRules, regexRules,
+        BannedwordsMatcher rules = Bannedwordslist.getSpamRulesMatcher(
+            website.getBannedwordslist(),
             WebloggerRuntimeConfig.getProperty("spam.bannedwordslist"));
         Bannedwordslist bannedwordslist = Bannedwordslist.getBannedwordslist();
-        if (   bannedwordslist.isBannedwordslisted(c.getUrl(),     stringRules, regexRules)
-            || bannedwordslist.isBannedwordslisted(c.getEmail(),   stringRules, regexRules)
-            || bannedwordslist.isBannedwordslisted(c.getName(),    stringRules, regexRules)
-            || bannedwordslist.isBannedwordslisted(c.getContent(), stringRules, regexRules)) {
+        if (   bannedwordslist.isBannedwordslisted(c.getUrl(),     rules)
+            || bannedwordslist.isBannedwordslisted(c.getEmail(),   rules)
+            || bannedwordslist.isBannedwordslisted(c.getName(),    rules)
+            || bannedwordslist.isBannedwordslisted(c.getContent(), rules)) {
             ret = true;
         }
         return ret;
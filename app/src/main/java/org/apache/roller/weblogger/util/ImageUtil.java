@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+
+/**
+ * Utility for reading image sizes and making thumbnails.
+ */
+public final class ImageUtil {
+
+    // non-instantiable
+    private ImageUtil() {}
+
+
+    /**
+     * Read the width and height of an image from its header, without
+     * decoding it.
+     *
+     * @return the size, or null if the file is not an image we can read
+     */
+    public static Dimension readSize(File file) throws IOException {
+
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            ImageReader reader = getReader(in);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                reader.setInput(in, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+
+    /**
+     * Make a thumbnail of an image which fits into a square of the given
+     * size.
+     *
+     * Only as many pixels are decoded as are needed to scale the image down
+     * smoothly, so large photos do not have to be held in memory in full.
+     *
+     * @return the thumbnail, or null if the file is not an image we can read
+     */
+    public static BufferedImage readThumbnail(File file, int maxSize)
+            throws IOException {
+
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            ImageReader reader = getReader(in);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                Dimension size = fit(width, height, maxSize);
+
+                // skip pixels while decoding, but keep twice as many as the
+                // thumbnail has for the scaling to smooth over
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.min(width / (2 * size.width),
+                        height / (2 * size.height));
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+
+                BufferedImage image = reader.read(0, param);
+                return scale(image, size.width, size.height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+
+    /**
+     * The size of an image of the given width and height scaled down to fit
+     * into a square of the given size, keeping its aspect ratio.  Images
+     * which already fit keep their size.
+     */
+    public static Dimension fit(int width, int height, int maxSize) {
+
+        int newWidth = width;
+        int newHeight = height;
+
+        if (width > height) {
+            if (width > maxSize) {
+                newHeight = (int) ((float) height * ((float) maxSize / (float) width));
+                newWidth = maxSize;
+            }
+        } else {
+            if (height > maxSize) {
+                newWidth = (int) ((float) width * ((float) maxSize / (float) height));
+                newHeight = maxSize;
+            }
+        }
+        return new Dimension(Math.max(1, newWidth), Math.max(1, newHeight));
+    }
+
+
+    /**
+     * Scale an image to the given width and height.
+     *
+     * Bilinear interpolation only looks at the four nearest pixels, which
+     * loses detail when shrinking an image to less than half its size, so the
+     * image is halved until it is less than twice as big as it should be and
+     * only then scaled to its final size.
+     */
+    public static BufferedImage scale(BufferedImage image, int width, int height) {
+
+        int type = image.getColorModel().hasAlpha()
+                ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage scaled = image;
+        int w = image.getWidth();
+        int h = image.getHeight();
+        while (w / 2 >= width && h / 2 >= height) {
+            w /= 2;
+            h /= 2;
+            scaled = draw(scaled, w, h, type);
+        }
+
+        // also converts images we did not scale to a type we can write
+        if (scaled == image || w != width || h != height) {
+            scaled = draw(scaled, width, height, type);
+        }
+        return scaled;
+    }
+
+
+    /**
+     * Encode an image as PNG.
+     */
+    public static byte[] toPng(BufferedImage image) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, "png", out)) {
+            throw new IOException("No PNG writer for image type " + image.getType());
+        }
+        return out.toByteArray();
+    }
+
+
+    private static ImageReader getReader(ImageInputStream in) {
+        if (in == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        return readers.hasNext() ? readers.next() : null;
+    }
+
+
+    private static BufferedImage draw(BufferedImage image, int width, int height, int type) {
+
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D g2 = target.createGraphics();
+        try {
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g2.dispose();
+        }
+        return target;
+    }
+
+}
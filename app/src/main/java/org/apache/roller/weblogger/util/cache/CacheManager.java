@@ -195,6 +195,34 @@ public final class CacheManager {
     }
     
     
+    /**
+     * Stop notifying a handler of invalidations, such as one replaced by a
+     * new instance.
+     */
+    public static void unregisterHandler(CacheHandler handler) {
+
+        log.debug("Unregistering handler "+handler);
+
+        if(handler != null) {
+            cacheHandlers.remove(handler);
+        }
+    }
+    
+    
+    /**
+     * Register a cache which was not constructed by a CacheFactory.
+     *
+     * This is for caches kept by someone else, like the shared entity cache
+     * of the JPA provider, so that their stats are compiled and they can be
+     * cleared along with the others.
+     */
+    public static void registerCache(Cache cache) {
+
+        log.debug("Registering cache "+cache.getId());
+        caches.put(cache.getId(), cache);
+    }
+
+
     public static void invalidate(WeblogEntry entry) {
         
         log.debug("invalidating entry = "+entry.getAnchor());
@@ -3,9 +3,20 @@ package org.apache.roller.weblogger.util.cache;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
@@ -14,17 +25,45 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * A utility class for storing cached content written to a java.io.Writer.
+ *
+ * Once closed the content may be moved out of the java heap into a direct
+ * buffer, which lets large caches of rendered pages live outside of the
+ * garbage collected heap.  Callers should use getContentLength() and
+ * writeTo() rather than getContent() so that off heap content is never
+ * copied back onto the heap as a whole.
+ *
+ * A gzip compressed copy of the content may also be kept, so that clients
+ * which accept it can be served the compressed bytes without compressing the
+ * same content again on every request.
+ *
+ * Closing computes a strong ETag from a hash of the content, so that it
+ * changes exactly when the content does.
  */
-public class CachedContent implements AutoCloseable, Serializable {
+public class CachedContent implements AutoCloseable, Serializable, Sizeable {
     
     private static final Log log = LogFactory.getLog(CachedContent.class);
     
     // the byte array we use to maintain the cached content
     private byte[] content = new byte[0];
     
+    // the off heap copy of the content, when content has been moved there
+    private transient volatile ByteBuffer offHeapContent = null;
+    
+    // gzip compressed copy of the content, null if there is none
+    private byte[] compressed = null;
+    
+    // the off heap copy of the compressed content
+    private transient volatile ByteBuffer offHeapCompressed = null;
+    
+    // strong ETag of the content, set on close
+    private String eTag = null;
+    
     // content-type of data in byte array
     private final String contentType;
     
+    // content smaller than this is not worth compressing
+    private static final int MIN_COMPRESS_LENGTH = 512;
+    
     // Use a byte array output stream to cached the output bytes
     private transient ByteArrayOutputStream outstream = null;
     
@@ -56,8 +95,14 @@ public class CachedContent implements AutoCloseable, Serializable {
      *
      * NOTE: the content is only a representation of the data written to the
      *       enclosed Writer up until the last call to flush().
+     *
+     * NOTE: if the content has been moved off heap then this returns a copy.
      */
     public byte[] getContent() {
+        ByteBuffer buffer = this.offHeapContent;
+        if (buffer != null) {
+            return copyOf(buffer);
+        }
         return this.content;
     }
     
@@ -69,7 +114,180 @@ public class CachedContent implements AutoCloseable, Serializable {
      *       enclosed Writer up until the last call to flush().
      */
     public String getContentAsString() {
-        return new String(this.content, UTF_8);
+        return new String(getContent(), UTF_8);
+    }
+    
+    
+    /**
+     * Length of the cached content in bytes.
+     */
+    public int getContentLength() {
+        ByteBuffer buffer = this.offHeapContent;
+        if (buffer != null) {
+            return buffer.capacity();
+        }
+        return this.content.length;
+    }
+    
+    
+    @Override
+    public long getSizeInBytes() {
+        return getContentLength() + getCompressedLength();
+    }
+    
+    
+    /**
+     * Write the cached content to the given stream.
+     *
+     * Off heap content is streamed straight from its buffer, it is never
+     * copied back into a byte array as a whole.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        write(this.offHeapContent, this.content, out);
+    }
+    
+    
+    private static void write(ByteBuffer buffer, byte[] bytes, OutputStream out)
+            throws IOException {
+        if (buffer != null) {
+            // duplicate so concurrent writers each get their own position
+            ByteBuffer source = buffer.duplicate();
+            WritableByteChannel channel = Channels.newChannel(out);
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        } else {
+            out.write(bytes);
+        }
+    }
+    
+    
+    /**
+     * Whether a gzip compressed copy of the content is available.
+     */
+    public boolean hasCompressed() {
+        return this.offHeapCompressed != null || this.compressed != null;
+    }
+    
+    
+    /**
+     * Length of the gzip compressed content in bytes, 0 if there is none.
+     */
+    public int getCompressedLength() {
+        ByteBuffer buffer = this.offHeapCompressed;
+        if (buffer != null) {
+            return buffer.capacity();
+        }
+        return this.compressed != null ? this.compressed.length : 0;
+    }
+    
+    
+    /**
+     * Write the gzip compressed content to the given stream.
+     *
+     * @throws IllegalStateException if there is no compressed content
+     */
+    public void writeCompressedTo(OutputStream out) throws IOException {
+        ByteBuffer buffer = this.offHeapCompressed;
+        byte[] bytes = this.compressed;
+        if (buffer == null && bytes == null) {
+            throw new IllegalStateException("No compressed content");
+        }
+        write(buffer, bytes, out);
+    }
+    
+    
+    /**
+     * Keep a gzip compressed copy of the content, unless the content is too
+     * small, of a type which does not compress well, or compressing it saves
+     * too little to be worth keeping both copies.
+     *
+     * @throws IllegalStateException if called before close()
+     */
+    public void compress() {
+        
+        if(this.outstream != null) {
+            throw new IllegalStateException("Cannot compress() before a close()!");
+        }
+        
+        if(hasCompressed() || getContentLength() < MIN_COMPRESS_LENGTH
+                || !isCompressible(this.contentType)) {
+            return;
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(getContentLength() / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            writeTo(gzip);
+        } catch (IOException e) {
+            // not expected when writing to memory, just go without
+            log.warn("Unable to compress content", e);
+            return;
+        }
+        
+        // only worth it if it saves at least a tenth
+        if(bytes.size() <= getContentLength() * 9L / 10) {
+            byte[] gzipped = bytes.toByteArray();
+            if(isOffHeap()) {
+                this.offHeapCompressed = toDirect(gzipped);
+            } else {
+                this.compressed = gzipped;
+            }
+            log.debug("COMPRESSED "+getContentLength()+" to "+gzipped.length);
+        }
+    }
+    
+    
+    // text of any sort compresses well, a null type is a rendered template
+    private static boolean isCompressible(String type) {
+        if (type == null) {
+            return true;
+        }
+        type = type.toLowerCase();
+        return type.startsWith("text/") || type.contains("xml")
+                || type.contains("json") || type.contains("javascript");
+    }
+    
+    
+    /**
+     * Whether the content of this object lives outside the java heap.
+     */
+    public boolean isOffHeap() {
+        return this.offHeapContent != null;
+    }
+    
+    
+    /**
+     * Move the content into a direct buffer outside of the java heap and drop
+     * the on heap copy.  The off heap memory is released when this object is
+     * garbage collected.
+     *
+     * @throws IllegalStateException if called before close()
+     */
+    public void moveOffHeap() {
+        
+        if(this.outstream != null) {
+            throw new IllegalStateException("Cannot moveOffHeap() before a close()!");
+        }
+        
+        if(this.offHeapContent == null) {
+            this.offHeapContent = toDirect(this.content);
+            this.content = new byte[0];
+            
+            log.debug("MOVED OFF HEAP "+this.offHeapContent.capacity());
+        }
+        
+        if(this.compressed != null) {
+            this.offHeapCompressed = toDirect(this.compressed);
+            this.compressed = null;
+        }
+    }
+    
+    
+    private static ByteBuffer toDirect(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
     }
     
     
@@ -83,6 +301,14 @@ public class CachedContent implements AutoCloseable, Serializable {
     }
     
     
+    /**
+     * The quoted strong ETag of the content, or null until closed.
+     */
+    public String getETag() {
+        return eTag;
+    }
+    
+    
     /**
      * Called to flush any output in the cached Writer to
      * the cached content for more permanent storage.
@@ -121,9 +347,55 @@ public class CachedContent implements AutoCloseable, Serializable {
             }
             this.outstream.close();
             this.outstream = null;
+            
+            this.eTag = hash(this.content);
         }
         
         log.debug("CLOSED");
     }
     
+    
+    private static String hash(byte[] bytes) {
+        try {
+            // 128 bits of SHA-256 are plenty to tell versions of a page apart
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return '"' + Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(Arrays.copyOf(digest, 16)) + '"';
+        } catch (NoSuchAlgorithmException e) {
+            // every java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        // the direct buffers aren't serializable, so write their bytes instead
+        out.writeObject(copyOf(this.offHeapContent));
+        out.writeObject(copyOf(this.offHeapCompressed));
+    }
+    
+    
+    private static byte[] copyOf(ByteBuffer buffer) {
+        if (buffer == null) {
+            return null;
+        }
+        byte[] copy = new byte[buffer.capacity()];
+        buffer.duplicate().get(copy);
+        return copy;
+    }
+    
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        byte[] offHeapBytes = (byte[]) in.readObject();
+        if (offHeapBytes != null) {
+            this.content = offHeapBytes;
+        }
+        byte[] offHeapCompressedBytes = (byte[]) in.readObject();
+        if (offHeapCompressedBytes != null) {
+            this.compressed = offHeapCompressedBytes;
+        }
+    }
+    
 }
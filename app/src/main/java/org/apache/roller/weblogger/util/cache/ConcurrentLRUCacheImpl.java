@@ -0,0 +1,398 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
+
+
+/**
+ * An LRU cache which is split into a number of independently locked segments.
+ *
+ * Each key is hashed onto one segment and every segment is a small access
+ * ordered LRU map with its own share of the total capacity, so concurrent
+ * requests for different keys rarely contend on the same monitor.  Metrics
+ * are kept in LongAdders so that counting hits and misses never serializes
+ * readers either.
+ *
+ * If a timeout is given then entries expire just like in the
+ * ExpiringLRUCacheImpl, otherwise entries only leave the cache when they are
+ * evicted, removed or the cache is cleared.
+ *
+ * If a byte limit is given then the cache is also bounded by the total size
+ * of its values, as reported by values implementing Sizeable, plus a fixed
+ * per entry overhead.  Least recently used entries are evicted until the
+ * cache fits.  Each segment gets an equal share of the byte limit, so a single
+ * value can take at most the limit divided by the number of segments, see
+ * getMaxEntryBytes().  Larger values are not cached at all, which is logged
+ * and counted as "rejects" in the stats.
+ */
+public class ConcurrentLRUCacheImpl implements Cache {
+
+    private static final Log log = LogFactory.getLog(ConcurrentLRUCacheImpl.class);
+
+    // don't split a cache into segments smaller than this
+    private static final int MIN_SEGMENT_SIZE = 16;
+
+    // rough cost of an entry itself (key, node, wrappers) when counting bytes
+    private static final long ENTRY_OVERHEAD_BYTES = 256;
+
+    private final String id;
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    // timeout in millis, 0 means entries never expire
+    private final long timeout;
+
+    // limit on the total bytes held, 0 means only the entry count is bounded
+    private final long maxBytes;
+
+    // limit on the bytes of a single entry, the share of one segment
+    private final long maxEntryBytes;
+
+    // for metrics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder removes = new LongAdder();
+    private final LongAdder rejects = new LongAdder();
+    private final AtomicBoolean rejectLogged = new AtomicBoolean();
+    private volatile Date startTime = new Date();
+
+
+    protected ConcurrentLRUCacheImpl(String id, int maxsize) {
+
+        this(id, maxsize, 0, Runtime.getRuntime().availableProcessors());
+    }
+
+
+    protected ConcurrentLRUCacheImpl(String id, int maxsize, long timeout, int concurrency) {
+
+        this(id, maxsize, timeout, concurrency, 0);
+    }
+
+
+    protected ConcurrentLRUCacheImpl(String id, int maxsize, long timeout, int concurrency, long maxBytes) {
+
+        this.id = id;
+        this.maxBytes = Math.max(0, maxBytes);
+
+        // timeout is specified in seconds; only positive values allowed
+        this.timeout = (timeout > 0) ? timeout * RollerConstants.SEC_IN_MS : 0;
+
+        // use a power of two number of segments so we can mask the hash,
+        // but never so many that segments get too small to be useful LRUs
+        int size = Math.max(1, maxsize);
+        int maxSegments = Math.max(1, size / MIN_SEGMENT_SIZE);
+        int numSegments = 1;
+        while (numSegments < concurrency && (numSegments << 1) <= maxSegments) {
+            numSegments <<= 1;
+        }
+
+        this.segments = new Segment[numSegments];
+        this.segmentMask = numSegments - 1;
+        this.maxEntryBytes = this.maxBytes / numSegments;
+        for (int i = 0; i < numSegments; i++) {
+            // spread the remainder over the first segments
+            int segmentSize = size / numSegments + ((i < size % numSegments) ? 1 : 0);
+            this.segments[i] = new Segment(segmentSize, this.maxEntryBytes);
+        }
+
+        log.debug("cache ["+id+"] split into "+numSegments+" segments");
+        if (this.maxBytes > 0) {
+            log.info("cache ["+id+"] caches entries of up to "+this.maxEntryBytes+" bytes");
+        }
+    }
+
+
+    @Override
+    public String getId() {
+        return this.id;
+    }
+
+
+    /**
+     * Store an entry in the cache.
+     */
+    @Override
+    public void put(String key, Object value) {
+
+        Object entry = value;
+        if (this.timeout > 0) {
+            entry = new ExpiringCacheEntry(value, this.timeout);
+        }
+
+        long bytes = 0;
+        if (this.maxBytes > 0) {
+            bytes = ENTRY_OVERHEAD_BYTES;
+            if (value instanceof Sizeable) {
+                bytes += ((Sizeable) value).getSizeInBytes();
+            }
+        }
+
+        Segment segment = segmentFor(key);
+        if (this.maxBytes > 0 && bytes > this.maxEntryBytes) {
+            // would never fit, so drop any older value and don't cache it
+            segment.remove(key);
+            rejects.increment();
+            String message = "cache ["+id+"] not caching ["+key+"], "+bytes
+                    +" bytes is more than the "+this.maxEntryBytes
+                    +" bytes allowed per entry, consider raising maxBytes";
+            if (rejectLogged.compareAndSet(false, true)) {
+                log.warn(message);
+            } else {
+                log.debug(message);
+            }
+            return;
+        }
+
+        segment.put(key, entry, bytes);
+        puts.increment();
+    }
+
+
+    /**
+     * Retrieve an entry from the cache.
+     *
+     * If this cache has a timeout and the entry has expired then we return
+     * null, just as if the entry wasn't found.
+     */
+    @Override
+    public Object get(String key) {
+
+        Segment segment = segmentFor(key);
+        Object value = segment.get(key);
+
+        if (value instanceof ExpiringCacheEntry) {
+            ExpiringCacheEntry entry = (ExpiringCacheEntry) value;
+            value = entry.getValue();
+
+            // if the value is null then that means this entry expired
+            if (value == null) {
+                log.debug("EXPIRED ["+key+"]");
+                segment.remove(key, entry);
+            }
+        }
+
+        // for metrics
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+
+        return value;
+    }
+
+
+    @Override
+    public void remove(String key) {
+
+        segmentFor(key).remove(key);
+        removes.increment();
+    }
+
+
+    @Override
+    public void clear() {
+
+        for (Segment segment : this.segments) {
+            segment.clear();
+        }
+
+        // clear metrics
+        hits.reset();
+        misses.reset();
+        puts.reset();
+        removes.reset();
+        rejects.reset();
+        startTime = new Date();
+    }
+
+
+    @Override
+    public Map<String, Object> getStats() {
+
+        double hitCount = hits.sum();
+        double missCount = misses.sum();
+        double removeCount = removes.sum();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("startTime", this.startTime);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("puts", (double) puts.sum());
+        stats.put("removes", removeCount);
+
+        if (this.maxBytes > 0) {
+            stats.put("bytes", (double) bytes());
+            stats.put("maxBytes", (double) this.maxBytes);
+            stats.put("rejects", (double) rejects.sum());
+        }
+
+        // calculate efficiency
+        if((missCount - removeCount) > 0) {
+            double efficiency = hitCount / (missCount + hitCount);
+            stats.put("efficiency", efficiency * RollerConstants.PERCENT_100);
+        }
+
+        return stats;
+    }
+
+
+    /**
+     * Number of entries currently held by the cache, expired or not.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+
+    /**
+     * Total bytes currently accounted for, only tracked if a byte limit is set.
+     */
+    public long bytes() {
+        long bytes = 0;
+        for (Segment segment : this.segments) {
+            bytes += segment.bytes();
+        }
+        return bytes;
+    }
+
+
+    /**
+     * Largest number of bytes a single entry may take, including the per
+     * entry overhead, or 0 if there is no byte limit.
+     */
+    public long getMaxEntryBytes() {
+        return this.maxEntryBytes;
+    }
+
+
+    int getSegmentCount() {
+        return this.segments.length;
+    }
+
+
+    private Segment segmentFor(String key) {
+        int h = key.hashCode();
+        // spread the high bits down so that similar keys use different segments
+        h ^= (h >>> 16);
+        return this.segments[h & this.segmentMask];
+    }
+
+
+    /**
+     * A single locked slice of the cache holding an access ordered LRU map.
+     */
+    private static final class Segment {
+
+        private final Map<String, Node> map;
+        private final int maxsize;
+        private final long maxBytes;
+        private long bytes = 0;
+
+        Segment(int maxsize, long maxBytes) {
+            this.maxsize = maxsize;
+            this.maxBytes = maxBytes;
+            this.map = new LinkedHashMap<>(maxsize * 4 / 3 + 1, 0.75f, true);
+        }
+
+        synchronized Object get(String key) {
+            Node node = this.map.get(key);
+            return (node != null) ? node.value : null;
+        }
+
+        synchronized void put(String key, Object value, long size) {
+            Node old = this.map.put(key, new Node(value, size));
+            if (old != null) {
+                this.bytes -= old.size;
+            }
+            this.bytes += size;
+
+            // evict least recently used entries until we fit again
+            Iterator<Node> eldest = this.map.values().iterator();
+            while (eldest.hasNext() && (this.map.size() > this.maxsize
+                    || (this.maxBytes > 0 && this.bytes > this.maxBytes))) {
+                this.bytes -= eldest.next().size;
+                eldest.remove();
+            }
+        }
+
+        synchronized void remove(String key) {
+            removeNode(key);
+        }
+
+        // only remove the entry if it wasn't replaced in the meantime
+        synchronized void remove(String key, Object value) {
+            Node node = this.map.get(key);
+            if (node != null && node.value == value) {
+                removeNode(key);
+            }
+        }
+
+        synchronized void clear() {
+            this.map.clear();
+            this.bytes = 0;
+        }
+
+        synchronized int size() {
+            return this.map.size();
+        }
+
+        synchronized long bytes() {
+            return this.bytes;
+        }
+
+        private void removeNode(String key) {
+            Node node = this.map.remove(key);
+            if (node != null) {
+                this.bytes -= node.size;
+            }
+        }
+    }
+
+
+    /**
+     * A cached value along with the number of bytes it was accounted as.
+     */
+    private static final class Node {
+
+        private final Object value;
+        private final long size;
+
+        Node(Object value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * A reverse index from dependencies to the cache keys which depend on them.
+ *
+ * Caches record which dependencies (plain strings such as "weblog:1234") the
+ * content stored under a key was built from, and when one of those
+ * dependencies changes they can ask for just the keys that need to go
+ * instead of clearing everything.
+ *
+ * The index only knows about keys that were explicitly added, it is not told
+ * when a cache evicts an entry on its own.  Callers are expected to bound it
+ * by checking isFull() and clearing it along with their cache when it is.
+ */
+public class DependencyIndex {
+
+    // how many keys an index for a cache tracks per entry the cache holds,
+    // and at least, as keys of evicted entries are still in the index
+    private static final int KEYS_PER_CACHE_ENTRY = 10;
+    private static final int MIN_KEYS = 1000;
+
+    private final Map<String, Set<String>> keysByDependency = new HashMap<>();
+    private final Map<String, Set<String>> dependenciesByKey = new HashMap<>();
+
+    // number of keys at which the index is full
+    private final int maxKeys;
+
+
+    public DependencyIndex() {
+        this(Integer.MAX_VALUE);
+    }
+
+
+    public DependencyIndex(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+
+    /**
+     * An index for a cache constructed from the given properties, using the
+     * same "size" default as the cache factories.  It is full at a multiple
+     * of the cache size, so that it can't grow without bounds with the keys
+     * of entries the cache evicted, which it isn't told about.
+     */
+    public static DependencyIndex forCache(Map<String, String> cacheProps) {
+
+        int size = 100;
+        try {
+            size = Integer.parseInt(cacheProps.get("size"));
+        } catch (NumberFormatException e) {
+            // use default
+        }
+
+        return new DependencyIndex(Math.max(MIN_KEYS, KEYS_PER_CACHE_ENTRY * size));
+    }
+
+
+    /**
+     * Record the dependencies of a key, replacing any previous ones.
+     */
+    public synchronized void put(String key, Collection<String> dependencies) {
+
+        remove(key);
+
+        Set<String> deps = new HashSet<>(dependencies);
+        dependenciesByKey.put(key, deps);
+        for (String dependency : deps) {
+            keysByDependency.computeIfAbsent(dependency, k -> new HashSet<>()).add(key);
+        }
+    }
+
+
+    /**
+     * Forget about a key.
+     */
+    public synchronized void remove(String key) {
+
+        Set<String> deps = dependenciesByKey.remove(key);
+        if (deps != null) {
+            for (String dependency : deps) {
+                Set<String> keys = keysByDependency.get(dependency);
+                if (keys != null) {
+                    keys.remove(key);
+                    if (keys.isEmpty()) {
+                        keysByDependency.remove(dependency);
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Remove and return all keys which depend on any of the given dependencies.
+     */
+    public synchronized Set<String> removeDependents(Collection<String> dependencies) {
+
+        Set<String> dependents = new HashSet<>();
+        for (String dependency : dependencies) {
+            Set<String> keys = keysByDependency.get(dependency);
+            if (keys != null) {
+                dependents.addAll(keys);
+            }
+        }
+
+        for (String key : dependents) {
+            remove(key);
+        }
+
+        return dependents;
+    }
+
+
+    /**
+     * Number of keys in the index.
+     */
+    public synchronized int size() {
+        return dependenciesByKey.size();
+    }
+
+
+    /**
+     * Whether the index holds as many keys as it should, in which case it
+     * should be cleared along with the cache.
+     */
+    public synchronized boolean isFull() {
+        return dependenciesByKey.size() >= maxKeys;
+    }
+
+
+    public synchronized void clear() {
+        keysByDependency.clear();
+        dependenciesByKey.clear();
+    }
+
+}
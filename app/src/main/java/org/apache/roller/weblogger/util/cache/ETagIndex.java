@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.roller.util.RollerConstants;
+
+
+/**
+ * An index from cache keys to the ETags of the content cached under them.
+ *
+ * Conditional requests only need to know the ETag of the content they would
+ * get, so caches record it here when content is put and can answer those
+ * requests without fetching the content itself.
+ *
+ * Like LazyExpiringCacheEntry each ETag remembers when it was recorded, so
+ * that it is not returned once the content has been invalidated, nor once it
+ * is older than the timeout of the cache it belongs to.  Like DependencyIndex
+ * it is not told when a cache evicts an entry on its own, instead it is
+ * cleared when it grows past its maximum size.
+ */
+public class ETagIndex {
+
+    private final Map<String, Tag> tags = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final long maxAge;
+
+
+    /**
+     * @param maxSize the number of keys at which the index is cleared
+     * @param maxAge how long ETags are good for in millis, 0 for no limit
+     */
+    public ETagIndex(int maxSize, long maxAge) {
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+    }
+
+
+    /**
+     * An index for a cache constructed from the given properties, using the
+     * same "size" and "timeout" defaults as the cache factories.
+     */
+    public static ETagIndex forCache(Map<String, String> cacheProps) {
+
+        int size = 100;
+        long timeout = 15 * 60;
+        try {
+            size = Integer.parseInt(cacheProps.get("size"));
+        } catch (NumberFormatException e) {
+            // use default
+        }
+        try {
+            timeout = Long.parseLong(cacheProps.get("timeout"));
+        } catch (NumberFormatException e) {
+            // use default
+        }
+
+        return new ETagIndex(size, Math.max(0, timeout) * RollerConstants.SEC_IN_MS);
+    }
+
+
+    /**
+     * Record the ETag of the content just cached under the given key.
+     */
+    public void put(String key, String eTag) {
+
+        if (eTag == null) {
+            tags.remove(key);
+            return;
+        }
+
+        if (tags.size() >= maxSize) {
+            tags.clear();
+        }
+        tags.put(key, new Tag(eTag, System.currentTimeMillis()));
+    }
+
+
+    /**
+     * The ETag of the content cached under the given key, or null if there
+     * is none or it was recorded before lastInvalidated.
+     */
+    public String get(String key, long lastInvalidated) {
+
+        Tag tag = tags.get(key);
+        if (tag == null || tag.timeCached < lastInvalidated) {
+            return null;
+        }
+        if (maxAge > 0 && System.currentTimeMillis() - tag.timeCached > maxAge) {
+            tags.remove(key, tag);
+            return null;
+        }
+        return tag.eTag;
+    }
+
+
+    public void remove(String key) {
+        tags.remove(key);
+    }
+
+
+    /**
+     * Number of keys in the index.
+     */
+    public int size() {
+        return tags.size();
+    }
+
+
+    public void clear() {
+        tags.clear();
+    }
+
+
+    private static final class Tag {
+
+        private final String eTag;
+        private final long timeCached;
+
+        private Tag(String eTag, long timeCached) {
+            this.eTag = eTag;
+            this.timeCached = timeCached;
+        }
+    }
+
+}
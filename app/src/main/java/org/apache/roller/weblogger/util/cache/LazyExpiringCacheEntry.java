@@ -42,7 +42,7 @@ import java.io.Serializable;
  * invalidate.  Instead we can just sit back and let the items be invalidated as
  * we try to use them.
  */
-public class LazyExpiringCacheEntry implements Serializable {
+public class LazyExpiringCacheEntry implements Serializable, Sizeable {
     
     private final Object value;
     private final long timeCached;
@@ -68,6 +68,31 @@ public class LazyExpiringCacheEntry implements Serializable {
     }
     
     
+    /**
+     * Retrieve the value of this cache entry even though it has expired, as
+     * long as it was invalidated no more than maxStale millis ago.
+     *
+     * This is meant for serving stale content while a fresh value is being
+     * produced, callers should still prefer getValue().
+     */
+    public Object getStaleValue(long lastInvalidated, long maxStale) {
+        if(System.currentTimeMillis() - lastInvalidated <= maxStale) {
+            return this.value;
+        } else {
+            return null;
+        }
+    }
+
+
+    /**
+     * Retrieve the value of this cache entry whether it is fresh or not, for
+     * an entry which getStaleValue() has already accepted.
+     */
+    public Object getCachedValue() {
+        return this.value;
+    }
+
+
     /**
      * Determine if this cache entry has expired.
      */
@@ -81,4 +106,19 @@ public class LazyExpiringCacheEntry implements Serializable {
         return timeCached;
     }
     
+    
+    /**
+     * The size of the wrapped value, or 0 if the value doesn't know its size.
+     * Byte arrays are as big as their length.
+     */
+    @Override
+    public long getSizeInBytes() {
+        if (this.value instanceof Sizeable) {
+            return ((Sizeable) this.value).getSizeInBytes();
+        } else if (this.value instanceof byte[]) {
+            return ((byte[]) this.value).length;
+        }
+        return 0;
+    }
+    
 }
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Coalesces concurrent work on the same cache key.
+ *
+ * The first caller to start() for a key becomes the leader and is expected
+ * to produce the value and hand it to complete(), every other caller which
+ * arrives before then is a follower and may await() the leader's result
+ * instead of producing the same value again.  The leader must always
+ * release() its ticket, typically in a finally block, so that followers are
+ * let go even if it fails.
+ *
+ * Followers only wait for a bounded time.  If the leader fails or takes too
+ * long they get null back and are expected to go and do the work themselves.
+ */
+public class SingleFlight {
+
+    private final ConcurrentMap<String, Call> calls = new ConcurrentHashMap<>();
+
+    // how long followers wait for a leader, in millis
+    private final long waitTimeout;
+
+
+    public SingleFlight(long waitTimeout) {
+        this.waitTimeout = waitTimeout;
+    }
+
+
+    /**
+     * Join the work for a key, becoming its leader if nobody else is on it.
+     */
+    public Ticket start(String key) {
+
+        Call call = new Call();
+        Call existing = calls.putIfAbsent(key, call);
+        if (existing != null) {
+            return new Ticket(key, existing, false);
+        }
+        return new Ticket(key, call, true);
+    }
+
+
+    /**
+     * Hand a result for a key to any waiting followers and end the work on it.
+     */
+    public void complete(String key, Object result) {
+
+        Call call = calls.remove(key);
+        if (call != null) {
+            call.finish(result);
+        }
+    }
+
+
+    /**
+     * Number of keys currently being worked on.
+     */
+    public int size() {
+        return calls.size();
+    }
+
+
+    /**
+     * A caller's part in the work on a key.
+     */
+    public final class Ticket {
+
+        private final String key;
+        private final Call call;
+        private final boolean leader;
+
+        private Ticket(String key, Call call, boolean leader) {
+            this.key = key;
+            this.call = call;
+            this.leader = leader;
+        }
+
+        public boolean isLeader() {
+            return leader;
+        }
+
+        /**
+         * Wait for the leader's result, null if it failed or took too long.
+         */
+        public Object await() {
+            try {
+                if (call.done.await(waitTimeout, TimeUnit.MILLISECONDS)) {
+                    return call.result;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }
+
+        /**
+         * End the work on the key if the leader didn't complete it, which
+         * lets followers go with a null result.
+         */
+        public void release() {
+            if (leader && calls.remove(key, call)) {
+                call.finish(null);
+            }
+        }
+    }
+
+
+    private static final class Call {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Object result = null;
+
+        void finish(Object result) {
+            this.result = result;
+            done.countDown();
+        }
+    }
+
+}
@@ -50,6 +50,7 @@ import org.apache.roller.weblogger.business.Weblogger;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.search.IndexManager;
 import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
+import org.apache.roller.weblogger.pojos.PageCursor;
 import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogCategory;
@@ -179,6 +180,7 @@ public class EntryCollection {
             wesc.setWeblog(website);
             wesc.setSortBy(WeblogEntrySearchCriteria.SortBy.UPDATE_TIME);
             wesc.setOffset(start);
+            wesc.setCursor(PageCursor.parse(areq.getParameter("cursor")));
             wesc.setMaxResults(max + 1);
             List<WeblogEntry> entries = roller.getWeblogEntryManager().getWeblogEntries(wesc);
             Feed feed = new Feed();
@@ -193,11 +195,13 @@ public class EntryCollection {
             feed.setAlternateLinks(Collections.singletonList(link));
 
             List<Entry> atomEntries = new ArrayList<>();
+            WeblogEntry lastEntry = null;
             int count = 0;
             for (WeblogEntry rollerEntry : entries) {
                 if (count++ >= MAX_ENTRIES) {
                     break;
                 }
+                lastEntry = rollerEntry;
                 Entry entry = createAtomEntry(rollerEntry);
                 atomEntries.add(entry);
                 if (count == 1) {
@@ -206,11 +210,14 @@ public class EntryCollection {
                 }
             }
             List<Link> links = new ArrayList<>();
-            if (entries.size() > max) {
-                // add next link
+            if (entries.size() > max && lastEntry != null) {
+                // add next link, the cursor lets the next page seek to where
+                // this one ended, the offset is for clients which drop it
                 int nextOffset = start + max;
+                PageCursor nextCursor = new PageCursor(lastEntry.getUpdateTime(), lastEntry.getId());
                 String url = atomURL+"/"
-                        + website.getHandle() + "/entries/" + nextOffset;
+                        + website.getHandle() + "/entries/" + nextOffset
+                        + "?cursor=" + nextCursor.encode();
                 Link nextLink = new Link();
                 nextLink.setRel("next");
                 nextLink.setHref(url);
@@ -57,4 +57,14 @@ public class RegexUtilTest  {
         assertEquals(expect, result);
     }
 
+    @Test
+    public void testObfuscateSeveralEmails() {
+        // an @ which isn't part of an address is left alone
+        String test = "ask @roller, me@mail.example.com or you@example.org";
+        String expect = "ask @roller, me-AT-mail.example-DOT-com or you-AT-example-DOT-org";
+        assertEquals(expect, RegexUtil.encodeEmail(test));
+        assertEquals(expect, RegexUtil.obfuscateEmail(test));
+        assertEquals("no emails", RegexUtil.encodeEmail("no emails"));
+    }
+
 }
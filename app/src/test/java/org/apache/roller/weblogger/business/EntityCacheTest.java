@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.business.jpa.JPAEntityCache;
+import org.apache.roller.weblogger.business.jpa.LocalEntityInvalidator;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test the cache of read-mostly entities, which the test configuration
+ * enables with a LocalEntityInvalidator.
+ */
+public class EntityCacheTest  {
+
+    public static Log log = LogFactory.getLog(EntityCacheTest.class);
+
+    User testUser = null;
+    Weblog testWeblog = null;
+
+
+    @BeforeEach
+    public void setUp() throws Exception {
+
+        // setup weblogger
+        TestUtils.setupWeblogger();
+
+        try {
+            testUser = TestUtils.setupUser("entityCacheUser");
+            testWeblog = TestUtils.setupWeblog("entityCacheWeblog", testUser);
+            TestUtils.endSession(true);
+        } catch (Exception ex) {
+            log.error(ex);
+            throw new Exception("Test setup failed", ex);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+
+        try {
+            TestUtils.teardownWeblog(testWeblog.getId());
+            TestUtils.teardownUser(testUser.getUserName());
+            TestUtils.endSession(true);
+        } catch (Exception ex) {
+            log.error(ex);
+            throw new Exception("Test teardown failed", ex);
+        }
+    }
+
+
+    /**
+     * Lookups by name keep working when the named entity changes.
+     */
+    @Test
+    public void testLookupsByName() throws Exception {
+
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        WeblogCategory category = TestUtils.setupWeblogCategory(testWeblog, "entityCacheCat");
+        TestUtils.endSession(true);
+
+        // the second lookup is by id
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        assertEquals(category.getId(), mgr.getWeblogCategoryByName(testWeblog, "entityCacheCat").getId());
+        TestUtils.endSession(true);
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        category = mgr.getWeblogCategoryByName(testWeblog, "entityCacheCat");
+        assertEquals("entityCacheCat", category.getName());
+
+        // renamed, the old name is gone
+        category.setName("entityCacheCat2");
+        mgr.saveWeblogCategory(category);
+        TestUtils.endSession(true);
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        assertNull(mgr.getWeblogCategoryByName(testWeblog, "entityCacheCat"));
+        assertEquals(category.getId(), mgr.getWeblogCategoryByName(testWeblog, "entityCacheCat2").getId());
+
+        // removed
+        TestUtils.teardownWeblogCategory(category.getId());
+        TestUtils.endSession(true);
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        assertNull(mgr.getWeblogCategoryByName(testWeblog, "entityCacheCat2"));
+    }
+
+
+    /**
+     * Invalidations drop entities from the shared cache and are passed on
+     * to the other servers, which pass theirs on to us.
+     */
+    @Test
+    public void testInvalidations() throws Exception {
+
+        WeblogManager mgr = WebloggerFactory.getWeblogger().getWeblogManager();
+        String id = testWeblog.getId();
+
+        // another server of the cluster
+        List<String> received = new CopyOnWriteArrayList<>();
+        LocalEntityInvalidator otherServer = new LocalEntityInvalidator();
+        otherServer.init((entityName, entityId) -> received.add(entityName + ":" + entityId));
+
+        try {
+            mgr.getWeblog(id);
+            TestUtils.endSession(true);
+
+            double hits = getStat("hits");
+            Weblog weblog = mgr.getWeblog(id);
+            assertTrue(getStat("hits") > hits);
+            TestUtils.endSession(true);
+
+            // changed here
+            double misses = getStat("misses");
+            CacheManager.invalidate(weblog);
+            assertTrue(received.contains("Weblog:" + id));
+            mgr.getWeblog(id);
+            assertTrue(getStat("misses") > misses);
+            TestUtils.endSession(true);
+
+            // changed on the other server
+            double remoteEvictions = getStat("remoteEvictions");
+            mgr.getWeblog(id);
+            TestUtils.endSession(true);
+            misses = getStat("misses");
+            otherServer.send("Weblog", id);
+            assertEquals(remoteEvictions + 1, getStat("remoteEvictions"));
+            mgr.getWeblog(id);
+            assertTrue(getStat("misses") > misses);
+            TestUtils.endSession(true);
+
+        } finally {
+            otherServer.shutdown();
+        }
+    }
+
+
+    private static double getStat(String name) {
+        Map<String, Object> stats = CacheManager.getStats().get(JPAEntityCache.SHARED_CACHE_ID);
+        assertNotNull(stats);
+        return (Double) stats.get(name);
+    }
+
+}
@@ -28,8 +28,11 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -199,6 +202,63 @@ public class HitCountTest  {
         assertNull(hitCount);
     }
     
+    @Test
+    public void testIncrementHitCounts() throws Exception {
+        
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        
+        testUser = TestUtils.getManagedUser(testUser);
+        Weblog blog1 = TestUtils.setupWeblog("hitCntIncTest1", testUser);
+        Weblog blog2 = TestUtils.setupWeblog("hitCntIncTest2", testUser);
+        WeblogHitCount cnt1 = TestUtils.setupHitCount(blog1, 10);
+        WeblogHitCount cnt2 = null;
+        TestUtils.endSession(true);
+        
+        try {
+            // one weblog with an existing count, one without
+            Map<Weblog, Integer> hits = new HashMap<>();
+            hits.put(TestUtils.getManagedWebsite(blog1), 5);
+            hits.put(TestUtils.getManagedWebsite(blog2), 7);
+            mgr.incrementHitCounts(hits);
+            TestUtils.endSession(true);
+            
+            assertEquals(15, mgr.getHitCount(cnt1.getId()).getDailyHits());
+            cnt2 = mgr.getHitCountByWeblog(TestUtils.getManagedWebsite(blog2));
+            assertNotNull(cnt2);
+            assertEquals(7, cnt2.getDailyHits());
+            
+            // the queue tallies hits per weblog and drains them
+            HitCountQueue queue = new HitCountQueue(false);
+            queue.processHit(blog1);
+            queue.processHit(blog1);
+            queue.processHit(blog2);
+            Map<String, Long> drained = queue.drainHits();
+            assertEquals(Long.valueOf(2), drained.get("hitCntIncTest1"));
+            assertEquals(Long.valueOf(1), drained.get("hitCntIncTest2"));
+            assertTrue(queue.drainHits().isEmpty());
+            
+            // handles are looked up a few hundred at a time, unknown and
+            // invalid ones are left out
+            List<String> handles = new ArrayList<>();
+            for (int i = 0; i < 1200; i++) {
+                handles.add("hitCntNoSuchBlog" + i);
+            }
+            handles.add("hitCntIncTest2");
+            handles.add("not a handle");
+            Map<String, Weblog> weblogs = WebloggerFactory.getWeblogger()
+                    .getWeblogManager().getWeblogsByHandles(handles);
+            assertEquals(1, weblogs.size());
+            assertEquals(blog2.getId(), weblogs.get("hitCntIncTest2").getId());
+        } finally {
+            if (cnt2 != null) {
+                TestUtils.teardownHitCount(cnt2.getId());
+            }
+            TestUtils.teardownHitCount(cnt1.getId());
+            TestUtils.teardownWeblog(blog1.getId());
+            TestUtils.teardownWeblog(blog2.getId());
+        }
+    }
+    
     @Test
     public void testResetHitCounts() throws Exception {
         WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
@@ -23,7 +23,9 @@ import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.TestUtils;
 import org.apache.roller.weblogger.business.search.IndexManager;
 import org.apache.roller.weblogger.business.search.IndexManagerImpl;
+import org.apache.roller.weblogger.business.search.IndexRebuildProgress;
 import org.apache.roller.weblogger.business.search.operations.AddEntryOperation;
+import org.apache.roller.weblogger.business.search.operations.RebuildWebsiteIndexOperation;
 import org.apache.roller.weblogger.business.search.operations.SearchOperation;
 import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.Weblog;
@@ -37,6 +39,7 @@ import org.junit.jupiter.api.Test;
 import java.sql.Timestamp;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
 /**
  * Test Search Manager business layer operations.
@@ -139,11 +142,13 @@ public class IndexManagerTest  {
         search.setTerm("Enterprise");
         imgr.executeIndexOperationNow(search);
         assertEquals(2, search.getResultsCount());
+        search.release();
 
         SearchOperation search2 = new SearchOperation(imgr);
         search2.setTerm("Tholian");
         imgr.executeIndexOperationNow(search2);
         assertEquals(1, search2.getResultsCount());
+        search2.release();
 
         // Clean up
         imgr.removeEntryIndexOperation(wd1);
@@ -153,5 +158,37 @@ public class IndexManagerTest  {
         search3.setTerm("Enterprise");
         imgr.executeIndexOperationNow(search3);
         assertEquals(0, search3.getResultsCount());
+        search3.release();
     }    
+
+    @Test
+    public void testRebuildWebsiteIndex() throws Exception {
+        WeblogEntryManager wem = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        // more entries than fit in one chunk of the rebuild, see roller-custom.properties
+        for (int i = 0; i < 3; i++) {
+            WeblogEntry entry = TestUtils.setupWeblogEntry("rebuild" + i,
+                    TestUtils.getManagedWebsite(testWeblog), testUser);
+            entry.setText("Captain's log, stardate " + i);
+            wem.saveWeblogEntry(entry);
+        }
+        TestUtils.endSession(true);
+
+        IndexManager imgr = WebloggerFactory.getWeblogger().getIndexManager();
+        imgr.executeIndexOperationNow(new RebuildWebsiteIndexOperation(
+                WebloggerFactory.getWeblogger(), (IndexManagerImpl) imgr,
+                TestUtils.getManagedWebsite(testWeblog)));
+
+        IndexRebuildProgress progress = imgr.getRebuildProgress();
+        assertFalse(progress.isRunning());
+        assertFalse(progress.isFailed());
+        assertEquals(3, progress.getTotal());
+        assertEquals(3, progress.getIndexed());
+
+        SearchOperation search = new SearchOperation(imgr);
+        search.setTerm("stardate");
+        imgr.executeIndexOperationNow(search);
+        assertEquals(3, search.getResultsCount());
+        search.release();
+    }
 }
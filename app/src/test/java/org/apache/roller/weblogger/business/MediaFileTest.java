@@ -29,9 +29,11 @@ import org.apache.roller.weblogger.pojos.MediaFileFilter.SizeFilterType;
 import org.apache.roller.weblogger.util.RollerMessages;
 import org.junit.jupiter.api.Test;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.sql.Timestamp;
 import java.util.*;
+import javax.imageio.ImageIO;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -380,6 +382,25 @@ public class MediaFileTest  {
         assertTrue(mediaFile1.getSharedForGallery());
         assertEquals(2000, mediaFile1.getLength());
 
+        // the image size is read on upload, thumbnails are made in the
+        // background or when first asked for
+        assertTrue(mediaFile1.getWidth() > 0);
+        assertTrue(mediaFile1.getHeight() > 0);
+        FileContent thumbnail = mfMgr.getThumbnailContent(mediaFile1,
+                MediaFileManager.MAX_WIDTH);
+        BufferedImage image = ImageIO.read(thumbnail.getFile());
+        assertEquals(mediaFile1.getThumbnailWidth(), image.getWidth());
+        assertEquals(mediaFile1.getThumbnailHeight(), image.getHeight());
+
+        assertTrue(mfMgr.isThumbnailSize(240));
+        image = ImageIO.read(mfMgr.getThumbnailContent(mediaFile1, 240).getFile());
+        assertEquals(Math.min(240, Math.max(mediaFile1.getWidth(), mediaFile1.getHeight())),
+                Math.max(image.getWidth(), image.getHeight()));
+
+        assertFalse(mfMgr.isThumbnailSize(241));
+        assertThrows(WebloggerException.class,
+                () -> mfMgr.getThumbnailContent(mediaFile1, 241));
+
         TestUtils.endSession(true);
         TestUtils.teardownWeblog(testWeblog.getId());
         TestUtils.teardownUser(testUser.getUserName());
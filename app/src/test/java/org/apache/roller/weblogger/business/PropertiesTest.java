@@ -21,6 +21,7 @@ package org.apache.roller.weblogger.business;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
 import org.apache.roller.weblogger.pojos.RuntimeConfigProperty;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -91,5 +92,40 @@ public class PropertiesTest  {
         assertEquals("foofoo", props.get("site.name").getValue());
         assertEquals("blahblah", props.get("site.description").getValue());
     }
+
+
+    @Test
+    public void testPropertyValues() throws Exception {
+
+        PropertiesManager mgr = WebloggerFactory.getWeblogger().getPropertiesManager();
+        TestUtils.endSession(true);
+
+        // values come from a snapshot of all properties
+        RuntimeConfigProperty prop = mgr.getProperty("site.name");
+        assertEquals(prop.getValue(), mgr.getPropertyValue("site.name"));
+        assertEquals(prop.getValue(), WebloggerRuntimeConfig.getProperty("site.name"));
+        assertNull(mgr.getPropertyValue("no.such.property"));
+
+        // saved values are seen once they are committed, and properties get
+        // a new version which tells other servers to load them again
+        String version = mgr.getPropertyValue("runtimeconfig.version");
+        String siteName = prop.getValue();
+        prop.setValue("snapshot");
+        mgr.saveProperty(prop);
+        assertEquals(siteName, mgr.getPropertyValue("site.name"));
+        TestUtils.endSession(true);
+
+        assertNotEquals(version, mgr.getProperty("runtimeconfig.version").getValue());
+        assertEquals(mgr.getProperty("runtimeconfig.version").getValue(),
+                mgr.getPropertyValue("runtimeconfig.version"));
+        assertEquals("snapshot", mgr.getPropertyValue("site.name"));
+
+        // values which are rolled back are never seen
+        prop = mgr.getProperty("site.name");
+        prop.setValue("rolled back");
+        mgr.saveProperty(prop);
+        TestUtils.endSession(false);
+        assertEquals("snapshot", mgr.getPropertyValue("site.name"));
+    }
     
 }
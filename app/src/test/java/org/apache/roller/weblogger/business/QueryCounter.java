@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business;
+
+import org.eclipse.persistence.internal.databaseaccess.DatasourceCall;
+import org.eclipse.persistence.sessions.Session;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+
+/**
+ * Counts the SQL statements EclipseLink sends to the database on the current
+ * thread, so tests can check how many queries an operation takes.  Registered
+ * through eclipselink.session-event-listener in roller-custom.properties.
+ */
+public class QueryCounter extends SessionEventAdapter {
+
+    private static final ThreadLocal<int[]> count = new ThreadLocal<>();
+
+    private static volatile Session session = null;
+
+    /**
+     * Start counting statements on the current thread.
+     */
+    public static void start() {
+        count.set(new int[2]);
+    }
+
+    /**
+     * Number of the statements since start() which write, i.e. inserts,
+     * updates and deletes.  Call it before stop().
+     */
+    public static int writes() {
+        int[] counted = count.get();
+        return counted == null ? 0 : counted[1];
+    }
+
+    /**
+     * Stop counting and return the number of statements since start().
+     */
+    public static int stop() {
+        int[] counted = count.get();
+        count.remove();
+        return counted == null ? 0 : counted[0];
+    }
+
+    /**
+     * Empty the shared entity cache, so that entities and their relations
+     * have to come from the database again.
+     */
+    public static void clearCache() {
+        if (session != null) {
+            session.getIdentityMapAccessor().initializeAllIdentityMaps();
+        }
+    }
+
+    @Override
+    public void postLogin(SessionEvent event) {
+        session = event.getSession();
+    }
+
+    @Override
+    public void preExecuteCall(SessionEvent event) {
+        int[] counted = count.get();
+        if (counted != null) {
+            counted[0]++;
+            if (event.getCall() instanceof DatasourceCall
+                    && ((DatasourceCall) event.getCall()).getQuery().isModifyQuery()) {
+                counted[1]++;
+            }
+        }
+    }
+
+}
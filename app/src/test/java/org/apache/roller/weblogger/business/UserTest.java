@@ -27,6 +27,7 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -162,7 +163,51 @@ public class UserTest  {
         TestUtils.teardownUser(testUser.getUserName());
         TestUtils.endSession(true);
     }
-    
+
+
+    /**
+     * Test the user directory, counts and lists of users by first letter.
+     */
+    @Test
+    public void testUsersByLetter() throws Exception {
+
+        UserManager mgr = WebloggerFactory.getWeblogger().getUserManager();
+
+        // test users' names all start with the junit prefix
+        long before = mgr.getUserNameLetterMap().get("J");
+        assertEquals(26, mgr.getUserNameLetterMap().size());
+
+        User user1 = TestUtils.setupUser("letterUser1");
+        User user2 = TestUtils.setupUser("letterUser2");
+        TestUtils.endSession(true);
+
+        try {
+            // the counts are reloaded after users are added
+            assertEquals(before + 2, mgr.getUserNameLetterMap().get("J").longValue());
+
+            List<User> users = mgr.getUsersByLetter('J', 0, -1);
+            assertEquals(before + 2, users.size());
+            assertEquals(users, mgr.getUsersByLetter('j', 0, -1));
+            List<String> userNames = new ArrayList<>();
+            for (User user : users) {
+                userNames.add(user.getUserName());
+            }
+            assertTrue(userNames.contains(user1.getUserName()));
+            assertTrue(userNames.contains(user2.getUserName()));
+            assertEquals(1, mgr.getUsersByLetter('J', (int) before + 1, 10).size());
+            assertTrue(mgr.getUsersByLetter('K', 0, -1).isEmpty());
+
+        } finally {
+            TestUtils.teardownUser(user1.getUserName());
+            // counts made before the removal is committed aren't kept
+            mgr.removeUser(mgr.getUserByUserName(user2.getUserName()));
+            mgr.getUserNameLetterMap();
+            TestUtils.endSession(true);
+        }
+
+        assertEquals(before, mgr.getUserNameLetterMap().get("J").longValue());
+    }
+
     
     /**
      * Test basic user role persistence ... Add, Remove
@@ -23,6 +23,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.TestUtils;
 import org.apache.roller.weblogger.pojos.*;
 import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
+import org.apache.roller.weblogger.util.cache.CacheManager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -31,6 +32,7 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -307,6 +309,54 @@ public class WeblogEntryTest  {
         TestUtils.endSession(true);
     }
 
+
+    /**
+     * Test the calendar's day and title maps, which group entries by the
+     * day they were published on in the weblog's timezone.
+     */
+    @Test
+    public void testCalendarMaps() throws Exception {
+
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        Weblog weblog = TestUtils.getManagedWebsite(testWeblog);
+        weblog.setTimeZone("Asia/Tokyo");
+        WebloggerFactory.getWeblogger().getWeblogManager().saveWeblog(weblog);
+
+        // 2026-03-10 05:00, 05:00, 10:00 and 16:00 UTC, the last one is
+        // already on the next day in Tokyo
+        long day = 1773100800000L;
+        long[] hours = {5, 5, 10, 16};
+        for (int i = 0; i < hours.length; i++) {
+            WeblogEntry entry = TestUtils.setupWeblogEntry("calendarEntry" + i, testWeblog, testUser);
+            entry.setPubTime(new Timestamp(day + hours[i] * 3600000L));
+            mgr.saveWeblogEntry(entry);
+        }
+        TestUtils.endSession(true);
+
+        WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
+        wesc.setWeblog(TestUtils.getManagedWebsite(testWeblog));
+
+        Map<Date, String> days = mgr.getWeblogEntryStringMap(wesc);
+        assertEquals(Arrays.asList("20260311", "20260310"), new ArrayList<>(days.values()));
+
+        Map<Date, List<WeblogEntryTitle>> titles = mgr.getWeblogEntryTitleMap(wesc);
+        Map<Date, List<WeblogEntry>> entries = mgr.getWeblogEntryObjectMap(wesc);
+        assertEquals(new ArrayList<>(days.keySet()), new ArrayList<>(titles.keySet()));
+        assertEquals(entries.keySet(), titles.keySet());
+        for (Map.Entry<Date, List<WeblogEntry>> dayEntries : entries.entrySet()) {
+            List<WeblogEntryTitle> dayTitles = titles.get(dayEntries.getKey());
+            assertEquals(dayEntries.getValue().size(), dayTitles.size());
+            for (int i = 0; i < dayTitles.size(); i++) {
+                WeblogEntry entry = dayEntries.getValue().get(i);
+                assertEquals(entry.getAnchor(), dayTitles.get(i).getAnchor());
+                assertEquals(entry.getTitle(), dayTitles.get(i).getTitle());
+                assertEquals(entry.getPubTime().getTime(), dayTitles.get(i).getPubTime().getTime());
+            }
+        }
+        assertEquals(1, titles.values().iterator().next().size());
+    }
+
     /**
      * Test that the createAnchor() method actually ensures unique anchors.
      */
@@ -527,7 +577,15 @@ public class WeblogEntryTest  {
         assertTrue(mgr.getTagComboExists(tags2, testWeblog));
         assertFalse(mgr.getTagComboExists(tags1, testWeblog));
         assertFalse(mgr.getTagComboExists(tags2, weblog));
-        
+
+        // combinations, answered without queries once the tags are known
+        QueryCounter.start();
+        assertTrue(mgr.getTagComboExists(List.of("blahtag", "footag"), testWeblog));
+        assertFalse(mgr.getTagComboExists(List.of("blahtag", "nonexisttag"), testWeblog));
+        assertFalse(mgr.getTagComboExists(List.of("blahtag", "aaatag"), testWeblog));
+        assertTrue(mgr.getTagComboExists(List.of("blahtag", "aaatag"), null));
+        assertEquals(0, QueryCounter.stop());
+
         // teardown our test data
         TestUtils.teardownWeblogEntry(id1);
         TestUtils.teardownWeblogEntry(id2);
@@ -997,6 +1055,400 @@ public class WeblogEntryTest  {
     }
 
 
+    /**
+     * Test that the approved comment counter follows comment changes.
+     */
+    @Test
+    public void testCommentCount() throws Exception {
+        
+        WeblogEntryManager emgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        
+        WeblogEntry entry = TestUtils.setupWeblogEntry("commentCountEntry", testWeblog, testUser);
+        String id = entry.getId();
+        WeblogEntryComment comment1 = TestUtils.setupComment("comment1", entry);
+        WeblogEntryComment comment2 = TestUtils.setupComment("comment2", entry);
+        WeblogEntryComment comment3 = TestUtils.setupComment("comment3", entry);
+        TestUtils.endSession(true);
+        
+        try {
+            entry = emgr.getWeblogEntry(id);
+            assertEquals(Integer.valueOf(3), entry.getApprovedCommentCount());
+            assertEquals(3, entry.getCommentCount());
+            
+            // no longer approved
+            comment3 = emgr.getComment(comment3.getId());
+            comment3.setStatus(WeblogEntryComment.ApprovalStatus.PENDING);
+            emgr.saveComment(comment3);
+            TestUtils.endSession(true);
+            
+            entry = emgr.getWeblogEntry(id);
+            assertEquals(Integer.valueOf(2), entry.getApprovedCommentCount());
+            
+            // approved again, saving it twice counts it once
+            comment3 = emgr.getComment(comment3.getId());
+            comment3.setStatus(WeblogEntryComment.ApprovalStatus.APPROVED);
+            emgr.saveComment(comment3);
+            emgr.saveComment(comment3);
+            assertEquals(Integer.valueOf(3), comment3.getWeblogEntry().getApprovedCommentCount());
+            TestUtils.endSession(true);
+            
+            entry = emgr.getWeblogEntry(id);
+            assertEquals(Integer.valueOf(3), entry.getApprovedCommentCount());
+            
+            // removing comments in bulk counts once per entry
+            comment3 = emgr.getComment(comment3.getId());
+            comment3.setStatus(WeblogEntryComment.ApprovalStatus.PENDING);
+            emgr.saveComment(comment3);
+            assertEquals(2, emgr.removeMatchingComments(null, entry, null, null, null,
+                    WeblogEntryComment.ApprovalStatus.APPROVED));
+            TestUtils.endSession(true);
+            
+            entry = emgr.getWeblogEntry(id);
+            assertEquals(Integer.valueOf(0), entry.getApprovedCommentCount());
+            assertEquals(0, entry.getCommentCount());
+            
+            // entries without the counter get counted in one query
+            comment3 = emgr.getComment(comment3.getId());
+            comment3.setStatus(WeblogEntryComment.ApprovalStatus.APPROVED);
+            emgr.saveComment(comment3);
+            entry = emgr.getWeblogEntry(id);
+            entry.setApprovedCommentCount(null);
+            emgr.saveWeblogEntry(entry);
+            TestUtils.endSession(true);
+            
+            assertEquals(Map.of(id, 1), emgr.getCommentCounts(List.of(id, "nosuchentry")));
+            WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
+            wesc.setWeblog(TestUtils.getManagedWebsite(testWeblog));
+            entry = emgr.getWeblogEntries(wesc).get(0);
+            assertNull(entry.getApprovedCommentCount());
+            assertEquals(1, entry.getCommentCount());
+        } finally {
+            TestUtils.teardownComment(comment3.getId());
+            TestUtils.teardownWeblogEntry(id);
+            TestUtils.endSession(true);
+        }
+    }
+
+
+    /**
+     * Test that a fetch plan loads what a page of entries displays in a fixed
+     * number of queries, however many entries there are.
+     */
+    @Test
+    public void testFetchPlan() throws Exception {
+        
+        WeblogEntryManager emgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        
+        for (int i = 0; i < 10; i++) {
+            WeblogEntry entry = TestUtils.setupWeblogEntry("fetchPlanEntry" + i, testWeblog, testUser);
+            entry.addTag("tag" + i);
+            entry.addTag("fetchplan");
+            entry.putEntryAttribute("att", "value" + i);
+            emgr.saveWeblogEntry(entry);
+        }
+        TestUtils.endSession(true);
+        
+        assertEquals(queriesForPage(3), queriesForPage(10));
+    }
+    
+    private int queriesForPage(int length) throws Exception {
+        WeblogEntryManager emgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        Weblog weblog = TestUtils.getManagedWebsite(testWeblog);
+        QueryCounter.clearCache();
+        
+        QueryCounter.start();
+        WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
+        wesc.setWeblog(weblog);
+        wesc.setMaxResults(length);
+        wesc.setFetch(EnumSet.allOf(WeblogEntrySearchCriteria.Fetch.class));
+        List<WeblogEntry> entries = emgr.getWeblogEntries(wesc);
+        assertEquals(length, entries.size());
+        for (WeblogEntry entry : entries) {
+            assertEquals("General", entry.getCategory().getName());
+            assertEquals(testUser.getUserName(), entry.getCreator().getUserName());
+            assertEquals(2, entry.getTags().size());
+            assertTrue(entry.findEntryAttribute("att").startsWith("value"));
+        }
+        int queries = QueryCounter.stop();
+        TestUtils.endSession(true);
+        return queries;
+    }
+
+
+    /**
+     * Saving an entry reads the counts of all its tags with one query, and
+     * counts which drop to zero are left for removeUnusedTagAggregates().
+     */
+    @Test
+    public void testTagCountUpdates() throws Exception {
+
+        WeblogEntryManager emgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        assertEquals(queriesToTag("tagcounta", 1), queriesToTag("tagcountb", 15));
+
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        List<TagStat> tags = emgr.getTags(testWeblog, null, "tagcountb", 0, -1);
+        assertEquals(15, tags.size());
+        for (TagStat tag : tags) {
+            assertEquals(1, tag.getCount());
+        }
+        assertEquals(15, emgr.getTags(null, null, "tagcountb", 0, -1).size());
+
+        // counts drop to zero and are no longer listed
+        WeblogEntry entry = emgr.getWeblogEntryByAnchor(testWeblog, "tagcountb");
+        entry.setTagsAsString("");
+        emgr.saveWeblogEntry(entry);
+        TestUtils.endSession(true);
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        assertTrue(emgr.getTags(testWeblog, null, "tagcountb", 0, -1).isEmpty());
+        assertTrue(emgr.getTags(null, null, "tagcountb", 0, -1).isEmpty());
+        assertFalse(emgr.getTagComboExists(List.of("tagcountb0"), testWeblog));
+
+        emgr.removeUnusedTagAggregates();
+        TestUtils.endSession(true);
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        assertEquals(1, emgr.getTags(testWeblog, null, "tagcounta", 0, -1).size());
+    }
+
+    /**
+     * Tag counts are served from memory once loaded, and are kept up to
+     * date as entries are saved.
+     */
+    @Test
+    public void testTagStatsCache() throws Exception {
+
+        WeblogEntryManager emgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        WeblogEntry entry = TestUtils.setupWeblogEntry("tagstats1", testWeblog, testUser);
+        entry.setTagsAsString("statsapple statsavocado statsbanana");
+        emgr.saveWeblogEntry(entry);
+        TestUtils.endSession(true);
+
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        assertEquals(3, emgr.getPopularTags(testWeblog, null, 0, 10).size());
+        assertEquals(3, emgr.getTags(null, null, "stats", 0, -1).size());
+
+        QueryCounter.start();
+        List<TagStat> tags = emgr.getTags(testWeblog, null, "statsa", 0, -1);
+        emgr.getPopularTags(testWeblog, null, 0, 10);
+        emgr.getTags(null, "count", null, 0, 5);
+        assertEquals(0, QueryCounter.stop());
+        assertEquals(List.of("statsapple", "statsavocado"),
+                tags.stream().map(TagStat::getName).collect(Collectors.toList()));
+
+        // updated by saving entries, not reloaded
+        entry = TestUtils.setupWeblogEntry("tagstats2", testWeblog, testUser);
+        entry.setTagsAsString("statsapple statscherry");
+        emgr.saveWeblogEntry(entry);
+        TestUtils.endSession(true);
+
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        QueryCounter.start();
+        tags = emgr.getPopularTags(testWeblog, null, 0, 1);
+        List<TagStat> siteTags = emgr.getTags(null, null, "stats", 0, -1);
+        assertEquals(0, QueryCounter.stop());
+        assertEquals("statsapple", tags.get(0).getName());
+        assertEquals(2, tags.get(0).getCount());
+        assertEquals(4, siteTags.size());
+
+        // a rolled back change leaves them as they were
+        entry = emgr.getWeblogEntryByAnchor(testWeblog, "tagstats2");
+        entry.setTagsAsString("");
+        emgr.saveWeblogEntry(entry);
+        TestUtils.endSession(false);
+
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        assertEquals(2, emgr.getTags(testWeblog, null, "statsapple", 0, -1).get(0).getCount());
+        assertEquals(1, emgr.getTags(testWeblog, null, "statscherry", 0, -1).size());
+
+        // counts loaded during a change aren't cached, they are again once
+        // the change is rolled back
+        CacheManager.clear("cache.tagstats");
+        entry = emgr.getWeblogEntryByAnchor(testWeblog, "tagstats2");
+        entry.setTagsAsString("");
+        emgr.saveWeblogEntry(entry);
+        emgr.getTags(testWeblog, null, "stats", 0, -1);
+        TestUtils.endSession(false);
+
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        assertEquals(1, emgr.getTags(testWeblog, null, "statscherry", 0, -1).size());
+        QueryCounter.start();
+        emgr.getTags(testWeblog, null, "stats", 0, -1);
+        assertEquals(0, QueryCounter.stop());
+    }
+
+    /**
+     * Tags which already have counts are added to with one statement for all
+     * of them, only the entry's own tags are written one by one.
+     */
+    @Test
+    public void testTagCountWrites() throws Exception {
+
+        writesToTag("tagwritesa", "tagwrites", 15);
+
+        int manyTags = writesToTag("tagwritesb", "tagwrites", 15);
+        int oneTag = writesToTag("tagwritesc", "tagwrites", 1);
+        assertEquals(14, manyTags - oneTag);
+
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        WeblogEntryManager emgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        Map<String, Integer> counts = emgr.getTags(testWeblog, null, "tagwrites", 0, -1).stream()
+                .collect(Collectors.toMap(TagStat::getName, TagStat::getCount));
+        assertEquals(15, counts.size());
+        assertEquals(3, counts.get("tagwrites0"));
+        assertEquals(2, counts.get("tagwrites14"));
+        assertEquals(2, emgr.getTags(null, null, "tagwrites14", 0, -1).get(0).getCount());
+    }
+
+    private int writesToTag(String anchor, String tagPrefix, int tagCount) throws Exception {
+        WeblogEntryManager emgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        WeblogEntry entry = TestUtils.setupWeblogEntry(anchor, testWeblog, testUser);
+        for (int i = 0; i < tagCount; i++) {
+            entry.addTag(tagPrefix + i);
+        }
+
+        QueryCounter.start();
+        emgr.saveWeblogEntry(entry);
+        WebloggerFactory.getWeblogger().flush();
+        int writes = QueryCounter.writes();
+        QueryCounter.stop();
+        TestUtils.endSession(true);
+        return writes;
+    }
+
+    private int queriesToTag(String anchor, int tagCount) throws Exception {
+        WeblogEntryManager emgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        WeblogEntry entry = TestUtils.setupWeblogEntry(anchor, testWeblog, testUser);
+        for (int i = 0; i < tagCount; i++) {
+            entry.addTag(anchor + i);
+        }
+
+        QueryCounter.start();
+        emgr.saveWeblogEntry(entry);
+        int queries = QueryCounter.stop();
+        TestUtils.endSession(true);
+        return queries;
+    }
+
+
+    /**
+     * Paging with cursors returns the same entries as a single query, also
+     * when several entries share a pubTime.
+     */
+    @Test
+    public void testCursorPaging() throws Exception {
+
+        WeblogEntryManager emgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 7; i++) {
+            WeblogEntry entry = TestUtils.setupWeblogEntry("cursorEntry" + i, testWeblog, testUser);
+            // three pairs of entries with the same pubTime
+            entry.setPubTime(new Timestamp(now - (i / 2) * 60000L));
+            emgr.saveWeblogEntry(entry);
+        }
+        TestUtils.endSession(true);
+
+        Weblog weblog = TestUtils.getManagedWebsite(testWeblog);
+        WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
+        wesc.setWeblog(weblog);
+        List<WeblogEntry> all = emgr.getWeblogEntries(wesc);
+        assertEquals(7, all.size());
+
+        List<WeblogEntry> paged = new ArrayList<>();
+        PageCursor cursor = null;
+        List<WeblogEntry> page;
+        do {
+            wesc = new WeblogEntrySearchCriteria();
+            wesc.setWeblog(weblog);
+            wesc.setStatus(PubStatus.PUBLISHED);
+            wesc.setMaxResults(2);
+            // the offset is ignored once there is a cursor
+            wesc.setOffset(cursor == null ? 0 : 100);
+            wesc.setCursor(cursor);
+            page = emgr.getWeblogEntries(wesc);
+            paged.addAll(page);
+            if (!page.isEmpty()) {
+                cursor = PageCursor.parse(wesc.nextCursor(page.get(page.size() - 1)).encode());
+            }
+        } while (page.size() == 2);
+
+        assertEquals(all, paged);
+
+        assertNull(PageCursor.parse(null));
+        assertNull(PageCursor.parse("not a cursor"));
+        assertNull(PageCursor.parse("bm90LWEtbnVtYmVyOmlk"));
+    }
+
+
+    /**
+     * Drafts have no pubTime to seek past, so pages of entries sorted by it
+     * which may include drafts go by offset.
+     */
+    @Test
+    public void testCursorPagingWithDrafts() throws Exception {
+
+        WeblogEntryManager emgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        for (int i = 0; i < 5; i++) {
+            WeblogEntry entry = TestUtils.setupWeblogEntry("draftCursorEntry" + i, testWeblog, testUser);
+            if (i < 2) {
+                entry.setStatus(PubStatus.DRAFT);
+                entry.setPubTime(null);
+                emgr.saveWeblogEntry(entry);
+            }
+        }
+        TestUtils.endSession(true);
+
+        Weblog weblog = TestUtils.getManagedWebsite(testWeblog);
+        WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
+        wesc.setWeblog(weblog);
+        List<WeblogEntry> all = emgr.getWeblogEntries(wesc);
+        assertEquals(5, all.size());
+
+        // pages of two, so a draft ends the first or the last full page
+        // depending on where the database sorts nulls
+        List<WeblogEntry> paged = new ArrayList<>();
+        PageCursor cursor = null;
+        List<WeblogEntry> page;
+        int pageNum = 0;
+        do {
+            wesc = new WeblogEntrySearchCriteria();
+            wesc.setWeblog(weblog);
+            wesc.setMaxResults(2);
+            wesc.setOffset(pageNum++ * 2);
+            wesc.setCursor(cursor);
+            page = emgr.getWeblogEntries(wesc);
+            paged.addAll(page);
+            if (!page.isEmpty()) {
+                cursor = wesc.nextCursor(page.get(page.size() - 1));
+                assertNull(cursor);
+            }
+        } while (page.size() == 2);
+
+        assertEquals(all, paged);
+
+        // a cursor handed in anyway is ignored rather than skipping drafts
+        WeblogEntry published = all.stream()
+                .filter(WeblogEntry::isPublished).findFirst().orElseThrow();
+        wesc = new WeblogEntrySearchCriteria();
+        wesc.setWeblog(weblog);
+        wesc.setCursor(new PageCursor(published.getPubTime(), published.getId()));
+        assertEquals(all, emgr.getWeblogEntries(wesc));
+
+        // drafts have an update time to seek past
+        wesc = new WeblogEntrySearchCriteria();
+        wesc.setWeblog(weblog);
+        wesc.setSortBy(WeblogEntrySearchCriteria.SortBy.UPDATE_TIME);
+        WeblogEntry draft = all.stream()
+                .filter(e -> e.getPubTime() == null).findFirst().orElseThrow();
+        assertNotNull(wesc.nextCursor(draft));
+    }
+
+
     @Test
     public void testWeblogStats() throws Exception {
 
@@ -228,6 +228,42 @@ public class WeblogTest  {
         
         log.info("END");
     }
+
+
+    /**
+     * Test the weblog directory, counts and lists of weblogs by first letter.
+     */
+    @Test
+    public void testWeblogsByLetter() throws Exception {
+
+        WeblogManager mgr = WebloggerFactory.getWeblogger().getWeblogManager();
+
+        long before = mgr.getWeblogHandleLetterMap().get("Q");
+        assertEquals(26, mgr.getWeblogHandleLetterMap().size());
+
+        // upper and lower case handles count for the same letter
+        Weblog testWeblog1 = TestUtils.setupWeblog("qLetterWeblog", testUser);
+        Weblog testWeblog2 = TestUtils.setupWeblog("QLetterWeblog2", testUser);
+        TestUtils.endSession(true);
+
+        try {
+            // the counts are reloaded after weblogs are added
+            assertEquals(before + 2, mgr.getWeblogHandleLetterMap().get("Q").longValue());
+
+            List<Weblog> weblogs = mgr.getWeblogsByLetter('q', 0, -1);
+            assertEquals(before + 2, weblogs.size());
+            assertEquals(weblogs, mgr.getWeblogsByLetter('Q', 0, -1));
+            assertEquals(1, mgr.getWeblogsByLetter('Q', (int) before + 1, 10).size());
+            assertTrue(mgr.getWeblogsByLetter('R', 0, -1).isEmpty());
+
+        } finally {
+            TestUtils.teardownWeblog(testWeblog1.getId());
+            TestUtils.teardownWeblog(testWeblog2.getId());
+            TestUtils.endSession(true);
+        }
+
+        assertEquals(before, mgr.getWeblogHandleLetterMap().get("Q").longValue());
+    }
     
 }
 
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.plugins;
+
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test the cache of entry text transformed by plugins.
+ */
+public class TransformedTextCacheTest  {
+
+    private TransformedTextCache cache = null;
+
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        TestUtils.setupWeblogger();
+        cache = TransformedTextCache.getInstance();
+        cache.clear();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        cache.clear();
+    }
+
+
+    /**
+     * Keys start with the entry id and change with the text and the plugins.
+     */
+    @Test
+    public void testGenerateKey() {
+
+        WeblogEntry entry = newEntry(newWeblog("weblog1"), "entry1");
+        entry.setPlugins("AutoFormat Plugin");
+
+        String key = cache.generateKey(entry, "some text");
+        assertTrue(key.startsWith("entry1:"));
+        assertEquals(key, cache.generateKey(entry, "some text"));
+        assertNotEquals(key, cache.generateKey(entry, "other text"));
+
+        entry.setPlugins("AutoFormat Plugin,Smilies Plugin");
+        assertNotEquals(key, cache.generateKey(entry, "some text"));
+
+        WeblogEntry other = newEntry(entry.getWebsite(), "entry2");
+        other.setPlugins(entry.getPlugins());
+        assertNotEquals(cache.generateKey(entry, "some text"),
+                cache.generateKey(other, "some text"));
+    }
+
+
+    /**
+     * Changing an entry drops only that entry's text.
+     */
+    @Test
+    public void testInvalidateEntry() {
+
+        Weblog weblog = newWeblog("weblog1");
+        WeblogEntry entry1 = newEntry(weblog, "entry1");
+        WeblogEntry entry2 = newEntry(weblog, "entry2");
+
+        String key1 = cache.generateKey(entry1, "text");
+        String key2 = cache.generateKey(entry2, "text");
+        cache.put(entry1, key1, "content1");
+        cache.put(entry2, key2, "content2");
+        assertEquals("content1", cache.get(key1));
+
+        CacheManager.invalidate(entry1);
+        assertNull(cache.get(key1));
+        assertEquals("content2", cache.get(key2));
+    }
+
+
+    /**
+     * Changing a weblog drops the text of all its entries and no others.
+     */
+    @Test
+    public void testInvalidateWeblog() {
+
+        Weblog weblog1 = newWeblog("weblog1");
+        Weblog weblog2 = newWeblog("weblog2");
+        WeblogEntry entry1 = newEntry(weblog1, "entry1");
+        WeblogEntry entry2 = newEntry(weblog1, "entry2");
+        WeblogEntry entry3 = newEntry(weblog2, "entry3");
+
+        String key1 = cache.generateKey(entry1, "text");
+        String key2 = cache.generateKey(entry2, "text");
+        String key3 = cache.generateKey(entry3, "text");
+        cache.put(entry1, key1, "content1");
+        cache.put(entry2, key2, "content2");
+        cache.put(entry3, key3, "content3");
+
+        CacheManager.invalidate(weblog1);
+        assertNull(cache.get(key1));
+        assertNull(cache.get(key2));
+        assertEquals("content3", cache.get(key3));
+    }
+
+
+    private static Weblog newWeblog(String id) {
+        Weblog weblog = new Weblog();
+        weblog.setId(id);
+        return weblog;
+    }
+
+    private static WeblogEntry newEntry(Weblog weblog, String id) {
+        WeblogEntry entry = new WeblogEntry();
+        entry.setId(id);
+        entry.setWebsite(weblog);
+        return entry;
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.plugins.entry;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SmileysPluginTest {
+    
+    private static final String SMILE = "<img src=\"http://localhost/roller/images/smileys/smile.gif\" " +
+            "class=\"smiley\" alt=\":)\" title=\":)\" />";
+    private static final String LAUGH = "<img src=\"http://localhost/roller/images/smileys/laugh.gif\" " +
+            "class=\"smiley\" alt=\":))\" title=\":))\" />";
+    
+    @BeforeAll
+    public static void setUp() {
+        SmileysPlugin.loadSmileys("http://localhost/roller");
+    }
+    
+    @Test
+    public void passthrough() {
+        SmileysPlugin instance = new SmileysPlugin();
+        
+        String input = "Stay a while and listen.";
+        assertSame(input, instance.render(null, input));
+        assertEquals("", instance.render(null, ""));
+        assertNull(instance.render(null, null));
+    }
+    
+    @Test
+    public void substitution() {
+        SmileysPlugin instance = new SmileysPlugin();
+        
+        assertEquals(SMILE, instance.render(null, ":)"));
+        assertEquals("a " + SMILE + " b " + SMILE + ".", instance.render(null, "a :) b :)."));
+    }
+    
+    @Test
+    public void longestSmileyWins() {
+        SmileysPlugin instance = new SmileysPlugin();
+        
+        // ":))" contains ":)", the inserted alt text must not be replaced again
+        assertEquals("ha " + LAUGH, instance.render(null, "ha :))"));
+        assertEquals(LAUGH + SMILE, instance.render(null, ":)):)"));
+    }
+    
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test Accept-Encoding negotiation.
+ */
+public class ContentEncodingUtilTest {
+
+    @Test
+    public void testAcceptsGzip() {
+        assertTrue(ContentEncodingUtil.acceptsGzip("gzip, deflate, br"));
+        assertTrue(ContentEncodingUtil.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertTrue(ContentEncodingUtil.acceptsGzip("x-gzip"));
+        assertTrue(ContentEncodingUtil.acceptsGzip("*"));
+
+        assertFalse(ContentEncodingUtil.acceptsGzip(null));
+        assertFalse(ContentEncodingUtil.acceptsGzip(""));
+        assertFalse(ContentEncodingUtil.acceptsGzip("identity"));
+        assertFalse(ContentEncodingUtil.acceptsGzip("gzip;q=0"));
+        assertFalse(ContentEncodingUtil.acceptsGzip("gzip;q=0.0, *"));
+        assertFalse(ContentEncodingUtil.acceptsGzip("br, *;q=0"));
+        assertFalse(ContentEncodingUtil.acceptsGzip("gzip;q=bogus"));
+    }
+
+    @Test
+    public void testGzipETag() {
+        assertEquals("\"abc-gzip\"", ContentEncodingUtil.gzipETag("\"abc\""));
+        assertNull(ContentEncodingUtil.gzipETag(null));
+    }
+
+}
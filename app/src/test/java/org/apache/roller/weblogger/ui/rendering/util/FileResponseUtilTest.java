@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.roller.weblogger.ui.rendering.util;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test Range header parsing.
+ */
+public class FileResponseUtilTest {
+
+    @Test
+    public void testParseRanges() {
+        assertRanges("bytes=0-99", 1000, 0, 99);
+        assertRanges("bytes=900-", 1000, 900, 999);
+        assertRanges("bytes=-100", 1000, 900, 999);
+        assertRanges("bytes=-2000", 1000, 0, 999);
+        assertRanges("bytes=500-5000", 1000, 500, 999);
+
+        // overlapping and adjacent ranges are merged and put in order
+        assertRanges("bytes=500-599, 0-9, 10-19, 550-650", 1000, 0, 19, 500, 650);
+
+        // unsatisfiable
+        assertTrue(FileResponseUtil.parseRanges("bytes=1000-", 1000).isEmpty());
+        assertTrue(FileResponseUtil.parseRanges("bytes=-0", 1000).isEmpty());
+        assertTrue(FileResponseUtil.parseRanges("bytes=-10", 0).isEmpty());
+    }
+
+    @Test
+    public void testInvalidRanges() {
+        assertNull(FileResponseUtil.parseRanges("items=0-99", 1000));
+        assertNull(FileResponseUtil.parseRanges("bytes=99-0", 1000));
+        assertNull(FileResponseUtil.parseRanges("bytes=abc-5", 1000));
+        assertNull(FileResponseUtil.parseRanges("bytes=5", 1000));
+        assertNull(FileResponseUtil.parseRanges("bytes=-", 1000));
+        assertNull(FileResponseUtil.parseRanges("bytes=+1-5", 1000));
+
+        StringBuilder tooMany = new StringBuilder("bytes=0-0");
+        for (int i = 1; i < 100; i++) {
+            tooMany.append(',').append(i * 2).append('-').append(i * 2);
+        }
+        assertNull(FileResponseUtil.parseRanges(tooMany.toString(), 1000));
+    }
+
+    private static void assertRanges(String header, long length, long... expected) {
+        List<long[]> ranges = FileResponseUtil.parseRanges(header, length);
+        assertEquals(expected.length / 2, ranges.size(), header);
+        for (int i = 0; i < ranges.size(); i++) {
+            assertArrayEquals(new long[] {expected[2 * i], expected[2 * i + 1]},
+                    ranges.get(i), header);
+        }
+    }
+
+}
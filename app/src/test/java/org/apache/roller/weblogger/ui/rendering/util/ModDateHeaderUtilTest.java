@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Test the Last-Modified date of content served stale.
+ */
+public class ModDateHeaderUtilTest {
+
+    @Test
+    public void testStaleLastModified() {
+        long lastModified = 1700000000500L;
+        Map<String, Object> sent = new HashMap<>();
+
+        // stale content gets its own time
+        ModDateHeaderUtil.setStaleLastModifiedHeader(response(sent),
+                lastModified - 60000, lastModified);
+        assertEquals(lastModified - 60000, sent.get("Last-Modified"));
+
+        // and never one in the same second as the change
+        ModDateHeaderUtil.setStaleLastModifiedHeader(response(sent),
+                lastModified - 100, lastModified);
+        long staleDate = (Long) sent.get("Last-Modified");
+
+        // so revalidating by that date gets the fresh content
+        Map<String, Object> headers = new HashMap<>();
+        headers.put("If-Modified-Since", staleDate - staleDate % 1000);
+        assertFalse(ModDateHeaderUtil.respondIfNotModified(request(headers),
+                response(sent), lastModified, null));
+    }
+
+    // a request with the given headers, dates as longs
+    private static HttpServletRequest request(Map<String, Object> headers) {
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                ModDateHeaderUtilTest.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getHeader":
+                        Object value = headers.get((String) args[0]);
+                        return value != null ? value.toString() : null;
+                    case "getDateHeader":
+                        Object date = headers.get((String) args[0]);
+                        return date != null ? (Long) date : -1L;
+                    default:
+                        return null;
+                    }
+                });
+    }
+
+    // a response which puts the status and headers it is given into sent
+    private static HttpServletResponse response(Map<String, Object> sent) {
+        return (HttpServletResponse) Proxy.newProxyInstance(
+                ModDateHeaderUtilTest.class.getClassLoader(),
+                new Class<?>[] { HttpServletResponse.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "setStatus":
+                        sent.put("status", args[0]);
+                        break;
+                    case "setHeader":
+                    case "setDateHeader":
+                        sent.put((String) args[0], args[1]);
+                        break;
+                    default:
+                        break;
+                    }
+                    return null;
+                });
+    }
+
+}
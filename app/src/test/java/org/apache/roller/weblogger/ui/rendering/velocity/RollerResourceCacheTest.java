@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.velocity;
+
+import java.io.StringWriter;
+import java.util.Properties;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.resource.loader.StringResourceLoader;
+import org.apache.velocity.runtime.resource.util.StringResourceRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Test that parsed templates stay cached until they are invalidated.
+ */
+public class RollerResourceCacheTest {
+
+    private VelocityEngine engine;
+    private StringResourceRepository templates;
+
+    // the cache of the Roller engine, if other tests started one
+    private RollerResourceCache rollerCache;
+
+
+    @BeforeEach
+    public void setUp() {
+        rollerCache = RollerResourceCache.getInstance();
+        engine = newEngine();
+        templates = StringResourceLoader.getRepository();
+    }
+
+
+    @AfterEach
+    public void tearDown() {
+        RollerResourceCache.replace(rollerCache);
+    }
+
+
+    @Test
+    public void testInvalidateTemplate() {
+
+        templates.putStringResource("cacheTestTemplate|standard", "one");
+        Template parsed = engine.getTemplate("cacheTestTemplate|standard");
+        assertEquals("one", merge(parsed));
+
+        // changes are not seen until the template is invalidated
+        templates.putStringResource("cacheTestTemplate|standard", "two");
+        assertSame(parsed, engine.getTemplate("cacheTestTemplate|standard"));
+
+        WeblogTemplate template = new WeblogTemplate();
+        template.setId("cacheTestTemplate");
+        CacheManager.invalidate(template);
+        assertEquals("two", merge(engine.getTemplate("cacheTestTemplate|standard")));
+    }
+
+
+    @Test
+    public void testInvalidateTheme() {
+
+        templates.putStringResource("cacheTestTheme:page|standard", "one");
+        templates.putStringResource("otherTheme:page|standard", "one");
+        engine.getTemplate("cacheTestTheme:page|standard");
+        Template other = engine.getTemplate("otherTheme:page|standard");
+
+        templates.putStringResource("cacheTestTheme:page|standard", "two");
+        RollerResourceCache.invalidateTheme("cacheTestTheme");
+        assertEquals("two", merge(engine.getTemplate("cacheTestTheme:page|standard")));
+        assertSame(other, engine.getTemplate("otherTheme:page|standard"));
+    }
+
+
+    @Test
+    public void testInitializeAgain() {
+
+        templates.putStringResource("cacheTestAgain|standard", "one");
+        Template parsed = engine.getTemplate("cacheTestAgain|standard");
+
+        // only the cache of the engine initialized last is told about
+        // invalidations, the old one is no longer registered
+        VelocityEngine oldEngine = engine;
+        engine = newEngine();
+        templates.putStringResource("cacheTestAgain|standard", "two");
+        WeblogTemplate template = new WeblogTemplate();
+        template.setId("cacheTestAgain");
+        CacheManager.invalidate(template);
+        assertSame(parsed, oldEngine.getTemplate("cacheTestAgain|standard"));
+        assertEquals("two", merge(engine.getTemplate("cacheTestAgain|standard")));
+    }
+
+
+    private static VelocityEngine newEngine() {
+        // like the theme and roller loaders, a cached loader which never
+        // checks for modifications
+        Properties props = new Properties();
+        props.setProperty("resource.loaders", "string");
+        props.setProperty("resource.loader.string.class", StringResourceLoader.class.getName());
+        props.setProperty("resource.loader.string.cache", "true");
+        props.setProperty("resource.loader.string.modification_check_interval", "0");
+        props.setProperty("resource.manager.cache.class", RollerResourceCache.class.getName());
+
+        VelocityEngine engine = new VelocityEngine();
+        engine.init(props);
+        return engine;
+    }
+
+
+    private static String merge(Template template) {
+        StringWriter out = new StringWriter();
+        template.merge(new VelocityContext(), out);
+        return out.toString();
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test BannedwordsMatcher.
+ */
+public class BannedwordsMatcherTest {
+
+    @Test
+    public void testWordRules() {
+        BannedwordsMatcher matcher = new BannedwordsMatcher(
+                Arrays.asList("casino", "she", "hers", "cheap pills", "-spam"),
+                Collections.emptyList());
+
+        assertTrue(matcher.matches("Visit our CASINO today"));
+        assertTrue(matcher.matches("casino"));
+        assertTrue(matcher.matches("buy cheap pills now"));
+        assertTrue(matcher.matches("this is hers"));
+
+        // whole words only, like the \b..\b regex they used to be
+        assertFalse(matcher.matches("casinos are fun"));
+        assertFalse(matcher.matches("ushers"));
+        assertFalse(matcher.matches("cheap pillsbury"));
+
+        // boundaries work the same for rules starting with a non-word char
+        assertTrue(matcher.matches("no-spam"));
+        assertFalse(matcher.matches("no -spam"));
+
+        assertFalse(matcher.matches(""));
+        assertFalse(matcher.matches(null));
+    }
+
+    @Test
+    public void testRegexStringRules() {
+        BannedwordsMatcher matcher = new BannedwordsMatcher(
+                Arrays.asList("viagra.com", "pill[sz]", "[unclosed"),
+                Collections.emptyList());
+
+        assertTrue(matcher.matches("go to VIAGRA.COM"));
+        assertTrue(matcher.matches("viagraXcom"));
+        assertTrue(matcher.matches("pillz"));
+        assertFalse(matcher.matches("pillsbury"));
+
+        // invalid regex falls back to a plain, case sensitive, substring test
+        assertTrue(matcher.matches("an[unclosed bracket"));
+        assertFalse(matcher.matches("an[UNCLOSED bracket"));
+    }
+
+    @Test
+    public void testRegexRules() {
+        List<Pattern> regexRules = new ArrayList<>();
+        regexRules.add(Pattern.compile("(buy)[\\w\\-_.]*online[\\w\\-_.]*\\.[a-z]{2,}"));
+        regexRules.add(Pattern.compile("(l(so|os)tr)\\.[a-z]{2,}"));
+        regexRules.add(Pattern.compile("(a)b\\1"));
+        regexRules.add(Pattern.compile("(?:shout)", Pattern.CASE_INSENSITIVE));
+        BannedwordsMatcher matcher = new BannedwordsMatcher(Collections.emptyList(), regexRules);
+
+        assertTrue(matcher.matches("buymoreonline.com"));
+        assertTrue(matcher.matches("www.lsotr.com"));
+        assertTrue(matcher.matches("aba"));
+        assertTrue(matcher.matches("SHOUT"));
+        assertFalse(matcher.matches("abb"));
+        assertFalse(matcher.matches("four score and seven years ago.com"));
+        assertEquals(4, matcher.getRuleCount());
+    }
+
+    @Test
+    public void testSpamRulesMatcher() {
+        BannedwordsMatcher matcher = Bannedwordslist.getSpamRulesMatcher(
+                "# weblog rules\nponies\n(unicorn)s?\n", "rainbows");
+
+        assertTrue(matcher.matches("I like ponies"));
+        assertTrue(matcher.matches("unicorns"));
+        assertTrue(matcher.matches("rainbows!"));
+        assertFalse(matcher.matches("weblog rules"));
+
+        // same rules, same compiled matcher
+        assertSame(matcher, Bannedwordslist.getSpamRulesMatcher(
+                "# weblog rules\nponies\n(unicorn)s?\n", "rainbows"));
+    }
+
+}
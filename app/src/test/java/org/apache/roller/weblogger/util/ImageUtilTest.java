@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Test reading image sizes and making thumbnails.
+ */
+public class ImageUtilTest {
+
+    @Test
+    public void testFit() {
+        assertEquals(new Dimension(120, 60), ImageUtil.fit(1000, 500, 120));
+        assertEquals(new Dimension(60, 120), ImageUtil.fit(500, 1000, 120));
+        assertEquals(new Dimension(120, 120), ImageUtil.fit(4000, 4000, 120));
+        assertEquals(new Dimension(100, 50), ImageUtil.fit(100, 50, 120));
+        assertEquals(new Dimension(120, 1), ImageUtil.fit(10000, 10, 120));
+    }
+
+    @Test
+    public void testScale() {
+        BufferedImage image = new BufferedImage(1000, 500, BufferedImage.TYPE_3BYTE_BGR);
+        BufferedImage scaled = ImageUtil.scale(image, 120, 60);
+        assertEquals(120, scaled.getWidth());
+        assertEquals(60, scaled.getHeight());
+        assertEquals(BufferedImage.TYPE_INT_RGB, scaled.getType());
+
+        image = new BufferedImage(100, 50, BufferedImage.TYPE_4BYTE_ABGR);
+        scaled = ImageUtil.scale(image, 100, 50);
+        assertEquals(100, scaled.getWidth());
+        assertEquals(BufferedImage.TYPE_INT_ARGB, scaled.getType());
+    }
+
+    @Test
+    public void testReadThumbnail() throws Exception {
+
+        // left half red, right half blue
+        BufferedImage image = new BufferedImage(1600, 800, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setColor(Color.RED);
+        g2.fillRect(0, 0, 800, 800);
+        g2.setColor(Color.BLUE);
+        g2.fillRect(800, 0, 800, 800);
+        g2.dispose();
+
+        File file = File.createTempFile("imageutiltest", ".png");
+        file.deleteOnExit();
+        ImageIO.write(image, "png", file);
+
+        assertEquals(new Dimension(1600, 800), ImageUtil.readSize(file));
+
+        BufferedImage thumbnail = ImageUtil.readThumbnail(file, 120);
+        assertEquals(120, thumbnail.getWidth());
+        assertEquals(60, thumbnail.getHeight());
+        assertEquals(Color.RED.getRGB(), thumbnail.getRGB(10, 30));
+        assertEquals(Color.BLUE.getRGB(), thumbnail.getRGB(110, 30));
+
+        BufferedImage png = ImageIO.read(new ByteArrayInputStream(ImageUtil.toPng(thumbnail)));
+        assertEquals(120, png.getWidth());
+        assertEquals(Color.BLUE.getRGB(), png.getRGB(110, 30));
+    }
+
+    @Test
+    public void testNotAnImage() throws Exception {
+        File file = File.createTempFile("imageutiltest", ".txt");
+        file.deleteOnExit();
+        Files.writeString(file.toPath(), "not an image");
+        assertNull(ImageUtil.readSize(file));
+        assertNull(ImageUtil.readThumbnail(file, 120));
+    }
+
+}
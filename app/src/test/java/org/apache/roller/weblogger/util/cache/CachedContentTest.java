@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test CachedContent.
+ */
+public class CachedContentTest {
+
+    @Test
+    public void testOffHeap() throws Exception {
+        CachedContent content = new CachedContent(0, "text/html");
+        content.getCachedWriter().print("hello wörld");
+
+        // can't move content which is still being written
+        assertThrows(IllegalStateException.class, content::moveOffHeap);
+
+        content.close();
+        int length = content.getContentLength();
+        assertEquals("hello wörld".getBytes("UTF-8").length, length);
+
+        content.moveOffHeap();
+        assertTrue(content.isOffHeap());
+        assertEquals(length, content.getContentLength());
+        assertEquals(length, content.getSizeInBytes());
+        assertEquals("hello wörld", content.getContentAsString());
+
+        // can be written out any number of times
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            content.writeTo(out);
+            assertEquals("hello wörld", out.toString("UTF-8"));
+        }
+    }
+
+    @Test
+    public void testSerializeOffHeap() throws Exception {
+        CachedContent content = new CachedContent(0, "text/html");
+        content.getCachedWriter().print("some content");
+        content.close();
+        content.moveOffHeap();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(content);
+        }
+        CachedContent copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (CachedContent) in.readObject();
+        }
+
+        assertFalse(copy.isOffHeap());
+        assertEquals("some content", copy.getContentAsString());
+        assertEquals("text/html", copy.getContentType());
+    }
+
+    @Test
+    public void testCompress() throws Exception {
+        StringBuilder page = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            page.append("<p>paragraph ").append(i).append("</p>\n");
+        }
+
+        CachedContent content = new CachedContent(0, "text/html; charset=utf-8");
+        content.getCachedWriter().print(page);
+        assertThrows(IllegalStateException.class, content::compress);
+        content.close();
+
+        content.compress();
+        assertTrue(content.hasCompressed());
+        assertTrue(content.getCompressedLength() < content.getContentLength());
+        assertEquals(content.getContentLength() + content.getCompressedLength(),
+                content.getSizeInBytes());
+        assertEquals(page.toString(), gunzip(content));
+
+        // the compressed copy moves off heap and survives serialization
+        content.moveOffHeap();
+        assertEquals(page.toString(), gunzip(content));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(content);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(page.toString(), gunzip((CachedContent) in.readObject()));
+        }
+    }
+
+    @Test
+    public void testNotCompressed() throws Exception {
+        // too small to be worth it
+        CachedContent small = new CachedContent(0, "text/html");
+        small.getCachedWriter().print("hello world");
+        small.close();
+        small.compress();
+        assertFalse(small.hasCompressed());
+        assertEquals(0, small.getCompressedLength());
+        assertThrows(IllegalStateException.class,
+                () -> small.writeCompressedTo(new ByteArrayOutputStream()));
+
+        // not text
+        CachedContent image = new CachedContent(0, "image/png");
+        image.getCachedWriter().print(new String(new char[2000]));
+        image.close();
+        image.compress();
+        assertFalse(image.hasCompressed());
+    }
+
+    @Test
+    public void testETag() throws Exception {
+        CachedContent one = new CachedContent(0, "text/html");
+        one.getCachedWriter().print("some content");
+        assertNull(one.getETag());
+        one.close();
+
+        CachedContent same = new CachedContent(0, "text/html");
+        same.getCachedWriter().print("some content");
+        same.close();
+
+        CachedContent other = new CachedContent(0, "text/html");
+        other.getCachedWriter().print("other content");
+        other.close();
+
+        // a quoted strong ETag which follows the content
+        assertTrue(one.getETag().matches("\"[A-Za-z0-9_-]+\""));
+        assertEquals(one.getETag(), same.getETag());
+        assertNotEquals(one.getETag(), other.getETag());
+
+        // and doesn't change when the content moves
+        String eTag = one.getETag();
+        one.moveOffHeap();
+        assertEquals(eTag, one.getETag());
+    }
+
+    private static String gunzip(CachedContent content) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        content.writeCompressedTo(out);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            return new String(in.readAllBytes(), "UTF-8");
+        }
+    }
+
+}
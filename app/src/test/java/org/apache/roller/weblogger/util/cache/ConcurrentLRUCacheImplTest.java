@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test ConcurrentLRUCacheImpl.
+ */
+public class ConcurrentLRUCacheImplTest {
+
+    @Test
+    public void testPutGetRemove() {
+        ConcurrentLRUCacheImpl cache = new ConcurrentLRUCacheImpl("test", 100);
+
+        cache.put("key1", "string1");
+        cache.put("key2", "string2");
+        assertEquals("string1", cache.get("key1"));
+        assertEquals("string2", cache.get("key2"));
+        assertNull(cache.get("key3"));
+
+        cache.remove("key1");
+        assertNull(cache.get("key1"));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("key2"));
+    }
+
+    @Test
+    public void testLRU() {
+        // single segment so eviction order is exact
+        ConcurrentLRUCacheImpl cache = new ConcurrentLRUCacheImpl("test", 3, 0, 1);
+
+        cache.put("key1", "string1");
+        cache.put("key2", "string2");
+        cache.put("key3", "string3");
+
+        // accessing key1 and key2 will make key3 LRU
+        cache.get("key1");
+        cache.get("key2");
+
+        // adding a forth key will push out the LRU entry
+        cache.put("key4", "string4");
+        assertNull(cache.get("key3"));
+        assertNotNull(cache.get("key1"));
+        assertNotNull(cache.get("key2"));
+        assertNotNull(cache.get("key4"));
+    }
+
+    @Test
+    public void testSegmentsBoundSize() {
+        ConcurrentLRUCacheImpl cache = new ConcurrentLRUCacheImpl("test", 400, 0, 8);
+        assertEquals(8, cache.getSegmentCount());
+
+        for (int i = 0; i < 4000; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        assertTrue(cache.size() <= 400);
+
+        // small caches are not split up
+        assertEquals(1, new ConcurrentLRUCacheImpl("small", 10, 0, 8).getSegmentCount());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        ConcurrentLRUCacheImpl cache = new ConcurrentLRUCacheImpl("test", 100, 1, 1);
+
+        cache.put("key1", "string1");
+        assertNotNull(cache.get("key1"));
+
+        Thread.sleep(1100);
+        assertNull(cache.get("key1"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testStats() {
+        ConcurrentLRUCacheImpl cache = new ConcurrentLRUCacheImpl("test", 100);
+
+        cache.put("key1", "string1");
+        cache.get("key1");
+        cache.get("key1");
+        cache.get("nokey");
+        cache.remove("key1");
+
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(2.0, stats.get("hits"));
+        assertEquals(1.0, stats.get("misses"));
+        assertEquals(1.0, stats.get("puts"));
+        assertEquals(1.0, stats.get("removes"));
+        assertNotNull(stats.get("startTime"));
+
+        cache.clear();
+        assertEquals(0.0, cache.getStats().get("hits"));
+    }
+
+    @Test
+    public void testByteBound() throws Exception {
+        // 64k over a single segment, and plenty of entries
+        ConcurrentLRUCacheImpl cache = new ConcurrentLRUCacheImpl("test", 1000, 0, 1, 64 * 1024);
+
+        for (int i = 0; i < 10; i++) {
+            cache.put("key" + i, content(16 * 1024));
+        }
+        assertTrue(cache.bytes() <= 64 * 1024);
+        assertEquals(3, cache.size());
+
+        // most recently used entries survive
+        assertNotNull(cache.get("key9"));
+        assertNull(cache.get("key0"));
+
+        // replacing an entry doesn't count it twice
+        long before = cache.bytes();
+        cache.put("key9", content(16 * 1024));
+        assertEquals(before, cache.bytes());
+
+        // too big to ever fit, so it is not cached and drops the old value
+        cache.put("key9", content(128 * 1024));
+        assertNull(cache.get("key9"));
+
+        cache.remove("key8");
+        cache.remove("key7");
+        assertEquals(0, cache.bytes());
+
+        assertNotNull(cache.getStats().get("bytes"));
+    }
+
+    @Test
+    public void testMaxEntryBytes() throws Exception {
+        // 64k shared by 4 segments, so entries can take 16k each
+        ConcurrentLRUCacheImpl cache = new ConcurrentLRUCacheImpl("test", 1000, 0, 4, 64 * 1024);
+        assertEquals(4, cache.getSegmentCount());
+        assertEquals(16 * 1024, cache.getMaxEntryBytes());
+
+        cache.put("small", content(8 * 1024));
+        assertNotNull(cache.get("small"));
+
+        // fits into the cache as a whole, but not into a segment
+        cache.put("large", content(20 * 1024));
+        assertNull(cache.get("large"));
+        assertEquals(1.0, cache.getStats().get("rejects"));
+        assertEquals(1.0, cache.getStats().get("puts"));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final ConcurrentLRUCacheImpl cache = new ConcurrentLRUCacheImpl("test", 256, 0, 4);
+        final int threads = 8;
+        final int ops = 5000;
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            pool.execute(() -> {
+                for (int i = 0; i < ops; i++) {
+                    String key = "key" + ((i * 31 + seed) % 512);
+                    if (cache.get(key) == null) {
+                        cache.put(key, key);
+                    }
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertTrue(cache.size() <= 256);
+        Map<String, Object> stats = cache.getStats();
+        double lookups = (Double) stats.get("hits") + (Double) stats.get("misses");
+        assertEquals((double) threads * ops, lookups);
+    }
+
+    @Test
+    public void testFactory() {
+        Map<String, String> props = new HashMap<>();
+        props.put("id", "factorytest");
+        props.put("size", "50");
+        props.put("timeout", "60");
+
+        Cache cache = new ConcurrentLRUCacheFactoryImpl().constructCache(props);
+        assertTrue(cache instanceof ConcurrentLRUCacheImpl);
+        assertEquals("factorytest", cache.getId());
+    }
+
+    private static CachedContent content(int size) throws Exception {
+        CachedContent content = new CachedContent(size);
+        char[] chars = new char[size];
+        Arrays.fill(chars, 'x');
+        content.getCachedWriter().write(chars);
+        content.close();
+        return content;
+    }
+
+}
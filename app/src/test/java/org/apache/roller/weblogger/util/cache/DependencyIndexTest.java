@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test DependencyIndex.
+ */
+public class DependencyIndexTest {
+
+    @Test
+    public void testRemoveDependents() {
+        DependencyIndex index = new DependencyIndex();
+
+        index.put("front", Arrays.asList("site:entries", "weblog:a"));
+        index.put("directory", Arrays.asList("site:directory", "weblog:a"));
+        index.put("tags", Collections.singletonList("site:tags"));
+        assertEquals(3, index.size());
+
+        Set<String> removed = index.removeDependents(Collections.singletonList("site:entries"));
+        assertEquals(Collections.singleton("front"), removed);
+        assertEquals(2, index.size());
+
+        removed = index.removeDependents(Arrays.asList("weblog:a", "weblog:b"));
+        assertEquals(Collections.singleton("directory"), removed);
+
+        // nothing left depending on these
+        assertTrue(index.removeDependents(Arrays.asList("weblog:a", "site:entries")).isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testReplaceAndRemove() {
+        DependencyIndex index = new DependencyIndex();
+
+        index.put("page", Collections.singletonList("weblog:a"));
+        index.put("page", Collections.singletonList("weblog:b"));
+
+        // old dependencies are forgotten when a key is put again
+        assertTrue(index.removeDependents(Collections.singletonList("weblog:a")).isEmpty());
+        assertEquals(new HashSet<>(Collections.singletonList("page")),
+                index.removeDependents(Collections.singletonList("weblog:b")));
+
+        index.put("page", Collections.singletonList("weblog:a"));
+        index.remove("page");
+        assertEquals(0, index.size());
+        assertTrue(index.removeDependents(Collections.singletonList("weblog:a")).isEmpty());
+
+        index.put("page", Collections.singletonList("weblog:a"));
+        index.clear();
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testForCache() {
+        // full at ten keys per cache entry, but never below a thousand
+        DependencyIndex index = DependencyIndex.forCache(Collections.singletonMap("size", "200"));
+        for (int i = 0; i < 1999; i++) {
+            index.put("page" + i, Collections.singletonList("weblog:a"));
+        }
+        assertFalse(index.isFull());
+        index.put("page1999", Collections.singletonList("weblog:a"));
+        assertTrue(index.isFull());
+
+        index = DependencyIndex.forCache(Collections.singletonMap("size", "10"));
+        for (int i = 0; i < 999; i++) {
+            index.put("page" + i, Collections.singletonList("weblog:a"));
+        }
+        assertFalse(index.isFull());
+
+        assertFalse(new DependencyIndex().isFull());
+    }
+
+}
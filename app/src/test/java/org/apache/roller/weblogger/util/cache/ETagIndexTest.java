@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test ETagIndex.
+ */
+public class ETagIndexTest {
+
+    @Test
+    public void testInvalidation() {
+        ETagIndex index = new ETagIndex(10, 0);
+        long before = System.currentTimeMillis();
+
+        index.put("page", "\"a\"");
+        assertEquals("\"a\"", index.get("page", before));
+        assertNull(index.get("other", before));
+
+        // invalidated after the content was cached
+        assertNull(index.get("page", System.currentTimeMillis() + 1));
+
+        index.put("page", "\"b\"");
+        assertEquals("\"b\"", index.get("page", 0));
+        index.put("page", null);
+        assertNull(index.get("page", 0));
+
+        index.put("page", "\"c\"");
+        index.remove("page");
+        assertNull(index.get("page", 0));
+    }
+
+    @Test
+    public void testBounds() throws Exception {
+        ETagIndex index = new ETagIndex(2, 50);
+
+        index.put("one", "\"1\"");
+        index.put("two", "\"2\"");
+        assertEquals(2, index.size());
+
+        // full, so it starts over
+        index.put("three", "\"3\"");
+        assertEquals(1, index.size());
+        assertNull(index.get("one", 0));
+        assertEquals("\"3\"", index.get("three", 0));
+
+        // and ETags don't outlive the cache timeout
+        Thread.sleep(100);
+        assertNull(index.get("three", 0));
+    }
+
+}
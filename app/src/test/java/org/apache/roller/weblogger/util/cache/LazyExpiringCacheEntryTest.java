@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test fresh and stale values of lazily expiring cache entries.
+ */
+public class LazyExpiringCacheEntryTest {
+
+    @Test
+    public void testStaleValue() {
+        LazyExpiringCacheEntry entry = new LazyExpiringCacheEntry("content");
+        long cached = entry.getTimeCached();
+
+        assertFalse(entry.isInvalid(cached));
+        assertEquals("content", entry.getValue(cached));
+
+        // invalidated after it was cached
+        long now = System.currentTimeMillis();
+        assertTrue(entry.isInvalid(cached + 1));
+        assertNull(entry.getValue(cached + 1));
+
+        // still usable as stale content for a while after the invalidation
+        assertEquals("content", entry.getStaleValue(now, 60000));
+        assertNull(entry.getStaleValue(now - 120000, 60000));
+        assertEquals("content", entry.getCachedValue());
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test SingleFlight.
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void testLeaderAndFollowers() throws Exception {
+        final SingleFlight flights = new SingleFlight(10000);
+        final int threads = 8;
+        final AtomicInteger renders = new AtomicInteger();
+        final AtomicInteger results = new AtomicInteger();
+        final CountDownLatch joined = new CountDownLatch(threads);
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        SingleFlight.Ticket leader = flights.start("key");
+        assertTrue(leader.isLeader());
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                SingleFlight.Ticket ticket = flights.start("key");
+                joined.countDown();
+                if (ticket.isLeader()) {
+                    renders.incrementAndGet();
+                    ticket.release();
+                } else if ("content".equals(ticket.await())) {
+                    results.incrementAndGet();
+                }
+                done.countDown();
+            });
+        }
+
+        assertTrue(joined.await(10, TimeUnit.SECONDS));
+        flights.complete("key", "content");
+        leader.release();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertEquals(0, renders.get());
+        assertEquals(threads, results.get());
+        assertEquals(0, flights.size());
+    }
+
+    @Test
+    public void testReleaseWithoutResult() {
+        SingleFlight flights = new SingleFlight(10000);
+
+        SingleFlight.Ticket leader = flights.start("key");
+        SingleFlight.Ticket follower = flights.start("key");
+        assertFalse(follower.isLeader());
+
+        // leader failed, followers are let go without a result
+        leader.release();
+        assertNull(follower.await());
+
+        // and the next caller leads again
+        assertTrue(flights.start("key").isLeader());
+    }
+
+    @Test
+    public void testWaitTimeout() {
+        SingleFlight flights = new SingleFlight(50);
+
+        flights.start("key");
+        SingleFlight.Ticket follower = flights.start("key");
+        assertNull(follower.await());
+
+        // other keys are independent
+        assertTrue(flights.start("other").isLeader());
+        assertEquals(2, flights.size());
+    }
+
+}
@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.roller.weblogger.ui.core.RollerContext;
+
+/**
+ * Generated, repeatable fixtures for the benchmarks.
+ *
+ * Everything is derived from a seeded Random, so that runs on different
+ * machines or builds work on the same data.
+ */
+public final class Fixtures {
+
+    private static final String[] SYLLABLES = {
+        "ro", "ler", "web", "log", "en", "try", "ta", "gi", "no", "mo",
+        "sa", "ve", "ka", "pi", "lu", "ce", "dor", "fan", "ix", "qua"
+    };
+
+    private static final List<String> VOCABULARY = vocabulary(new Random(7), 20000);
+
+    private Fixtures() {
+        // never instantiable
+        throw new AssertionError();
+    }
+
+
+    /**
+     * The shared vocabulary, ordered from most to least frequently used
+     * by the generators.
+     */
+    public static List<String> vocabulary() {
+        return VOCABULARY;
+    }
+
+    /**
+     * A word from the vocabulary, picked with a skew towards the front so
+     * that word frequencies look roughly like natural text.
+     */
+    public static String word(Random random) {
+        double skewed = Math.pow(random.nextDouble(), 3);
+        return VOCABULARY.get((int) (skewed * VOCABULARY.size()));
+    }
+
+    public static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(word(random));
+        }
+        return sentence.toString();
+    }
+
+    /**
+     * Entry text of about the given number of chars, marked up the way
+     * weblog editors produce it: paragraphs with links, emphasis, images
+     * and the occasional list.
+     */
+    public static String entryText(Random random, int chars) {
+        StringBuilder text = new StringBuilder(chars + 512);
+        while (text.length() < chars) {
+            switch (random.nextInt(6)) {
+                case 0:
+                    text.append("<ul>");
+                    for (int i = 0; i < 3 + random.nextInt(4); i++) {
+                        text.append("<li>").append(sentence(random, 4 + random.nextInt(8))).append("</li>");
+                    }
+                    text.append("</ul>\n");
+                    break;
+                case 1:
+                    text.append("<p><img src=\"https://example.org/media/")
+                        .append(word(random)).append(".jpg\" alt=\"")
+                        .append(sentence(random, 3)).append("\" width=\"640\" height=\"480\"/></p>\n");
+                    break;
+                default:
+                    text.append("<p>");
+                    for (int i = 0; i < 3 + random.nextInt(5); i++) {
+                        String s = sentence(random, 6 + random.nextInt(14));
+                        switch (random.nextInt(5)) {
+                            case 0:
+                                text.append("<a href=\"https://example.org/").append(word(random))
+                                    .append("\">").append(s).append("</a>");
+                                break;
+                            case 1:
+                                text.append("<strong>").append(s).append("</strong>");
+                                break;
+                            case 2:
+                                text.append("<em>").append(s).append("</em>");
+                                break;
+                            default:
+                                text.append(s);
+                        }
+                        text.append(". ");
+                    }
+                    text.append("</p>\n");
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * A bannedwordslist in the format of bannedwordslist.txt with the given
+     * number of word rules, some of them domain names, plus a few regex rules.
+     * Generated words are prefixed so they never show up in entry text.
+     */
+    public static String bannedwordslist(Random random, int rules) {
+        StringBuilder list = new StringBuilder();
+        list.append("# Generated bannedwordslist\n");
+        for (int i = 0; i < rules; i++) {
+            String word = "zz" + VOCABULARY.get(random.nextInt(VOCABULARY.size())) + i;
+            if (i % 4 == 0) {
+                list.append(word).append(".com\n");
+            } else {
+                list.append(word).append('\n');
+            }
+        }
+        list.append("(buy)[\\w\\-_.]*online[\\w\\-_.]*\\.[a-z]{2,}\n");
+        list.append("(online)[\\w\\-_.]*casino[\\w\\-_.]*\\.[a-z]{2,}\n");
+        list.append("(prozac|zoloft|xanax|valium|hydrocodone|vicodin|paxil|vioxx)[\\w\\-_.]*\\.[a-z]{2,}\n");
+        return list.toString();
+    }
+
+    /**
+     * Real world user agent strings, one per line in user-agents.txt.
+     */
+    public static List<String> userAgents() {
+        List<String> agents = new ArrayList<>();
+        try (InputStream in = Fixtures.class.getResourceAsStream("/user-agents.txt");
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    agents.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return agents;
+    }
+
+    /**
+     * A request which only knows about its headers.
+     */
+    public static HttpServletRequest request(Map<String, String> headers) {
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                Fixtures.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getHeader":
+                            return headers.get((String) args[0]);
+                        case "getHeaderNames":
+                            return Collections.enumeration(headers.keySet());
+                        case "toString":
+                            return "request " + headers;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    /**
+     * Make RollerContext hand out a servlet context which serves webapp
+     * resources from the classpath, which is enough for the Velocity
+     * rendering engine to start up outside of a servlet container.
+     */
+    public static void initServletContext() throws ReflectiveOperationException {
+        ServletContext context = (ServletContext) Proxy.newProxyInstance(
+                Fixtures.class.getClassLoader(),
+                new Class<?>[] { ServletContext.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getResourceAsStream":
+                            return Fixtures.class.getResourceAsStream((String) args[0]);
+                        case "getResource":
+                            return Fixtures.class.getResource((String) args[0]);
+                        case "toString":
+                            return "benchmark servlet context";
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+
+        Field field = RollerContext.class.getDeclaredField("servletContext");
+        field.setAccessible(true);
+        field.set(null, context);
+    }
+
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return Boolean.FALSE;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    private static List<String> vocabulary(Random random, int size) {
+        List<String> words = new ArrayList<>(size);
+        Set<String> seen = new HashSet<>();
+        while (words.size() < size) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 1 + random.nextInt(4);
+            for (int i = 0; i < syllables; i++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            if (seen.add(word.toString())) {
+                words.add(word.toString());
+            }
+        }
+        return Collections.unmodifiableList(words);
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.roller.weblogger.benchmarks.Fixtures;
+import org.apache.roller.weblogger.business.search.operations.SearchOperation;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.util.Utilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Searches through SearchOperation over a generated index, including loading
+ * the stored fields of the first page of hits like the search models do.
+ * <br />
+ * The index is generated into search.index.dir, which the benchmarks point
+ * at the temp directory in roller-custom.properties.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchOperationBenchmark {
+
+    private static final int WEBLOGS = 50;
+    private static final int PAGE_SIZE = 10;
+
+    @Param({"50000"})
+    private int entries;
+
+    // how common the searched word is
+    @Param({"common", "rare", "twoWords"})
+    private String query;
+
+    private IndexManagerImpl manager;
+    private String term;
+
+    @Setup
+    public void setUp() throws Exception {
+        Path indexDir = Path.of(WebloggerConfig.getProperty("search.index.dir"));
+        deleteRecursively(indexDir);
+        Files.createDirectories(indexDir);
+
+        Random random = new Random(42);
+        IndexWriterConfig config = new IndexWriterConfig(IndexManagerImpl.getAnalyzer());
+        try (FSDirectory directory = FSDirectory.open(indexDir);
+             IndexWriter writer = new IndexWriter(directory, config)) {
+            long time = System.currentTimeMillis();
+            for (int i = 0; i < entries; i++) {
+                writer.addDocument(document(random, i, new Timestamp(time - i * 60000L)));
+            }
+        }
+
+        // a null weblogger is fine as long as the index is consistent
+        manager = new IndexManagerImpl(null);
+        manager.initialize();
+
+        switch (query) {
+            case "common":
+                term = Fixtures.vocabulary().get(0);
+                break;
+            case "rare":
+                term = Fixtures.vocabulary().get(Fixtures.vocabulary().size() / 2);
+                break;
+            default:
+                term = Fixtures.vocabulary().get(3) + " " + Fixtures.vocabulary().get(40);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.shutdown();
+    }
+
+    @Benchmark
+    public void search(Blackhole blackhole) throws IOException {
+        SearchOperation search = new SearchOperation(manager);
+        search.setTerm(term);
+        search.run();
+        try {
+            ScoreDoc[] hits = search.getResults().scoreDocs;
+            for (int i = 0; i < Math.min(PAGE_SIZE, hits.length); i++) {
+                Document doc = search.getSearcher().doc(hits[i].doc);
+                blackhole.consume(doc.get(FieldConstants.ID));
+            }
+            blackhole.consume(search.getResultsCount());
+        } finally {
+            search.release();
+        }
+    }
+
+
+    // the same fields IndexOperation.getDocument() writes for an entry
+    private static Document document(Random random, int i, Timestamp pubTime) {
+        String text = Utilities.removeHTML(Fixtures.entryText(random, 3000));
+        String handle = "weblog" + (i % WEBLOGS);
+
+        Document doc = new Document();
+        doc.add(new StringField(FieldConstants.ID, "entry" + i, Field.Store.YES));
+        doc.add(new StringField(FieldConstants.WEBSITE_HANDLE, handle, Field.Store.YES));
+        doc.add(new TextField(FieldConstants.USERNAME, "author" + (i % 7), Field.Store.YES));
+        doc.add(new TextField(FieldConstants.TITLE, Fixtures.sentence(random, 6), Field.Store.YES));
+        doc.add(new StringField(FieldConstants.LOCALE, "en", Field.Store.YES));
+        doc.add(new TextField(FieldConstants.CONTENT, text, Field.Store.NO));
+        doc.add(new StringField(FieldConstants.UPDATED, pubTime.toString(), Field.Store.YES));
+        doc.add(new SortedDocValuesField(FieldConstants.PUBLISHED, new BytesRef(pubTime.toString())));
+        doc.add(new StringField(FieldConstants.CATEGORY, "general", Field.Store.YES));
+        doc.add(new TextField(FieldConstants.C_CONTENT, Fixtures.sentence(random, 30), Field.Store.NO));
+        doc.add(new StringField(FieldConstants.C_EMAIL, "", Field.Store.YES));
+        doc.add(new StringField(FieldConstants.C_NAME, "", Field.Store.YES));
+        return doc;
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+}
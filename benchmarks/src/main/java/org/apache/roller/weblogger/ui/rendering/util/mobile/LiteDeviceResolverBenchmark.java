@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util.mobile;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.roller.weblogger.benchmarks.Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Resolving the device type of the user agents in user-agents.txt, which is
+ * done for every page request.  One operation resolves the whole corpus.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LiteDeviceResolverBenchmark {
+
+    private LiteDeviceResolver resolver;
+    private HttpServletRequest[] requests;
+
+    @Setup
+    public void setUp() {
+        resolver = new LiteDeviceResolver();
+        List<String> agents = Fixtures.userAgents();
+        requests = new HttpServletRequest[agents.size()];
+        for (int i = 0; i < requests.length; i++) {
+            Map<String, String> headers = new LinkedHashMap<>();
+            headers.put("Host", "blogs.example.org");
+            headers.put("User-Agent", agents.get(i));
+            headers.put("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+            headers.put("Accept-Language", "en-US,en;q=0.5");
+            headers.put("Accept-Encoding", "gzip, deflate, br");
+            headers.put("Cookie", "JSESSIONID=0123456789ABCDEF");
+            requests[i] = Fixtures.request(headers);
+        }
+    }
+
+    @Benchmark
+    public void resolveDevice(Blackhole blackhole) {
+        for (HttpServletRequest request : requests) {
+            blackhole.consume(resolver.resolveDevice(request));
+        }
+    }
+
+}
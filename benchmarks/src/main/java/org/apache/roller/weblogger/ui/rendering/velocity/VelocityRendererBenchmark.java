@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.velocity;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.roller.weblogger.benchmarks.Fixtures;
+import org.apache.roller.weblogger.pojos.StaticTemplate;
+import org.apache.roller.weblogger.pojos.TemplateRendition.TemplateLanguage;
+import org.apache.roller.weblogger.ui.rendering.RenderingException;
+import org.apache.roller.weblogger.ui.rendering.mobile.MobileDeviceRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering a weblog front page through VelocityRenderer, with the real
+ * Velocity configuration and macro libraries of the webapp.  The model is
+ * made of plain maps, so the time is spent in the template engine rather
+ * than in the database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VelocityRendererBenchmark {
+
+    private static final int DAYS = 5;
+
+    // entries on the page
+    @Param({"15", "50"})
+    private int entries;
+
+    private VelocityRenderer renderer;
+    private Map<String, Object> model;
+
+    @Setup
+    public void setUp() throws Exception {
+        Fixtures.initServletContext();
+
+        renderer = new VelocityRenderer(
+                new StaticTemplate("benchmark-page.vm", TemplateLanguage.VELOCITY),
+                MobileDeviceRepository.DeviceType.standard);
+
+        Random random = new Random(42);
+
+        Map<String, Object> weblog = new HashMap<>();
+        weblog.put("name", "Benchmark Weblog");
+        weblog.put("description", Fixtures.sentence(random, 12));
+        weblog.put("url", "https://blogs.example.org/benchmark");
+
+        List<String> categories = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            categories.add(Fixtures.word(random));
+        }
+
+        List<Map<String, Object>> days = new ArrayList<>();
+        List<Map<String, Object>> recentEntries = new ArrayList<>();
+        for (int d = 0; d < DAYS; d++) {
+            List<Map<String, Object>> dayEntries = new ArrayList<>();
+            for (int i = d; i < entries; i += DAYS) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("title", Fixtures.sentence(random, 6));
+                entry.put("permalink", "https://blogs.example.org/benchmark/entry/entry" + i);
+                entry.put("pubTime", "2026-01-0" + (d + 1) + " 12:00:00");
+                entry.put("creator", "author" + (i % 3));
+                entry.put("category", categories.get(random.nextInt(categories.size())));
+                entry.put("text", Fixtures.entryText(random, 4000));
+                List<String> tags = new ArrayList<>();
+                for (int t = 0; t < random.nextInt(6); t++) {
+                    tags.add(Fixtures.word(random));
+                }
+                entry.put("tags", tags);
+                entry.put("commentCount", random.nextInt(20));
+                dayEntries.add(entry);
+                if (recentEntries.size() < 10) {
+                    recentEntries.add(entry);
+                }
+            }
+            Map<String, Object> day = new HashMap<>();
+            day.put("date", "January " + (d + 1) + ", 2026");
+            day.put("entries", dayEntries);
+            days.add(day);
+        }
+
+        model = new HashMap<>();
+        model.put("weblog", weblog);
+        model.put("days", days);
+        model.put("recentEntries", recentEntries);
+        model.put("categories", categories);
+
+        // errors are rendered as an error page, don't measure that
+        StringWriter out = new StringWriter();
+        renderer.render(model, out);
+        if (!out.toString().contains("rEntriesList")) {
+            throw new IllegalStateException("Benchmark page did not render: " + out);
+        }
+    }
+
+    @Benchmark
+    public int render() throws RenderingException {
+        StringWriter out = new StringWriter(64 * 1024);
+        renderer.render(model, out);
+        return out.getBuffer().length();
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.apache.roller.weblogger.benchmarks.Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Checking a comment against the built-in bannedwordslist plus a large
+ * weblog list, the way BannedwordslistChecker does it for every comment
+ * and trackback.  The comment doesn't match, so all rules are tried.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BannedwordslistBenchmark {
+
+    @Param({"1000", "10000"})
+    private int rules;
+
+    private Bannedwordslist bannedwordslist;
+    private String weblogRules;
+    private String comment;
+
+    private final List<String> stringRules = new ArrayList<>();
+    private final List<Pattern> regexRules = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        bannedwordslist = Bannedwordslist.getBannedwordslist();
+        weblogRules = Fixtures.bannedwordslist(random, rules);
+        comment = Fixtures.entryText(random, 2000);
+        Bannedwordslist.populateSpamRules(weblogRules, stringRules, regexRules, null);
+    }
+
+    /** Rules compiled once and reused, what the checker does. */
+    @Benchmark
+    public boolean compiledRules() {
+        return bannedwordslist.isBannedwordslisted(comment,
+                Bannedwordslist.getSpamRulesMatcher(weblogRules, null));
+    }
+
+    /** Rules passed as lists, compiled on every check. */
+    @Benchmark
+    public boolean ruleLists() {
+        return bannedwordslist.isBannedwordslisted(comment, stringRules, regexRules);
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.roller.weblogger.benchmarks.Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Text processing done for every entry on every render: stripping markup
+ * for summaries and feeds, and sanitizing untrusted HTML.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UtilitiesBenchmark {
+
+    // entry size in chars, a typical post and a long article
+    @Param({"4000", "60000"})
+    private int size;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = Fixtures.entryText(new Random(42), size);
+    }
+
+    @Benchmark
+    public String removeHTML() {
+        return Utilities.removeHTML(text);
+    }
+
+    @Benchmark
+    public String truncateNicely() {
+        return Utilities.truncateNicely(text, 180, 250, "...");
+    }
+
+    @Benchmark
+    public String sanitize() {
+        return HTMLSanitizer.sanitize(text);
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Page cache lookups from many request threads at once, mostly hits on a
+ * few popular pages with a long tail of misses that get rendered and put.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class CacheBenchmark {
+
+    private static final int CACHE_SIZE = 1000;
+
+    // distinct pages requested, more than fit in the cache
+    private static final int PAGES = 5000;
+
+    @Param({"lru", "concurrent"})
+    private String impl;
+
+    private Cache cache;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        if ("lru".equals(impl)) {
+            cache = new LRUCacheImpl("benchmark", CACHE_SIZE);
+        } else {
+            cache = new ConcurrentLRUCacheImpl("benchmark", CACHE_SIZE);
+        }
+        keys = new String[PAGES];
+        for (int i = 0; i < PAGES; i++) {
+            keys[i] = "weblog/handle" + (i % 97) + "/page/" + i + "?locale=en";
+            cache.put(keys[i], "content " + i);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Requests {
+
+        // each thread gets its own sequence of requests, the same every run
+        @Param({"42"})
+        private long seed;
+
+        private Random random;
+
+        @Setup
+        public void setUp(ThreadParams threadParams) {
+            random = new Random(seed + threadParams.getThreadIndex());
+        }
+
+        String next(String[] keys) {
+            double skewed = Math.pow(random.nextDouble(), 4);
+            return keys[(int) (skewed * keys.length)];
+        }
+    }
+
+    @Benchmark
+    public Object getOrPut(Requests requests) {
+        String key = requests.next(keys);
+        Object value = cache.get(key);
+        if (value == null) {
+            value = "content " + key;
+            cache.put(key, value);
+        }
+        return value;
+    }
+
+}